@@ -0,0 +1,140 @@
+package nl.cwts.publicationclassification.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.publicationclassification.run.CitationNetworkGenerator;
+import nl.cwts.publicationclassification.run.FileIO;
+
+/**
+ * Benchmarks of reading citation networks and writing publication
+ * classifications.
+ *
+ * @author Nees Jan van Eck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileIOBenchmark
+{
+    /**
+     * Number of publications of the synthetic citation network.
+     */
+    @Param({ "10000", "100000", "1000000" })
+    public int nPubs;
+
+    /**
+     * Number of threads.
+     */
+    @Param({ "1", "4" })
+    public int nThreads;
+
+    /**
+     * Temporary directory containing the input and output files.
+     */
+    private File directory;
+
+    /**
+     * Name of the publications file.
+     */
+    private String pubFile;
+
+    /**
+     * Name of the citation links file.
+     */
+    private String citLinkFile;
+
+    /**
+     * Name of the classification file.
+     */
+    private String classificationFile;
+
+    /**
+     * Publication numbers.
+     */
+    private int[] pub;
+
+    /**
+     * Cluster numbers of the publications (first index: level; second index:
+     * publication).
+     */
+    private int[][] cluster;
+
+    /**
+     * Creates the synthetic citation network, writes it to the input files,
+     * and creates a synthetic classification.
+     *
+     * @throws IOException The temporary directory cannot be created.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("publicationclassification-benchmark").toFile();
+        pubFile = new File(directory, "pubs.txt").getPath();
+        citLinkFile = new File(directory, "cit_links.txt").getPath();
+        classificationFile = new File(directory, "classification.txt").getPath();
+        Network network = new CitationNetworkGenerator(nPubs, 0).generateNetwork(Runtime.getRuntime().availableProcessors());
+        FileIO.writeNetwork(network, pubFile, citLinkFile, Runtime.getRuntime().availableProcessors());
+
+        pub = new int[nPubs];
+        cluster = new int[3][nPubs];
+        for (int i = 0; i < nPubs; i++)
+        {
+            pub[i] = i;
+            cluster[0][i] = i / 100;
+            cluster[1][i] = i / 1000;
+            cluster[2][i] = i / 10000;
+        }
+    }
+
+    /**
+     * Removes the input and output files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    /**
+     * Benchmarks {@link FileIO#readNetwork(String, String, int)}.
+     *
+     * @return Citation network
+     */
+    @Benchmark
+    public Network readNetwork()
+    {
+        return FileIO.readNetwork(pubFile, citLinkFile, nThreads);
+    }
+
+    /**
+     * Benchmarks {@link FileIO#writeClassification(String, int[], int[][], int)}.
+     */
+    @Benchmark
+    public void writeClassification()
+    {
+        FileIO.writeClassification(classificationFile, pub, cluster, nThreads);
+    }
+}
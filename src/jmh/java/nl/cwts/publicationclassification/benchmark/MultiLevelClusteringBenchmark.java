@@ -0,0 +1,165 @@
+package nl.cwts.publicationclassification.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.cwts.networkanalysis.Clustering;
+import nl.cwts.networkanalysis.LeidenAlgorithm;
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.publicationclassification.MultiLevelClustering;
+import nl.cwts.publicationclassification.run.CitationNetworkGenerator;
+
+/**
+ * Benchmarks of the creation of a multi-level clustering.
+ *
+ * <p>
+ * {@link #addLevel()} benchmarks the creation of a micro-level clustering.
+ * {@link #getReducedNetwork()} and {@link #getClustering()} benchmark the
+ * reduced network and the clustering at the macro level of a three-level
+ * clustering. The reduced network cache is cleared before each invocation of
+ * {@link #getReducedNetwork(ClearedReducedNetworkCache)}, so that all reduced
+ * networks are created. This is done by a separate state that only this
+ * benchmark uses, so that the other benchmarks are not affected.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MultiLevelClusteringBenchmark
+{
+    /**
+     * Number of publications of the synthetic citation network.
+     */
+    @Param({ "10000", "100000", "1000000" })
+    public int nPubs;
+
+    /**
+     * Number of iterations of the Leiden algorithm.
+     */
+    @Param({ "2" })
+    public int nIterations;
+
+    /**
+     * Values of the resolution parameter at the three levels.
+     */
+    private static final double[] RESOLUTION = { 2e-4, 2e-5, 2e-6 };
+
+    /**
+     * Minimum number of publications per cluster at the three levels.
+     */
+    private static final int[] PUB_THRESHOLD = { 10, 100, 1000 };
+
+    /**
+     * Synthetic citation network.
+     */
+    private Network network;
+
+    /**
+     * Three-level clustering of the synthetic citation network.
+     */
+    private MultiLevelClustering multiLevelClustering;
+
+    /**
+     * Creates the synthetic citation network and a three-level clustering of
+     * the network.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        network = new CitationNetworkGenerator(nPubs, 0).generateNetwork(Runtime.getRuntime().availableProcessors());
+        multiLevelClustering = createMultiLevelClustering();
+        for (int i = 0; i < RESOLUTION.length; i++)
+            multiLevelClustering.addLevel(RESOLUTION[i], PUB_THRESHOLD[i]);
+    }
+
+    /**
+     * State that clears the reduced network cache of the three-level
+     * clustering before each invocation of a benchmark.
+     *
+     * @author Nees Jan van Eck
+     */
+    @State(Scope.Thread)
+    public static class ClearedReducedNetworkCache
+    {
+        /**
+         * Clears the reduced network cache.
+         *
+         * @param benchmark Benchmark state
+         */
+        @Setup(Level.Invocation)
+        public void clearReducedNetworkCache(MultiLevelClusteringBenchmark benchmark)
+        {
+            benchmark.multiLevelClustering.clearReducedNetworkCache();
+        }
+    }
+
+    /**
+     * Benchmarks {@link MultiLevelClustering#addLevel(double, double)} at the
+     * micro level.
+     *
+     * @return Multi-level clustering
+     */
+    @Benchmark
+    public MultiLevelClustering addLevel()
+    {
+        MultiLevelClustering multiLevelClustering = createMultiLevelClustering();
+        multiLevelClustering.addLevel(RESOLUTION[0], PUB_THRESHOLD[0]);
+        return multiLevelClustering;
+    }
+
+    /**
+     * Benchmarks {@link MultiLevelClustering#getReducedNetwork(int)} at the
+     * macro level.
+     *
+     * @param clearedReducedNetworkCache State that clears the reduced network
+     *                                   cache before each invocation
+     *
+     * @return Reduced network
+     */
+    @Benchmark
+    public Network getReducedNetwork(ClearedReducedNetworkCache clearedReducedNetworkCache)
+    {
+        return multiLevelClustering.getReducedNetwork(RESOLUTION.length - 1);
+    }
+
+    /**
+     * Benchmarks {@link MultiLevelClustering#getClustering(int)} at the macro
+     * level.
+     *
+     * @return Clustering
+     */
+    @Benchmark
+    public Clustering getClustering()
+    {
+        return multiLevelClustering.getClustering(RESOLUTION.length - 1);
+    }
+
+    /**
+     * Creates an empty multi-level clustering of the synthetic citation
+     * network using the Leiden algorithm with a fixed random seed.
+     *
+     * @return Multi-level clustering
+     */
+    private MultiLevelClustering createMultiLevelClustering()
+    {
+        return new MultiLevelClustering(network, new LeidenAlgorithm(LeidenAlgorithm.DEFAULT_RESOLUTION, nIterations, LeidenAlgorithm.DEFAULT_RANDOMNESS, new Random(0)));
+    }
+}
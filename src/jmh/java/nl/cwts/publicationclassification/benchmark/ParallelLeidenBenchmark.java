@@ -0,0 +1,232 @@
+package nl.cwts.publicationclassification.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.cwts.networkanalysis.IterativeCPMClusteringAlgorithm;
+import nl.cwts.networkanalysis.LeidenAlgorithm;
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.publicationclassification.MultiLevelClustering;
+import nl.cwts.publicationclassification.ParallelLeidenAlgorithm;
+import nl.cwts.publicationclassification.run.CitationNetworkGenerator;
+
+/**
+ * Benchmarks of the parallel Leiden algorithm compared to the Leiden
+ * algorithm.
+ *
+ * <p>
+ * {@link #addLevel()} benchmarks the creation of a micro-level clustering
+ * using the Leiden algorithm ({@link #nThreads} is zero) or the parallel
+ * Leiden algorithm with the given number of threads. The parallel Leiden
+ * algorithm uses a fork-join pool that is created once for each trial. Both
+ * algorithms use a random seed of zero. The speed-up follows from the throughput for different
+ * numbers of threads.
+ * </p>
+ *
+ * <p>
+ * Before each trial, a reference clustering of the same network is created
+ * using the Leiden algorithm. After each trial, the number of clusters and
+ * the quality of the micro-level clustering and the quality of the reference
+ * clustering are appended to the tab-separated file {@link #QUALITY_FILE}.
+ * Because both algorithms use a fixed random seed, the qualities are
+ * deterministic. The trial fails if the quality is more than {@link
+ * #QUALITY_TOLERANCE} (relative) below the quality of the reference
+ * clustering.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelLeidenBenchmark
+{
+    /**
+     * Number of publications of the synthetic citation network.
+     */
+    @Param({ "100000", "1000000" })
+    public int nPubs;
+
+    /**
+     * Number of threads of the parallel Leiden algorithm (zero for the Leiden
+     * algorithm).
+     */
+    @Param({ "0", "1", "2", "4", "8" })
+    public int nThreads;
+
+    /**
+     * Number of iterations of the Leiden algorithm.
+     */
+    @Param({ "2" })
+    public int nIterations;
+
+    /**
+     * Value of the resolution parameter at the micro level.
+     */
+    private static final double RESOLUTION = 2e-4;
+
+    /**
+     * Minimum number of publications per cluster at the micro level.
+     */
+    private static final int PUB_THRESHOLD = 10;
+
+    /**
+     * Maximum relative difference by which the quality of the clustering may
+     * be below the quality of the reference clustering.
+     */
+    public static final double QUALITY_TOLERANCE = 0.01;
+
+    /**
+     * File to which the qualities of the clusterings are appended.
+     */
+    public static final String QUALITY_FILE = "build/reports/jmh/parallel-leiden-quality.tsv";
+
+    /**
+     * Synthetic citation network.
+     */
+    private Network network;
+
+    /**
+     * Fork-join pool of the parallel Leiden algorithm (null if the algorithm
+     * uses a single thread or if the Leiden algorithm is benchmarked).
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Multi-level clustering created by the last invocation of
+     * {@link #addLevel()}.
+     */
+    private MultiLevelClustering multiLevelClustering;
+
+    /**
+     * Quality of the reference clustering created using the Leiden algorithm.
+     */
+    private double referenceQuality;
+
+    /**
+     * Creates the synthetic citation network, the reference clustering, and
+     * the fork-join pool of the parallel Leiden algorithm.
+     */
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        network = new CitationNetworkGenerator(nPubs, 0).generateNetwork(Runtime.getRuntime().availableProcessors());
+        referenceQuality = createClustering(0).calcQuality(0);
+        if (nThreads > 1)
+            pool = new ForkJoinPool(nThreads);
+    }
+
+    /**
+     * Shuts down the fork-join pool of the parallel Leiden algorithm.
+     */
+    @TearDown(Level.Trial)
+    public void shutDownPool()
+    {
+        if (pool != null)
+        {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    /**
+     * Writes the number of clusters and the quality of the micro-level
+     * clustering created by the last invocation of {@link #addLevel()} to the
+     * quality file and checks the quality against the quality of the reference
+     * clustering.
+     *
+     * @throws IllegalStateException Quality is more than the tolerance below
+     *                               the quality of the reference clustering.
+     */
+    @TearDown(Level.Trial)
+    public void checkQuality()
+    {
+        double quality = multiLevelClustering.calcQuality(0);
+        writeQuality(multiLevelClustering.getNClusters(0), quality);
+        if (quality < referenceQuality - QUALITY_TOLERANCE * Math.abs(referenceQuality))
+            throw new IllegalStateException("The quality " + quality + " with " + nThreads + " threads is more than " + QUALITY_TOLERANCE + " below the quality " + referenceQuality + " of the Leiden algorithm.");
+    }
+
+    /**
+     * Benchmarks {@link MultiLevelClustering#addLevel(double, double)} at the
+     * micro level.
+     *
+     * @return Multi-level clustering
+     */
+    @Benchmark
+    public MultiLevelClustering addLevel()
+    {
+        multiLevelClustering = createClustering(nThreads);
+        return multiLevelClustering;
+    }
+
+    /**
+     * Creates a micro-level clustering.
+     *
+     * @param nThreads Number of threads of the parallel Leiden algorithm (zero
+     *                 for the Leiden algorithm)
+     *
+     * @return Multi-level clustering
+     */
+    private MultiLevelClustering createClustering(int nThreads)
+    {
+        IterativeCPMClusteringAlgorithm clusteringAlgorithm;
+        if (nThreads == 0)
+            clusteringAlgorithm = new LeidenAlgorithm(LeidenAlgorithm.DEFAULT_RESOLUTION, nIterations, LeidenAlgorithm.DEFAULT_RANDOMNESS, new Random(0));
+        else
+            clusteringAlgorithm = new ParallelLeidenAlgorithm(ParallelLeidenAlgorithm.DEFAULT_RESOLUTION, nIterations, ParallelLeidenAlgorithm.DEFAULT_RANDOMNESS, 0, pool);
+        MultiLevelClustering multiLevelClustering = new MultiLevelClustering(network, clusteringAlgorithm);
+        multiLevelClustering.addLevel(RESOLUTION, PUB_THRESHOLD);
+        return multiLevelClustering;
+    }
+
+    /**
+     * Appends a line with the parameters of the trial, the number of clusters,
+     * and the qualities of the clustering and the reference clustering to the
+     * quality file. A header line is written if the file does not exist yet.
+     *
+     * @param nClusters Number of clusters
+     * @param quality   Quality of the clustering
+     */
+    private void writeQuality(int nClusters, double quality)
+    {
+        Path qualityFile = Paths.get(QUALITY_FILE);
+        try
+        {
+            Files.createDirectories(qualityFile.toAbsolutePath().getParent());
+            if (!Files.exists(qualityFile))
+                Files.write(qualityFile, Collections.singletonList("n_pubs\tn_threads\tn_iterations\tn_clusters\tquality\treference_quality"), StandardCharsets.UTF_8);
+            Files.write(qualityFile, Collections.singletonList(nPubs + "\t" + nThreads + "\t" + nIterations + "\t" + nClusters + "\t" + quality + "\t" + referenceQuality), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package nl.cwts.publicationclassification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import nl.cwts.networkanalysis.Clustering;
+import nl.cwts.networkanalysis.IterativeCPMClusteringAlgorithm;
+import nl.cwts.networkanalysis.Network;
+
+/**
+ * Multi-level clustering of a network in which each connected component is
+ * clustered separately.
+ *
+ * <p>
+ * Components with a total node weight below the minimum cluster weight at the
+ * lowest level are not clustered. Each of these components becomes a single
+ * cluster at all levels, which is also what the reassignment of small
+ * clusters in {@link MultiLevelClustering} would do, because the clusters in
+ * such a component can only be merged with each other. All other components
+ * are clustered concurrently on a fork-join pool, each using a separate
+ * {@link MultiLevelClustering} object and new clustering algorithms. Since
+ * there are no edges between components, this does not affect the quality of
+ * the clusterings. Larger components are submitted first, so that the
+ * clustering of the largest component starts immediately.
+ * </p>
+ *
+ * <p>
+ * If multiple clustering algorithms are used for each component, they are run
+ * concurrently on the same fork-join pool. The threads of the pool are
+ * therefore divided between the components and the clustering algorithms, so
+ * that the largest component can use all threads once the smaller components
+ * have been clustered, without creating threads for each component.
+ * </p>
+ *
+ * <p>
+ * The clusterings of the components are combined into a multi-level
+ * clustering of the entire network. At each level, clusters are numbered
+ * consecutively in decreasing order of their total node weight.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+public class ComponentClustering
+{
+    /**
+     * Network.
+     */
+    private Network network;
+
+    /**
+     * Factory of the clustering algorithms used for each component.
+     */
+    private Supplier<IterativeCPMClusteringAlgorithm[]> clusteringAlgorithmFactory;
+
+    /**
+     * Number of threads.
+     */
+    private int nThreads;
+
+    /**
+     * Minimum relative improvement in quality per iteration, or
+     * {@link MultiLevelClustering#NO_EARLY_STOPPING}.
+     */
+    private double convergenceEpsilon = MultiLevelClustering.NO_EARLY_STOPPING;
+
+    /**
+     * Number of connected components of the most recent clustering.
+     */
+    private int nComponents;
+
+    /**
+     * Number of connected components that were clustered in the most recent
+     * clustering.
+     */
+    private int nClusteredComponents;
+
+    /**
+     * Number of nodes of the largest connected component.
+     */
+    private int nLargestComponentNodes;
+
+    /**
+     * Constructs a component clustering.
+     *
+     * @param network                    Network
+     * @param clusteringAlgorithmFactory Factory of the clustering algorithms
+     *                                   used for each component
+     * @param nThreads                   Number of threads
+     *
+     * @throws IllegalArgumentException Number of threads is not positive.
+     */
+    public ComponentClustering(Network network, Supplier<IterativeCPMClusteringAlgorithm[]> clusteringAlgorithmFactory, int nThreads)
+    {
+        if (nThreads <= 0)
+            throw new IllegalArgumentException("The number of threads must be positive.");
+
+        this.network = network;
+        this.clusteringAlgorithmFactory = clusteringAlgorithmFactory;
+        this.nThreads = nThreads;
+    }
+
+    /**
+     * Returns the minimum relative improvement in quality per iteration of the
+     * clustering algorithms.
+     *
+     * @return Minimum relative improvement in quality per iteration, or
+     *         {@link MultiLevelClustering#NO_EARLY_STOPPING}
+     */
+    public double getConvergenceEpsilon()
+    {
+        return convergenceEpsilon;
+    }
+
+    /**
+     * Sets the minimum relative improvement in quality per iteration of the
+     * clustering algorithms. See
+     * {@link MultiLevelClustering#setConvergenceEpsilon(double)}.
+     *
+     * @param convergenceEpsilon Minimum relative improvement in quality per
+     *                           iteration, or
+     *                           {@link MultiLevelClustering#NO_EARLY_STOPPING}
+     */
+    public void setConvergenceEpsilon(double convergenceEpsilon)
+    {
+        this.convergenceEpsilon = convergenceEpsilon;
+    }
+
+    /**
+     * Returns the number of connected components of the most recent
+     * clustering.
+     *
+     * @return Number of connected components
+     */
+    public int getNComponents()
+    {
+        return nComponents;
+    }
+
+    /**
+     * Returns the number of connected components that were clustered in the
+     * most recent clustering. The remaining components each became a single
+     * cluster.
+     *
+     * @return Number of clustered components
+     */
+    public int getNClusteredComponents()
+    {
+        return nClusteredComponents;
+    }
+
+    /**
+     * Returns the number of nodes of the largest connected component of the
+     * most recent clustering.
+     *
+     * @return Number of nodes of the largest connected component
+     */
+    public int getNLargestComponentNodes()
+    {
+        return nLargestComponentNodes;
+    }
+
+    /**
+     * Creates a multi-level clustering of the network.
+     *
+     * @param resolutions     Values of the resolution parameter at the
+     *                        different levels
+     * @param thresholds      Minimum cluster weights at the different levels
+     * @param initialClusters Initial cluster numbers of the nodes (first
+     *                        index: level; second index: node), with a
+     *                        negative number for nodes without an initial
+     *                        cluster (may have fewer levels than the
+     *                        clustering, or be null)
+     *
+     * @return Cluster numbers of the nodes (first index: level; second index:
+     *         node)
+     *
+     * @throws IllegalArgumentException Number of resolutions differs from
+     *                                  number of thresholds, or a parameter
+     *                                  is illegal.
+     */
+    public int[][] createClustering(double[] resolutions, double[] thresholds, int[][] initialClusters)
+    {
+        int nLevels = resolutions.length;
+        if (thresholds.length != nLevels)
+            throw new IllegalArgumentException("The number of resolutions must be equal to the number of thresholds.");
+        for (int i = 1; i < nLevels; i++)
+            if (resolutions[i] > resolutions[i - 1])
+                throw new IllegalArgumentException("The value of the resolution parameter must be lower than the value at the highest (i.e., least granular) level of the multi-level clustering.");
+        int nInitialLevels = (initialClusters != null) ? Math.min(initialClusters.length, nLevels) : 0;
+
+        int nNodes = network.getNNodes();
+        int[][] clusters = new int[nLevels][nNodes];
+        if ((nLevels == 0) || (nNodes == 0))
+        {
+            nComponents = 0;
+            nClusteredComponents = 0;
+            nLargestComponentNodes = 0;
+            return clusters;
+        }
+
+        // Identify connected components. Components are numbered in
+        // decreasing order of their number of nodes.
+        Clustering componentClustering = network.identifyComponents();
+        int[] component = componentClustering.getClusters();
+        nComponents = componentClustering.getNClusters();
+        double[] componentWeights = new double[nComponents];
+        int[] nNodesPerComponent = new int[nComponents];
+        for (int i = 0; i < nNodes; i++)
+        {
+            componentWeights[component[i]] += network.getNodeWeight(i);
+            nNodesPerComponent[component[i]]++;
+        }
+        nLargestComponentNodes = nNodesPerComponent[0];
+
+        // Determine the nodes of the components that need to be clustered.
+        int[] clusteredComponentNo = new int[nComponents];
+        nClusteredComponents = 0;
+        for (int i = 0; i < nComponents; i++)
+            clusteredComponentNo[i] = (componentWeights[i] >= thresholds[0]) ? nClusteredComponents++ : -1;
+        int[][] nodesPerClusteredComponent = new int[nClusteredComponents][];
+        for (int i = 0; i < nComponents; i++)
+            if (clusteredComponentNo[i] >= 0)
+                nodesPerClusteredComponent[clusteredComponentNo[i]] = new int[nNodesPerComponent[i]];
+        int[] nAddedNodes = new int[nClusteredComponents];
+        for (int i = 0; i < nNodes; i++)
+        {
+            int j = clusteredComponentNo[component[i]];
+            if (j >= 0)
+                nodesPerClusteredComponent[j][nAddedNodes[j]++] = i;
+        }
+
+        // Cluster the components concurrently. The cluster numbers of each
+        // component are stored relative to the component.
+        int[][] nClustersPerComponent = new int[nLevels][nClusteredComponents];
+        ForkJoinPool pool = new ForkJoinPool(nThreads);
+        try
+        {
+            List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(nClusteredComponents);
+            for (int i = 0; i < nClusteredComponents; i++)
+            {
+                final int componentNo = i;
+                tasks.add(pool.submit(() -> clusterComponent(pool, nodesPerClusteredComponent[componentNo], componentNo, resolutions, thresholds, initialClusters, nInitialLevels, clusters, nClustersPerComponent)));
+            }
+            for (ForkJoinTask<?> task : tasks)
+                task.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Clustering of the components was interrupted.");
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        // Combine the clusterings of the components. Each component that was
+        // not clustered becomes a single cluster.
+        for (int i = 0; i < nLevels; i++)
+        {
+            int[] firstCluster = new int[nComponents];
+            int nClusters = 0;
+            for (int j = 0; j < nComponents; j++)
+            {
+                firstCluster[j] = nClusters;
+                nClusters += (clusteredComponentNo[j] >= 0) ? nClustersPerComponent[i][clusteredComponentNo[j]] : 1;
+            }
+            int[] levelClusters = clusters[i];
+            IntStream.range(0, nNodes).parallel().forEach(j ->
+            {
+                levelClusters[j] = firstCluster[component[j]] + ((clusteredComponentNo[component[j]] >= 0) ? levelClusters[j] : 0);
+            });
+            Clustering clustering = new Clustering(levelClusters);
+            clustering.orderClustersByWeight(network.getNodeWeights());
+            clustering.removeEmptyClusters();
+            clusters[i] = clustering.getClusters();
+        }
+
+        return clusters;
+    }
+
+    /**
+     * Clusters a connected component.
+     *
+     * @param pool                  Fork-join pool on which the clustering
+     *                              algorithms are run
+     * @param nodes                 Nodes of the component
+     * @param componentNo           Number of the component
+     * @param resolutions           Values of the resolution parameter
+     * @param thresholds            Minimum cluster weights
+     * @param initialClusters       Initial cluster numbers of the nodes (may be
+     *                              null)
+     * @param nInitialLevels        Number of levels with initial cluster
+     *                              numbers
+     * @param clusters              Array in which the cluster numbers of the
+     *                              nodes, relative to the component, are
+     *                              stored
+     * @param nClustersPerComponent Array in which the number of clusters of
+     *                              the component is stored
+     */
+    private void clusterComponent(ForkJoinPool pool, int[] nodes, int componentNo, double[] resolutions, double[] thresholds, int[][] initialClusters, int nInitialLevels, int[][] clusters, int[][] nClustersPerComponent)
+    {
+        Network componentNetwork = (nodes.length == network.getNNodes()) ? network : network.createSubnetwork(nodes);
+        MultiLevelClustering multiLevelClustering = new MultiLevelClustering(componentNetwork, clusteringAlgorithmFactory.get());
+        multiLevelClustering.setExecutor(pool);
+        if (convergenceEpsilon != MultiLevelClustering.NO_EARLY_STOPPING)
+            multiLevelClustering.setConvergenceEpsilon(convergenceEpsilon);
+        for (int i = 0; i < resolutions.length; i++)
+        {
+            int[] componentInitialClusters = null;
+            if (i < nInitialLevels)
+            {
+                componentInitialClusters = new int[nodes.length];
+                for (int j = 0; j < nodes.length; j++)
+                    componentInitialClusters[j] = initialClusters[i][nodes[j]];
+            }
+            multiLevelClustering.addLevel(resolutions[i], thresholds[i], componentInitialClusters, false);
+        }
+
+        int[][] componentClusters = multiLevelClustering.getAllClusters();
+        for (int i = 0; i < resolutions.length; i++)
+        {
+            for (int j = 0; j < nodes.length; j++)
+                clusters[i][nodes[j]] = componentClusters[i][j];
+            nClustersPerComponent[i][componentNo] = multiLevelClustering.getNClusters(i);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package nl.cwts.publicationclassification;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import nl.cwts.networkanalysis.Network;
+
+/**
+ * Incremental assignment of new nodes to an existing multi-level clustering of
+ * a network.
+ *
+ * <p>
+ * All methods in this class are static.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+public class IncrementalAssignment
+{
+    /**
+     * Cluster number of a node that is not assigned to a cluster.
+     */
+    public static final int UNASSIGNED = -1;
+
+    /**
+     * Assigns new nodes to an existing multi-level clustering of a network.
+     *
+     * <p>
+     * Each new node is assigned to the cluster at the lowest level to which it
+     * has the highest total edge weight. If multiple clusters have the highest
+     * total edge weight, the node is assigned to the cluster with the lowest
+     * number. All new nodes are assigned in parallel, based on the clusters of
+     * their neighbors at the start of a round. New nodes that have no assigned
+     * neighbors are assigned in subsequent rounds, until no more new nodes can
+     * be assigned. Each remaining group of connected new nodes is assigned to
+     * a new cluster. Clusters at higher levels are obtained from the
+     * clusters at the lowest level using the existing multi-level clustering.
+     * The assignment of existing nodes is not changed.
+     * </p>
+     *
+     * @param network Network
+     * @param cluster Cluster numbers of the nodes (first index: level; second
+     *                index: node), with {@link #UNASSIGNED} for new nodes at
+     *                all levels
+     *
+     * @return Cluster numbers of all nodes (first index: level; second index:
+     *         node)
+     *
+     * @throws IllegalArgumentException Number of nodes in the clustering
+     *                                  differs from number of nodes in the
+     *                                  network, a node is assigned at some but
+     *                                  not all levels, or a cluster at the
+     *                                  lowest level is part of multiple
+     *                                  clusters at a higher level.
+     */
+    public static int[][] assignNodes(Network network, int[][] cluster)
+    {
+        int nLevels = cluster.length;
+        int nNodes = network.getNNodes();
+        if (nLevels == 0)
+            throw new IllegalArgumentException("The clustering must have at least one level.");
+        for (int i = 0; i < nLevels; i++)
+            if (cluster[i].length != nNodes)
+                throw new IllegalArgumentException("The number of nodes in the clustering must be equal to the number of nodes in the network.");
+
+        // Map clusters at the lowest level to clusters at higher levels.
+        int[] nClusters = new int[nLevels];
+        for (int j = 0; j < nNodes; j++)
+            for (int i = 0; i < nLevels; i++)
+            {
+                if ((cluster[i][j] == UNASSIGNED) != (cluster[0][j] == UNASSIGNED))
+                    throw new IllegalArgumentException("Node " + j + " must be assigned to a cluster at either all levels or no level.");
+                nClusters[i] = Math.max(nClusters[i], cluster[i][j] + 1);
+            }
+        int nLowestLevelClusters = nClusters[0];
+        int[][] clusterMap = new int[nLevels][nLowestLevelClusters];
+        for (int i = 1; i < nLevels; i++)
+            Arrays.fill(clusterMap[i], UNASSIGNED);
+        for (int j = 0; j < nNodes; j++)
+            if (cluster[0][j] != UNASSIGNED)
+                for (int i = 1; i < nLevels; i++)
+                {
+                    int mappedCluster = clusterMap[i][cluster[0][j]];
+                    if (mappedCluster == UNASSIGNED)
+                        clusterMap[i][cluster[0][j]] = cluster[i][j];
+                    else if (mappedCluster != cluster[i][j])
+                        throw new IllegalArgumentException("Cluster " + cluster[0][j] + " at the lowest level must be part of a single cluster at level " + i + ".");
+                }
+
+        // Assign new nodes to clusters at the lowest level in rounds. The new
+        // nodes are divided into blocks, each with its own reusable arrays.
+        int[] lowestLevelCluster = cluster[0].clone();
+        int[] unassignedNodes = IntStream.range(0, nNodes).filter(j -> lowestLevelCluster[j] == UNASSIGNED).toArray();
+        int nBlocks = ForkJoinPool.getCommonPoolParallelism();
+        double[][] edgeWeightPerCluster = new double[nBlocks][];
+        int[][] neighboringClusters = new int[nBlocks][];
+        while (unassignedNodes.length > 0)
+        {
+            final int[] nodes = unassignedNodes;
+            int[] assignedCluster = new int[nodes.length];
+            IntStream.range(0, nBlocks).parallel().forEach(i ->
+            {
+                int firstNode = (int)((long)nodes.length * i / nBlocks);
+                int lastNode = (int)((long)nodes.length * (i + 1) / nBlocks);
+                if ((firstNode < lastNode) && (edgeWeightPerCluster[i] == null))
+                {
+                    edgeWeightPerCluster[i] = new double[nLowestLevelClusters];
+                    neighboringClusters[i] = new int[nLowestLevelClusters];
+                }
+                for (int k = firstNode; k < lastNode; k++)
+                    assignedCluster[k] = findStrongestCluster(network, nodes[k], lowestLevelCluster, edgeWeightPerCluster[i], neighboringClusters[i]);
+            });
+            for (int k = 0; k < nodes.length; k++)
+                lowestLevelCluster[nodes[k]] = assignedCluster[k];
+            unassignedNodes = IntStream.range(0, nodes.length).filter(k -> assignedCluster[k] == UNASSIGNED).map(k -> nodes[k]).toArray();
+            if (unassignedNodes.length == nodes.length)
+                break;
+        }
+
+        // Assign each remaining group of connected new nodes to a new cluster.
+        int nNewClusters = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        for (int node : unassignedNodes)
+            if (lowestLevelCluster[node] == UNASSIGNED)
+            {
+                lowestLevelCluster[node] = nLowestLevelClusters + nNewClusters;
+                queue.add(node);
+                while (!queue.isEmpty())
+                    for (int neighbor : network.getNeighbors(queue.poll()))
+                        if (lowestLevelCluster[neighbor] == UNASSIGNED)
+                        {
+                            lowestLevelCluster[neighbor] = nLowestLevelClusters + nNewClusters;
+                            queue.add(neighbor);
+                        }
+                nNewClusters++;
+            }
+        for (int i = 1; i < nLevels; i++)
+        {
+            clusterMap[i] = Arrays.copyOf(clusterMap[i], nLowestLevelClusters + nNewClusters);
+            for (int k = 0; k < nNewClusters; k++)
+                clusterMap[i][nLowestLevelClusters + k] = nClusters[i] + k;
+        }
+
+        // Assign nodes to clusters at higher levels.
+        int[][] newCluster = new int[nLevels][];
+        newCluster[0] = lowestLevelCluster;
+        for (int i = 1; i < nLevels; i++)
+        {
+            final int[] levelClusterMap = clusterMap[i];
+            newCluster[i] = IntStream.range(0, nNodes).parallel().map(j -> levelClusterMap[lowestLevelCluster[j]]).toArray();
+        }
+        return newCluster;
+    }
+
+    /**
+     * Finds the cluster to which a node has the highest total edge weight.
+     * Only neighbors that are assigned to a cluster are taken into account.
+     *
+     * @param network              Network
+     * @param node                 Node
+     * @param cluster              Cluster numbers of the nodes
+     * @param edgeWeightPerCluster Array for the total edge weight between the
+     *                             node and each cluster, containing only zeros
+     *                             on entry and on exit
+     * @param neighboringClusters  Array for the clusters to which the node is
+     *                             connected
+     *
+     * @return Cluster with the highest total edge weight, or
+     *         {@link #UNASSIGNED} if the node has no assigned neighbors
+     */
+    private static int findStrongestCluster(Network network, int node, int[] cluster, double[] edgeWeightPerCluster, int[] neighboringClusters)
+    {
+        int[] neighbors = network.getNeighbors(node);
+        double[] edgeWeights = network.getEdgeWeights(node);
+        int nNeighboringClusters = 0;
+        for (int k = 0; k < neighbors.length; k++)
+        {
+            int neighborCluster = cluster[neighbors[k]];
+            if (neighborCluster != UNASSIGNED)
+            {
+                if (edgeWeightPerCluster[neighborCluster] == 0)
+                    neighboringClusters[nNeighboringClusters++] = neighborCluster;
+                edgeWeightPerCluster[neighborCluster] += edgeWeights[k];
+            }
+        }
+
+        int strongestCluster = UNASSIGNED;
+        double maxClusterWeight = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < nNeighboringClusters; k++)
+        {
+            int neighborCluster = neighboringClusters[k];
+            double clusterWeight = edgeWeightPerCluster[neighborCluster];
+            if ((clusterWeight > maxClusterWeight) || ((clusterWeight == maxClusterWeight) && (neighborCluster < strongestCluster)))
+            {
+                strongestCluster = neighborCluster;
+                maxClusterWeight = clusterWeight;
+            }
+            edgeWeightPerCluster[neighborCluster] = 0;
+        }
+        return strongestCluster;
+    }
+}
@@ -1,7 +1,27 @@
 package nl.cwts.publicationclassification;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
+import nl.cwts.networkanalysis.CPMClusteringAlgorithm;
 import nl.cwts.networkanalysis.Clustering;
 import nl.cwts.networkanalysis.IterativeCPMClusteringAlgorithm;
 import nl.cwts.networkanalysis.Network;
@@ -9,10 +29,86 @@ import nl.cwts.networkanalysis.Network;
 /**
  * Multi-level clustering of a network.
  * 
+ * <p>
+ * If multiple clustering algorithms are used, they are run concurrently by an
+ * executor. Unless an executor is provided using {@link
+ * #setExecutor(ExecutorService)}, for instance one that is shared by multiple
+ * instances, an executor is created only once for each instance. Its threads
+ * are daemon threads that terminate when they have been idle for some time.
+ * </p>
+ * 
  * @author Nees Jan van Eck
  */
 public class MultiLevelClustering 
 {
+    /**
+     * Magic number identifying a checkpoint file.
+     */
+    public static final int CHECKPOINT_MAGIC_NUMBER = 0x5043434B;
+
+    /**
+     * Version of the checkpoint file format.
+     */
+    public static final int CHECKPOINT_VERSION = 1;
+
+    /**
+     * Value indicating that convergence-based early stopping is not used.
+     */
+    public static final double NO_EARLY_STOPPING = -1;
+
+    /**
+     * Time (in seconds) after which idle threads of the executor running the
+     * clustering algorithms terminate.
+     */
+    private static final long EXECUTOR_KEEP_ALIVE_TIME = 60;
+
+    /**
+     * Name of the phase in which a reduced network is created.
+     */
+    public static final String PHASE_REDUCTION = "reduction";
+
+    /**
+     * Name of the phase in which a clustering is created.
+     */
+    public static final String PHASE_CLUSTERING = "clustering";
+
+    /**
+     * Name of the phase in which small clusters are reassigned.
+     */
+    public static final String PHASE_SMALL_CLUSTER_REASSIGNMENT = "small_cluster_reassignment";
+
+    /**
+     * Listener that is notified when a phase of the creation of a multi-level
+     * clustering starts and finishes, for instance to measure the performance
+     * of each phase.
+     * 
+     * <p>
+     * The listener is called by the thread that calls the methods of the
+     * multi-level clustering. Phases are not nested.
+     * </p>
+     * 
+     * @author Nees Jan van Eck
+     */
+    public interface PhaseListener
+    {
+        /**
+         * Is called when a phase starts.
+         * 
+         * @param phase Name of the phase
+         * @param level Level of the multi-level clustering
+         */
+        void phaseStarted(String phase, int level);
+
+        /**
+         * Is called when a phase finishes.
+         * 
+         * @param phase   Name of the phase
+         * @param level   Level of the multi-level clustering
+         * @param network Network that was created or clustered in the phase
+         */
+        void phaseFinished(String phase, int level, Network network);
+    }
+
     /**
      * Clustering of the reduced network at a specific level of the multi-level
      * clustering, the corresponding value of the resolution parameter, and the
@@ -37,18 +133,68 @@ public class MultiLevelClustering
          */
         private double threshold;
 
+        /**
+         * Number of iterations performed by the clustering algorithm (0 if the
+         * clustering was read from a checkpoint file).
+         */
+        private int nIterations;
+
+        /**
+         * Fingerprint of the initial clustering from which the clustering was
+         * created (0 if no initial clustering was used).
+         */
+        private long initialClustersFingerprint;
+
         /**
          * Constructs a SingleLevelClustering object.
          * 
-         * @param reducedClustering Clustering of the reduced network
-         * @param resolution        Value of the resolution parameter
-         * @param threshold         Minimum number of nodes per cluster
+         * @param reducedClustering          Clustering of the reduced network
+         * @param resolution                 Value of the resolution parameter
+         * @param threshold                  Minimum number of nodes per
+         *                                   cluster
+         * @param nIterations                Number of iterations performed by
+         *                                   the clustering algorithm
+         * @param initialClustersFingerprint Fingerprint of the initial
+         *                                   clustering (0 if no initial
+         *                                   clustering was used)
          */
-        public SingleLevelClustering(Clustering reducedClustering, double resolution, double threshold)
+        public SingleLevelClustering(Clustering reducedClustering, double resolution, double threshold, int nIterations, long initialClustersFingerprint)
         {
             this.reducedClustering = reducedClustering;
             this.resolution = resolution;
             this.threshold = threshold;
+            this.nIterations = nIterations;
+            this.initialClustersFingerprint = initialClustersFingerprint;
+        }
+    }
+
+    /**
+     * Result of a run of a clustering algorithm.
+     * 
+     * @author Nees Jan van Eck
+     */
+    private static class ClusteringRun
+    {
+        /**
+         * Clustering.
+         */
+        private Clustering clustering;
+
+        /**
+         * Number of iterations performed.
+         */
+        private int nIterations;
+
+        /**
+         * Constructs a ClusteringRun object.
+         * 
+         * @param clustering  Clustering
+         * @param nIterations Number of iterations performed
+         */
+        private ClusteringRun(Clustering clustering, int nIterations)
+        {
+            this.clustering = clustering;
+            this.nIterations = nIterations;
         }
     }
 
@@ -58,9 +204,10 @@ public class MultiLevelClustering
     private Network network;
 
     /**
-     * Clustering algorithm.
+     * Clustering algorithms. Each clustering algorithm is run independently
+     * and the clustering with the highest quality is used.
      */
-    private IterativeCPMClusteringAlgorithm clusteringAlgorithm;
+    private IterativeCPMClusteringAlgorithm[] clusteringAlgorithms;
 
     /**
      * Multi-level clustering (represented by a list of single-level
@@ -68,17 +215,169 @@ public class MultiLevelClustering
      */
     private ArrayList<SingleLevelClustering> singleLevelClustering;
 
+    /**
+     * Cached reduced networks at the different levels of the multi-level
+     * clustering (null if the reduced network at a level is not cached). The
+     * reduced network at level 0 is the network itself and is never cached.
+     */
+    private ArrayList<Network> reducedNetworkCache;
+
+    /**
+     * Time stamps of the most recent use of the cached reduced networks.
+     */
+    private ArrayList<Long> reducedNetworkLastUse;
+
+    /**
+     * Counter used to create time stamps for the cached reduced networks.
+     */
+    private long reducedNetworkUseCounter;
+
+    /**
+     * Maximum total size (in bytes) of the cached reduced networks.
+     */
+    private long maxReducedNetworkCacheSize;
+
+    /**
+     * Fingerprint of the network (null if not yet calculated).
+     */
+    private Long networkFingerprint;
+
+    /**
+     * Minimum relative improvement in quality per iteration below which the
+     * clustering algorithms stop ({@link #NO_EARLY_STOPPING} if the
+     * clustering algorithms always perform their configured number of
+     * iterations).
+     */
+    private double convergenceEpsilon = NO_EARLY_STOPPING;
+
+    /**
+     * Phase listener (null if there is no phase listener).
+     */
+    private PhaseListener phaseListener;
+
+    /**
+     * Executor running the clustering algorithms concurrently (null if it has
+     * not been created or provided yet).
+     */
+    private ExecutorService executor;
+
     /**
      * Constructs a multi-level clustering of a network.
      * 
+     * <p>
+     * There is no limit on the total size of the cached reduced networks.
+     * </p>
+     * 
      * @param network             Network
      * @param clusteringAlgorithm Clustering algorithm
      */
     public MultiLevelClustering(Network network, IterativeCPMClusteringAlgorithm clusteringAlgorithm)
     {
+        this(network, clusteringAlgorithm, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a multi-level clustering of a network.
+     * 
+     * @param network                    Network
+     * @param clusteringAlgorithm        Clustering algorithm
+     * @param maxReducedNetworkCacheSize Maximum total size (in bytes) of the
+     *                                   cached reduced networks
+     * 
+     * @throws IllegalArgumentException Maximum total size of the cached reduced
+     *                                  networks is negative.
+     */
+    public MultiLevelClustering(Network network, IterativeCPMClusteringAlgorithm clusteringAlgorithm, long maxReducedNetworkCacheSize)
+    {
+        this(network, new IterativeCPMClusteringAlgorithm[] { clusteringAlgorithm }, maxReducedNetworkCacheSize);
+    }
+
+    /**
+     * Constructs a multi-level clustering of a network using multiple
+     * independent runs of a clustering algorithm.
+     * 
+     * <p>
+     * At each level, the clustering algorithms are run concurrently and the
+     * clustering with the highest quality is used. Each clustering algorithm
+     * should be a separate instance with its own random number generator. If
+     * each random number generator has a fixed seed, the multi-level
+     * clustering is reproducible. There is no limit on the total size of the
+     * cached reduced networks.
+     * </p>
+     * 
+     * @param network              Network
+     * @param clusteringAlgorithms Clustering algorithms
+     * 
+     * @throws IllegalArgumentException No clustering algorithms are provided.
+     */
+    public MultiLevelClustering(Network network, IterativeCPMClusteringAlgorithm[] clusteringAlgorithms)
+    {
+        this(network, clusteringAlgorithms, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a multi-level clustering of a network using multiple
+     * independent runs of a clustering algorithm.
+     * 
+     * <p>
+     * At each level, the clustering algorithms are run concurrently and the
+     * clustering with the highest quality is used. Each clustering algorithm
+     * should be a separate instance with its own random number generator. If
+     * each random number generator has a fixed seed, the multi-level
+     * clustering is reproducible.
+     * </p>
+     * 
+     * @param network                    Network
+     * @param clusteringAlgorithms       Clustering algorithms
+     * @param maxReducedNetworkCacheSize Maximum total size (in bytes) of the
+     *                                   cached reduced networks
+     * 
+     * @throws IllegalArgumentException No clustering algorithms are provided or
+     *                                  maximum total size of the cached reduced
+     *                                  networks is negative.
+     */
+    public MultiLevelClustering(Network network, IterativeCPMClusteringAlgorithm[] clusteringAlgorithms, long maxReducedNetworkCacheSize)
+    {
+        if (clusteringAlgorithms.length == 0)
+            throw new IllegalArgumentException("At least one clustering algorithm must be provided.");
+        if (maxReducedNetworkCacheSize < 0)
+            throw new IllegalArgumentException("The maximum size of the reduced network cache must be non-negative.");
+
         this.singleLevelClustering = new ArrayList<SingleLevelClustering>();
+        this.reducedNetworkCache = new ArrayList<Network>();
+        this.reducedNetworkLastUse = new ArrayList<Long>();
         this.network = network;
-        this.clusteringAlgorithm = clusteringAlgorithm;
+        this.clusteringAlgorithms = clusteringAlgorithms.clone();
+        this.maxReducedNetworkCacheSize = maxReducedNetworkCacheSize;
+    }
+
+    /**
+     * Constructs a multi-level clustering of a network that starts with the
+     * levels of another multi-level clustering.
+     * 
+     * <p>
+     * The clusterings and the cached reduced networks of the other multi-level
+     * clustering are shared rather than copied. Levels that are subsequently
+     * added to either of the two multi-level clusterings do not affect the
+     * other one. The maximum total size of the cached reduced networks is
+     * taken from the other multi-level clustering.
+     * </p>
+     * 
+     * @param multiLevelClustering Multi-level clustering
+     * @param clusteringAlgorithms Clustering algorithms
+     * 
+     * @throws IllegalArgumentException No clustering algorithms are provided.
+     */
+    public MultiLevelClustering(MultiLevelClustering multiLevelClustering, IterativeCPMClusteringAlgorithm[] clusteringAlgorithms)
+    {
+        this(multiLevelClustering.network, clusteringAlgorithms, multiLevelClustering.maxReducedNetworkCacheSize);
+
+        singleLevelClustering.addAll(multiLevelClustering.singleLevelClustering);
+        reducedNetworkCache.addAll(multiLevelClustering.reducedNetworkCache);
+        reducedNetworkLastUse.addAll(multiLevelClustering.reducedNetworkLastUse);
+        reducedNetworkUseCounter = multiLevelClustering.reducedNetworkUseCounter;
+        networkFingerprint = multiLevelClustering.networkFingerprint;
+        convergenceEpsilon = multiLevelClustering.convergenceEpsilon;
     }
 
     /**
@@ -118,6 +417,42 @@ public class MultiLevelClustering
      */
     public void addLevel(double resolution, double threshold, boolean printInfo)
     {
+        addLevel(resolution, threshold, null, printInfo);
+    }
+
+    /**
+     * Adds a level to the multi-level clustering, starting from an initial
+     * clustering of the network.
+     * 
+     * <p>
+     * The initial clustering is mapped onto the reduced network: each node of
+     * the reduced network is assigned to the initial cluster to which most of
+     * its nodes in the network belong. Nodes of the reduced network none of
+     * whose nodes in the network have an initial cluster are assigned to
+     * singleton clusters. The clustering algorithms then improve the mapped
+     * clustering instead of starting from a singleton clustering. If the
+     * initial clustering is a good clustering, for instance a clustering of a
+     * slightly different network, this usually requires fewer iterations and
+     * gives a clustering that is more similar to the initial clustering.
+     * </p>
+     * 
+     * @param resolution      Value of the resolution parameter
+     * @param threshold       Minimum number of nodes per cluster
+     * @param initialClusters Initial cluster numbers of the nodes of the
+     *                        network, with a negative number for nodes without
+     *                        an initial cluster (null to start from a
+     *                        singleton clustering)
+     * @param printInfo       Print progress and result information to the
+     *                        standard output
+     * 
+     * @throws IllegalArgumentException Value of the resolution parameter is
+     *                                  illegal or number of initial cluster
+     *                                  numbers differs from number of nodes.
+     */
+    public void addLevel(double resolution, double threshold, int[] initialClusters, boolean printInfo)
+    {
+        if ((initialClusters != null) && (initialClusters.length != network.getNNodes()))
+            throw new IllegalArgumentException("The number of initial cluster numbers must be equal to the number of nodes.");
         int nLevels = singleLevelClustering.size();
         if (nLevels > 0)
             if (singleLevelClustering.get(nLevels - 1).resolution < resolution)
@@ -127,25 +462,36 @@ public class MultiLevelClustering
 
         // Create clustering.
         if (printInfo)
-            System.out.print("Creating clustering... ");
-        clusteringAlgorithm.setResolution(resolution);
-        Clustering reducedClustering = clusteringAlgorithm.findClustering(reducedNetwork);
+            System.out.print((initialClusters != null) ? "Improving initial clustering... " : "Creating clustering... ");
+        if (phaseListener != null)
+            phaseListener.phaseStarted(PHASE_CLUSTERING, nLevels);
+        for (IterativeCPMClusteringAlgorithm clusteringAlgorithm : clusteringAlgorithms)
+            clusteringAlgorithm.setResolution(resolution);
+        Clustering initialReducedClustering = (initialClusters != null) ? createInitialReducedClustering(nLevels, reducedNetwork, initialClusters) : null;
+        ClusteringRun bestRun = findBestClustering(reducedNetwork, initialReducedClustering);
+        Clustering reducedClustering = bestRun.clustering;
         reducedClustering.orderClustersByWeight(reducedNetwork.getNodeWeights());
         reducedClustering.removeEmptyClusters();
+        if (phaseListener != null)
+            phaseListener.phaseFinished(PHASE_CLUSTERING, nLevels, reducedNetwork);
         if (printInfo)
-            System.out.println("Finished! " + reducedClustering.getNClusters() + " clusters created.");
+            System.out.println("Finished! " + reducedClustering.getNClusters() + " clusters created" + ((convergenceEpsilon != NO_EARLY_STOPPING) ? " in " + bestRun.nIterations + " iterations" : "") + ((clusteringAlgorithms.length > 1) ? " (best of " + clusteringAlgorithms.length + " runs)." : "."));
 
         // Reassign small clusters.
         if (printInfo)
             System.out.print("Reassigning small clusters... ");
-        clusteringAlgorithm.removeSmallClustersBasedOnWeight(reducedNetwork, reducedClustering, threshold);
+        if (phaseListener != null)
+            phaseListener.phaseStarted(PHASE_SMALL_CLUSTER_REASSIGNMENT, nLevels);
+        clusteringAlgorithms[0].removeSmallClustersBasedOnWeight(reducedNetwork, reducedClustering, threshold);
         reducedClustering.orderClustersByWeight(reducedNetwork.getNodeWeights());
         reducedClustering.removeEmptyClusters();
+        if (phaseListener != null)
+            phaseListener.phaseFinished(PHASE_SMALL_CLUSTER_REASSIGNMENT, nLevels, reducedNetwork);
         if (printInfo)
             System.out.println("Finished! " + reducedClustering.getNClusters() + " clusters remaining.");
 
         // Add final clustering to the multi-level clustering.
-        singleLevelClustering.add(new SingleLevelClustering(reducedClustering, resolution, threshold));
+        singleLevelClustering.add(new SingleLevelClustering(reducedClustering, resolution, threshold, bestRun.nIterations, calcInitialClustersFingerprint(initialClusters)));
     }
 
     /**
@@ -158,6 +504,14 @@ public class MultiLevelClustering
     {
         while (singleLevelClustering.size() > level)
             singleLevelClustering.remove(singleLevelClustering.size() - 1);
+
+        // The reduced network at the specified level remains valid, but reduced
+        // networks at higher levels are based on removed clusterings.
+        while (reducedNetworkCache.size() > level + 1)
+        {
+            reducedNetworkCache.remove(reducedNetworkCache.size() - 1);
+            reducedNetworkLastUse.remove(reducedNetworkLastUse.size() - 1);
+        }
     }
 
     /**
@@ -186,6 +540,104 @@ public class MultiLevelClustering
         return singleLevelClustering.get(level).threshold;
     }
 
+    /**
+     * Returns the number of iterations performed by the clustering algorithm
+     * at a specific level of the multi-level clustering. If multiple
+     * clustering algorithms were run, the number of iterations of the run
+     * that gave the clustering with the highest quality is returned. If the
+     * level was read from a checkpoint file, 0 is returned.
+     * 
+     * @param level Level of the multi-level clustering
+     * 
+     * @return Number of iterations
+     */
+    public int getNIterations(int level)
+    {
+        return singleLevelClustering.get(level).nIterations;
+    }
+
+    /**
+     * Returns the minimum relative improvement in quality per iteration below
+     * which the clustering algorithms stop.
+     * 
+     * @return Minimum relative improvement in quality per iteration, or
+     *         {@link #NO_EARLY_STOPPING}
+     */
+    public double getConvergenceEpsilon()
+    {
+        return convergenceEpsilon;
+    }
+
+    /**
+     * Sets the minimum relative improvement in quality per iteration below
+     * which the clustering algorithms stop.
+     * 
+     * <p>
+     * If early stopping is used, each clustering algorithm performs one
+     * iteration at a time. After each iteration, the quality of the
+     * clustering and the number of nodes that moved to a different cluster
+     * are determined. The clustering algorithm stops if no nodes moved or if
+     * the relative improvement in quality compared with the previous
+     * iteration is below the specified value. The number of iterations of a
+     * clustering algorithm is then used as the maximum number of iterations.
+     * </p>
+     * 
+     * @param convergenceEpsilon Minimum relative improvement in quality per
+     *                           iteration, or {@link #NO_EARLY_STOPPING}
+     * 
+     * @throws IllegalArgumentException Minimum relative improvement is
+     *                                  negative.
+     */
+    public void setConvergenceEpsilon(double convergenceEpsilon)
+    {
+        if ((convergenceEpsilon != NO_EARLY_STOPPING) && !(convergenceEpsilon >= 0))
+            throw new IllegalArgumentException("The minimum relative improvement in quality must be non-negative.");
+
+        this.convergenceEpsilon = convergenceEpsilon;
+    }
+
+    /**
+     * Returns the phase listener.
+     * 
+     * @return Phase listener (null if there is no phase listener)
+     */
+    public PhaseListener getPhaseListener()
+    {
+        return phaseListener;
+    }
+
+    /**
+     * Sets the phase listener. The phase listener is notified when a reduced
+     * network is created, when a clustering is created, and when small
+     * clusters are reassigned.
+     * 
+     * @param phaseListener Phase listener (null to remove the phase listener)
+     */
+    public void setPhaseListener(PhaseListener phaseListener)
+    {
+        this.phaseListener = phaseListener;
+    }
+
+    /**
+     * Sets the executor that runs the clustering algorithms concurrently.
+     * 
+     * <p>
+     * The executor may be shared with other objects, for instance with other
+     * multi-level clusterings, and is not shut down by this multi-level
+     * clustering. If the levels are added by tasks running on a fork-join
+     * pool, the pool itself may be used as the executor. A task that waits for
+     * the clustering algorithms then helps to run them, so the total number
+     * of threads does not grow with the number of multi-level clusterings.
+     * </p>
+     * 
+     * @param executor Executor (null to let this multi-level clustering create
+     *                 its own executor when it is needed)
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
     /**
      * Returns the number of clusters at a specific level of the multi-level
      * clustering.
@@ -217,10 +669,103 @@ public class MultiLevelClustering
         return clustering;
     }
 
+    /**
+     * Returns the cluster numbers of the nodes of the network at a specific
+     * level of the multi-level clustering.
+     * 
+     * <p>
+     * As in {@link #getAllClusters()}, the clusterings of the reduced networks
+     * are first composed into a small lookup table that maps each cluster at
+     * the lowest level to a cluster at the level. The cluster numbers are then
+     * obtained in a single parallel pass over the nodes. The result is
+     * identical to the cluster numbers of {@link #getClustering(int)}.
+     * </p>
+     * 
+     * @param level Level of the multi-level clustering
+     * 
+     * @return Cluster numbers of the nodes
+     */
+    public int[] getClusters(int level)
+    {
+        int[] lowestLevelClusters = singleLevelClustering.get(0).reducedClustering.getClusters();
+        if (level == 0)
+            return lowestLevelClusters;
+
+        // Map clusters at the lowest level to clusters at the level.
+        int nLowestLevelClusters = singleLevelClustering.get(0).reducedClustering.getNClusters();
+        int[] clusterMap = new int[nLowestLevelClusters];
+        for (int j = 0; j < nLowestLevelClusters; j++)
+            clusterMap[j] = j;
+        for (int i = 1; i <= level; i++)
+        {
+            Clustering reducedClustering = singleLevelClustering.get(i).reducedClustering;
+            for (int j = 0; j < nLowestLevelClusters; j++)
+                clusterMap[j] = reducedClustering.getCluster(clusterMap[j]);
+        }
+
+        // Assign nodes to clusters at the level.
+        int[] clusters = new int[lowestLevelClusters.length];
+        IntStream.range(0, clusters.length).parallel().forEach(j -> clusters[j] = clusterMap[lowestLevelClusters[j]]);
+        return clusters;
+    }
+
+    /**
+     * Returns the cluster numbers of the nodes of the network at all levels of
+     * the multi-level clustering.
+     * 
+     * <p>
+     * The clusterings of the reduced networks are first composed into small
+     * lookup tables that map each cluster at the lowest level to a cluster at
+     * each higher level. The cluster numbers at all levels are then obtained
+     * in a single parallel pass over the nodes. The result is identical to
+     * calling {@link #getClustering(int)} for each level.
+     * </p>
+     * 
+     * @return Cluster numbers of the nodes (first index: level; second index:
+     *         node)
+     */
+    public int[][] getAllClusters()
+    {
+        int nLevels = singleLevelClustering.size();
+        final int[][] clusters = new int[nLevels][];
+        if (nLevels == 0)
+            return clusters;
+
+        // Map clusters at the lowest level to clusters at higher levels.
+        int nLowestLevelClusters = singleLevelClustering.get(0).reducedClustering.getNClusters();
+        final int[][] clusterMap = new int[nLevels][];
+        for (int i = 1; i < nLevels; i++)
+        {
+            Clustering reducedClustering = singleLevelClustering.get(i).reducedClustering;
+            clusterMap[i] = new int[nLowestLevelClusters];
+            for (int j = 0; j < nLowestLevelClusters; j++)
+                clusterMap[i][j] = reducedClustering.getCluster((i == 1) ? j : clusterMap[i - 1][j]);
+        }
+
+        // Assign nodes to clusters at all levels.
+        clusters[0] = singleLevelClustering.get(0).reducedClustering.getClusters();
+        for (int i = 1; i < nLevels; i++)
+            clusters[i] = new int[clusters[0].length];
+        IntStream.range(0, clusters[0].length).parallel().forEach(j ->
+        {
+            int lowestLevelCluster = clusters[0][j];
+            for (int i = 1; i < clusters.length; i++)
+                clusters[i][j] = clusterMap[i][lowestLevelCluster];
+        });
+
+        return clusters;
+    }
+
     /**
      * Returns the reduced network at a specific level of the multi-level
      * clustering.
      * 
+     * <p>
+     * Reduced networks are cached. If the reduced network at the specified
+     * level is not in the cache, it is created starting from the reduced
+     * network at the highest lower level that is in the cache.
+     * </p>
+     * 
      * @param level Level of the multi-level clustering
      * 
      * @return Reduced network
@@ -229,8 +774,106 @@ public class MultiLevelClustering
     {
         if (level == 0)
             return network;
-        else
-            return getReducedNetwork(level - 1).createReducedNetwork(singleLevelClustering.get(level - 1).reducedClustering);
+        if ((level < 0) || (level > singleLevelClustering.size()))
+            throw new IndexOutOfBoundsException("Level " + level + " is out of bounds for a multi-level clustering with " + singleLevelClustering.size() + " levels.");
+
+        int cachedLevel = level;
+        while ((cachedLevel > 0) && ((cachedLevel >= reducedNetworkCache.size()) || (reducedNetworkCache.get(cachedLevel) == null)))
+            cachedLevel--;
+        Network reducedNetwork = (cachedLevel > 0) ? reducedNetworkCache.get(cachedLevel) : network;
+        for (int i = cachedLevel + 1; i <= level; i++)
+        {
+            if (phaseListener != null)
+                phaseListener.phaseStarted(PHASE_REDUCTION, i);
+            reducedNetwork = reducedNetwork.createReducedNetwork(singleLevelClustering.get(i - 1).reducedClustering);
+            if (phaseListener != null)
+                phaseListener.phaseFinished(PHASE_REDUCTION, i, reducedNetwork);
+            cacheReducedNetwork(i, reducedNetwork);
+        }
+        if (cachedLevel == level)
+            reducedNetworkLastUse.set(level, ++reducedNetworkUseCounter);
+
+        return reducedNetwork;
+    }
+
+    /**
+     * Returns the maximum total size (in bytes) of the cached reduced networks.
+     * 
+     * @return Maximum total size of the cached reduced networks
+     */
+    public long getMaxReducedNetworkCacheSize()
+    {
+        return maxReducedNetworkCacheSize;
+    }
+
+    /**
+     * Sets the maximum total size (in bytes) of the cached reduced networks.
+     * 
+     * <p>
+     * If the cached reduced networks exceed the maximum total size, the least
+     * recently used reduced networks are removed from the cache. The most
+     * recently used reduced network always remains in the cache.
+     * </p>
+     * 
+     * @param maxReducedNetworkCacheSize Maximum total size of the cached
+     *                                   reduced networks
+     * 
+     * @throws IllegalArgumentException Maximum total size of the cached reduced
+     *                                  networks is negative.
+     */
+    public void setMaxReducedNetworkCacheSize(long maxReducedNetworkCacheSize)
+    {
+        if (maxReducedNetworkCacheSize < 0)
+            throw new IllegalArgumentException("The maximum size of the reduced network cache must be non-negative.");
+
+        this.maxReducedNetworkCacheSize = maxReducedNetworkCacheSize;
+        evictReducedNetworks();
+    }
+
+    /**
+     * Returns the total size (in bytes) of the cached reduced networks.
+     * 
+     * @return Total size of the cached reduced networks
+     */
+    public long getReducedNetworkCacheSize()
+    {
+        long cacheSize = 0;
+        for (Network reducedNetwork : reducedNetworkCache)
+            if (reducedNetwork != null)
+                cacheSize += estimateNetworkSize(reducedNetwork);
+        return cacheSize;
+    }
+
+    /**
+     * Removes all reduced networks from the cache.
+     */
+    public void clearReducedNetworkCache()
+    {
+        reducedNetworkCache.clear();
+        reducedNetworkLastUse.clear();
+    }
+
+    /**
+     * Calculates the quality of the clustering at a specific level of the
+     * multi-level clustering.
+     * 
+     * <p>
+     * The quality is calculated for the clustering of the reduced network,
+     * using the value of the resolution parameter at the specified level. This
+     * gives the same quality as for the corresponding clustering of the
+     * network.
+     * </p>
+     * 
+     * @param level Level of the multi-level clustering
+     * 
+     * @return Quality of the clustering
+     */
+    public double calcQuality(int level)
+    {
+        SingleLevelClustering levelClustering = singleLevelClustering.get(level);
+        CPMClusteringAlgorithm clusteringAlgorithm = clusteringAlgorithms[0].clone();
+        clusteringAlgorithm.setResolution(levelClustering.resolution);
+        return clusteringAlgorithm.calcQuality(getReducedNetwork(level), levelClustering.reducedClustering);
     }
 
     /**
@@ -245,4 +888,587 @@ public class MultiLevelClustering
     {
         return singleLevelClustering.get(level).reducedClustering;
     }
+
+    /**
+     * Writes a level of the multi-level clustering to a checkpoint file in a
+     * checkpoint directory.
+     * 
+     * <p>
+     * The checkpoint file contains the clustering of the reduced network, the
+     * value of the resolution parameter, the minimum number of nodes per
+     * cluster, and a fingerprint of the input of the level, which consists of
+     * the network, the lower levels of the multi-level clustering, and the
+     * initial clustering from which the level was created, if any. The
+     * checkpoint file is first written to a temporary file, which is then
+     * renamed, so that an interrupted write does not leave an incomplete
+     * checkpoint file. The checkpoint directory is created if it does not
+     * exist.
+     * </p>
+     * 
+     * @param level               Level of the multi-level clustering
+     * @param checkpointDirectory Name of the checkpoint directory
+     * 
+     * @throws IOException An I/O error occurred.
+     */
+    public void writeCheckpoint(int level, String checkpointDirectory) throws IOException
+    {
+        SingleLevelClustering levelClustering = singleLevelClustering.get(level);
+        long inputFingerprint = calcInputFingerprint(level, levelClustering.initialClustersFingerprint);
+        Path directory = Paths.get(checkpointDirectory);
+        Files.createDirectories(directory);
+        Path checkpointFile = directory.resolve(getCheckpointFileName(level));
+        Path temporaryFile = directory.resolve(getCheckpointFileName(level) + ".tmp");
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile))))
+        {
+            Clustering reducedClustering = levelClustering.reducedClustering;
+            stream.writeInt(CHECKPOINT_MAGIC_NUMBER);
+            stream.writeInt(CHECKPOINT_VERSION);
+            stream.writeInt(level);
+            stream.writeLong(inputFingerprint);
+            stream.writeDouble(levelClustering.resolution);
+            stream.writeDouble(levelClustering.threshold);
+            stream.writeInt(reducedClustering.getNNodes());
+            stream.writeInt(reducedClustering.getNClusters());
+            for (int i = 0; i < reducedClustering.getNNodes(); i++)
+                stream.writeInt(reducedClustering.getCluster(i));
+        }
+        Files.move(temporaryFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds a level to the multi-level clustering by reading it from a
+     * checkpoint file in a checkpoint directory.
+     * 
+     * <p>
+     * The checkpoint file is used only if it was written for the same level,
+     * the same value of the resolution parameter, the same minimum number of
+     * nodes per cluster, the same network, and the same lower levels of the
+     * multi-level clustering, and if it was created without an initial
+     * clustering. Otherwise, no level is added. Settings of the clustering
+     * algorithms, such as the number of iterations, are not taken into
+     * account. The state of the random number generators of the clustering
+     * algorithms is not restored (see {@link #readCheckpoint(String, double,
+     * double, int[])}).
+     * </p>
+     * 
+     * @param checkpointDirectory Name of the checkpoint directory
+     * @param resolution          Value of the resolution parameter
+     * @param threshold           Minimum number of nodes per cluster
+     * 
+     * @return Boolean indicating whether a level was added
+     * 
+     * @throws IOException An I/O error occurred.
+     */
+    public boolean readCheckpoint(String checkpointDirectory, double resolution, double threshold) throws IOException
+    {
+        return readCheckpoint(checkpointDirectory, resolution, threshold, null);
+    }
+
+    /**
+     * Adds a level to the multi-level clustering by reading it from a
+     * checkpoint file in a checkpoint directory.
+     * 
+     * <p>
+     * The checkpoint file is used only if it was written for the same level,
+     * the same value of the resolution parameter, the same minimum number of
+     * nodes per cluster, the same network, the same lower levels of the
+     * multi-level clustering, and the same initial clustering, as provided to
+     * {@link #addLevel(double, double, int[], boolean)}. Otherwise, no level
+     * is added. Settings of the clustering algorithms, such as the number of
+     * iterations, are not taken into account.
+     * </p>
+     * 
+     * <p>
+     * The state of the random number generators of the clustering algorithms
+     * is not stored in the checkpoint file and is not restored. When the same
+     * clustering algorithms are used at all levels, the random number
+     * generators used for the next levels are therefore in a different state
+     * than in a run in which the lower levels were created rather than read.
+     * Levels created after resuming from checkpoint files may then differ from
+     * the levels of an uninterrupted run, although they are created in the
+     * same way and are reproducible for a given set of checkpoint files.
+     * </p>
+     * 
+     * @param checkpointDirectory Name of the checkpoint directory
+     * @param resolution          Value of the resolution parameter
+     * @param threshold           Minimum number of nodes per cluster
+     * @param initialClusters     Initial cluster numbers of the nodes of the
+     *                            network (null if no initial clustering is
+     *                            used)
+     * 
+     * @return Boolean indicating whether a level was added
+     * 
+     * @throws IOException An I/O error occurred.
+     */
+    public boolean readCheckpoint(String checkpointDirectory, double resolution, double threshold, int[] initialClusters) throws IOException
+    {
+        long initialClustersFingerprint = calcInitialClustersFingerprint(initialClusters);
+        int level = singleLevelClustering.size();
+        Path checkpointFile = Paths.get(checkpointDirectory).resolve(getCheckpointFileName(level));
+        if (!Files.isRegularFile(checkpointFile))
+            return false;
+
+        Clustering reducedClustering;
+        try (DataInputStream stream = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpointFile))))
+        {
+            if ((stream.readInt() != CHECKPOINT_MAGIC_NUMBER) || (stream.readInt() != CHECKPOINT_VERSION) || (stream.readInt() != level))
+                return false;
+            if (stream.readLong() != calcInputFingerprint(level, initialClustersFingerprint))
+                return false;
+            if ((Double.compare(stream.readDouble(), resolution) != 0) || (Double.compare(stream.readDouble(), threshold) != 0))
+                return false;
+            int nNodes = stream.readInt();
+            int nClusters = stream.readInt();
+            if (nNodes != getReducedNetwork(level).getNNodes())
+                return false;
+            int[] clusters = new int[nNodes];
+            for (int i = 0; i < nNodes; i++)
+            {
+                clusters[i] = stream.readInt();
+                if ((clusters[i] < 0) || (clusters[i] >= nClusters))
+                    return false;
+            }
+            reducedClustering = new Clustering(clusters);
+        }
+        catch (EOFException e)
+        {
+            return false;
+        }
+
+        singleLevelClustering.add(new SingleLevelClustering(reducedClustering, resolution, threshold, 0, initialClustersFingerprint));
+        return true;
+    }
+
+    /**
+     * Returns the name of the checkpoint file of a level of the multi-level
+     * clustering.
+     * 
+     * @param level Level of the multi-level clustering
+     * 
+     * @return Name of the checkpoint file
+     */
+    private static String getCheckpointFileName(int level)
+    {
+        return "level_" + level + ".checkpoint";
+    }
+
+    /**
+     * Calculates a fingerprint of the input of a level of the multi-level
+     * clustering. The input consists of the network, the lower levels of the
+     * multi-level clustering, and the initial clustering of the level, if any.
+     * 
+     * @param level                      Level of the multi-level clustering
+     * @param initialClustersFingerprint Fingerprint of the initial clustering
+     *                                   (0 if no initial clustering is used)
+     * 
+     * @return Fingerprint
+     */
+    private long calcInputFingerprint(int level, long initialClustersFingerprint)
+    {
+        if (networkFingerprint == null)
+            networkFingerprint = calcNetworkFingerprint(network);
+        long fingerprint = networkFingerprint;
+        for (int i = 0; i < level; i++)
+        {
+            SingleLevelClustering levelClustering = singleLevelClustering.get(i);
+            fingerprint = mixFingerprint(fingerprint, Double.doubleToLongBits(levelClustering.resolution));
+            fingerprint = mixFingerprint(fingerprint, Double.doubleToLongBits(levelClustering.threshold));
+            Clustering reducedClustering = levelClustering.reducedClustering;
+            fingerprint = mixFingerprint(fingerprint, reducedClustering.getNNodes());
+            for (int j = 0; j < reducedClustering.getNNodes(); j++)
+                fingerprint = mixFingerprint(fingerprint, reducedClustering.getCluster(j));
+        }
+        // Without an initial clustering, the fingerprint is the same as in
+        // checkpoint files written before initial clusterings were supported.
+        if (initialClustersFingerprint != 0)
+            fingerprint = mixFingerprint(fingerprint, initialClustersFingerprint);
+        return fingerprint;
+    }
+
+    /**
+     * Calculates a fingerprint of an initial clustering.
+     * 
+     * <p>
+     * The fingerprints of the nodes are calculated in parallel.
+     * </p>
+     * 
+     * @param initialClusters Initial cluster numbers of the nodes of the
+     *                        network (may be null)
+     * 
+     * @return Fingerprint (0 if there is no initial clustering)
+     */
+    private static long calcInitialClustersFingerprint(int[] initialClusters)
+    {
+        if (initialClusters == null)
+            return 0;
+        long nodesFingerprint = IntStream.range(0, initialClusters.length).parallel().mapToLong(i -> mixFingerprint(i, initialClusters[i])).sum();
+        long fingerprint = mixFingerprint(nodesFingerprint, initialClusters.length);
+        return (fingerprint != 0) ? fingerprint : 1;
+    }
+
+    /**
+     * Calculates a fingerprint of a network based on the node weights, the
+     * neighbors of each node, and the edge weights.
+     * 
+     * <p>
+     * The fingerprints of the nodes are calculated in parallel.
+     * </p>
+     * 
+     * @param network Network
+     * 
+     * @return Fingerprint
+     */
+    private static long calcNetworkFingerprint(Network network)
+    {
+        long nodesFingerprint = IntStream.range(0, network.getNNodes()).parallel().mapToLong(i ->
+        {
+            long fingerprint = mixFingerprint(i, Double.doubleToLongBits(network.getNodeWeight(i)));
+            int[] neighbors = network.getNeighbors(i);
+            double[] edgeWeights = network.getEdgeWeights(i);
+            for (int j = 0; j < neighbors.length; j++)
+            {
+                fingerprint = mixFingerprint(fingerprint, neighbors[j]);
+                fingerprint = mixFingerprint(fingerprint, Double.doubleToLongBits(edgeWeights[j]));
+            }
+            return mixFingerprint(fingerprint, neighbors.length);
+        }).sum();
+        return mixFingerprint(nodesFingerprint, network.getNNodes());
+    }
+
+    /**
+     * Mixes a value into a fingerprint.
+     * 
+     * @param fingerprint Fingerprint
+     * @param value       Value
+     * 
+     * @return Fingerprint
+     */
+    private static long mixFingerprint(long fingerprint, long value)
+    {
+        fingerprint = (fingerprint ^ value) * 0x9E3779B97F4A7C15L;
+        return fingerprint ^ (fingerprint >>> 31);
+    }
+
+    /**
+     * Maps an initial clustering of the network onto the reduced network at a
+     * specific level of the multi-level clustering. Each node of the reduced
+     * network is assigned to the initial cluster to which most of its nodes in
+     * the network belong, or to the initial cluster with the lowest number in
+     * case of ties. Nodes of the reduced network without any initial cluster
+     * are assigned to singleton clusters. The initial clusters are numbered
+     * consecutively.
+     * 
+     * @param level           Level of the multi-level clustering
+     * @param reducedNetwork  Reduced network
+     * @param initialClusters Initial cluster numbers of the nodes of the
+     *                        network
+     * 
+     * @return Initial clustering of the reduced network
+     */
+    private Clustering createInitialReducedClustering(int level, Network reducedNetwork, int[] initialClusters)
+    {
+        int[] reducedClusters;
+        if (level == 0)
+            reducedClusters = initialClusters.clone();
+        else
+        {
+            // Count the nodes of each node of the reduced network in each
+            // initial cluster by sorting (reduced node, initial cluster)
+            // pairs.
+            int[] reducedNodes = getClusters(level - 1);
+            long[] pairs = IntStream.range(0, initialClusters.length).filter(i -> initialClusters[i] >= 0).mapToLong(i -> ((long)reducedNodes[i] << 32) | initialClusters[i]).toArray();
+            Arrays.parallelSort(pairs);
+            reducedClusters = new int[reducedNetwork.getNNodes()];
+            Arrays.fill(reducedClusters, -1);
+            int[] maxCount = new int[reducedNetwork.getNNodes()];
+            int i = 0;
+            while (i < pairs.length)
+            {
+                int j = i + 1;
+                while ((j < pairs.length) && (pairs[j] == pairs[i]))
+                    j++;
+                int reducedNode = (int)(pairs[i] >>> 32);
+                if (j - i > maxCount[reducedNode])
+                {
+                    reducedClusters[reducedNode] = (int)pairs[i];
+                    maxCount[reducedNode] = j - i;
+                }
+                i = j;
+            }
+        }
+
+        // Renumber the initial clusters consecutively in the order of their
+        // numbers, so that sparse or large cluster numbers do not result in a
+        // clustering with many empty clusters.
+        int[] clusterNumbers = reducedClusters.clone();
+        Arrays.parallelSort(clusterNumbers);
+        int nClusters = 0;
+        for (int cluster : clusterNumbers)
+            if ((cluster >= 0) && ((nClusters == 0) || (cluster != clusterNumbers[nClusters - 1])))
+                clusterNumbers[nClusters++] = cluster;
+        int nInitialClusters = nClusters;
+        for (int i = 0; i < reducedClusters.length; i++)
+            reducedClusters[i] = (reducedClusters[i] >= 0) ? Arrays.binarySearch(clusterNumbers, 0, nInitialClusters, reducedClusters[i]) : nClusters++;
+        return new Clustering(reducedClusters);
+    }
+
+    /**
+     * Runs each clustering algorithm on a network and returns the clustering
+     * with the highest quality. If multiple clusterings have the highest
+     * quality, the clustering found by the first clustering algorithm is
+     * returned.
+     * 
+     * @param reducedNetwork           Network
+     * @param initialReducedClustering Initial clustering that is improved by
+     *                                 each clustering algorithm (null to start
+     *                                 from a singleton clustering)
+     * 
+     * @return Run that gave the clustering with the highest quality
+     */
+    private ClusteringRun findBestClustering(final Network reducedNetwork, final Clustering initialReducedClustering)
+    {
+        if (clusteringAlgorithms.length == 1)
+            return runClusteringAlgorithm(clusteringAlgorithms[0], reducedNetwork, initialReducedClustering);
+
+        final double[] quality = new double[clusteringAlgorithms.length];
+        if (executor == null)
+            executor = createExecutor(clusteringAlgorithms.length);
+        List<Future<ClusteringRun>> futures = new ArrayList<Future<ClusteringRun>>(clusteringAlgorithms.length);
+        try
+        {
+            for (int i = 0; i < clusteringAlgorithms.length; i++)
+            {
+                final int run = i;
+                futures.add(executor.submit(() ->
+                {
+                    ClusteringRun clusteringRun = runClusteringAlgorithm(clusteringAlgorithms[run], reducedNetwork, initialReducedClustering);
+                    quality[run] = clusteringAlgorithms[run].calcQuality(reducedNetwork, clusteringRun.clustering);
+                    return clusteringRun;
+                }));
+            }
+            ClusteringRun bestClusteringRun = null;
+            int bestRun = -1;
+            for (int i = 0; i < clusteringAlgorithms.length; i++)
+            {
+                ClusteringRun clusteringRun = futures.get(i).get();
+                if ((bestRun == -1) || (quality[i] > quality[bestRun]))
+                {
+                    bestClusteringRun = clusteringRun;
+                    bestRun = i;
+                }
+            }
+            return bestClusteringRun;
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while creating clustering.", e);
+        }
+        finally
+        {
+            for (Future<ClusteringRun> future : futures)
+                future.cancel(true);
+        }
+    }
+
+    /**
+     * Creates an executor with daemon threads that terminate when they have
+     * been idle for some time.
+     * 
+     * @param nThreads Number of threads
+     * 
+     * @return Executor
+     */
+    private static ExecutorService createExecutor(int nThreads)
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(nThreads, nThreads, EXECUTOR_KEEP_ALIVE_TIME, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), runnable ->
+        {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Runs a clustering algorithm on a network, either starting from a
+     * singleton clustering or improving a copy of an initial clustering. If
+     * early stopping is used, the clustering algorithm performs one iteration
+     * at a time until it has converged or until it has performed its
+     * configured number of iterations.
+     * 
+     * @param clusteringAlgorithm      Clustering algorithm
+     * @param reducedNetwork           Network
+     * @param initialReducedClustering Initial clustering (null to start from
+     *                                 a singleton clustering)
+     * 
+     * @return Run of the clustering algorithm
+     */
+    private ClusteringRun runClusteringAlgorithm(IterativeCPMClusteringAlgorithm clusteringAlgorithm, Network reducedNetwork, Clustering initialReducedClustering)
+    {
+        int maxNIterations = clusteringAlgorithm.getNIterations();
+        if (convergenceEpsilon == NO_EARLY_STOPPING)
+        {
+            if (initialReducedClustering == null)
+                return new ClusteringRun(clusteringAlgorithm.findClustering(reducedNetwork), maxNIterations);
+            Clustering clustering = initialReducedClustering.clone();
+            clusteringAlgorithm.improveClustering(reducedNetwork, clustering);
+            return new ClusteringRun(clustering, maxNIterations);
+        }
+
+        Clustering clustering;
+        if (initialReducedClustering == null)
+        {
+            clustering = new Clustering(reducedNetwork.getNNodes());
+            clustering.initSingletonClusters();
+        }
+        else
+            clustering = initialReducedClustering.clone();
+        double quality = clusteringAlgorithm.calcQuality(reducedNetwork, clustering);
+        int nIterations = 0;
+        clusteringAlgorithm.setNIterations(1);
+        try
+        {
+            // A non-positive number of iterations means that the clustering
+            // algorithm continues until the clustering no longer changes.
+            while ((maxNIterations <= 0) || (nIterations < maxNIterations))
+            {
+                int[] previousClusters = clustering.getClusters();
+                boolean update = clusteringAlgorithm.improveClustering(reducedNetwork, clustering);
+                nIterations++;
+                double previousQuality = quality;
+                quality = clusteringAlgorithm.calcQuality(reducedNetwork, clustering);
+                if (!update || (countMovedNodes(previousClusters, clustering.getClusters()) == 0))
+                    break;
+                if ((quality - previousQuality) < convergenceEpsilon * Math.abs(previousQuality))
+                    break;
+            }
+        }
+        finally
+        {
+            clusteringAlgorithm.setNIterations(maxNIterations);
+        }
+        return new ClusteringRun(clustering, nIterations);
+    }
+
+    /**
+     * Counts the number of nodes that moved to a different cluster between two
+     * clusterings.
+     * 
+     * <p>
+     * Because clusters may be renumbered, each cluster in the second
+     * clustering is matched to the cluster in the first clustering from which
+     * most of its nodes originate. Nodes that originate from a different
+     * cluster are counted as moved.
+     * </p>
+     * 
+     * @param previousClusters Cluster numbers of the nodes in the first
+     *                         clustering
+     * @param clusters         Cluster numbers of the nodes in the second
+     *                         clustering
+     * 
+     * @return Number of moved nodes
+     */
+    private static int countMovedNodes(int[] previousClusters, int[] clusters)
+    {
+        int nPreviousClusters = 0;
+        int nClusters = 0;
+        for (int i = 0; i < clusters.length; i++)
+        {
+            nPreviousClusters = Math.max(nPreviousClusters, previousClusters[i] + 1);
+            nClusters = Math.max(nClusters, clusters[i] + 1);
+        }
+
+        // Order the nodes by cluster in the second clustering.
+        int[] firstNodeIndices = new int[nClusters + 1];
+        for (int i = 0; i < clusters.length; i++)
+            firstNodeIndices[clusters[i] + 1]++;
+        for (int i = 0; i < nClusters; i++)
+            firstNodeIndices[i + 1] += firstNodeIndices[i];
+        int[] nodes = new int[clusters.length];
+        int[] nodeIndices = Arrays.copyOf(firstNodeIndices, nClusters);
+        for (int i = 0; i < clusters.length; i++)
+            nodes[nodeIndices[clusters[i]]++] = i;
+
+        // Count for each cluster the nodes originating from its majority cluster.
+        int[] nNodesPerPreviousCluster = new int[nPreviousClusters];
+        int nStayedNodes = 0;
+        for (int i = 0; i < nClusters; i++)
+        {
+            int maxNNodes = 0;
+            for (int j = firstNodeIndices[i]; j < firstNodeIndices[i + 1]; j++)
+                maxNNodes = Math.max(maxNNodes, ++nNodesPerPreviousCluster[previousClusters[nodes[j]]]);
+            for (int j = firstNodeIndices[i]; j < firstNodeIndices[i + 1]; j++)
+                nNodesPerPreviousCluster[previousClusters[nodes[j]]] = 0;
+            nStayedNodes += maxNNodes;
+        }
+        return clusters.length - nStayedNodes;
+    }
+
+    /**
+     * Adds a reduced network to the cache and removes the least recently used
+     * reduced networks if the cache exceeds its maximum size.
+     * 
+     * @param level          Level of the multi-level clustering
+     * @param reducedNetwork Reduced network
+     */
+    private void cacheReducedNetwork(int level, Network reducedNetwork)
+    {
+        while (reducedNetworkCache.size() <= level)
+        {
+            reducedNetworkCache.add(null);
+            reducedNetworkLastUse.add(0L);
+        }
+        reducedNetworkCache.set(level, reducedNetwork);
+        reducedNetworkLastUse.set(level, ++reducedNetworkUseCounter);
+        evictReducedNetworks();
+    }
+
+    /**
+     * Removes the least recently used reduced networks from the cache until
+     * the cache no longer exceeds its maximum size or only the most recently
+     * used reduced network is left.
+     */
+    private void evictReducedNetworks()
+    {
+        long cacheSize = getReducedNetworkCacheSize();
+        while (cacheSize > maxReducedNetworkCacheSize)
+        {
+            int nCachedReducedNetworks = 0;
+            int leastRecentlyUsedLevel = -1;
+            for (int i = 0; i < reducedNetworkCache.size(); i++)
+                if (reducedNetworkCache.get(i) != null)
+                {
+                    nCachedReducedNetworks++;
+                    if ((leastRecentlyUsedLevel == -1) || (reducedNetworkLastUse.get(i) < reducedNetworkLastUse.get(leastRecentlyUsedLevel)))
+                        leastRecentlyUsedLevel = i;
+                }
+            if (nCachedReducedNetworks <= 1)
+                break;
+            cacheSize -= estimateNetworkSize(reducedNetworkCache.get(leastRecentlyUsedLevel));
+            reducedNetworkCache.set(leastRecentlyUsedLevel, null);
+        }
+    }
+
+    /**
+     * Estimates the memory size (in bytes) of a network.
+     * 
+     * @param network Network
+     * 
+     * @return Estimated memory size
+     */
+    private static long estimateNetworkSize(Network network)
+    {
+        // Node weights and first neighbor indices take 8 bytes per node.
+        // Neighbors (4 bytes) and edge weights (8 bytes) are stored for both
+        // directions of an edge.
+        return 16L * (network.getNNodes() + 1) + 24L * network.getNEdges();
+    }
 }
@@ -0,0 +1,512 @@
+package nl.cwts.publicationclassification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import nl.cwts.networkanalysis.IterativeCPMClusteringAlgorithm;
+import nl.cwts.networkanalysis.Network;
+
+/**
+ * Sweep over multiple parameter sets of a multi-level clustering of a
+ * network.
+ *
+ * <p>
+ * All parameter sets are applied to the same network. Parameter sets that have
+ * the same values of the resolution parameter and the same minimum numbers of
+ * nodes per cluster at their lowest levels share the clusterings and the
+ * reduced networks at these levels, so each distinct level is created only
+ * once. Levels are created concurrently on a fork-join pool with a fixed
+ * number of threads. If multiple clustering algorithms are used for each
+ * level, they are run concurrently on the same pool, so the threads are
+ * divided between the levels and the clustering algorithms.
+ * </p>
+ *
+ * <p>
+ * New clustering algorithms are obtained for each level that is created.
+ * Clusterings created in a sweep are therefore reproducible and independent of
+ * the other parameter sets in the sweep, provided that the clustering
+ * algorithms use random number generators with fixed seeds. They may differ
+ * from clusterings created using a single {@link MultiLevelClustering} object,
+ * in which the same clustering algorithms are used at all levels.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+public class MultiLevelClusteringSweep
+{
+    /**
+     * Values of the resolution parameter and minimum numbers of nodes per
+     * cluster at the different levels of a multi-level clustering.
+     *
+     * @author Nees Jan van Eck
+     */
+    public static class ParameterSet
+    {
+        /**
+         * Values of the resolution parameter.
+         */
+        private double[] resolutions;
+
+        /**
+         * Minimum numbers of nodes per cluster.
+         */
+        private double[] thresholds;
+
+        /**
+         * Constructs a parameter set.
+         *
+         * @param resolutions Values of the resolution parameter
+         * @param thresholds  Minimum numbers of nodes per cluster
+         *
+         * @throws IllegalArgumentException Parameter set has no levels, number
+         *                                  of values of the resolution
+         *                                  parameter differs from number of
+         *                                  minimum numbers of nodes per
+         *                                  cluster, or values of the
+         *                                  resolution parameter are not in
+         *                                  non-increasing order.
+         */
+        public ParameterSet(double[] resolutions, double[] thresholds)
+        {
+            if (resolutions.length == 0)
+                throw new IllegalArgumentException("A parameter set must have at least one level.");
+            if (resolutions.length != thresholds.length)
+                throw new IllegalArgumentException("The number of values of the resolution parameter must be equal to the number of minimum numbers of nodes per cluster.");
+            for (int i = 1; i < resolutions.length; i++)
+                if (resolutions[i - 1] < resolutions[i])
+                    throw new IllegalArgumentException("The value of the resolution parameter must be lower than the value at the highest (i.e., least granular) level of the multi-level clustering.");
+
+            this.resolutions = resolutions.clone();
+            this.thresholds = thresholds.clone();
+        }
+
+        /**
+         * Returns the number of levels.
+         *
+         * @return Number of levels
+         */
+        public int getNLevels()
+        {
+            return resolutions.length;
+        }
+
+        /**
+         * Returns the value of the resolution parameter at a specific level.
+         *
+         * @param level Level
+         *
+         * @return Value of the resolution parameter
+         */
+        public double getResolution(int level)
+        {
+            return resolutions[level];
+        }
+
+        /**
+         * Returns the minimum number of nodes per cluster at a specific level.
+         *
+         * @param level Level
+         *
+         * @return Minimum number of nodes per cluster
+         */
+        public double getThreshold(int level)
+        {
+            return thresholds[level];
+        }
+    }
+
+    /**
+     * Result of a parameter set of a sweep.
+     *
+     * @author Nees Jan van Eck
+     */
+    public static class Result
+    {
+        /**
+         * Parameter set.
+         */
+        private ParameterSet parameterSet;
+
+        /**
+         * Number of clusters at each level.
+         */
+        private int[] nClusters;
+
+        /**
+         * Quality of the clustering at each level.
+         */
+        private double[] quality;
+
+        /**
+         * Run time (in milliseconds).
+         */
+        private long runTime;
+
+        /**
+         * Estimated memory size (in bytes).
+         */
+        private long memorySize;
+
+        /**
+         * Constructs a result of a parameter set.
+         *
+         * @param parameterSet Parameter set
+         * @param nClusters    Number of clusters at each level
+         * @param quality      Quality of the clustering at each level
+         * @param runTime      Run time (in milliseconds)
+         * @param memorySize   Estimated memory size (in bytes)
+         */
+        private Result(ParameterSet parameterSet, int[] nClusters, double[] quality, long runTime, long memorySize)
+        {
+            this.parameterSet = parameterSet;
+            this.nClusters = nClusters;
+            this.quality = quality;
+            this.runTime = runTime;
+            this.memorySize = memorySize;
+        }
+
+        /**
+         * Returns the parameter set.
+         *
+         * @return Parameter set
+         */
+        public ParameterSet getParameterSet()
+        {
+            return parameterSet;
+        }
+
+        /**
+         * Returns the number of clusters at a specific level.
+         *
+         * @param level Level
+         *
+         * @return Number of clusters
+         */
+        public int getNClusters(int level)
+        {
+            return nClusters[level];
+        }
+
+        /**
+         * Returns the quality of the clustering at a specific level.
+         *
+         * @param level Level
+         *
+         * @return Quality of the clustering
+         */
+        public double getQuality(int level)
+        {
+            return quality[level];
+        }
+
+        /**
+         * Returns the run time (in milliseconds). This is the time needed to
+         * create all levels, including levels shared with other parameter
+         * sets.
+         *
+         * @return Run time
+         */
+        public long getRunTime()
+        {
+            return runTime;
+        }
+
+        /**
+         * Returns the estimated memory size (in bytes) of the reduced networks
+         * and the clusterings at all levels, excluding the network itself.
+         *
+         * @return Estimated memory size
+         */
+        public long getMemorySize()
+        {
+            return memorySize;
+        }
+    }
+
+    /**
+     * Level of a multi-level clustering that is shared by one or more
+     * parameter sets.
+     *
+     * @author Nees Jan van Eck
+     */
+    private static class SweepLevel
+    {
+        /**
+         * Level of the multi-level clustering.
+         */
+        private int level;
+
+        /**
+         * Value of the resolution parameter.
+         */
+        private double resolution;
+
+        /**
+         * Minimum number of nodes per cluster.
+         */
+        private double threshold;
+
+        /**
+         * Next levels.
+         */
+        private ArrayList<SweepLevel> nextLevels = new ArrayList<SweepLevel>();
+
+        /**
+         * Indices of the parameter sets whose highest level is this level.
+         */
+        private ArrayList<Integer> parameterSetIndices = new ArrayList<Integer>();
+
+        /**
+         * Number of levels in the tree starting at this level.
+         */
+        private int nLevelsInTree;
+
+        /**
+         * Constructs a level.
+         *
+         * @param level      Level of the multi-level clustering
+         * @param resolution Value of the resolution parameter
+         * @param threshold  Minimum number of nodes per cluster
+         */
+        private SweepLevel(int level, double resolution, double threshold)
+        {
+            this.level = level;
+            this.resolution = resolution;
+            this.threshold = threshold;
+        }
+
+        /**
+         * Returns the next level with a given value of the resolution
+         * parameter and a given minimum number of nodes per cluster. The level
+         * is added if it does not exist yet.
+         *
+         * @param resolution Value of the resolution parameter
+         * @param threshold  Minimum number of nodes per cluster
+         *
+         * @return Next level
+         */
+        private SweepLevel getNextLevel(double resolution, double threshold)
+        {
+            for (SweepLevel nextLevel : nextLevels)
+                if ((Double.compare(nextLevel.resolution, resolution) == 0) && (Double.compare(nextLevel.threshold, threshold) == 0))
+                    return nextLevel;
+            SweepLevel nextLevel = new SweepLevel(level + 1, resolution, threshold);
+            nextLevels.add(nextLevel);
+            return nextLevel;
+        }
+
+        /**
+         * Counts the number of levels in the tree starting at this level.
+         *
+         * @return Number of levels
+         */
+        private int countLevelsInTree()
+        {
+            nLevelsInTree = 1;
+            for (SweepLevel nextLevel : nextLevels)
+                nLevelsInTree += nextLevel.countLevelsInTree();
+            return nLevelsInTree;
+        }
+    }
+
+    /**
+     * Network.
+     */
+    private Network network;
+
+    /**
+     * Factory for the clustering algorithms used at each level.
+     */
+    private Supplier<IterativeCPMClusteringAlgorithm[]> clusteringAlgorithmFactory;
+
+    /**
+     * Number of threads.
+     */
+    private int nThreads;
+
+    /**
+     * Constructs a sweep over parameter sets of a multi-level clustering of a
+     * network.
+     *
+     * <p>
+     * The clustering algorithm factory is called each time a level is created
+     * and must return new clustering algorithm instances on each call (see
+     * {@link MultiLevelClustering#MultiLevelClustering(Network,
+     * IterativeCPMClusteringAlgorithm[])}). It may be called concurrently by
+     * multiple threads.
+     * </p>
+     *
+     * @param network                    Network
+     * @param clusteringAlgorithmFactory Factory for the clustering algorithms
+     * @param nThreads                   Number of threads
+     *
+     * @throws IllegalArgumentException Number of threads is not positive.
+     */
+    public MultiLevelClusteringSweep(Network network, Supplier<IterativeCPMClusteringAlgorithm[]> clusteringAlgorithmFactory, int nThreads)
+    {
+        if (nThreads <= 0)
+            throw new IllegalArgumentException("The number of threads must be positive.");
+
+        this.network = network;
+        this.clusteringAlgorithmFactory = clusteringAlgorithmFactory;
+        this.nThreads = nThreads;
+    }
+
+    /**
+     * Runs the sweep.
+     *
+     * @param parameterSets Parameter sets
+     *
+     * @return Results of the parameter sets, in the order of the parameter
+     *         sets
+     */
+    public List<Result> run(List<ParameterSet> parameterSets)
+    {
+        return run(parameterSets, null);
+    }
+
+    /**
+     * Runs the sweep.
+     *
+     * <p>
+     * Each time all levels of a parameter set have been created, the result
+     * and the multi-level clustering of the parameter set are passed to the
+     * consumer (if provided), which may for instance write the multi-level
+     * clustering to a file. The consumer is called by the thread that created
+     * the highest level of the parameter set and may therefore be called
+     * concurrently by multiple threads. The multi-level clustering is not
+     * retained after the consumer has been called.
+     * </p>
+     *
+     * @param parameterSets Parameter sets
+     * @param consumer      Consumer of the results and multi-level clusterings
+     *                      of the parameter sets (may be null)
+     *
+     * @return Results of the parameter sets, in the order of the parameter
+     *         sets
+     */
+    public List<Result> run(List<ParameterSet> parameterSets, BiConsumer<Result, MultiLevelClustering> consumer)
+    {
+        // Create tree of levels, in which parameter sets share their common
+        // lowest levels.
+        SweepLevel root = new SweepLevel(-1, Double.POSITIVE_INFINITY, 0);
+        for (int i = 0; i < parameterSets.size(); i++)
+        {
+            ParameterSet parameterSet = parameterSets.get(i);
+            SweepLevel sweepLevel = root;
+            for (int j = 0; j < parameterSet.getNLevels(); j++)
+                sweepLevel = sweepLevel.getNextLevel(parameterSet.getResolution(j), parameterSet.getThreshold(j));
+            sweepLevel.parameterSetIndices.add(i);
+        }
+        root.countLevelsInTree();
+
+        // Create levels. A level is submitted for creation once the level
+        // below it has been created.
+        Result[] results = new Result[parameterSets.size()];
+        CountDownLatch nRemainingLevels = new CountDownLatch(root.nLevelsInTree - 1);
+        AtomicReference<Throwable> exception = new AtomicReference<Throwable>();
+        ForkJoinPool executor = new ForkJoinPool(nThreads);
+        try
+        {
+            for (SweepLevel sweepLevel : root.nextLevels)
+                submitLevel(executor, sweepLevel, null, 0, parameterSets, results, consumer, nRemainingLevels, exception);
+            nRemainingLevels.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running sweep.", e);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        if (exception.get() instanceof Error)
+            throw (Error)exception.get();
+        if (exception.get() != null)
+            throw (RuntimeException)exception.get();
+
+        ArrayList<Result> resultList = new ArrayList<Result>(results.length);
+        for (Result result : results)
+            resultList.add(result);
+        return resultList;
+    }
+
+    /**
+     * Submits the creation of a level to an executor. After the level has
+     * been created, the results of the parameter sets whose highest level is
+     * this level are stored and the next levels are submitted. If the
+     * creation of the level fails, the exception is stored and the next
+     * levels are skipped.
+     *
+     * @param executor                   Executor
+     * @param sweepLevel                 Level
+     * @param previousLevelClustering    Multi-level clustering up to the
+     *                                   previous level (null for the lowest
+     *                                   level)
+     * @param previousLevelsRunTime      Run time (in milliseconds) of the
+     *                                   previous levels
+     * @param parameterSets              Parameter sets
+     * @param results                    Results of the parameter sets
+     * @param consumer                   Consumer of the results and
+     *                                   multi-level clusterings (may be null)
+     * @param nRemainingLevels           Number of levels that remain to be
+     *                                   created or skipped
+     * @param exception                  First exception that occurred
+     */
+    private void submitLevel(ExecutorService executor, SweepLevel sweepLevel, MultiLevelClustering previousLevelClustering, long previousLevelsRunTime, List<ParameterSet> parameterSets, Result[] results, BiConsumer<Result, MultiLevelClustering> consumer, CountDownLatch nRemainingLevels, AtomicReference<Throwable> exception)
+    {
+        executor.execute(() ->
+        {
+            MultiLevelClustering multiLevelClustering = null;
+            long runTime = 0;
+            try
+            {
+                long startTime = System.currentTimeMillis();
+                IterativeCPMClusteringAlgorithm[] clusteringAlgorithms = clusteringAlgorithmFactory.get();
+                multiLevelClustering = (previousLevelClustering == null) ? new MultiLevelClustering(network, clusteringAlgorithms) : new MultiLevelClustering(previousLevelClustering, clusteringAlgorithms);
+                multiLevelClustering.setExecutor(executor);
+                multiLevelClustering.addLevel(sweepLevel.resolution, sweepLevel.threshold);
+                if (!sweepLevel.nextLevels.isEmpty())
+                    multiLevelClustering.getReducedNetwork(sweepLevel.level + 1);
+                runTime = previousLevelsRunTime + System.currentTimeMillis() - startTime;
+
+                if (!sweepLevel.parameterSetIndices.isEmpty())
+                {
+                    int nLevels = multiLevelClustering.getNLevels();
+                    int[] nClusters = new int[nLevels];
+                    double[] quality = new double[nLevels];
+                    long memorySize = multiLevelClustering.getReducedNetworkCacheSize();
+                    for (int i = 0; i < nLevels; i++)
+                    {
+                        nClusters[i] = multiLevelClustering.getNClusters(i);
+                        quality[i] = multiLevelClustering.calcQuality(i);
+                        memorySize += 4L * multiLevelClustering.getReducedClustering(i).getNNodes();
+                    }
+                    for (int i : sweepLevel.parameterSetIndices)
+                    {
+                        results[i] = new Result(parameterSets.get(i), nClusters, quality, runTime, memorySize);
+                        if (consumer != null)
+                            consumer.accept(results[i], multiLevelClustering);
+                    }
+                }
+            }
+            catch (RuntimeException | Error e)
+            {
+                exception.compareAndSet(null, e);
+                for (int i = 0; i < sweepLevel.nLevelsInTree; i++)
+                    nRemainingLevels.countDown();
+                return;
+            }
+            for (SweepLevel nextLevel : sweepLevel.nextLevels)
+                submitLevel(executor, nextLevel, multiLevelClustering, runTime, parameterSets, results, consumer, nRemainingLevels, exception);
+            nRemainingLevels.countDown();
+        });
+    }
+}
@@ -0,0 +1,1107 @@
+package nl.cwts.publicationclassification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+import nl.cwts.networkanalysis.Clustering;
+import nl.cwts.networkanalysis.IterativeCPMClusteringAlgorithm;
+import nl.cwts.networkanalysis.LeidenAlgorithm;
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.util.LargeDoubleArray;
+import nl.cwts.util.LargeIntArray;
+
+/**
+ * Multi-threaded variant of the Leiden algorithm for finding a clustering of
+ * the nodes in a network that optimizes the CPM quality function.
+ *
+ * <p>
+ * Each iteration consists of the same three phases as an iteration of
+ * {@link LeidenAlgorithm}, which are performed in parallel:
+ * </p>
+ *
+ * <ul>
+ * <li>Local moving of nodes is performed in rounds. In each round, all nodes
+ * in the queue determine the best cluster to move to, based on the clustering
+ * at the start of the round. Two neighboring nodes cannot move in the same
+ * round. If neighboring nodes both want to move, only the node with the
+ * highest random priority does so, and the other node stays in the queue. The
+ * remaining moves are applied one after the other. The quality improvement of
+ * each move is recalculated first, taking into account the earlier moves in
+ * the round, and moves that no longer improve the quality are postponed. Each
+ * move that is applied therefore improves the quality, as in sequential local
+ * moving. Neighbors of moved nodes that are not in the new cluster of the
+ * moved node are added to the queue for the next round.</li>
+ * <li>Refinement of the clustering is performed for all clusters in parallel,
+ * using randomized local merging within each cluster.</li>
+ * <li>Aggregation of the network based on the refined clustering is
+ * performed for all refined clusters in parallel.</li>
+ * </ul>
+ *
+ * <p>
+ * The phases are repeated for the aggregate network until the local moving
+ * of nodes no longer merges clusters or the refinement no longer merges
+ * nodes.
+ * </p>
+ *
+ * <p>
+ * All random numbers are derived from the random seed, the number of the
+ * iteration, and the node, round, or cluster for which they are used, not
+ * from the thread that uses them. For a given random seed, the resulting
+ * clustering therefore does not depend on the number of threads. It is
+ * different from the clustering obtained by {@link LeidenAlgorithm} with the
+ * same random seed, but has a similar quality.
+ * </p>
+ *
+ * <p>
+ * The algorithm requires a copy of the edges of the network, in addition to
+ * the aggregate networks that are created. The copy of the most recently
+ * clustered network is kept, so that iterations that are performed one at a
+ * time on the same network, for instance by {@link MultiLevelClustering} with
+ * early stopping, copy the edges only once.
+ * </p>
+ *
+ * <p>
+ * The algorithm does not create threads itself. The parallel phases are run
+ * on a fork-join pool that is provided by the caller, so that many instances
+ * of the algorithm, for instance for different random starts, levels, or
+ * connected components, can share a single pool. The caller is responsible
+ * for shutting down the pool. Without a pool, all phases are performed by the
+ * calling thread.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+public class ParallelLeidenAlgorithm extends IterativeCPMClusteringAlgorithm
+{
+    /**
+     * Default randomness parameter.
+     */
+    public static final double DEFAULT_RANDOMNESS = LeidenAlgorithm.DEFAULT_RANDOMNESS;
+
+    /**
+     * Number of nodes per block of work in the local moving and aggregation
+     * phases.
+     */
+    private static final int N_NODES_PER_BLOCK = 1 << 10;
+
+    /**
+     * Number of clusters per block of work in the refinement phase.
+     */
+    private static final int N_CLUSTERS_PER_BLOCK = 1 << 6;
+
+    /**
+     * Target of a node that does not move.
+     */
+    private static final int NO_MOVE = -1;
+
+    /**
+     * Target of a node that moves to an empty cluster.
+     */
+    private static final int EMPTY_CLUSTER = -2;
+
+    /**
+     * Target of a node that wants to move but has a neighbor with a higher
+     * priority that also wants to move.
+     */
+    private static final int POSTPONED = -3;
+
+    /**
+     * Randomness parameter.
+     */
+    private double randomness;
+
+    /**
+     * Random seed.
+     */
+    private long seed;
+
+    /**
+     * Number of iterations performed so far. It is used to derive the random
+     * numbers of the next iteration.
+     */
+    private long nIterationsPerformed;
+
+    /**
+     * Fork-join pool on which the parallel phases are run (null if the
+     * algorithm uses the calling thread only).
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Most recently clustered network (null if no network has been clustered
+     * yet).
+     */
+    private Network cachedNetwork;
+
+    /**
+     * Copy of the most recently clustered network.
+     */
+    private Graph cachedGraph;
+
+    /**
+     * Network in compressed sparse row format.
+     */
+    private static class Graph
+    {
+        /**
+         * Number of nodes.
+         */
+        private int nNodes;
+
+        /**
+         * Node weights.
+         */
+        private double[] nodeWeights;
+
+        /**
+         * Index of the first neighbor of each node.
+         */
+        private long[] firstNeighborIndices;
+
+        /**
+         * Neighbors of the nodes.
+         */
+        private LargeIntArray neighbors;
+
+        /**
+         * Edge weights.
+         */
+        private LargeDoubleArray edgeWeights;
+    }
+
+    /**
+     * Total edge weight of a node with each of the clusters of its neighbors,
+     * stored in an open-addressing hash table. Clusters are kept in the order
+     * in which they were added.
+     */
+    private static class ClusterEdgeWeights
+    {
+        /**
+         * Hash table slots, containing the index of a cluster plus one (zero
+         * for an empty slot).
+         */
+        private int[] slots = new int[16];
+
+        /**
+         * Clusters.
+         */
+        private int[] clusters = new int[8];
+
+        /**
+         * Edge weights of the clusters.
+         */
+        private double[] edgeWeights = new double[8];
+
+        /**
+         * Slots of the clusters.
+         */
+        private int[] clusterSlots = new int[8];
+
+        /**
+         * Number of clusters.
+         */
+        private int nClusters;
+
+        /**
+         * Removes all clusters and makes room for a given number of clusters.
+         *
+         * @param maxNClusters Maximum number of clusters that will be added
+         */
+        private void clear(int maxNClusters)
+        {
+            if (slots.length < 2 * maxNClusters)
+                slots = new int[Integer.highestOneBit(2 * maxNClusters - 1) << 1];
+            else
+                for (int i = 0; i < nClusters; i++)
+                    slots[clusterSlots[i]] = 0;
+            if (clusters.length < maxNClusters)
+            {
+                clusters = new int[maxNClusters];
+                edgeWeights = new double[maxNClusters];
+                clusterSlots = new int[maxNClusters];
+            }
+            nClusters = 0;
+        }
+
+        /**
+         * Adds an edge weight to a cluster.
+         *
+         * @param cluster    Cluster
+         * @param edgeWeight Edge weight
+         */
+        private void add(int cluster, double edgeWeight)
+        {
+            int mask = slots.length - 1;
+            int slot = hash(cluster) & mask;
+            while (true)
+            {
+                int index = slots[slot] - 1;
+                if (index < 0)
+                {
+                    slots[slot] = nClusters + 1;
+                    clusters[nClusters] = cluster;
+                    edgeWeights[nClusters] = edgeWeight;
+                    clusterSlots[nClusters] = slot;
+                    nClusters++;
+                    return;
+                }
+                if (clusters[index] == cluster)
+                {
+                    edgeWeights[index] += edgeWeight;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        /**
+         * Returns the edge weight of a cluster.
+         *
+         * @param cluster Cluster
+         *
+         * @return Edge weight (zero if the cluster has not been added)
+         */
+        private double get(int cluster)
+        {
+            int mask = slots.length - 1;
+            int slot = hash(cluster) & mask;
+            while (true)
+            {
+                int index = slots[slot] - 1;
+                if (index < 0)
+                    return 0;
+                if (clusters[index] == cluster)
+                    return edgeWeights[index];
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        /**
+         * Hashes a cluster.
+         *
+         * @param cluster Cluster
+         *
+         * @return Hash code
+         */
+        private static int hash(int cluster)
+        {
+            int h = cluster * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Growable arrays of neighbors and edge weights.
+     */
+    private static class EdgeList
+    {
+        /**
+         * Neighbors.
+         */
+        private int[] neighbors = new int[16];
+
+        /**
+         * Edge weights.
+         */
+        private double[] edgeWeights = new double[16];
+
+        /**
+         * Number of edges.
+         */
+        private int nEdges;
+
+        /**
+         * Adds an edge.
+         *
+         * @param neighbor   Neighbor
+         * @param edgeWeight Edge weight
+         */
+        private void add(int neighbor, double edgeWeight)
+        {
+            if (nEdges == neighbors.length)
+            {
+                neighbors = Arrays.copyOf(neighbors, 2 * nEdges);
+                edgeWeights = Arrays.copyOf(edgeWeights, 2 * nEdges);
+            }
+            neighbors[nEdges] = neighbor;
+            edgeWeights[nEdges] = edgeWeight;
+            nEdges++;
+        }
+    }
+
+    /**
+     * Action performed on a block of elements.
+     */
+    private static interface BlockAction
+    {
+        /**
+         * Performs the action.
+         *
+         * @param from Index of the first element of the block
+         * @param to   Index after the last element of the block
+         */
+        void apply(int from, int to);
+    }
+
+    /**
+     * Constructs a parallel Leiden algorithm.
+     *
+     * @param seed Random seed
+     * @param pool Fork-join pool on which the parallel phases are run (null
+     *             to use the calling thread only)
+     */
+    public ParallelLeidenAlgorithm(long seed, ForkJoinPool pool)
+    {
+        this(DEFAULT_RESOLUTION, DEFAULT_N_ITERATIONS, DEFAULT_RANDOMNESS, seed, pool);
+    }
+
+    /**
+     * Constructs a parallel Leiden algorithm for a specified resolution
+     * parameter, number of iterations, and randomness parameter.
+     *
+     * @param resolution  Resolution parameter
+     * @param nIterations Number of iterations
+     * @param randomness  Randomness parameter
+     * @param seed        Random seed
+     * @param pool        Fork-join pool on which the parallel phases are run
+     *                    (null to use the calling thread only)
+     */
+    public ParallelLeidenAlgorithm(double resolution, int nIterations, double randomness, long seed, ForkJoinPool pool)
+    {
+        super(resolution, nIterations);
+        this.randomness = randomness;
+        this.seed = seed;
+        this.pool = pool;
+    }
+
+    /**
+     * Clones the algorithm. The cloned algorithm uses the same fork-join pool.
+     *
+     * @return Cloned algorithm
+     */
+    @Override
+    public ParallelLeidenAlgorithm clone()
+    {
+        ParallelLeidenAlgorithm clonedAlgorithm = (ParallelLeidenAlgorithm)super.clone();
+        clonedAlgorithm.cachedNetwork = null;
+        clonedAlgorithm.cachedGraph = null;
+        return clonedAlgorithm;
+    }
+
+    /**
+     * Returns the randomness parameter.
+     *
+     * @return Randomness
+     */
+    public double getRandomness()
+    {
+        return randomness;
+    }
+
+    /**
+     * Sets the randomness parameter.
+     *
+     * @param randomness Randomness
+     */
+    public void setRandomness(double randomness)
+    {
+        this.randomness = randomness;
+    }
+
+    /**
+     * Returns the fork-join pool on which the parallel phases are run.
+     *
+     * @return Fork-join pool (null if the algorithm uses the calling thread
+     *         only)
+     */
+    public ForkJoinPool getPool()
+    {
+        return pool;
+    }
+
+    /**
+     * Returns the number of threads, which is the parallelism of the fork-join
+     * pool.
+     *
+     * @return Number of threads
+     */
+    public int getNThreads()
+    {
+        return (pool != null) ? pool.getParallelism() : 1;
+    }
+
+    /**
+     * Improves a clustering by performing one iteration of the parallel
+     * Leiden algorithm.
+     *
+     * @param network    Network
+     * @param clustering Clustering
+     *
+     * @return Boolean indicating whether the clustering has been improved
+     */
+    @Override
+    protected boolean improveClusteringOneIteration(Network network, Clustering clustering)
+    {
+        long iterationSeed = mix(mix(seed) + nIterationsPerformed);
+        nIterationsPerformed++;
+        if (network != cachedNetwork)
+        {
+            // Release the copy of the previous network before copying the
+            // new one.
+            cachedNetwork = null;
+            cachedGraph = null;
+            cachedGraph = createGraph(pool, network);
+            cachedNetwork = network;
+        }
+        int[] clusters = clustering.getClusters();
+        boolean update = improveClusters(pool, cachedGraph, clusters, iterationSeed);
+        for (int i = 0; i < clusters.length; i++)
+            clustering.setCluster(i, clusters[i]);
+        clustering.removeEmptyClusters();
+        return update;
+    }
+
+    /**
+     * Improves the clusters of the nodes of a network by performing local
+     * moving, refinement, and aggregation until no further improvement is
+     * possible.
+     *
+     * @param pool          Fork-join pool (null to use the calling thread only)
+     * @param graph         Network
+     * @param clusters      Clusters of the nodes, which are updated
+     * @param iterationSeed Random seed of the iteration
+     *
+     * @return Boolean indicating whether any node has been moved
+     */
+    private boolean improveClusters(ForkJoinPool pool, Graph graph, int[] clusters, long iterationSeed)
+    {
+        boolean update = false;
+        int[] levelClusters = clusters.clone();
+        List<int[]> refinedClusters = new ArrayList<int[]>();
+        for (int level = 0; ; level++)
+        {
+            long levelSeed = mix(iterationSeed + level);
+            int nClusters = renumberClusters(levelClusters);
+            update |= moveNodes(pool, graph, levelClusters, nClusters, mix(levelSeed));
+            nClusters = renumberClusters(levelClusters);
+            if (nClusters == graph.nNodes)
+                break;
+
+            int[] refinement = refineClusters(pool, graph, levelClusters, nClusters, mix(levelSeed + 1));
+            int nRefinedClusters = renumberClusters(refinement);
+            if (nRefinedClusters == graph.nNodes)
+                break;
+
+            // Continue with the aggregate network based on the refined
+            // clustering. Each node of the aggregate network starts in the
+            // cluster of its nodes in the non-aggregate network.
+            Graph aggregateGraph = aggregate(pool, graph, refinement, nRefinedClusters);
+            int[] aggregateClusters = new int[nRefinedClusters];
+            for (int i = 0; i < graph.nNodes; i++)
+                aggregateClusters[refinement[i]] = levelClusters[i];
+            refinedClusters.add(refinement);
+            graph = aggregateGraph;
+            levelClusters = aggregateClusters;
+        }
+
+        // Project the clusters of the nodes of the highest aggregate network
+        // onto the nodes of the original network.
+        for (int i = refinedClusters.size() - 1; i >= 0; i--)
+        {
+            int[] refinement = refinedClusters.get(i);
+            int[] lowerLevelClusters = new int[refinement.length];
+            for (int j = 0; j < refinement.length; j++)
+                lowerLevelClusters[j] = levelClusters[refinement[j]];
+            levelClusters = lowerLevelClusters;
+        }
+        System.arraycopy(levelClusters, 0, clusters, 0, clusters.length);
+        return update;
+    }
+
+    /**
+     * Moves nodes to the cluster that gives the largest increase in quality,
+     * until no node can be moved anymore.
+     *
+     * @param pool      Fork-join pool (null to use the calling thread only)
+     * @param graph     Network
+     * @param clusters  Clusters of the nodes, which are updated
+     * @param nClusters Number of clusters
+     * @param moveSeed  Random seed of the local moving phase
+     *
+     * @return Boolean indicating whether any node has been moved
+     */
+    private boolean moveNodes(ForkJoinPool pool, Graph graph, int[] clusters, int nClusters, long moveSeed)
+    {
+        int nNodes = graph.nNodes;
+        double[] nodeWeights = graph.nodeWeights;
+        long[] firstNeighborIndices = graph.firstNeighborIndices;
+        LargeIntArray neighbors = graph.neighbors;
+        LargeDoubleArray edgeWeights = graph.edgeWeights;
+
+        double[] clusterWeights = new double[nNodes];
+        int[] nNodesPerCluster = new int[nNodes];
+        for (int i = 0; i < nNodes; i++)
+        {
+            clusterWeights[clusters[i]] += nodeWeights[i];
+            nNodesPerCluster[clusters[i]]++;
+        }
+        int[] unusedClusters = new int[nNodes];
+        int nUnusedClusters = 0;
+        for (int i = nNodes - 1; i >= nClusters; i--)
+            unusedClusters[nUnusedClusters++] = i;
+
+        int[] nodeTargets = new int[nNodes];
+        Arrays.fill(nodeTargets, NO_MOVE);
+        AtomicLongArray queuedNodes = new AtomicLongArray((nNodes + 63) >>> 6);
+        int[] queue = new int[nNodes];
+        for (int i = 0; i < nNodes; i++)
+            queue[i] = i;
+        int queueSize = nNodes;
+        boolean update = false;
+        for (long round = 0; queueSize > 0; round++)
+        {
+            final int[] roundQueue = queue;
+            final long roundSeed = mix(moveSeed + round);
+            final int[] target = new int[queueSize];
+            final double[] targetEdgeWeight = new double[queueSize];
+            final double[] currentEdgeWeight = new double[queueSize];
+
+            // Determine the best cluster of each node in the queue based on
+            // the clustering at the start of the round.
+            forEachBlock(pool, queueSize, N_NODES_PER_BLOCK, (from, to) ->
+            {
+                ClusterEdgeWeights clusterEdgeWeights = new ClusterEdgeWeights();
+                for (int k = from; k < to; k++)
+                {
+                    int i = roundQueue[k];
+                    int currentCluster = clusters[i];
+                    clusterEdgeWeights.clear((int)(firstNeighborIndices[i + 1] - firstNeighborIndices[i]));
+                    for (long l = firstNeighborIndices[i]; l < firstNeighborIndices[i + 1]; l++)
+                        clusterEdgeWeights.add(clusters[neighbors.get(l)], edgeWeights.get(l));
+                    currentEdgeWeight[k] = clusterEdgeWeights.get(currentCluster);
+
+                    int bestCluster = NO_MOVE;
+                    double maxQualityValue = currentEdgeWeight[k] - nodeWeights[i] * (clusterWeights[currentCluster] - nodeWeights[i]) * resolution;
+                    for (int l = 0; l < clusterEdgeWeights.nClusters; l++)
+                    {
+                        int cluster = clusterEdgeWeights.clusters[l];
+                        double qualityValue = clusterEdgeWeights.edgeWeights[l] - nodeWeights[i] * clusterWeights[cluster] * resolution;
+                        if ((cluster != currentCluster) && (qualityValue > maxQualityValue))
+                        {
+                            bestCluster = cluster;
+                            maxQualityValue = qualityValue;
+                            targetEdgeWeight[k] = clusterEdgeWeights.edgeWeights[l];
+                        }
+                    }
+                    if ((nNodesPerCluster[currentCluster] > 1) && (maxQualityValue < 0))
+                    {
+                        bestCluster = EMPTY_CLUSTER;
+                        targetEdgeWeight[k] = 0;
+                    }
+                    target[k] = bestCluster;
+                    nodeTargets[i] = bestCluster;
+                }
+            });
+
+            // Postpone the move of each node that has a neighbor with a higher
+            // priority that wants to move to the current cluster of the node or
+            // out of the cluster the node wants to move to.
+            forEachBlock(pool, queueSize, N_NODES_PER_BLOCK, (from, to) ->
+            {
+                for (int k = from; k < to; k++)
+                    if (target[k] != NO_MOVE)
+                    {
+                        int i = roundQueue[k];
+                        long priority = mix(roundSeed + i);
+                        for (long l = firstNeighborIndices[i]; l < firstNeighborIndices[i + 1]; l++)
+                        {
+                            int j = neighbors.get(l);
+                            if ((nodeTargets[j] == clusters[i]) || ((nodeTargets[j] != NO_MOVE) && (clusters[j] == target[k])))
+                            {
+                                long neighborPriority = mix(roundSeed + j);
+                                if ((neighborPriority > priority) || ((neighborPriority == priority) && (j > i)))
+                                {
+                                    target[k] = POSTPONED;
+                                    break;
+                                }
+                            }
+                        }
+                    }
+            });
+
+            // Apply the moves one after the other. The remaining moves of
+            // neighbors can only increase the edge weight of a node with the
+            // cluster it wants to move to or decrease the edge weight of the
+            // node with its current cluster. The increase in quality
+            // calculated from the edge weights at the start of the round and
+            // the current cluster weights is therefore a lower bound.
+            int[] movedNodes = new int[queueSize];
+            int nMovedNodes = 0;
+            int[] postponedNodes = new int[queueSize];
+            int nPostponedNodes = 0;
+            for (int k = 0; k < queueSize; k++)
+            {
+                int i = roundQueue[k];
+                nodeTargets[i] = NO_MOVE;
+                if (target[k] == NO_MOVE)
+                    continue;
+                int currentCluster = clusters[i];
+                double targetClusterWeight = (target[k] >= 0) ? clusterWeights[target[k]] : 0;
+                double qualityValueIncrement = (targetEdgeWeight[k] - nodeWeights[i] * targetClusterWeight * resolution) - (currentEdgeWeight[k] - nodeWeights[i] * (clusterWeights[currentCluster] - nodeWeights[i]) * resolution);
+                if ((target[k] == POSTPONED) || !(qualityValueIncrement > 0))
+                {
+                    postponedNodes[nPostponedNodes++] = i;
+                    continue;
+                }
+                int newCluster = (target[k] == EMPTY_CLUSTER) ? unusedClusters[--nUnusedClusters] : target[k];
+                clusterWeights[currentCluster] -= nodeWeights[i];
+                nNodesPerCluster[currentCluster]--;
+                if (nNodesPerCluster[currentCluster] == 0)
+                    unusedClusters[nUnusedClusters++] = currentCluster;
+                clusterWeights[newCluster] += nodeWeights[i];
+                nNodesPerCluster[newCluster]++;
+                clusters[i] = newCluster;
+                movedNodes[nMovedNodes++] = i;
+                update = true;
+            }
+
+            // Create the queue of the next round, consisting of the postponed
+            // nodes and the neighbors of the moved nodes that are not in the
+            // new cluster of the moved node.
+            for (int k = 0; k < nPostponedNodes; k++)
+                addToQueue(queuedNodes, postponedNodes[k]);
+            final int[] finalMovedNodes = movedNodes;
+            final int[][] blockQueues = new int[(nMovedNodes + N_NODES_PER_BLOCK - 1) / N_NODES_PER_BLOCK][];
+            forEachBlock(pool, nMovedNodes, N_NODES_PER_BLOCK, (from, to) ->
+            {
+                EdgeList blockQueue = new EdgeList();
+                for (int k = from; k < to; k++)
+                {
+                    int i = finalMovedNodes[k];
+                    for (long l = firstNeighborIndices[i]; l < firstNeighborIndices[i + 1]; l++)
+                    {
+                        int j = neighbors.get(l);
+                        if ((clusters[j] != clusters[i]) && addToQueue(queuedNodes, j))
+                            blockQueue.add(j, 0);
+                    }
+                }
+                blockQueues[from / N_NODES_PER_BLOCK] = Arrays.copyOf(blockQueue.neighbors, blockQueue.nEdges);
+            });
+            queueSize = nPostponedNodes;
+            for (int[] blockQueue : blockQueues)
+                queueSize += blockQueue.length;
+            queue = Arrays.copyOf(postponedNodes, queueSize);
+            int position = nPostponedNodes;
+            for (int[] blockQueue : blockQueues)
+            {
+                System.arraycopy(blockQueue, 0, queue, position, blockQueue.length);
+                position += blockQueue.length;
+            }
+            sort(pool, queue);
+            for (int i : queue)
+                queuedNodes.set(i >>> 6, 0);
+        }
+        return update;
+    }
+
+    /**
+     * Refines each cluster by merging its nodes into well-connected
+     * subclusters, starting from singleton subclusters.
+     *
+     * <p>
+     * The clusters are refined in parallel. Within each cluster, nodes are
+     * visited in random order. A node that is still in a singleton subcluster
+     * and that is well connected to the rest of the cluster is merged with a
+     * well-connected subcluster of its neighbors, chosen randomly with a
+     * probability that increases with the increase in quality.
+     * </p>
+     *
+     * @param pool       Fork-join pool (null to use the calling thread only)
+     * @param graph      Network
+     * @param clusters   Clusters of the nodes
+     * @param nClusters  Number of clusters
+     * @param refineSeed Random seed of the refinement phase
+     *
+     * @return Subclusters of the nodes, each identified by one of its nodes
+     */
+    private int[] refineClusters(ForkJoinPool pool, Graph graph, int[] clusters, int nClusters, long refineSeed)
+    {
+        int nNodes = graph.nNodes;
+        double[] nodeWeights = graph.nodeWeights;
+        long[] firstNeighborIndices = graph.firstNeighborIndices;
+        LargeIntArray neighbors = graph.neighbors;
+        LargeDoubleArray edgeWeights = graph.edgeWeights;
+
+        int[] firstNodeIndices = new int[nClusters + 1];
+        for (int i = 0; i < nNodes; i++)
+            firstNodeIndices[clusters[i] + 1]++;
+        for (int i = 0; i < nClusters; i++)
+            firstNodeIndices[i + 1] += firstNodeIndices[i];
+        int[] nodes = new int[nNodes];
+        int[] nextNodeIndices = Arrays.copyOf(firstNodeIndices, nClusters);
+        for (int i = 0; i < nNodes; i++)
+            nodes[nextNodeIndices[clusters[i]]++] = i;
+        nextNodeIndices = null;
+
+        // The arrays below are indexed by node and are therefore accessed by
+        // only one cluster at a time. A subcluster is identified by one of its
+        // nodes.
+        int[] subclusters = new int[nNodes];
+        double[] subclusterWeights = new double[nNodes];
+        double[] externalEdgeWeights = new double[nNodes];
+        boolean[] nonSingletonSubclusters = new boolean[nNodes];
+        double[] subclusterEdgeWeights = new double[nNodes];
+        forEachBlock(pool, nClusters, N_CLUSTERS_PER_BLOCK, (from, to) ->
+        {
+            int[] neighboringSubclusters = new int[16];
+            double[] cumTransformedQualityValueIncrements = new double[16];
+            for (int c = from; c < to; c++)
+            {
+                int firstNodeIndex = firstNodeIndices[c];
+                int endNodeIndex = firstNodeIndices[c + 1];
+                double totalNodeWeight = 0;
+                for (int k = firstNodeIndex; k < endNodeIndex; k++)
+                {
+                    int i = nodes[k];
+                    subclusters[i] = i;
+                    subclusterWeights[i] = nodeWeights[i];
+                    totalNodeWeight += nodeWeights[i];
+                    double externalEdgeWeight = 0;
+                    for (long l = firstNeighborIndices[i]; l < firstNeighborIndices[i + 1]; l++)
+                        if (clusters[neighbors.get(l)] == c)
+                            externalEdgeWeight += edgeWeights.get(l);
+                    externalEdgeWeights[i] = externalEdgeWeight;
+                }
+                if (endNodeIndex - firstNodeIndex == 1)
+                    continue;
+
+                SplittableRandom random = new SplittableRandom(mix(refineSeed + c));
+                int[] nodeOrder = Arrays.copyOfRange(nodes, firstNodeIndex, endNodeIndex);
+                for (int k = nodeOrder.length - 1; k > 0; k--)
+                {
+                    int l = random.nextInt(k + 1);
+                    int node = nodeOrder[k];
+                    nodeOrder[k] = nodeOrder[l];
+                    nodeOrder[l] = node;
+                }
+
+                for (int i : nodeOrder)
+                {
+                    // Only nodes that are still in a singleton subcluster and
+                    // that are well connected to the rest of the cluster are
+                    // considered.
+                    if (nonSingletonSubclusters[i] || (externalEdgeWeights[i] < subclusterWeights[i] * (totalNodeWeight - subclusterWeights[i]) * resolution))
+                        continue;
+
+                    subclusterWeights[i] = 0;
+                    externalEdgeWeights[i] = 0;
+
+                    // Identify the neighboring subclusters, including the
+                    // singleton subcluster of the node itself.
+                    int nNeighbors = (int)(firstNeighborIndices[i + 1] - firstNeighborIndices[i]);
+                    if (neighboringSubclusters.length < nNeighbors + 1)
+                    {
+                        neighboringSubclusters = new int[nNeighbors + 1];
+                        cumTransformedQualityValueIncrements = new double[nNeighbors + 1];
+                    }
+                    neighboringSubclusters[0] = i;
+                    int nNeighboringSubclusters = 1;
+                    for (long l = firstNeighborIndices[i]; l < firstNeighborIndices[i + 1]; l++)
+                    {
+                        int j = neighbors.get(l);
+                        if (clusters[j] != c)
+                            continue;
+                        int subcluster = subclusters[j];
+                        if (subclusterEdgeWeights[subcluster] == 0)
+                            neighboringSubclusters[nNeighboringSubclusters++] = subcluster;
+                        subclusterEdgeWeights[subcluster] += edgeWeights.get(l);
+                    }
+
+                    // Choose a well-connected subcluster randomly, with a
+                    // probability that increases exponentially with the
+                    // increase in quality.
+                    int bestSubcluster = i;
+                    double maxQualityValueIncrement = 0;
+                    double totalTransformedQualityValueIncrement = 0;
+                    for (int k = 0; k < nNeighboringSubclusters; k++)
+                    {
+                        int subcluster = neighboringSubclusters[k];
+                        if (externalEdgeWeights[subcluster] >= subclusterWeights[subcluster] * (totalNodeWeight - subclusterWeights[subcluster]) * resolution)
+                        {
+                            double qualityValueIncrement = subclusterEdgeWeights[subcluster] - nodeWeights[i] * subclusterWeights[subcluster] * resolution;
+                            if (qualityValueIncrement > maxQualityValueIncrement)
+                            {
+                                bestSubcluster = subcluster;
+                                maxQualityValueIncrement = qualityValueIncrement;
+                            }
+                            if (qualityValueIncrement >= 0)
+                                totalTransformedQualityValueIncrement += Math.exp(qualityValueIncrement / randomness);
+                        }
+                        cumTransformedQualityValueIncrements[k] = totalTransformedQualityValueIncrement;
+                        subclusterEdgeWeights[subcluster] = 0;
+                    }
+                    int chosenSubcluster;
+                    if (totalTransformedQualityValueIncrement < Double.POSITIVE_INFINITY)
+                    {
+                        double r = totalTransformedQualityValueIncrement * random.nextDouble();
+                        int minIndex = -1;
+                        int maxIndex = nNeighboringSubclusters - 1;
+                        while (maxIndex > minIndex + 1)
+                        {
+                            int midIndex = (minIndex + maxIndex) >>> 1;
+                            if (cumTransformedQualityValueIncrements[midIndex] > r)
+                                maxIndex = midIndex;
+                            else
+                                minIndex = midIndex;
+                        }
+                        chosenSubcluster = neighboringSubclusters[maxIndex];
+                    }
+                    else
+                        chosenSubcluster = bestSubcluster;
+
+                    subclusterWeights[chosenSubcluster] += nodeWeights[i];
+                    for (long l = firstNeighborIndices[i]; l < firstNeighborIndices[i + 1]; l++)
+                    {
+                        int j = neighbors.get(l);
+                        if (clusters[j] != c)
+                            continue;
+                        if (subclusters[j] == chosenSubcluster)
+                            externalEdgeWeights[chosenSubcluster] -= edgeWeights.get(l);
+                        else
+                            externalEdgeWeights[chosenSubcluster] += edgeWeights.get(l);
+                    }
+                    if (chosenSubcluster != i)
+                    {
+                        subclusters[i] = chosenSubcluster;
+                        nonSingletonSubclusters[chosenSubcluster] = true;
+                    }
+                }
+            }
+        });
+        return subclusters;
+    }
+
+    /**
+     * Creates an aggregate network in which each node represents a cluster.
+     * Edges within a cluster are left out, because they do not affect the
+     * moving of nodes.
+     *
+     * @param pool      Fork-join pool (null to use the calling thread only)
+     * @param graph     Network
+     * @param clusters  Clusters of the nodes
+     * @param nClusters Number of clusters
+     *
+     * @return Aggregate network
+     */
+    private static Graph aggregate(ForkJoinPool pool, Graph graph, int[] clusters, int nClusters)
+    {
+        int nNodes = graph.nNodes;
+        long[] firstNeighborIndices = graph.firstNeighborIndices;
+        LargeIntArray neighbors = graph.neighbors;
+        LargeDoubleArray edgeWeights = graph.edgeWeights;
+
+        Graph aggregateGraph = new Graph();
+        aggregateGraph.nNodes = nClusters;
+        aggregateGraph.nodeWeights = new double[nClusters];
+        int[] firstNodeIndices = new int[nClusters + 1];
+        for (int i = 0; i < nNodes; i++)
+        {
+            aggregateGraph.nodeWeights[clusters[i]] += graph.nodeWeights[i];
+            firstNodeIndices[clusters[i] + 1]++;
+        }
+        for (int i = 0; i < nClusters; i++)
+            firstNodeIndices[i + 1] += firstNodeIndices[i];
+        int[] nodes = new int[nNodes];
+        int[] nextNodeIndices = Arrays.copyOf(firstNodeIndices, nClusters);
+        for (int i = 0; i < nNodes; i++)
+            nodes[nextNodeIndices[clusters[i]]++] = i;
+        nextNodeIndices = null;
+
+        // Determine the neighbors of each block of clusters.
+        int[] nAggregateNeighbors = new int[nClusters];
+        EdgeList[] blockEdges = new EdgeList[(nClusters + N_NODES_PER_BLOCK - 1) / N_NODES_PER_BLOCK];
+        forEachBlock(pool, nClusters, N_NODES_PER_BLOCK, (from, to) ->
+        {
+            ClusterEdgeWeights clusterEdgeWeights = new ClusterEdgeWeights();
+            EdgeList edges = new EdgeList();
+            for (int c = from; c < to; c++)
+            {
+                long nEdges = 0;
+                for (int k = firstNodeIndices[c]; k < firstNodeIndices[c + 1]; k++)
+                    nEdges += firstNeighborIndices[nodes[k] + 1] - firstNeighborIndices[nodes[k]];
+                clusterEdgeWeights.clear((int)Math.min(nEdges, nClusters));
+                for (int k = firstNodeIndices[c]; k < firstNodeIndices[c + 1]; k++)
+                {
+                    int i = nodes[k];
+                    for (long l = firstNeighborIndices[i]; l < firstNeighborIndices[i + 1]; l++)
+                    {
+                        int neighborCluster = clusters[neighbors.get(l)];
+                        if (neighborCluster != c)
+                            clusterEdgeWeights.add(neighborCluster, edgeWeights.get(l));
+                    }
+                }
+                nAggregateNeighbors[c] = clusterEdgeWeights.nClusters;
+                for (int k = 0; k < clusterEdgeWeights.nClusters; k++)
+                    edges.add(clusterEdgeWeights.clusters[k], clusterEdgeWeights.edgeWeights[k]);
+            }
+            blockEdges[from / N_NODES_PER_BLOCK] = edges;
+        });
+
+        // Copy the neighbors of each block of clusters to their final
+        // position.
+        aggregateGraph.firstNeighborIndices = new long[nClusters + 1];
+        for (int i = 0; i < nClusters; i++)
+            aggregateGraph.firstNeighborIndices[i + 1] = aggregateGraph.firstNeighborIndices[i] + nAggregateNeighbors[i];
+        aggregateGraph.neighbors = new LargeIntArray(aggregateGraph.firstNeighborIndices[nClusters]);
+        aggregateGraph.edgeWeights = new LargeDoubleArray(aggregateGraph.firstNeighborIndices[nClusters]);
+        forEachBlock(pool, nClusters, N_NODES_PER_BLOCK, (from, to) ->
+        {
+            EdgeList edges = blockEdges[from / N_NODES_PER_BLOCK];
+            long firstNeighborIndex = aggregateGraph.firstNeighborIndices[from];
+            for (int k = 0; k < edges.nEdges; k++)
+            {
+                aggregateGraph.neighbors.set(firstNeighborIndex + k, edges.neighbors[k]);
+                aggregateGraph.edgeWeights.set(firstNeighborIndex + k, edges.edgeWeights[k]);
+            }
+            blockEdges[from / N_NODES_PER_BLOCK] = null;
+        });
+        return aggregateGraph;
+    }
+
+    /**
+     * Copies the nodes and edges of a network.
+     *
+     * @param pool    Fork-join pool (null to use the calling thread only)
+     * @param network Network
+     *
+     * @return Copy of the network
+     */
+    private static Graph createGraph(ForkJoinPool pool, Network network)
+    {
+        Graph graph = new Graph();
+        graph.nNodes = network.getNNodes();
+        graph.nodeWeights = network.getNodeWeights();
+        int[] nNeighbors = network.getNNeighborsPerNode();
+        graph.firstNeighborIndices = new long[graph.nNodes + 1];
+        for (int i = 0; i < graph.nNodes; i++)
+            graph.firstNeighborIndices[i + 1] = graph.firstNeighborIndices[i] + nNeighbors[i];
+        graph.neighbors = new LargeIntArray(graph.firstNeighborIndices[graph.nNodes]);
+        graph.edgeWeights = new LargeDoubleArray(graph.firstNeighborIndices[graph.nNodes]);
+        forEachBlock(pool, graph.nNodes, N_NODES_PER_BLOCK, (from, to) ->
+        {
+            for (int i = from; i < to; i++)
+            {
+                int[] neighbors = network.getNeighbors(i);
+                double[] edgeWeights = network.getEdgeWeights(i);
+                for (int k = 0; k < neighbors.length; k++)
+                {
+                    graph.neighbors.set(graph.firstNeighborIndices[i] + k, neighbors[k]);
+                    graph.edgeWeights.set(graph.firstNeighborIndices[i] + k, edgeWeights[k]);
+                }
+            }
+        });
+        return graph;
+    }
+
+    /**
+     * Renumbers clusters consecutively, preserving their order.
+     *
+     * @param clusters Clusters of the nodes, which are renumbered
+     *
+     * @return Number of clusters
+     */
+    private static int renumberClusters(int[] clusters)
+    {
+        int maxCluster = -1;
+        for (int cluster : clusters)
+            maxCluster = Math.max(maxCluster, cluster);
+        int[] newClusters = new int[maxCluster + 1];
+        for (int cluster : clusters)
+            newClusters[cluster] = 1;
+        int nClusters = 0;
+        for (int i = 0; i <= maxCluster; i++)
+            if (newClusters[i] > 0)
+                newClusters[i] = nClusters++;
+        for (int i = 0; i < clusters.length; i++)
+            clusters[i] = newClusters[clusters[i]];
+        return nClusters;
+    }
+
+    /**
+     * Adds a node to the queue of the next round of local moving, unless it
+     * has already been added.
+     *
+     * @param queuedNodes Bit set of the nodes that have been added
+     * @param node        Node
+     *
+     * @return Boolean indicating whether the node has been added
+     */
+    private static boolean addToQueue(AtomicLongArray queuedNodes, int node)
+    {
+        int index = node >>> 6;
+        long mask = 1L << (node & 63);
+        while (true)
+        {
+            long bits = queuedNodes.get(index);
+            if ((bits & mask) != 0)
+                return false;
+            if (queuedNodes.compareAndSet(index, bits, bits | mask))
+                return true;
+        }
+    }
+
+    /**
+     * Sorts an array of integers.
+     *
+     * @param pool   Fork-join pool (null to use the calling thread only)
+     * @param values Integers
+     */
+    private static void sort(ForkJoinPool pool, int[] values)
+    {
+        if (pool == null)
+            Arrays.sort(values);
+        else
+            pool.submit(() -> Arrays.parallelSort(values)).join();
+    }
+
+    /**
+     * Performs an action on consecutive blocks of elements, in parallel if a
+     * fork-join pool is provided. The division into blocks does not depend on
+     * the number of threads.
+     *
+     * @param pool      Fork-join pool (null to use the calling thread only)
+     * @param n         Number of elements
+     * @param blockSize Number of elements per block
+     * @param action    Action
+     */
+    private static void forEachBlock(ForkJoinPool pool, int n, int blockSize, BlockAction action)
+    {
+        int nBlocks = (int)(((long)n + blockSize - 1) / blockSize);
+        if ((pool == null) || (nBlocks <= 1))
+            for (int i = 0; i < nBlocks; i++)
+                action.apply(i * blockSize, (int)Math.min((long)(i + 1) * blockSize, n));
+        else
+            pool.submit(() -> IntStream.range(0, nBlocks).parallel().forEach(i -> action.apply(i * blockSize, (int)Math.min((long)(i + 1) * blockSize, n)))).join();
+    }
+
+    /**
+     * Mixes the bits of a number. This is the finalization step of the
+     * SplitMix64 random number generator.
+     *
+     * @param x Number
+     *
+     * @return Mixed number
+     */
+    private static long mix(long x)
+    {
+        x += 0x9E3779B97F4A7C15L;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+}
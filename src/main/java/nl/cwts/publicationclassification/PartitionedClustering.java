@@ -0,0 +1,662 @@
+package nl.cwts.publicationclassification;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import nl.cwts.networkanalysis.Clustering;
+import nl.cwts.networkanalysis.Network;
+
+/**
+ * Multi-level clustering of a network that is divided into partitions, each
+ * of which is clustered separately.
+ *
+ * <p>
+ * The partitions are typically obtained by packing the clusters of a coarse
+ * clustering, or the publications of fields, into a given number of
+ * partitions of similar size using {@link #createPartition(Network, int[],
+ * int)}. The subnetwork of each partition is clustered separately, for
+ * instance in a separate process, using {@link MultiLevelClustering}. Edges
+ * between partitions are ignored in this step.
+ * </p>
+ *
+ * <p>
+ * The clusterings of the partitions are then combined into a multi-level
+ * clustering of the entire network, followed by a merge and refinement pass
+ * that takes into account the edges between partitions. Starting at the
+ * highest level, clusters that have edges with clusters in other partitions
+ * are merged with neighboring clusters if this increases the quality at that
+ * level. At lower levels, only clusters that belong to the same cluster at
+ * the level above are merged, so that the multi-level clustering remains
+ * hierarchical. Finally, boundary nodes, which have edges with nodes in other
+ * partitions, are moved to the lowest-level cluster that gives the largest
+ * increase in quality at the lowest level, together with the clusters of that
+ * cluster at the higher levels. A node is not moved if this would leave a
+ * cluster with a total node weight below the minimum cluster weight at any
+ * level. Nodes whose neighbors have been moved are also reconsidered, as in
+ * the local moving of nodes of the Leiden algorithm.
+ * </p>
+ *
+ * <p>
+ * At each level, clusters are numbered consecutively in decreasing order of
+ * their total node weight.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+public class PartitionedClustering
+{
+    /**
+     * Network.
+     */
+    private Network network;
+
+    /**
+     * Partition of each node.
+     */
+    private int[] partition;
+
+    /**
+     * Nodes of each partition.
+     */
+    private int[][] nodesPerPartition;
+
+    /**
+     * Boundary nodes, which have edges with nodes in other partitions.
+     */
+    private int[] boundaryNodes;
+
+    /**
+     * Number of clusters that were merged at each level in the most recent
+     * combination of clusterings.
+     */
+    private int[] nMergedClusters;
+
+    /**
+     * Number of moves of boundary nodes and their neighbors in the most recent
+     * combination of clusterings.
+     */
+    private int nNodeMoves;
+
+    /**
+     * Constructs a partitioned clustering.
+     *
+     * @param network   Network
+     * @param partition Partition of each node, numbered from zero
+     *
+     * @throws IllegalArgumentException Number of partitions of the nodes
+     *                                  differs from the number of nodes, or a
+     *                                  partition is negative.
+     */
+    public PartitionedClustering(Network network, int[] partition)
+    {
+        int nNodes = network.getNNodes();
+        if (partition.length != nNodes)
+            throw new IllegalArgumentException("The number of partitions of the nodes must be equal to the number of nodes.");
+        int nPartitions = 0;
+        for (int i = 0; i < nNodes; i++)
+        {
+            if (partition[i] < 0)
+                throw new IllegalArgumentException("The partitions of the nodes must be non-negative.");
+            nPartitions = Math.max(nPartitions, partition[i] + 1);
+        }
+
+        this.network = network;
+        this.partition = partition.clone();
+
+        int[] nNodesPerPartition = new int[nPartitions];
+        for (int i = 0; i < nNodes; i++)
+            nNodesPerPartition[partition[i]]++;
+        nodesPerPartition = new int[nPartitions][];
+        for (int i = 0; i < nPartitions; i++)
+            nodesPerPartition[i] = new int[nNodesPerPartition[i]];
+        Arrays.fill(nNodesPerPartition, 0);
+        for (int i = 0; i < nNodes; i++)
+            nodesPerPartition[partition[i]][nNodesPerPartition[partition[i]]++] = i;
+
+        boolean[] boundaryNode = new boolean[nNodes];
+        IntStream.range(0, nNodes).parallel().forEach(i ->
+        {
+            for (int neighbor : network.getNeighbors(i))
+                if (partition[neighbor] != partition[i])
+                {
+                    boundaryNode[i] = true;
+                    break;
+                }
+        });
+        boundaryNodes = IntStream.range(0, nNodes).filter(i -> boundaryNode[i]).toArray();
+    }
+
+    /**
+     * Packs groups of nodes, for instance the clusters of a coarse clustering
+     * or the publications of fields, into partitions of similar size. The size
+     * of a group is the number of nodes plus the number of edges of the nodes,
+     * which determines the memory needed to cluster the group. Groups are
+     * assigned in decreasing order of their size to the partition with the
+     * smallest total size so far.
+     *
+     * @param network     Network
+     * @param group       Group of each node, numbered from zero
+     * @param nPartitions Number of partitions
+     *
+     * @return Partition of each node
+     *
+     * @throws IllegalArgumentException Number of groups of the nodes differs
+     *                                  from the number of nodes, a group is
+     *                                  negative, or the number of partitions
+     *                                  is not positive.
+     */
+    public static int[] createPartition(Network network, int[] group, int nPartitions)
+    {
+        int nNodes = network.getNNodes();
+        if (group.length != nNodes)
+            throw new IllegalArgumentException("The number of groups of the nodes must be equal to the number of nodes.");
+        if (nPartitions <= 0)
+            throw new IllegalArgumentException("The number of partitions must be positive.");
+        int nGroups = 0;
+        for (int i = 0; i < nNodes; i++)
+        {
+            if (group[i] < 0)
+                throw new IllegalArgumentException("The groups of the nodes must be non-negative.");
+            nGroups = Math.max(nGroups, group[i] + 1);
+        }
+
+        int[] nNeighborsPerNode = network.getNNeighborsPerNode();
+        long[] groupSizes = new long[nGroups];
+        for (int i = 0; i < nNodes; i++)
+            groupSizes[group[i]] += 1 + nNeighborsPerNode[i];
+        Integer[] groupOrder = new Integer[nGroups];
+        for (int i = 0; i < nGroups; i++)
+            groupOrder[i] = i;
+        Arrays.sort(groupOrder, (group1, group2) -> (groupSizes[group1] != groupSizes[group2]) ? Long.compare(groupSizes[group2], groupSizes[group1]) : Integer.compare(group1, group2));
+
+        int[] groupPartition = new int[nGroups];
+        long[] partitionSizes = new long[nPartitions];
+        for (int i : groupOrder)
+        {
+            int smallestPartition = 0;
+            for (int j = 1; j < nPartitions; j++)
+                if (partitionSizes[j] < partitionSizes[smallestPartition])
+                    smallestPartition = j;
+            groupPartition[i] = smallestPartition;
+            partitionSizes[smallestPartition] += groupSizes[i];
+        }
+
+        int[] partition = new int[nNodes];
+        for (int i = 0; i < nNodes; i++)
+            partition[i] = groupPartition[group[i]];
+        return partition;
+    }
+
+    /**
+     * Returns the number of partitions.
+     *
+     * @return Number of partitions
+     */
+    public int getNPartitions()
+    {
+        return nodesPerPartition.length;
+    }
+
+    /**
+     * Returns the nodes of a partition.
+     *
+     * @param partition Partition
+     *
+     * @return Nodes of the partition, in increasing order
+     */
+    public int[] getNodes(int partition)
+    {
+        return nodesPerPartition[partition].clone();
+    }
+
+    /**
+     * Returns the number of nodes of a partition.
+     *
+     * @param partition Partition
+     *
+     * @return Number of nodes
+     */
+    public int getNNodes(int partition)
+    {
+        return nodesPerPartition[partition].length;
+    }
+
+    /**
+     * Returns the number of boundary nodes, which have edges with nodes in
+     * other partitions.
+     *
+     * @return Number of boundary nodes
+     */
+    public int getNBoundaryNodes()
+    {
+        return boundaryNodes.length;
+    }
+
+    /**
+     * Returns the number of clusters that were merged at a level in the most
+     * recent combination of clusterings.
+     *
+     * @param level Level
+     *
+     * @return Number of merged clusters
+     */
+    public int getNMergedClusters(int level)
+    {
+        return nMergedClusters[level];
+    }
+
+    /**
+     * Returns the number of moves of nodes in the most recent combination of
+     * clusterings.
+     *
+     * @return Number of node moves
+     */
+    public int getNNodeMoves()
+    {
+        return nNodeMoves;
+    }
+
+    /**
+     * Creates the subnetwork of a partition. The nodes of the subnetwork are
+     * the nodes of the partition in increasing order. Edges with nodes in
+     * other partitions are left out.
+     *
+     * @param partition Partition
+     *
+     * @return Subnetwork
+     */
+    public Network createSubnetwork(int partition)
+    {
+        int[] nodes = nodesPerPartition[partition];
+        return (nodes.length == network.getNNodes()) ? network : network.createSubnetwork(nodes);
+    }
+
+    /**
+     * Combines the multi-level clusterings of the partitions into a
+     * multi-level clustering of the network, followed by a merge and
+     * refinement pass for the boundary nodes.
+     *
+     * @param partitionClusters Cluster numbers of the nodes of each partition
+     *                          (first index: partition; second index: level;
+     *                          third index: node of the subnetwork of the
+     *                          partition)
+     * @param resolutions       Values of the resolution parameter at the
+     *                          different levels
+     * @param thresholds        Minimum cluster weights at the different levels
+     *
+     * @return Cluster numbers of the nodes (first index: level; second index:
+     *         node)
+     *
+     * @throws IllegalArgumentException Number of clusterings differs from the
+     *                                  number of partitions, number of levels
+     *                                  or nodes of a clustering is incorrect,
+     *                                  or a parameter is illegal.
+     */
+    public int[][] combineClusterings(int[][][] partitionClusters, double[] resolutions, double[] thresholds)
+    {
+        int nLevels = resolutions.length;
+        if (thresholds.length != nLevels)
+            throw new IllegalArgumentException("The number of resolutions must be equal to the number of thresholds.");
+        for (int i = 1; i < nLevels; i++)
+            if (resolutions[i] > resolutions[i - 1])
+                throw new IllegalArgumentException("The value of the resolution parameter must be lower than the value at the highest (i.e., least granular) level of the multi-level clustering.");
+        int nPartitions = nodesPerPartition.length;
+        if (partitionClusters.length != nPartitions)
+            throw new IllegalArgumentException("The number of clusterings must be equal to the number of partitions.");
+        for (int i = 0; i < nPartitions; i++)
+        {
+            if (partitionClusters[i].length != nLevels)
+                throw new IllegalArgumentException("The clustering of partition " + i + " must have " + nLevels + " levels.");
+            for (int j = 0; j < nLevels; j++)
+                if (partitionClusters[i][j].length != nodesPerPartition[i].length)
+                    throw new IllegalArgumentException("The clustering of partition " + i + " must have " + nodesPerPartition[i].length + " nodes.");
+        }
+
+        // Combine the clusterings of the partitions. The cluster numbers of
+        // each partition are offset by the number of clusters of the
+        // preceding partitions.
+        int nNodes = network.getNNodes();
+        int[][] clusters = new int[nLevels][nNodes];
+        for (int i = 0; i < nLevels; i++)
+        {
+            int nClusters = 0;
+            for (int j = 0; j < nPartitions; j++)
+            {
+                int[] nodes = nodesPerPartition[j];
+                int nPartitionClusters = 0;
+                for (int k = 0; k < nodes.length; k++)
+                {
+                    if (partitionClusters[j][i][k] < 0)
+                        throw new IllegalArgumentException("The cluster numbers of partition " + j + " must be non-negative.");
+                    clusters[i][nodes[k]] = nClusters + partitionClusters[j][i][k];
+                    nPartitionClusters = Math.max(nPartitionClusters, partitionClusters[j][i][k] + 1);
+                }
+                nClusters += nPartitionClusters;
+            }
+        }
+
+        // Merge clusters, starting at the highest level, and move boundary
+        // nodes at the lowest level.
+        nMergedClusters = new int[nLevels];
+        nNodeMoves = 0;
+        if ((nLevels > 0) && (boundaryNodes.length > 0))
+        {
+            for (int i = nLevels - 1; i >= 0; i--)
+                nMergedClusters[i] = mergeClusters(clusters, i, resolutions[i]);
+            nNodeMoves = moveBoundaryNodes(clusters, resolutions, thresholds);
+        }
+
+        for (int i = 0; i < nLevels; i++)
+        {
+            Clustering clustering = new Clustering(clusters[i]);
+            clustering.orderClustersByWeight(network.getNodeWeights());
+            clustering.removeEmptyClusters();
+            clusters[i] = clustering.getClusters();
+        }
+        return clusters;
+    }
+
+    /**
+     * Merges clusters at a level that have edges with clusters in other
+     * partitions with neighboring clusters that belong to the same cluster at
+     * the level above, by moving clusters between groups of clusters in the
+     * reduced network of the level.
+     *
+     * @param clusters   Cluster numbers of the nodes (first index: level;
+     *                   second index: node), which are updated at the level
+     * @param level      Level
+     * @param resolution Value of the resolution parameter at the level
+     *
+     * @return Number of merged clusters
+     */
+    private int mergeClusters(int[][] clusters, int level, double resolution)
+    {
+        int nNodes = network.getNNodes();
+        int[] levelClusters = clusters[level];
+        Clustering clustering = new Clustering(levelClusters);
+        int nClusters = clustering.getNClusters();
+        Network reducedNetwork = network.createReducedNetwork(clustering);
+        double[] clusterWeights = reducedNetwork.getNodeWeights();
+        int[] clusterPartition = new int[nClusters];
+        int[] parentCluster = new int[nClusters];
+        for (int i = 0; i < nNodes; i++)
+        {
+            clusterPartition[levelClusters[i]] = partition[i];
+            parentCluster[levelClusters[i]] = (level < clusters.length - 1) ? clusters[level + 1][i] : 0;
+        }
+
+        // Each cluster starts in its own group. Clusters that have edges with
+        // clusters in other partitions are visited first.
+        int[] group = new int[nClusters];
+        double[] groupWeights = clusterWeights.clone();
+        int[] nClustersPerGroup = new int[nClusters];
+        for (int i = 0; i < nClusters; i++)
+        {
+            group[i] = i;
+            nClustersPerGroup[i] = 1;
+        }
+        int[] unusedGroups = new int[nClusters];
+        int nUnusedGroups = 0;
+        int[] queue = new int[nClusters];
+        boolean[] inQueue = new boolean[nClusters];
+        int queueStart = 0;
+        int queueSize = 0;
+        for (int i = 0; i < nClusters; i++)
+            for (int neighbor : reducedNetwork.getNeighbors(i))
+                if (clusterPartition[neighbor] != clusterPartition[i])
+                {
+                    queue[queueSize++] = i;
+                    inQueue[i] = true;
+                    break;
+                }
+
+        double[] edgeWeightPerGroup = new double[nClusters];
+        int[] neighboringGroups = new int[nClusters];
+        while (queueSize > 0)
+        {
+            int i = queue[queueStart];
+            queueStart = (queueStart + 1) % nClusters;
+            queueSize--;
+            inQueue[i] = false;
+
+            int[] neighbors = reducedNetwork.getNeighbors(i);
+            double[] edgeWeights = reducedNetwork.getEdgeWeights(i);
+            int currentGroup = group[i];
+            groupWeights[currentGroup] -= clusterWeights[i];
+            nClustersPerGroup[currentGroup]--;
+            if (nClustersPerGroup[currentGroup] == 0)
+                unusedGroups[nUnusedGroups++] = currentGroup;
+
+            int nNeighboringGroups = 0;
+            for (int j = 0; j < neighbors.length; j++)
+                if (parentCluster[neighbors[j]] == parentCluster[i])
+                {
+                    int neighborGroup = group[neighbors[j]];
+                    if (edgeWeightPerGroup[neighborGroup] == 0)
+                        neighboringGroups[nNeighboringGroups++] = neighborGroup;
+                    edgeWeightPerGroup[neighborGroup] += edgeWeights[j];
+                }
+
+            int bestGroup = currentGroup;
+            double maxQualityValueIncrement = edgeWeightPerGroup[currentGroup] - clusterWeights[i] * groupWeights[currentGroup] * resolution;
+            for (int j = 0; j < nNeighboringGroups; j++)
+            {
+                int neighborGroup = neighboringGroups[j];
+                double qualityValueIncrement = edgeWeightPerGroup[neighborGroup] - clusterWeights[i] * groupWeights[neighborGroup] * resolution;
+                if (qualityValueIncrement > maxQualityValueIncrement)
+                {
+                    bestGroup = neighborGroup;
+                    maxQualityValueIncrement = qualityValueIncrement;
+                }
+                edgeWeightPerGroup[neighborGroup] = 0;
+            }
+            edgeWeightPerGroup[currentGroup] = 0;
+            if ((nClustersPerGroup[currentGroup] > 0) && (maxQualityValueIncrement < 0))
+                bestGroup = unusedGroups[nUnusedGroups - 1];
+
+            groupWeights[bestGroup] += clusterWeights[i];
+            nClustersPerGroup[bestGroup]++;
+            if ((nUnusedGroups > 0) && (bestGroup == unusedGroups[nUnusedGroups - 1]))
+                nUnusedGroups--;
+
+            if (bestGroup != currentGroup)
+            {
+                group[i] = bestGroup;
+                for (int neighbor : neighbors)
+                    if ((parentCluster[neighbor] == parentCluster[i]) && (group[neighbor] != bestGroup) && !inQueue[neighbor])
+                    {
+                        queue[(queueStart + queueSize) % nClusters] = neighbor;
+                        queueSize++;
+                        inQueue[neighbor] = true;
+                    }
+            }
+        }
+
+        int nGroups = 0;
+        for (int i = 0; i < nClusters; i++)
+            if (nClustersPerGroup[i] > 0)
+                nGroups++;
+        for (int i = 0; i < nNodes; i++)
+            levelClusters[i] = group[levelClusters[i]];
+        return nClusters - nGroups;
+    }
+
+    /**
+     * Moves boundary nodes, and nodes whose neighbors have been moved, to the
+     * lowest-level cluster that gives the largest increase in quality at the
+     * lowest level. A node that moves to a lowest-level cluster also moves to
+     * the clusters of that cluster at the higher levels. A node is moved only
+     * if the quality at these higher levels does not decrease.
+     *
+     * @param clusters    Cluster numbers of the nodes (first index: level;
+     *                    second index: node), which are updated
+     * @param resolutions Values of the resolution parameter at the different
+     *                    levels
+     * @param thresholds  Minimum cluster weights at the different levels
+     *
+     * @return Number of node moves
+     */
+    private int moveBoundaryNodes(int[][] clusters, double[] resolutions, double[] thresholds)
+    {
+        int nNodes = network.getNNodes();
+        int nLevels = clusters.length;
+        double[] nodeWeights = network.getNodeWeights();
+        double[][] clusterWeights = new double[nLevels][];
+        int[][] nNodesPerCluster = new int[nLevels][];
+        int[][] parentCluster = new int[nLevels][];
+        double[][] edgeWeightPerCluster = new double[nLevels][];
+        for (int i = 0; i < nLevels; i++)
+        {
+            int nClusters = 0;
+            for (int j = 0; j < nNodes; j++)
+                nClusters = Math.max(nClusters, clusters[i][j] + 1);
+            clusterWeights[i] = new double[nClusters];
+            nNodesPerCluster[i] = new int[nClusters];
+            parentCluster[i] = new int[nClusters];
+            edgeWeightPerCluster[i] = new double[nClusters];
+            for (int j = 0; j < nNodes; j++)
+            {
+                clusterWeights[i][clusters[i][j]] += nodeWeights[j];
+                nNodesPerCluster[i][clusters[i][j]]++;
+                if (i < nLevels - 1)
+                    parentCluster[i][clusters[i][j]] = clusters[i + 1][j];
+            }
+        }
+
+        int[] queue = new int[nNodes];
+        boolean[] inQueue = new boolean[nNodes];
+        int queueStart = 0;
+        int queueSize = 0;
+        for (int i : boundaryNodes)
+        {
+            queue[queueSize++] = i;
+            inQueue[i] = true;
+        }
+
+        int nMoves = 0;
+        int[] neighboringClusters = new int[clusterWeights[0].length];
+        int[] newClusters = new int[nLevels];
+        while (queueSize > 0)
+        {
+            int i = queue[queueStart];
+            queueStart = (queueStart + 1) % nNodes;
+            queueSize--;
+            inQueue[i] = false;
+
+            int[] neighbors = network.getNeighbors(i);
+            double[] edgeWeights = network.getEdgeWeights(i);
+            int currentCluster = clusters[0][i];
+            int nNeighboringClusters = 0;
+            for (int j = 0; j < neighbors.length; j++)
+            {
+                int neighborCluster = clusters[0][neighbors[j]];
+                if (edgeWeightPerCluster[0][neighborCluster] == 0)
+                    neighboringClusters[nNeighboringClusters++] = neighborCluster;
+                for (int k = 0; k < nLevels; k++)
+                    edgeWeightPerCluster[k][clusters[k][neighbors[j]]] += edgeWeights[j];
+            }
+
+            int bestCluster = currentCluster;
+            double maxQualityValueIncrement = calcQualityValueIncrement(currentCluster, currentCluster, nodeWeights[i], edgeWeightPerCluster[0], clusterWeights[0], resolutions[0]);
+            for (int j = 0; j < nNeighboringClusters; j++)
+            {
+                int neighborCluster = neighboringClusters[j];
+                double qualityValueIncrement = calcQualityValueIncrement(neighborCluster, currentCluster, nodeWeights[i], edgeWeightPerCluster[0], clusterWeights[0], resolutions[0]);
+                if ((qualityValueIncrement > maxQualityValueIncrement) && canMoveNode(clusters, i, neighborCluster, nodeWeights[i], clusterWeights, edgeWeightPerCluster, nNodesPerCluster, parentCluster, resolutions, thresholds))
+                {
+                    bestCluster = neighborCluster;
+                    maxQualityValueIncrement = qualityValueIncrement;
+                }
+            }
+            for (int neighbor : neighbors)
+                for (int k = 0; k < nLevels; k++)
+                    edgeWeightPerCluster[k][clusters[k][neighbor]] = 0;
+
+            if (bestCluster != currentCluster)
+            {
+                newClusters[0] = bestCluster;
+                for (int j = 1; j < nLevels; j++)
+                    newClusters[j] = parentCluster[j - 1][newClusters[j - 1]];
+                for (int j = 0; j < nLevels; j++)
+                {
+                    clusterWeights[j][clusters[j][i]] -= nodeWeights[i];
+                    nNodesPerCluster[j][clusters[j][i]]--;
+                    clusterWeights[j][newClusters[j]] += nodeWeights[i];
+                    nNodesPerCluster[j][newClusters[j]]++;
+                    clusters[j][i] = newClusters[j];
+                }
+                nMoves++;
+                for (int neighbor : neighbors)
+                    if ((clusters[0][neighbor] != bestCluster) && !inQueue[neighbor])
+                    {
+                        queue[(queueStart + queueSize) % nNodes] = neighbor;
+                        queueSize++;
+                        inQueue[neighbor] = true;
+                    }
+            }
+        }
+        return nMoves;
+    }
+
+    /**
+     * Calculates the increment in the quality value of a clustering at a level
+     * when a node is added to a cluster, after it has been removed from its
+     * current cluster.
+     *
+     * @param cluster              Cluster to which the node is added
+     * @param currentCluster       Current cluster of the node
+     * @param nodeWeight           Weight of the node
+     * @param edgeWeightPerCluster Total edge weight between the node and each
+     *                             cluster
+     * @param clusterWeights       Total node weight of each cluster, including
+     *                             the node for its current cluster
+     * @param resolution           Value of the resolution parameter
+     *
+     * @return Increment in the quality value
+     */
+    private static double calcQualityValueIncrement(int cluster, int currentCluster, double nodeWeight, double[] edgeWeightPerCluster, double[] clusterWeights, double resolution)
+    {
+        double clusterWeight = (cluster == currentCluster) ? clusterWeights[cluster] - nodeWeight : clusterWeights[cluster];
+        return edgeWeightPerCluster[cluster] - nodeWeight * clusterWeight * resolution;
+    }
+
+    /**
+     * Checks whether a node can be moved to a lowest-level cluster without
+     * decreasing the quality at a higher level and without leaving a cluster
+     * at any level with a total node weight below the minimum cluster weight.
+     * Leaving a cluster empty is allowed.
+     *
+     * @param clusters             Cluster numbers of the nodes
+     * @param node                 Node
+     * @param cluster              Lowest-level cluster
+     * @param nodeWeight           Weight of the node
+     * @param clusterWeights       Total node weight of each cluster at each
+     *                             level
+     * @param edgeWeightPerCluster Total edge weight between the node and each
+     *                             cluster at each level
+     * @param nNodesPerCluster     Number of nodes of each cluster at each level
+     * @param parentCluster        Cluster at the level above of each cluster
+     *                             at each level
+     * @param resolutions          Values of the resolution parameter
+     * @param thresholds           Minimum cluster weights
+     *
+     * @return Boolean indicating whether the node can be moved
+     */
+    private static boolean canMoveNode(int[][] clusters, int node, int cluster, double nodeWeight, double[][] clusterWeights, double[][] edgeWeightPerCluster, int[][] nNodesPerCluster, int[][] parentCluster, double[] resolutions, double[] thresholds)
+    {
+        int newCluster = cluster;
+        for (int i = 0; i < clusters.length; i++)
+        {
+            if (i > 0)
+                newCluster = parentCluster[i - 1][newCluster];
+            int currentCluster = clusters[i][node];
+            if (newCluster == currentCluster)
+                break;
+            if ((nNodesPerCluster[i][currentCluster] > 1) && (clusterWeights[i][currentCluster] - nodeWeight < thresholds[i]))
+                return false;
+            if ((i > 0) && (calcQualityValueIncrement(newCluster, currentCluster, nodeWeight, edgeWeightPerCluster[i], clusterWeights[i], resolutions[i]) < calcQualityValueIncrement(currentCluster, currentCluster, nodeWeight, edgeWeightPerCluster[i], clusterWeights[i], resolutions[i])))
+                return false;
+        }
+        return true;
+    }
+}
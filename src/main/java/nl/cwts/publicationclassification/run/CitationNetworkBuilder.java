@@ -0,0 +1,283 @@
+package nl.cwts.publicationclassification.run;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.util.LargeDoubleArray;
+import nl.cwts.util.LargeIntArray;
+
+/**
+ * Builder of a citation network from citation links that are sorted first by
+ * the citing and then by the cited publication number.
+ *
+ * <p>
+ * The number of citation links must be known in advance. The neighbors and
+ * edge weights of the network are stored directly at their final position
+ * while the citation links are read, and the first neighbor index of each
+ * publication is computed from the number of citation links per publication.
+ * Unlike the edge list constructor of {@link Network}, this does not require
+ * a separate edge list, so the peak memory usage is about half as large.
+ * </p>
+ *
+ * <p>
+ * Citation links are added using segments, each covering a consecutive range
+ * of citation links. Different segments can be filled concurrently. By
+ * default, the builder checks that the citation links are sorted, that there
+ * are no duplicate citation links or citation links from a publication to
+ * itself, and the integrity of the resulting network. For trusted input,
+ * these checks can be skipped. Publication numbers are always checked.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+class CitationNetworkBuilder
+{
+    /**
+     * Publication weights.
+     */
+    private double[] pubWeight;
+
+    /**
+     * Number of citation links.
+     */
+    private long nCitLinks;
+
+    /**
+     * Indicates whether the citation links are trusted.
+     */
+    private boolean trustedInput;
+
+    /**
+     * Neighbors of the publications.
+     */
+    private LargeIntArray neighbors;
+
+    /**
+     * Citation link weights.
+     */
+    private LargeDoubleArray citLinkWeights;
+
+    /**
+     * Number of citation links per publication, excluding the citation links
+     * of the first publication of each segment.
+     */
+    private int[] nCitLinksPerPub;
+
+    /**
+     * Segments.
+     */
+    private List<Segment> segments;
+
+    /**
+     * Consecutive range of citation links.
+     */
+    class Segment
+    {
+        /**
+         * Index of the first citation link of the segment.
+         */
+        private long firstCitLink;
+
+        /**
+         * Index after the last citation link of the segment.
+         */
+        private long endCitLink;
+
+        /**
+         * Index of the next citation link.
+         */
+        private long nextCitLink;
+
+        /**
+         * Citing publication of the first citation link.
+         */
+        private int firstPubNo1 = -1;
+
+        /**
+         * Cited publication of the first citation link.
+         */
+        private int firstPubNo2 = -1;
+
+        /**
+         * Number of citation links of the citing publication of the first
+         * citation link.
+         */
+        private int nFirstPubCitLinks;
+
+        /**
+         * Citing publication of the most recent citation link.
+         */
+        private int lastPubNo1 = -1;
+
+        /**
+         * Cited publication of the most recent citation link.
+         */
+        private int lastPubNo2 = -1;
+
+        /**
+         * Number of citation links of the citing publication of the most
+         * recent citation link.
+         */
+        private int nLastPubCitLinks;
+
+        /**
+         * Constructs a segment.
+         *
+         * @param firstCitLink Index of the first citation link of the segment
+         * @param endCitLink   Index after the last citation link of the
+         *                     segment
+         */
+        private Segment(long firstCitLink, long endCitLink)
+        {
+            this.firstCitLink = firstCitLink;
+            this.endCitLink = endCitLink;
+            nextCitLink = firstCitLink;
+        }
+
+        /**
+         * Adds a citation link to the segment.
+         *
+         * @param pubNo1 Citing publication
+         * @param pubNo2 Cited publication
+         * @param weight Citation link weight
+         *
+         * @throws IllegalArgumentException Segment is full, a publication
+         *                                  number is invalid, or the citation
+         *                                  link is not sorted, is a duplicate,
+         *                                  or is a self link.
+         */
+        public void add(int pubNo1, int pubNo2, double weight)
+        {
+            if (nextCitLink == endCitLink)
+                throw new IllegalArgumentException("The number of citation links changed while reading the citation links");
+            if ((pubNo1 < 0) || (pubNo1 >= pubWeight.length) || (pubNo2 < 0) || (pubNo2 >= pubWeight.length))
+                throw new IllegalArgumentException("Publication numbers must be smaller than the number of publications");
+            if (!trustedInput)
+            {
+                if (pubNo1 == pubNo2)
+                    throw new IllegalArgumentException("Citation links from a publication to itself are not allowed");
+                if ((pubNo1 < lastPubNo1) || ((pubNo1 == lastPubNo1) && (pubNo2 <= lastPubNo2)))
+                    throw new IllegalArgumentException("Citation links must be sorted first by the first and then by the second publication number and must be included only once");
+            }
+
+            if (pubNo1 != lastPubNo1)
+            {
+                flush();
+                if (lastPubNo1 < 0)
+                {
+                    firstPubNo1 = pubNo1;
+                    firstPubNo2 = pubNo2;
+                }
+                lastPubNo1 = pubNo1;
+            }
+            lastPubNo2 = pubNo2;
+            nLastPubCitLinks++;
+            neighbors.set(nextCitLink, pubNo2);
+            citLinkWeights.set(nextCitLink, weight);
+            nextCitLink++;
+        }
+
+        /**
+         * Stores the number of citation links of the citing publication of the
+         * most recent citation link. For the first citing publication of the
+         * segment, which may also be the last citing publication of the
+         * previous segment, the number is kept in the segment and is added
+         * when the network is built.
+         */
+        private void flush()
+        {
+            if (nLastPubCitLinks == 0)
+                return;
+            if (lastPubNo1 == firstPubNo1)
+                nFirstPubCitLinks += nLastPubCitLinks;
+            else
+                nCitLinksPerPub[lastPubNo1] += nLastPubCitLinks;
+            nLastPubCitLinks = 0;
+        }
+    }
+
+    /**
+     * Constructs a citation network builder.
+     *
+     * @param pubWeight    Publication weights
+     * @param nCitLinks    Number of citation links
+     * @param trustedInput Indicates whether the checks of the citation links
+     *                     and the integrity of the network are skipped
+     */
+    public CitationNetworkBuilder(double[] pubWeight, long nCitLinks, boolean trustedInput)
+    {
+        this.pubWeight = pubWeight;
+        this.nCitLinks = nCitLinks;
+        this.trustedInput = trustedInput;
+        neighbors = new LargeIntArray(nCitLinks);
+        citLinkWeights = new LargeDoubleArray(nCitLinks);
+        nCitLinksPerPub = new int[pubWeight.length];
+        segments = new ArrayList<Segment>();
+    }
+
+    /**
+     * Creates a segment covering a consecutive range of citation links. The
+     * segments must be created in the order of their citation links, before
+     * any citation links are added.
+     *
+     * @param firstCitLink     Index of the first citation link of the
+     *                         segment
+     * @param nSegmentCitLinks Number of citation links of the segment
+     *
+     * @return Segment
+     *
+     * @throws IllegalArgumentException Segment does not start after the
+     *                                  previous segment or exceeds the
+     *                                  number of citation links.
+     */
+    public Segment createSegment(long firstCitLink, long nSegmentCitLinks)
+    {
+        long previousEndCitLink = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).endCitLink;
+        if ((firstCitLink < previousEndCitLink) || (nSegmentCitLinks < 0) || (firstCitLink + nSegmentCitLinks > nCitLinks))
+            throw new IllegalArgumentException("Segments must cover consecutive ranges of citation links.");
+        Segment segment = new Segment(firstCitLink, firstCitLink + nSegmentCitLinks);
+        segments.add(segment);
+        return segment;
+    }
+
+    /**
+     * Builds the citation network. All segments must have been filled.
+     *
+     * @return Citation network
+     *
+     * @throws IllegalArgumentException Not all citation links have been
+     *                                  added, the citation links in
+     *                                  consecutive segments are not sorted, or
+     *                                  the network does not pass the integrity
+     *                                  checks.
+     */
+    public Network build()
+    {
+        long nAddedCitLinks = 0;
+        Segment previousSegment = null;
+        for (Segment segment : segments)
+        {
+            if (segment.nextCitLink != segment.endCitLink)
+                throw new IllegalArgumentException("The number of citation links changed while reading the citation links.");
+            nAddedCitLinks += segment.endCitLink - segment.firstCitLink;
+            if (segment.firstPubNo1 < 0)
+                continue;
+            segment.flush();
+            if (!trustedInput && (previousSegment != null) && ((segment.firstPubNo1 < previousSegment.lastPubNo1) || ((segment.firstPubNo1 == previousSegment.lastPubNo1) && (segment.firstPubNo2 <= previousSegment.lastPubNo2))))
+                throw new IllegalArgumentException("Citation links must be sorted first by the first and then by the second publication number and must be included only once.");
+            nCitLinksPerPub[segment.firstPubNo1] += segment.nFirstPubCitLinks;
+            previousSegment = segment;
+        }
+        if (nAddedCitLinks != nCitLinks)
+            throw new IllegalArgumentException("The number of citation links changed while reading the citation links.");
+
+        long[] firstNeighborIndices = new long[pubWeight.length + 1];
+        for (int i = 0; i < pubWeight.length; i++)
+            firstNeighborIndices[i + 1] = firstNeighborIndices[i] + nCitLinksPerPub[i];
+        nCitLinksPerPub = null;
+        segments = null;
+
+        return new Network(pubWeight, firstNeighborIndices, neighbors, citLinkWeights, !trustedInput);
+    }
+}
@@ -0,0 +1,785 @@
+package nl.cwts.publicationclassification.run;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.util.LargeDoubleArray;
+import nl.cwts.util.LargeIntArray;
+
+/**
+ * Generator of synthetic citation networks, and command line tool for writing
+ * synthetic citation networks to a publications file and a citation links
+ * file.
+ *
+ * <p>
+ * Publications are organized in a planted hierarchy of micro-level,
+ * meso-level, and macro-level topics. Each publication has a number of
+ * references drawn from a geometric distribution. Each reference is to a
+ * publication in the same micro-level, meso-level, or macro-level topic, or
+ * to an arbitrary publication, with fixed probabilities. Within the chosen
+ * topic, the cited publication is chosen with a probability proportional to
+ * its fitness. Fitness values are drawn from a power-law distribution, so that
+ * the numbers of citations of the publications approximately follow a power
+ * law. The weight of a citation link equals one divided by the number of
+ * references of the citing publication. If two publications cite each other,
+ * the weights are summed. Publication numbers are randomly permuted, so that
+ * publications in the same topic do not have consecutive publication
+ * numbers.
+ * </p>
+ *
+ * <p>
+ * The generated citation network depends only on the parameters and the
+ * random seed, not on the number of threads.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+public class CitationNetworkGenerator
+{
+    /**
+     * Description text.
+     */
+    public static final String DESCRIPTION
+        = "CitationNetworkGenerator version 1.1.0\n"
+          + "By Nees Jan van Eck\n"
+          + "Centre for Science and Technology Studies (CWTS), Leiden University\n";
+
+    /**
+     * Default average number of references per publication.
+     */
+    public static final double DEFAULT_MEAN_N_REFS = 20;
+
+    /**
+     * Default exponent of the power-law distribution of the fitness values.
+     */
+    public static final double DEFAULT_POWER_LAW_EXPONENT = 3;
+
+    /**
+     * Default average number of publications per micro-level topic.
+     */
+    public static final int DEFAULT_N_PUBS_PER_TOPIC = 1000;
+
+    /**
+     * Default number of micro-level topics per meso-level topic and of
+     * meso-level topics per macro-level topic.
+     */
+    public static final int DEFAULT_N_SUBTOPICS = 10;
+
+    /**
+     * Default share of non-core publications.
+     */
+    public static final double DEFAULT_NON_CORE_SHARE = 0.1;
+
+    /**
+     * Usage text.
+     */
+    public static final String USAGE
+        = "Usage: CitationNetworkGenerator [options] <pub_file> <cit_link_file> <n_pubs>\n\n"
+            + "Arguments:\n"
+            + "<pub_file>\n"
+            + "\tName of the publications output file. This text file will have the layout of the\n"
+            + "\tpublications input file of PublicationClassificationCreator.\n"
+            + "<cit_link_file>\n"
+            + "\tName of the citation links output file. This text file will have the layout of the\n"
+            + "\tcitation links input file of PublicationClassificationCreator. Each citation link is\n"
+            + "\tincluded in both directions.\n"
+            + "<n_pubs>\n"
+            + "\tNumber of publications.\n\n"
+            + "Options:\n"
+            + "--mean_n_refs <mean_n_refs>\n"
+            + "\tAverage number of references per publication (default: " + DEFAULT_MEAN_N_REFS + ").\n"
+            + "--power_law_exponent <power_law_exponent>\n"
+            + "\tExponent of the power-law distribution of the numbers of citations of the\n"
+            + "\tpublications. Must be greater than 1 (default: " + DEFAULT_POWER_LAW_EXPONENT + ").\n"
+            + "--n_pubs_per_topic <n_pubs_per_topic>\n"
+            + "\tAverage number of publications per micro-level topic (default: " + DEFAULT_N_PUBS_PER_TOPIC + ").\n"
+            + "--n_subtopics <n_subtopics>\n"
+            + "\tNumber of micro-level topics per meso-level topic and of meso-level topics per\n"
+            + "\tmacro-level topic (default: " + DEFAULT_N_SUBTOPICS + ").\n"
+            + "--non_core_share <non_core_share>\n"
+            + "\tShare of non-core publications (default: " + DEFAULT_NON_CORE_SHARE + ").\n"
+            + "--seed <seed>\n"
+            + "\tSeed of the random number generator (default: 0).\n"
+            + "--n_threads <n_threads>\n"
+            + "\tNumber of threads used for generating the citation network and writing the output\n"
+            + "\tfiles (default: number of available processors). The citation network does not\n"
+            + "\tdepend on the number of threads.\n"
+            + "--topics_file <topics_file>\n"
+            + "\tName of the planted topics output file. This text file will have the layout of the\n"
+            + "\tclassification output file of PublicationClassificationCreator, with the micro-level,\n"
+            + "\tmeso-level, and macro-level topics as cluster numbers.\n";
+
+    /**
+     * Probabilities that a reference is to a publication in the same
+     * micro-level, meso-level, and macro-level topic. The remaining
+     * probability is the probability that a reference is to an arbitrary
+     * publication.
+     */
+    private static final double[] TOPIC_LEVEL_PROBABILITIES = { 0.6, 0.2, 0.1 };
+
+    /**
+     * Scale factor used for representing fitness values as integers.
+     */
+    private static final double FITNESS_SCALE = 1000;
+
+    /**
+     * Maximum fitness value.
+     */
+    private static final double MAX_FITNESS = 1e6;
+
+    /**
+     * Maximum number of references of a publication.
+     */
+    private static final int MAX_N_REFS = 10000;
+
+    /**
+     * Maximum number of attempts to draw a reference that is not a
+     * self-citation or a duplicate reference.
+     */
+    private static final int MAX_N_ATTEMPTS = 10;
+
+    /**
+     * Number of publications per block processed by a single thread.
+     */
+    private static final int N_PUBS_PER_BLOCK = 1 << 14;
+
+    /**
+     * Random stream used for drawing the fitness value, the number of
+     * references, and the core publication indicator of a publication.
+     */
+    private static final int PUB_RANDOM_STREAM = 0;
+
+    /**
+     * Random stream used for drawing the references of a publication.
+     */
+    private static final int REF_RANDOM_STREAM = 1;
+
+    /**
+     * Number of publications.
+     */
+    private int nPubs;
+
+    /**
+     * Average number of references per publication.
+     */
+    private double meanNRefs;
+
+    /**
+     * Exponent of the power-law distribution of the fitness values.
+     */
+    private double powerLawExponent;
+
+    /**
+     * Average number of publications per micro-level topic.
+     */
+    private int nPubsPerTopic;
+
+    /**
+     * Number of micro-level topics per meso-level topic and of meso-level
+     * topics per macro-level topic.
+     */
+    private int nSubtopics;
+
+    /**
+     * Share of non-core publications.
+     */
+    private double nonCoreShare;
+
+    /**
+     * Seed of the random number generator.
+     */
+    private long seed;
+
+    /**
+     * Publication number of each position. Publications in the same topic
+     * have consecutive positions.
+     */
+    private int[] pub;
+
+    /**
+     * First position of each micro-level topic, followed by the number of
+     * publications.
+     */
+    private int[] firstTopicPosition;
+
+    /**
+     * Cumulative fitness values of the positions, scaled by
+     * {@link #FITNESS_SCALE}. The fitness of the publication at position i
+     * equals cumulativeFitness[i + 1] - cumulativeFitness[i].
+     */
+    private long[] cumulativeFitness;
+
+    /**
+     * Number of references drawn for each position.
+     */
+    private int[] nRefsPerPosition;
+
+    /**
+     * This method is called when the tool is started.
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args)
+    {
+        System.out.println(DESCRIPTION);
+        if (args.length == 0)
+        {
+            System.out.print(USAGE);
+            System.exit(-1);
+        }
+
+        // Process command line options.
+        double meanNRefs = DEFAULT_MEAN_N_REFS;
+        double powerLawExponent = DEFAULT_POWER_LAW_EXPONENT;
+        int nPubsPerTopic = DEFAULT_N_PUBS_PER_TOPIC;
+        int nSubtopics = DEFAULT_N_SUBTOPICS;
+        double nonCoreShare = DEFAULT_NON_CORE_SHARE;
+        long seed = 0;
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        String topicsFile = null;
+        int argIndex = 0;
+        while ((argIndex < args.length) && args[argIndex].startsWith("--"))
+        {
+            String option = args[argIndex++];
+            if (argIndex == args.length)
+            {
+                System.err.println("Error while processing command line option " + option + ": Value is missing.\n\n" + USAGE);
+                System.exit(-1);
+            }
+            if (option.equals("--mean_n_refs"))
+                try
+                {
+                    meanNRefs = Double.parseDouble(args[argIndex++]);
+                    if (!(meanNRefs >= 1))
+                        throw new NumberFormatException();
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --mean_n_refs: Value must be a number of at least 1.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--power_law_exponent"))
+                try
+                {
+                    powerLawExponent = Double.parseDouble(args[argIndex++]);
+                    if (!(powerLawExponent > 1))
+                        throw new NumberFormatException();
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --power_law_exponent: Value must be a number greater than 1.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--n_pubs_per_topic"))
+                try
+                {
+                    nPubsPerTopic = Integer.parseInt(args[argIndex++]);
+                    if (nPubsPerTopic <= 0)
+                        throw new NumberFormatException();
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --n_pubs_per_topic: Value must be a positive integer number.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--n_subtopics"))
+                try
+                {
+                    nSubtopics = Integer.parseInt(args[argIndex++]);
+                    if (nSubtopics <= 0)
+                        throw new NumberFormatException();
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --n_subtopics: Value must be a positive integer number.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--non_core_share"))
+                try
+                {
+                    nonCoreShare = Double.parseDouble(args[argIndex++]);
+                    if (!((nonCoreShare >= 0) && (nonCoreShare <= 1)))
+                        throw new NumberFormatException();
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --non_core_share: Value must be a number between 0 and 1.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--seed"))
+                try
+                {
+                    seed = Long.parseLong(args[argIndex++]);
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --seed: Value must be an integer number.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--n_threads"))
+                try
+                {
+                    nThreads = Integer.parseInt(args[argIndex++]);
+                    if (nThreads <= 0)
+                        throw new NumberFormatException();
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --n_threads: Value must be a positive integer number.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--topics_file"))
+                topicsFile = args[argIndex++];
+            else
+            {
+                System.err.println("Error while processing command line option " + option + ": Unknown option.\n\n" + USAGE);
+                System.exit(-1);
+            }
+        }
+
+        // Process command line arguments.
+        if (args.length - argIndex != 3)
+        {
+            System.err.print("Error while processing command line arguments: Incorrect number of command line arguments.\n\n" + USAGE);
+            System.exit(-1);
+        }
+        String pubFile = args[argIndex++];
+        String citLinkFile = args[argIndex++];
+        int nPubs = 0;
+        try
+        {
+            nPubs = Integer.parseInt(args[argIndex++]);
+            if (nPubs <= 0)
+                throw new NumberFormatException();
+        }
+        catch (NumberFormatException e)
+        {
+            System.err.println("Error while processing command line argument <n_pubs>: Value must be a positive integer number.\n\n" + USAGE);
+            System.exit(-1);
+        }
+
+        // Generate citation network.
+        System.out.print("Generating citation network... ");
+        long startTimeGeneration = System.currentTimeMillis();
+        CitationNetworkGenerator generator = new CitationNetworkGenerator(nPubs, meanNRefs, powerLawExponent, nPubsPerTopic, nSubtopics, nonCoreShare, seed);
+        Network citNetwork = generator.generateNetwork(nThreads);
+        System.out.println("Finished!");
+        System.out.println("Generating citation network took " + formatDuration((System.currentTimeMillis() - startTimeGeneration) / 1000) + ".");
+        System.out.println("Citation network:");
+        System.out.println("\tNumber of publications: " + citNetwork.getNNodes());
+        System.out.println("\tNumber of citation links: " + citNetwork.getNEdges());
+        System.out.println("\tTotal publication weight: " + (int) (citNetwork.getTotalNodeWeight() + 0.5));
+        System.out.println("\tTotal citation link weight: " + (int) (citNetwork.getTotalEdgeWeight() + 0.5));
+        System.out.println("\tNumber of topics: " + generator.getNTopics(0) + "/" + generator.getNTopics(1) + "/" + generator.getNTopics(2));
+        System.out.println();
+
+        // Write citation network to files.
+        System.out.print("Writing citation network to files... ");
+        long startTimeWriting = System.currentTimeMillis();
+        FileIO.writeNetwork(citNetwork, pubFile, citLinkFile, nThreads);
+        if (topicsFile != null)
+        {
+            int[] pubNo = new int[nPubs];
+            for (int i = 0; i < nPubs; i++)
+                pubNo[i] = i;
+            FileIO.writeClassification(topicsFile, pubNo, generator.getTopics(), nThreads);
+        }
+        System.out.println("Finished!");
+        System.out.println("Writing citation network to files took " + formatDuration((System.currentTimeMillis() - startTimeWriting) / 1000) + ".");
+    }
+
+    /**
+     * Constructs a citation network generator.
+     *
+     * @param nPubs            Number of publications
+     * @param meanNRefs        Average number of references per publication
+     * @param powerLawExponent Exponent of the power-law distribution of the
+     *                         fitness values
+     * @param nPubsPerTopic    Average number of publications per micro-level
+     *                         topic
+     * @param nSubtopics       Number of micro-level topics per meso-level
+     *                         topic and of meso-level topics per macro-level
+     *                         topic
+     * @param nonCoreShare     Share of non-core publications
+     * @param seed             Seed of the random number generator
+     *
+     * @throws IllegalArgumentException A parameter is out of range.
+     */
+    public CitationNetworkGenerator(int nPubs, double meanNRefs, double powerLawExponent, int nPubsPerTopic, int nSubtopics, double nonCoreShare, long seed)
+    {
+        if (nPubs <= 0)
+            throw new IllegalArgumentException("The number of publications must be positive.");
+        if (!(meanNRefs >= 1))
+            throw new IllegalArgumentException("The average number of references must be at least 1.");
+        if (!(powerLawExponent > 1))
+            throw new IllegalArgumentException("The power-law exponent must be greater than 1.");
+        if ((nPubsPerTopic <= 0) || (nSubtopics <= 0))
+            throw new IllegalArgumentException("The number of publications per topic and the number of subtopics must be positive.");
+        if (!((nonCoreShare >= 0) && (nonCoreShare <= 1)))
+            throw new IllegalArgumentException("The share of non-core publications must be between 0 and 1.");
+
+        this.nPubs = nPubs;
+        this.meanNRefs = meanNRefs;
+        this.powerLawExponent = powerLawExponent;
+        this.nPubsPerTopic = nPubsPerTopic;
+        this.nSubtopics = nSubtopics;
+        this.nonCoreShare = nonCoreShare;
+        this.seed = seed;
+    }
+
+    /**
+     * Constructs a citation network generator with the default parameters.
+     *
+     * @param nPubs Number of publications
+     * @param seed  Seed of the random number generator
+     *
+     * @throws IllegalArgumentException Number of publications is not
+     *                                  positive.
+     */
+    public CitationNetworkGenerator(int nPubs, long seed)
+    {
+        this(nPubs, DEFAULT_MEAN_N_REFS, DEFAULT_POWER_LAW_EXPONENT, DEFAULT_N_PUBS_PER_TOPIC, DEFAULT_N_SUBTOPICS, DEFAULT_NON_CORE_SHARE, seed);
+    }
+
+    /**
+     * Generates a citation network.
+     *
+     * @param nThreads Number of threads
+     *
+     * @return Citation network
+     */
+    public Network generateNetwork(int nThreads)
+    {
+        Random random = new Random(seed);
+
+        // Create micro-level topics with sizes drawn uniformly between half
+        // and one and a half times the average size.
+        int[] firstTopicPosition = new int[nPubs / Math.max(nPubsPerTopic / 2, 1) + 2];
+        int nTopics = 0;
+        int position = 0;
+        while (position < nPubs)
+        {
+            firstTopicPosition[nTopics++] = position;
+            position += Math.max(nPubsPerTopic / 2 + random.nextInt(nPubsPerTopic + 1), 1);
+        }
+        firstTopicPosition[nTopics] = nPubs;
+        this.firstTopicPosition = Arrays.copyOf(firstTopicPosition, nTopics + 1);
+
+        // Randomly permute the publication numbers.
+        pub = new int[nPubs];
+        for (int i = 0; i < nPubs; i++)
+            pub[i] = i;
+        for (int i = nPubs - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            int k = pub[i];
+            pub[i] = pub[j];
+            pub[j] = k;
+        }
+
+        // Draw the fitness value, the number of references, and the core
+        // publication indicator of each publication.
+        cumulativeFitness = new long[nPubs + 1];
+        nRefsPerPosition = new int[nPubs];
+        double[] pubWeight = new double[nPubs];
+        double logNonRefProbability = Math.log(1 - 1 / meanNRefs);
+        runInBlocks(nThreads, i ->
+        {
+            SplittableRandom pubRandom = createRandom(PUB_RANDOM_STREAM, i);
+            double fitness = Math.min(Math.pow(1 - pubRandom.nextDouble(), -1 / (powerLawExponent - 1)), MAX_FITNESS);
+            cumulativeFitness[i + 1] = Math.round(FITNESS_SCALE * fitness);
+            nRefsPerPosition[i] = (meanNRefs > 1) ? 1 + (int)Math.min(Math.floor(Math.log(1 - pubRandom.nextDouble()) / logNonRefProbability), MAX_N_REFS - 1) : 1;
+            pubWeight[pub[i]] = (pubRandom.nextDouble() < nonCoreShare) ? 0 : 1;
+        });
+        Arrays.parallelPrefix(cumulativeFitness, Long::sum);
+
+        // Draw the references and count the number of citation links of each
+        // publication.
+        int[] nRefs = new int[nPubs];
+        AtomicIntegerArray nCitLinks = new AtomicIntegerArray(nPubs);
+        runInBlocks(nThreads, i ->
+        {
+            int[] refs = new int[nRefsPerPosition[i]];
+            int nPubRefs = drawRefs(i, refs);
+            nRefs[pub[i]] = nPubRefs;
+            nCitLinks.addAndGet(pub[i], nPubRefs);
+            for (int k = 0; k < nPubRefs; k++)
+                nCitLinks.incrementAndGet(pub[refs[k]]);
+        });
+        long[] firstNeighborIndices = new long[nPubs + 1];
+        for (int i = 0; i < nPubs; i++)
+        {
+            firstNeighborIndices[i + 1] = firstNeighborIndices[i] + nCitLinks.get(i);
+            nCitLinks.set(i, 0);
+        }
+
+        // Draw the references again and store the citation links in both
+        // directions. Incoming citation links are stored as the bitwise
+        // complement of the citing publication.
+        LargeIntArray neighbors = new LargeIntArray(firstNeighborIndices[nPubs]);
+        runInBlocks(nThreads, i ->
+        {
+            int[] refs = new int[nRefsPerPosition[i]];
+            int nPubRefs = drawRefs(i, refs);
+            int citingPub = pub[i];
+            for (int k = 0; k < nPubRefs; k++)
+            {
+                int citedPub = pub[refs[k]];
+                neighbors.set(firstNeighborIndices[citingPub] + nCitLinks.getAndIncrement(citingPub), citedPub);
+                neighbors.set(firstNeighborIndices[citedPub] + nCitLinks.getAndIncrement(citedPub), ~citingPub);
+            }
+        });
+        nRefsPerPosition = null;
+
+        // Sort the citation links of each publication and count the citation
+        // links that remain after merging the citation links between
+        // publications that cite each other. The sorted citation links are
+        // written back, so that the outgoing and incoming citation link
+        // between two publications are adjacent.
+        int[] nMergedCitLinks = new int[nPubs];
+        runInBlocks(nThreads, i ->
+        {
+            long firstIndex = firstNeighborIndices[i];
+            int nPubCitLinks = (int)(firstNeighborIndices[i + 1] - firstIndex);
+            long[] citLinks = new long[nPubCitLinks];
+            for (int k = 0; k < nPubCitLinks; k++)
+            {
+                int neighbor = neighbors.get(firstIndex + k);
+                citLinks[k] = (neighbor >= 0) ? ((long)neighbor << 1) : (((long)~neighbor << 1) | 1);
+            }
+            Arrays.sort(citLinks);
+            int nPubMergedCitLinks = 0;
+            for (int k = 0; k < nPubCitLinks; k++)
+            {
+                int neighbor = (int)(citLinks[k] >>> 1);
+                neighbors.set(firstIndex + k, ((citLinks[k] & 1) == 0) ? neighbor : ~neighbor);
+                if ((k == 0) || ((int)(citLinks[k - 1] >>> 1) != neighbor))
+                    nPubMergedCitLinks++;
+            }
+            nMergedCitLinks[i] = nPubMergedCitLinks;
+        });
+        long[] firstMergedNeighborIndices = new long[nPubs + 1];
+        for (int i = 0; i < nPubs; i++)
+            firstMergedNeighborIndices[i + 1] = nMergedCitLinks[i];
+        Arrays.parallelPrefix(firstMergedNeighborIndices, Long::sum);
+
+        // Merge the citation links between publications that cite each other,
+        // determine the weights of the citation links, and store them directly
+        // at their final positions.
+        LargeIntArray mergedNeighbors = new LargeIntArray(firstMergedNeighborIndices[nPubs]);
+        LargeDoubleArray edgeWeights = new LargeDoubleArray(firstMergedNeighborIndices[nPubs]);
+        runInBlocks(nThreads, i ->
+        {
+            long index = firstMergedNeighborIndices[i] - 1;
+            int previousNeighbor = -1;
+            for (long k = firstNeighborIndices[i]; k < firstNeighborIndices[i + 1]; k++)
+            {
+                int citLink = neighbors.get(k);
+                int neighbor = (citLink >= 0) ? citLink : ~citLink;
+                double edgeWeight = (citLink >= 0) ? 1.0 / nRefs[i] : 1.0 / nRefs[neighbor];
+                if (neighbor == previousNeighbor)
+                    edgeWeights.set(index, edgeWeights.get(index) + edgeWeight);
+                else
+                {
+                    index++;
+                    mergedNeighbors.set(index, neighbor);
+                    edgeWeights.set(index, edgeWeight);
+                    previousNeighbor = neighbor;
+                }
+            }
+        });
+
+        return new Network(pubWeight, firstMergedNeighborIndices, mergedNeighbors, edgeWeights, false);
+    }
+
+    /**
+     * Returns the number of topics at a level of the planted topic hierarchy.
+     * Must be called after {@link #generateNetwork(int)}.
+     *
+     * @param level Level (0: micro level; 1: meso level; 2: macro level)
+     *
+     * @return Number of topics
+     */
+    public int getNTopics(int level)
+    {
+        int nTopics = firstTopicPosition.length - 1;
+        for (int i = 0; i < level; i++)
+            nTopics = (nTopics + nSubtopics - 1) / nSubtopics;
+        return nTopics;
+    }
+
+    /**
+     * Returns the planted topics of the publications. Must be called after
+     * {@link #generateNetwork(int)}.
+     *
+     * @return Topic numbers (first index: level; second index: publication
+     *         number)
+     */
+    public int[][] getTopics()
+    {
+        int[][] topics = new int[3][nPubs];
+        for (int i = 0; i < firstTopicPosition.length - 1; i++)
+            for (int j = firstTopicPosition[i]; j < firstTopicPosition[i + 1]; j++)
+            {
+                topics[0][pub[j]] = i;
+                topics[1][pub[j]] = i / nSubtopics;
+                topics[2][pub[j]] = i / nSubtopics / nSubtopics;
+            }
+        return topics;
+    }
+
+    /**
+     * Draws the references of the publication at a position. The references
+     * do not include self-citations or duplicate references. If no valid
+     * reference is drawn in {@link #MAX_N_ATTEMPTS} attempts, the reference is
+     * skipped.
+     *
+     * @param position Position
+     * @param refs     Array in which the positions of the referenced
+     *                 publications are stored
+     *
+     * @return Number of references
+     */
+    private int drawRefs(int position, int[] refs)
+    {
+        SplittableRandom refRandom = createRandom(REF_RANDOM_STREAM, position);
+        int topic = Arrays.binarySearch(firstTopicPosition, position);
+        if (topic < 0)
+            topic = -topic - 2;
+        int nRefs = 0;
+        for (int k = 0; k < refs.length; k++)
+            for (int attempt = 0; attempt < MAX_N_ATTEMPTS; attempt++)
+            {
+                // Choose the topic level of the reference.
+                double probability = refRandom.nextDouble();
+                int topicSize = 1;
+                int level = 0;
+                while ((level < TOPIC_LEVEL_PROBABILITIES.length) && (probability >= TOPIC_LEVEL_PROBABILITIES[level]))
+                {
+                    probability -= TOPIC_LEVEL_PROBABILITIES[level];
+                    topicSize *= nSubtopics;
+                    level++;
+                }
+                int firstPosition = 0;
+                int endPosition = nPubs;
+                if (level < TOPIC_LEVEL_PROBABILITIES.length)
+                {
+                    int firstTopic = topic / topicSize * topicSize;
+                    firstPosition = firstTopicPosition[firstTopic];
+                    endPosition = firstTopicPosition[Math.min(firstTopic + topicSize, firstTopicPosition.length - 1)];
+                }
+
+                // Choose the referenced publication with a probability
+                // proportional to its fitness.
+                long fitness = cumulativeFitness[firstPosition] + (long)(refRandom.nextDouble() * (cumulativeFitness[endPosition] - cumulativeFitness[firstPosition]));
+                int ref = Arrays.binarySearch(cumulativeFitness, firstPosition, endPosition + 1, fitness);
+                if (ref < 0)
+                    ref = -ref - 2;
+
+                boolean valid = (ref != position);
+                for (int l = 0; valid && (l < nRefs); l++)
+                    valid = (refs[l] != ref);
+                if (valid)
+                {
+                    refs[nRefs++] = ref;
+                    break;
+                }
+            }
+        return nRefs;
+    }
+
+    /**
+     * Creates a random number generator for a position. The random numbers
+     * depend only on the seed, the random stream, and the position.
+     *
+     * @param stream   Random stream
+     * @param position Position
+     *
+     * @return Random number generator
+     */
+    private SplittableRandom createRandom(int stream, int position)
+    {
+        return new SplittableRandom(mix(mix(seed + stream) + position));
+    }
+
+    /**
+     * Mixes the bits of a value (finalizer of the SplitMix64 random number
+     * generator).
+     *
+     * @param value Value
+     *
+     * @return Mixed value
+     */
+    private static long mix(long value)
+    {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Performs a task for each position. The positions are divided into
+     * blocks, which are processed in parallel.
+     *
+     * @param nThreads Number of threads
+     * @param task     Task
+     */
+    private void runInBlocks(int nThreads, IntConsumer task)
+    {
+        int nBlocks = (nPubs + N_PUBS_PER_BLOCK - 1) / N_PUBS_PER_BLOCK;
+        List<Callable<Void>> blocks = new ArrayList<Callable<Void>>(nBlocks);
+        for (int i = 0; i < nBlocks; i++)
+        {
+            final int firstPosition = i * N_PUBS_PER_BLOCK;
+            final int endPosition = Math.min(firstPosition + N_PUBS_PER_BLOCK, nPubs);
+            blocks.add(() ->
+            {
+                for (int j = firstPosition; j < endPosition; j++)
+                    task.accept(j);
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try
+        {
+            for (Future<Void> future : executor.invokeAll(blocks))
+                future.get();
+        }
+        catch (ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Generating citation network was interrupted.");
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Formats a given duration in seconds.
+     *
+     * @param s Duration in seconds
+     *
+     * @return Formatted duration
+     */
+    private static String formatDuration(long s)
+    {
+        return String.format("%dh %dm %ds", s / 3600, (s % 3600) / 60, (s % 60));
+    }
+}
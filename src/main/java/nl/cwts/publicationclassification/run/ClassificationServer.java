@@ -0,0 +1,879 @@
+package nl.cwts.publicationclassification.run;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import nl.cwts.networkanalysis.Clustering;
+import nl.cwts.networkanalysis.IterativeCPMClusteringAlgorithm;
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.publicationclassification.MultiLevelClustering;
+
+/**
+ * Server that keeps a citation network in memory and creates multi-level
+ * publication classifications on request, and command line tool for starting
+ * the server.
+ *
+ * <p>
+ * The server accepts HTTP requests on the loopback interface only. A request
+ * for a classification is a job that is run on a bounded pool of job
+ * threads. If all job threads are busy and the job queue is full, the request
+ * is rejected. The classification is streamed back in the layout of a
+ * classification file of {@link PublicationClassificationCreator}.
+ * </p>
+ *
+ * <p>
+ * The multi-level clusterings of recent jobs are kept in a cache with one
+ * entry per level. An entry is identified by the resolutions and thresholds
+ * at the level and all lower levels and by the parameters of the Leiden
+ * algorithm. A job whose lower levels are in the cache starts from the cached
+ * levels and their cached reduced networks, as in a parameter sweep of
+ * {@link nl.cwts.publicationclassification.MultiLevelClusteringSweep}. If two
+ * jobs need the same level concurrently, the level is created only once.
+ * </p>
+ *
+ * <p>
+ * As in a parameter sweep, new instances of the Leiden algorithm with fixed
+ * random seeds are used for each level. A job therefore gives the same
+ * classification regardless of the contents of the cache. Without early
+ * stopping, which is not used in sweep mode, this is the same classification
+ * as created by {@link PublicationClassificationCreator} in sweep mode with
+ * the same parameters. At the lowest level, this is also the
+ * classification created by {@link PublicationClassificationCreator} outside
+ * sweep mode. At higher levels, the classification may differ, because
+ * outside sweep mode the same instances of the Leiden algorithm are used at
+ * all levels.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+public class ClassificationServer
+{
+    /**
+     * Description text.
+     */
+    public static final String DESCRIPTION
+        = "ClassificationServer version 1.1.0\n"
+          + "By Nees Jan van Eck\n"
+          + "Centre for Science and Technology Studies (CWTS), Leiden University\n";
+
+    /**
+     * Default port.
+     */
+    public static final int DEFAULT_PORT = 8765;
+
+    /**
+     * Default number of job threads.
+     */
+    public static final int DEFAULT_N_JOB_THREADS = 2;
+
+    /**
+     * Default maximum number of queued jobs.
+     */
+    public static final int DEFAULT_MAX_QUEUED_JOBS = 16;
+
+    /**
+     * Default maximum number of cached levels.
+     */
+    public static final int DEFAULT_MAX_CACHED_LEVELS = 32;
+
+    /**
+     * Usage text.
+     */
+    public static final String USAGE
+        = "Usage: ClassificationServer [options] <pub_file> <cit_link_file> <largest_component>\n\n"
+            + "Arguments:\n"
+            + "<pub_file>\n"
+            + "\tName of the publications input file. This text file must have the layout of the\n"
+            + "\tpublications input file of PublicationClassificationCreator.\n"
+            + "<cit_link_file>\n"
+            + "\tName of the citation links input file. This text file must have the layout of the\n"
+            + "\tcitation links input file of PublicationClassificationCreator.\n"
+            + "<largest_component>\n"
+            + "\tBoolean indicating whether the publication classifications should include only\n"
+            + "\tpublications belonging to the largest connected component of the citation network\n"
+            + "\t('true') or all publications ('false').\n\n"
+            + "Options:\n"
+            + "--port <port>\n"
+            + "\tPort on the loopback interface on which the server accepts requests (default: "
+            + DEFAULT_PORT + ").\n"
+            + "\tIf 0, an available port is chosen. The port is printed when the server has been\n"
+            + "\tstarted.\n"
+            + "--n_jobs <n_jobs>\n"
+            + "\tNumber of classification jobs that are run concurrently (default: " + DEFAULT_N_JOB_THREADS + ").\n"
+            + "--max_queued_jobs <max_queued_jobs>\n"
+            + "\tMaximum number of classification jobs that wait for a job thread (default: "
+            + DEFAULT_MAX_QUEUED_JOBS + ").\n"
+            + "\tRequests that arrive when the queue is full are rejected.\n"
+            + "--max_cached_levels <max_cached_levels>\n"
+            + "\tMaximum number of levels of classifications that are cached together with their\n"
+            + "\treduced networks (default: " + DEFAULT_MAX_CACHED_LEVELS + "). The least recently used levels\n"
+            + "\tare removed from the cache first. Levels that are still being created are never\n"
+            + "\tremoved, so the cache may temporarily hold more levels.\n"
+            + "--network_cache <network_cache_file>\n"
+            + "\tName of a binary network cache file, as for PublicationClassificationCreator.\n"
+            + "--trusted_input <trusted_input>\n"
+            + "\tBoolean indicating whether the citation links input file is trusted to meet the\n"
+            + "\trequirements ('true') or not ('false') (default: 'false'), as for\n"
+            + "\tPublicationClassificationCreator.\n"
+            + "--cit_weights <cit_weights>\n"
+            + "\tMethod used for computing the citation link weights ('direct' or 'extended_direct'),\n"
+            + "\tas for PublicationClassificationCreator.\n"
+            + "--n_threads <n_threads>\n"
+            + "\tNumber of threads used for reading the citation links file (default: number of\n"
+            + "\tavailable processors).\n\n"
+            + "Requests:\n"
+            + "GET /status\n"
+            + "\tReturns a JSON object with the size of the citation network and the numbers of\n"
+            + "\trunning, queued, completed, and failed jobs and of cached levels.\n"
+            + "GET /classify?resolution=<resolutions>&pub_threshold=<pub_thresholds>&n_iterations=<n_iterations>\n"
+            + "\tCreates a publication classification and returns it as tab-separated text with a\n"
+            + "\tcolumn of publication numbers and a column of cluster numbers for each level.\n"
+            + "\t<resolutions> and <pub_thresholds> are comma-separated lists with a value for each\n"
+            + "\tlevel, starting at the lowest level. <n_iterations> is the number of iterations of the\n"
+            + "\tLeiden algorithm. Optional parameters are n_random_starts (default: 1) and\n"
+            + "\tconvergence_epsilon. All parameters have the same meaning as for\n"
+            + "\tPublicationClassificationCreator. The parameters can also be sent in the body of a\n"
+            + "\tPOST request. The numbers of clusters are returned in the X-Number-Of-Clusters header.\n"
+            + "\tWithout convergence_epsilon, the classification is the same as the classification\n"
+            + "\tcreated by PublicationClassificationCreator in sweep mode with the same parameters.\n";
+
+    /**
+     * Citation network.
+     */
+    private Network network;
+
+    /**
+     * Publication numbers of the nodes of the citation network.
+     */
+    private int[] pub;
+
+    /**
+     * Executor of the classification jobs.
+     */
+    private ThreadPoolExecutor jobExecutor;
+
+    /**
+     * Cached multi-level clusterings, in order of their most recent use. The
+     * key identifies the parameters of the highest level of a multi-level
+     * clustering and of all lower levels.
+     */
+    private LinkedHashMap<String, CompletableFuture<MultiLevelClustering>> levelCache;
+
+    /**
+     * Maximum number of cached levels.
+     */
+    private int maxCachedLevels;
+
+    /**
+     * HTTP server (null if the server has not been started).
+     */
+    private HttpServer httpServer;
+
+    /**
+     * Number of the most recently submitted job.
+     */
+    private AtomicInteger jobNo = new AtomicInteger();
+
+    /**
+     * Number of completed jobs.
+     */
+    private AtomicLong nCompletedJobs = new AtomicLong();
+
+    /**
+     * Number of failed jobs.
+     */
+    private AtomicLong nFailedJobs = new AtomicLong();
+
+    /**
+     * Number of levels that were taken from the cache.
+     */
+    private AtomicLong nCacheHits = new AtomicLong();
+
+    /**
+     * Number of levels that were created.
+     */
+    private AtomicLong nCacheMisses = new AtomicLong();
+
+    /**
+     * Constructs a classification server.
+     *
+     * @param network         Citation network
+     * @param pub             Publication numbers of the nodes of the citation
+     *                        network
+     * @param nJobThreads     Number of job threads
+     * @param maxQueuedJobs   Maximum number of queued jobs
+     * @param maxCachedLevels Maximum number of cached levels
+     *
+     * @throws IllegalArgumentException Number of publication numbers is not
+     *                                  equal to the number of nodes, or
+     *                                  number of job threads or maximum number
+     *                                  of queued jobs or cached levels is not
+     *                                  positive.
+     */
+    public ClassificationServer(Network network, int[] pub, int nJobThreads, int maxQueuedJobs, int maxCachedLevels)
+    {
+        if (pub.length != network.getNNodes())
+            throw new IllegalArgumentException("The number of publication numbers must be equal to the number of nodes.");
+        if ((nJobThreads <= 0) || (maxQueuedJobs <= 0) || (maxCachedLevels <= 0))
+            throw new IllegalArgumentException("The number of job threads and the maximum numbers of queued jobs and cached levels must be positive.");
+
+        this.network = network;
+        this.pub = pub;
+        jobExecutor = new ThreadPoolExecutor(nJobThreads, nJobThreads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(maxQueuedJobs));
+        levelCache = new LinkedHashMap<String, CompletableFuture<MultiLevelClustering>>(16, 0.75f, true);
+        this.maxCachedLevels = maxCachedLevels;
+    }
+
+    /**
+     * Starts accepting requests on the loopback interface.
+     *
+     * @param port Port (0 to choose an available port)
+     *
+     * @return Port on which requests are accepted
+     *
+     * @throws IOException The server could not be started.
+     */
+    public synchronized int start(int port) throws IOException
+    {
+        if (httpServer != null)
+            throw new IllegalStateException("The server has already been started.");
+
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/status", this::handleStatusRequest);
+        httpServer.createContext("/classify", this::handleClassifyRequest);
+        httpServer.start();
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests. Running and queued jobs are completed.
+     */
+    public synchronized void stop()
+    {
+        if (httpServer != null)
+            httpServer.stop(0);
+        jobExecutor.shutdown();
+    }
+
+    /**
+     * Creates a multi-level clustering of the citation network.
+     *
+     * <p>
+     * Levels in the cache are reused. Levels that are not in the cache are
+     * created and added to the cache. The returned multi-level clustering may
+     * be shared with other jobs and must not be modified. A level that is still
+     * being created is never removed from the cache, so that other jobs that
+     * need the level wait for it instead of creating it a second time.
+     * </p>
+     *
+     * @param resolutions        Values of the resolution parameter at the
+     *                           levels
+     * @param thresholds         Minimum numbers of publications per cluster
+     *                           at the levels
+     * @param nIterations        Number of iterations of the Leiden algorithm
+     * @param nRandomStarts      Number of random starts
+     * @param convergenceEpsilon Minimum relative improvement in quality per
+     *                           iteration, or {@link
+     *                           MultiLevelClustering#NO_EARLY_STOPPING}
+     *
+     * @return Multi-level clustering
+     *
+     * @throws IllegalArgumentException Parameters are illegal.
+     */
+    public MultiLevelClustering createClustering(double[] resolutions, double[] thresholds, int nIterations, int nRandomStarts, double convergenceEpsilon)
+    {
+        if ((resolutions.length == 0) || (resolutions.length != thresholds.length))
+            throw new IllegalArgumentException("The number of resolutions must be equal to the number of thresholds and must be positive.");
+        if ((nIterations <= 0) || (nRandomStarts <= 0))
+            throw new IllegalArgumentException("The number of iterations and the number of random starts must be positive.");
+
+        MultiLevelClustering multiLevelClustering = null;
+        StringBuilder key = new StringBuilder(nIterations + "," + nRandomStarts + "," + convergenceEpsilon);
+        for (int i = 0; i < resolutions.length; i++)
+        {
+            key.append(';').append(resolutions[i]).append(',').append(thresholds[i]);
+            String levelKey = key.toString();
+            CompletableFuture<MultiLevelClustering> level;
+            boolean createLevel = false;
+            synchronized (levelCache)
+            {
+                level = levelCache.get(levelKey);
+                if (level == null)
+                {
+                    level = new CompletableFuture<MultiLevelClustering>();
+                    levelCache.put(levelKey, level);
+                    createLevel = true;
+                }
+            }
+            if (createLevel)
+            {
+                nCacheMisses.incrementAndGet();
+                try
+                {
+                    level.complete(createLevel(multiLevelClustering, resolutions[i], thresholds[i], nIterations, nRandomStarts, convergenceEpsilon));
+                    synchronized (levelCache)
+                    {
+                        removeLeastRecentlyUsedLevels();
+                    }
+                }
+                catch (RuntimeException | Error e)
+                {
+                    synchronized (levelCache)
+                    {
+                        levelCache.remove(levelKey, level);
+                    }
+                    level.completeExceptionally(e);
+                    throw e;
+                }
+            }
+            else
+                nCacheHits.incrementAndGet();
+            try
+            {
+                multiLevelClustering = level.join();
+            }
+            catch (CompletionException e)
+            {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException)e.getCause();
+                throw e;
+            }
+        }
+        return multiLevelClustering;
+    }
+
+    /**
+     * Removes the least recently used completed levels from the cache until
+     * the number of cached levels no longer exceeds the maximum. Levels that
+     * are still being created are skipped. The caller must hold the lock of
+     * the cache.
+     */
+    private void removeLeastRecentlyUsedLevels()
+    {
+        Iterator<CompletableFuture<MultiLevelClustering>> iterator = levelCache.values().iterator();
+        while ((levelCache.size() > maxCachedLevels) && iterator.hasNext())
+            if (iterator.next().isDone())
+                iterator.remove();
+    }
+
+    /**
+     * Creates a multi-level clustering by adding a level to another
+     * multi-level clustering, which is not modified. The reduced network of
+     * the next level is also created, so that it can be reused by jobs that
+     * add further levels.
+     *
+     * @param previousLevelClustering Multi-level clustering up to the previous
+     *                                level (null for the lowest level)
+     * @param resolution              Value of the resolution parameter
+     * @param threshold               Minimum number of publications per
+     *                                cluster
+     * @param nIterations             Number of iterations of the Leiden
+     *                                algorithm
+     * @param nRandomStarts           Number of random starts
+     * @param convergenceEpsilon      Minimum relative improvement in quality
+     *                                per iteration
+     *
+     * @return Multi-level clustering
+     */
+    private MultiLevelClustering createLevel(MultiLevelClustering previousLevelClustering, double resolution, double threshold, int nIterations, int nRandomStarts, double convergenceEpsilon)
+    {
+        IterativeCPMClusteringAlgorithm[] clusteringAlgorithms = PublicationClassificationCreator.createClusteringAlgorithms(nIterations, nRandomStarts, false, null);
+        MultiLevelClustering multiLevelClustering;
+        if (previousLevelClustering == null)
+        {
+            multiLevelClustering = new MultiLevelClustering(network, clusteringAlgorithms);
+            if (convergenceEpsilon != MultiLevelClustering.NO_EARLY_STOPPING)
+                multiLevelClustering.setConvergenceEpsilon(convergenceEpsilon);
+        }
+        else
+            multiLevelClustering = new MultiLevelClustering(previousLevelClustering, clusteringAlgorithms);
+        multiLevelClustering.addLevel(resolution, threshold);
+        multiLevelClustering.getReducedNetwork(multiLevelClustering.getNLevels());
+        return multiLevelClustering;
+    }
+
+    /**
+     * Handles a status request.
+     *
+     * @param exchange HTTP exchange
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private void handleStatusRequest(HttpExchange exchange) throws IOException
+    {
+        int nCachedLevels;
+        synchronized (levelCache)
+        {
+            nCachedLevels = levelCache.size();
+        }
+        String status = "{\n"
+            + "  \"n_pubs\": " + network.getNNodes() + ",\n"
+            + "  \"n_cit_links\": " + network.getNEdges() + ",\n"
+            + "  \"n_job_threads\": " + jobExecutor.getMaximumPoolSize() + ",\n"
+            + "  \"n_running_jobs\": " + jobExecutor.getActiveCount() + ",\n"
+            + "  \"n_queued_jobs\": " + jobExecutor.getQueue().size() + ",\n"
+            + "  \"n_completed_jobs\": " + nCompletedJobs.get() + ",\n"
+            + "  \"n_failed_jobs\": " + nFailedJobs.get() + ",\n"
+            + "  \"n_cached_levels\": " + nCachedLevels + ",\n"
+            + "  \"n_cache_hits\": " + nCacheHits.get() + ",\n"
+            + "  \"n_cache_misses\": " + nCacheMisses.get() + "\n"
+            + "}\n";
+        sendText(exchange, 200, "application/json", status);
+    }
+
+    /**
+     * Handles a classification request. The request is parsed immediately,
+     * and a job that creates the classification and sends the response is
+     * submitted to the job executor.
+     *
+     * @param exchange HTTP exchange
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private void handleClassifyRequest(HttpExchange exchange) throws IOException
+    {
+        final double[] resolutions;
+        final double[] thresholds;
+        final int nIterations;
+        final int nRandomStarts;
+        final double convergenceEpsilon;
+        try
+        {
+            Map<String, String> parameters = parseParameters(exchange);
+            resolutions = parseDoublesParameter(parameters, "resolution");
+            int[] pubThresholds = parseIntegersParameter(parameters, "pub_threshold", 0);
+            if (resolutions.length != pubThresholds.length)
+                throw new IllegalArgumentException("The number of values of parameters resolution and pub_threshold must be equal.");
+            thresholds = new double[pubThresholds.length];
+            for (int i = 0; i < pubThresholds.length; i++)
+                thresholds[i] = pubThresholds[i];
+            nIterations = parseIntegersParameter(parameters, "n_iterations", 1)[0];
+            nRandomStarts = parameters.containsKey("n_random_starts") ? parseIntegersParameter(parameters, "n_random_starts", 1)[0] : 1;
+            convergenceEpsilon = parameters.containsKey("convergence_epsilon") ? parseDoublesParameter(parameters, "convergence_epsilon")[0] : MultiLevelClustering.NO_EARLY_STOPPING;
+        }
+        catch (IllegalArgumentException e)
+        {
+            sendText(exchange, 400, "text/plain", "Error while processing request: " + e.getMessage() + "\n");
+            return;
+        }
+
+        final int jobNo = this.jobNo.incrementAndGet();
+        try
+        {
+            jobExecutor.execute(() -> runClassifyJob(exchange, jobNo, resolutions, thresholds, nIterations, nRandomStarts, convergenceEpsilon));
+        }
+        catch (RejectedExecutionException e)
+        {
+            sendText(exchange, 503, "text/plain", "Error while processing request: Too many jobs are queued.\n");
+        }
+    }
+
+    /**
+     * Runs a classification job and sends the classification as response.
+     *
+     * @param exchange           HTTP exchange
+     * @param jobNo              Number of the job
+     * @param resolutions        Values of the resolution parameter
+     * @param thresholds         Minimum numbers of publications per cluster
+     * @param nIterations        Number of iterations
+     * @param nRandomStarts      Number of random starts
+     * @param convergenceEpsilon Minimum relative improvement in quality per
+     *                           iteration
+     */
+    private void runClassifyJob(HttpExchange exchange, int jobNo, double[] resolutions, double[] thresholds, int nIterations, int nRandomStarts, double convergenceEpsilon)
+    {
+        long startTime = System.currentTimeMillis();
+        try
+        {
+            int[][] cluster;
+            StringBuilder nClusters = new StringBuilder();
+            try
+            {
+                MultiLevelClustering multiLevelClustering = createClustering(resolutions, thresholds, nIterations, nRandomStarts, convergenceEpsilon);
+                cluster = multiLevelClustering.getAllClusters();
+                for (int i = 0; i < cluster.length; i++)
+                    nClusters.append((i > 0) ? "," : "").append(multiLevelClustering.getNClusters(i));
+            }
+            catch (IllegalArgumentException e)
+            {
+                nFailedJobs.incrementAndGet();
+                sendText(exchange, 400, "text/plain", "Error while creating publication classification: " + e.getMessage() + "\n");
+                return;
+            }
+            catch (RuntimeException | OutOfMemoryError e)
+            {
+                nFailedJobs.incrementAndGet();
+                System.err.println("Error while running job " + jobNo + ": " + e);
+                sendText(exchange, 500, "text/plain", "Error while creating publication classification: " + e + "\n");
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/tab-separated-values");
+            exchange.getResponseHeaders().set("X-Number-Of-Clusters", nClusters.toString());
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream stream = exchange.getResponseBody();
+            FileIO.writeClassification(stream, pub, cluster);
+            stream.close();
+            nCompletedJobs.incrementAndGet();
+            System.out.println("Job " + jobNo + " (resolutions " + toString(resolutions) + ", thresholds " + toString(thresholds) + ") took " + PublicationClassificationCreator.formatDuration((System.currentTimeMillis() - startTime) / 1000) + ".");
+        }
+        catch (IOException e)
+        {
+            // The client has most likely closed the connection.
+            nFailedJobs.incrementAndGet();
+            System.err.println("Error while sending result of job " + jobNo + ": " + e.getMessage());
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Parses the parameters in the query string of a request and, for a POST
+     * request, in the URL-encoded body.
+     *
+     * @param exchange HTTP exchange
+     *
+     * @return Parameters
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static Map<String, String> parseParameters(HttpExchange exchange) throws IOException
+    {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (exchange.getRequestMethod().equalsIgnoreCase("POST"))
+        {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            InputStream stream = exchange.getRequestBody();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = stream.read(buffer)) > 0)
+                body.write(buffer, 0, n);
+            String bodyQuery = new String(body.toByteArray(), StandardCharsets.UTF_8).trim();
+            query = (query == null) ? bodyQuery : query + "&" + bodyQuery;
+        }
+        else if (!exchange.getRequestMethod().equalsIgnoreCase("GET"))
+            throw new IllegalArgumentException("Request method must be GET or POST.");
+
+        Map<String, String> parameters = new HashMap<String, String>();
+        if (query == null)
+            return parameters;
+        for (String parameter : query.split("&"))
+        {
+            if (parameter.isEmpty())
+                continue;
+            int separatorIndex = parameter.indexOf('=');
+            if (separatorIndex < 0)
+                throw new IllegalArgumentException("Value of parameter " + decode(parameter) + " is missing.");
+            parameters.put(decode(parameter.substring(0, separatorIndex)), decode(parameter.substring(separatorIndex + 1)));
+        }
+        return parameters;
+    }
+
+    /**
+     * Decodes a URL-encoded string.
+     *
+     * @param value URL-encoded string
+     *
+     * @return Decoded string
+     */
+    private static String decode(String value)
+    {
+        try
+        {
+            return URLDecoder.decode(value, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parses a parameter with a comma-separated list of non-negative numbers.
+     *
+     * @param parameters Parameters
+     * @param name       Name of the parameter
+     *
+     * @return Numbers
+     *
+     * @throws IllegalArgumentException Parameter is missing or its value is
+     *                                  illegal.
+     */
+    private static double[] parseDoublesParameter(Map<String, String> parameters, String name)
+    {
+        if (!parameters.containsKey(name))
+            throw new IllegalArgumentException("Parameter " + name + " is missing.");
+        try
+        {
+            return PublicationClassificationCreator.parseDoubles(parameters.get(name), 0);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Value of parameter " + name + " must be a non-negative number or a comma-separated list of non-negative numbers.");
+        }
+    }
+
+    /**
+     * Parses a parameter with a comma-separated list of integer numbers.
+     *
+     * @param parameters Parameters
+     * @param name       Name of the parameter
+     * @param minValue   Minimum value
+     *
+     * @return Integer numbers
+     *
+     * @throws IllegalArgumentException Parameter is missing or its value is
+     *                                  illegal.
+     */
+    private static int[] parseIntegersParameter(Map<String, String> parameters, String name, int minValue)
+    {
+        if (!parameters.containsKey(name))
+            throw new IllegalArgumentException("Parameter " + name + " is missing.");
+        try
+        {
+            return PublicationClassificationCreator.parseIntegers(parameters.get(name), minValue);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Value of parameter " + name + " must be an integer number of at least " + minValue + " or a comma-separated list of such numbers.");
+        }
+    }
+
+    /**
+     * Sends a text response.
+     *
+     * @param exchange    HTTP exchange
+     * @param statusCode  HTTP status code
+     * @param contentType Content type
+     * @param text        Text
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static void sendText(HttpExchange exchange, int statusCode, String contentType, String text) throws IOException
+    {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        OutputStream stream = exchange.getResponseBody();
+        stream.write(bytes);
+        stream.close();
+    }
+
+    /**
+     * Formats numbers as a comma-separated list.
+     *
+     * @param values Numbers
+     *
+     * @return Comma-separated list
+     */
+    private static String toString(double[] values)
+    {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < values.length; i++)
+            s.append((i > 0) ? "," : "").append(values[i]);
+        return s.toString();
+    }
+
+    /**
+     * This method is called when the tool is started.
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args)
+    {
+        System.out.println(DESCRIPTION);
+        if (args.length == 0)
+        {
+            System.out.print(USAGE);
+            System.exit(-1);
+        }
+
+        // Process command line options.
+        int port = DEFAULT_PORT;
+        int nJobThreads = DEFAULT_N_JOB_THREADS;
+        int maxQueuedJobs = DEFAULT_MAX_QUEUED_JOBS;
+        int maxCachedLevels = DEFAULT_MAX_CACHED_LEVELS;
+        String networkCacheFile = null;
+        boolean trustedInput = false;
+        String citWeights = null;
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        int argIndex = 0;
+        while ((argIndex < args.length) && args[argIndex].startsWith("--"))
+        {
+            String option = args[argIndex++];
+            if (argIndex == args.length)
+            {
+                System.err.println("Error while processing command line option " + option + ": Value is missing.\n\n" + USAGE);
+                System.exit(-1);
+            }
+            if (option.equals("--port"))
+                try
+                {
+                    port = Integer.parseInt(args[argIndex++]);
+                    if ((port < 0) || (port > 65535))
+                        throw new NumberFormatException();
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --port: Value must be an integer number between 0 and 65535.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--n_jobs"))
+                nJobThreads = parsePositiveIntegerOption(option, args[argIndex++]);
+            else if (option.equals("--max_queued_jobs"))
+                maxQueuedJobs = parsePositiveIntegerOption(option, args[argIndex++]);
+            else if (option.equals("--max_cached_levels"))
+                maxCachedLevels = parsePositiveIntegerOption(option, args[argIndex++]);
+            else if (option.equals("--network_cache"))
+                networkCacheFile = args[argIndex++];
+            else if (option.equals("--trusted_input"))
+            {
+                String value = args[argIndex++];
+                if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false"))
+                {
+                    System.err.println("Error while processing command line option --trusted_input: Value must be a boolean ('true' or 'false').\n\n" + USAGE);
+                    System.exit(-1);
+                }
+                trustedInput = Boolean.parseBoolean(value);
+            }
+            else if (option.equals("--cit_weights"))
+            {
+                citWeights = args[argIndex++];
+                if (!citWeights.equals("direct") && !citWeights.equals("extended_direct"))
+                {
+                    System.err.println("Error while processing command line option --cit_weights: Value must be 'direct' or 'extended_direct'.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            }
+            else if (option.equals("--n_threads"))
+                nThreads = parsePositiveIntegerOption(option, args[argIndex++]);
+            else
+            {
+                System.err.println("Error while processing command line option " + option + ": Unknown option.\n\n" + USAGE);
+                System.exit(-1);
+            }
+        }
+
+        // Process command line arguments.
+        if (args.length - argIndex != 3)
+        {
+            System.err.print("Error while processing command line arguments: Incorrect number of command line arguments.\n\n" + USAGE);
+            System.exit(-1);
+        }
+        String pubFile = args[argIndex++];
+        String citLinkFile = args[argIndex++];
+        if (!args[argIndex].equalsIgnoreCase("true") && !args[argIndex].equalsIgnoreCase("false"))
+        {
+            System.err.println("Error while processing command line argument <largest_component>: Value must be a boolean ('true' or 'false').\n\n" + USAGE);
+            System.exit(-1);
+        }
+        boolean largestComponent = Boolean.parseBoolean(args[argIndex++]);
+
+        // Read citation network from network cache file or file.
+        boolean useNetworkCache = (networkCacheFile != null) && new File(networkCacheFile).exists();
+        String source = useNetworkCache ? "network cache file" : "file";
+        System.out.print("Reading citation network from " + source + "... ");
+        long startTimeCitNetwork = System.currentTimeMillis();
+        Network citNetwork;
+        if (useNetworkCache)
+            citNetwork = FileIO.readNetworkBinary(networkCacheFile);
+        else if (citWeights != null)
+            citNetwork = FileIO.readUnweightedNetwork(pubFile, citLinkFile, nThreads, citWeights.equals("extended_direct"));
+        else
+            citNetwork = FileIO.readNetwork(pubFile, citLinkFile, nThreads, trustedInput);
+        int nPubs = citNetwork.getNNodes();
+        int[] pub = new int[nPubs];
+        for (int i = 0; i < nPubs; i++)
+            pub[i] = i;
+        System.out.println("Finished!");
+        System.out.println("Reading citation network from " + source + " took " + PublicationClassificationCreator.formatDuration((System.currentTimeMillis() - startTimeCitNetwork) / 1000) + ".");
+        if ((networkCacheFile != null) && !useNetworkCache)
+            FileIO.writeNetworkBinary(citNetwork, networkCacheFile);
+
+        if (largestComponent)
+        {
+            // Identify largest connected component in citation network.
+            Clustering clustering = citNetwork.identifyComponents();
+            citNetwork = citNetwork.createSubnetwork(clustering, 0);
+            pub = new int[citNetwork.getNNodes()];
+            int[] cluster = clustering.getClusters();
+            int i = 0;
+            for (int j = 0; j < nPubs; j++)
+                if (cluster[j] == 0)
+                {
+                    pub[i] = j;
+                    i++;
+                }
+        }
+        System.out.println("Citation network:");
+        System.out.println("\tNumber of publications: " + citNetwork.getNNodes());
+        System.out.println("\tNumber of citation links: " + citNetwork.getNEdges());
+        System.out.println();
+
+        // Start server.
+        ClassificationServer server = new ClassificationServer(citNetwork, pub, nJobThreads, maxQueuedJobs, maxCachedLevels);
+        try
+        {
+            port = server.start(port);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while starting server: " + e.getMessage());
+            System.exit(-1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.out.println("Accepting requests on http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port + "/");
+    }
+
+    /**
+     * Parses the value of a command line option that must be a positive
+     * integer number. If the value is not a positive integer number, an error
+     * message is printed and the tool exits.
+     *
+     * @param option Command line option
+     * @param value  Value of the command line option
+     *
+     * @return Positive integer number
+     */
+    private static int parsePositiveIntegerOption(String option, String value)
+    {
+        try
+        {
+            int number = Integer.parseInt(value);
+            if (number <= 0)
+                throw new NumberFormatException();
+            return number;
+        }
+        catch (NumberFormatException e)
+        {
+            System.err.println("Error while processing command line option " + option + ": Value must be a positive integer number.\n\n" + USAGE);
+            System.exit(-1);
+            return 0;
+        }
+    }
+}
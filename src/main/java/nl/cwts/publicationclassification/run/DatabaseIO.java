@@ -6,17 +6,84 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkData;
+import com.microsoft.sqlserver.jdbc.ISQLServerConnection;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
 
 import nl.cwts.networkanalysis.Network;
-import nl.cwts.util.LargeDoubleArray;
-import nl.cwts.util.LargeIntArray;
+import nl.cwts.publicationclassification.IncrementalAssignment;
 
 public class DatabaseIO
 {
+    /**
+     * Class name of the SQL Server JDBC driver.
+     */
+    public static final String SQL_SERVER_DRIVER = "com.microsoft.sqlserver.jdbc.SQLServerDriver";
+
+    /**
+     * Default number of connections used for reading a citation links table.
+     */
+    public static final int DEFAULT_N_CONNECTIONS = 4;
+
+    /**
+     * Default number of rows fetched from the database at once.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 10000;
+
+    /**
+     * Number of ranges per connection into which a citation links table is
+     * partitioned when it is read using multiple connections.
+     */
+    private static final int N_RANGES_PER_CONNECTION = 4;
+
+    /**
+     * Number of buckets of publication numbers per range that are used to
+     * partition a citation links table.
+     */
+    private static final int N_BUCKETS_PER_RANGE = 16;
+
+    /**
+     * Default number of rows per batch when writing a publication
+     * classification to a database table.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Returns the JDBC URL of an SQL Server database. A connection will be made
+     * using integrated authentication.
+     *
+     * @param server   SQL Server server name
+     * @param database Database name
+     *
+     * @return JDBC URL
+     */
+    public static String getSqlServerUrl(String server, String database)
+    {
+        return "jdbc:sqlserver://" + server + ":1433;databaseName=" + database + ";integratedSecurity=true;encrypt=true;trustServerCertificate=true;";
+    }
+
     /**
      * Reads publications and citation links from an SQL Server database table
      * and creates a citation network.
      *
+     * <p>
+     * The citation links are read using {@link #DEFAULT_N_CONNECTIONS}
+     * connections.
+     * </p>
+     *
      * @param server       SQL Server server name
      * @param database     Database name
      * @param pubTable     Name of the publications table
@@ -25,17 +92,83 @@ public class DatabaseIO
      * @return Network
      */
     public static Network readNetwork(String server, String database, String pubTable, String citLinkTable)
+    {
+        return readNetwork(SQL_SERVER_DRIVER, getSqlServerUrl(server, database), pubTable, citLinkTable, DEFAULT_N_CONNECTIONS, DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Reads publications and citation links from a database table and creates
+     * a citation network.
+     *
+     * <p>
+     * The citation links table is partitioned into ranges of publication
+     * numbers in the pub_no1 column with approximately equal numbers of
+     * citation links. The ranges are read in parallel, each connection reading
+     * one range at a time, and the citation links in each range are stored
+     * directly at their final position. The resulting citation network does
+     * not depend on the number of connections.
+     * </p>
+     *
+     * @param driver       Class name of the JDBC driver
+     * @param url          JDBC URL of the database
+     * @param pubTable     Name of the publications table
+     * @param citLinkTable Name of the citation links table
+     * @param nConnections Number of connections used for reading the citation
+     *                     links table
+     * @param fetchSize    Number of rows fetched from the database at once
+     *
+     * @return Network
+     */
+    public static Network readNetwork(String driver, String url, String pubTable, String citLinkTable, int nConnections, int fetchSize)
+    {
+        return readNetwork(driver, url, pubTable, citLinkTable, nConnections, fetchSize, false);
+    }
+
+    /**
+     * Reads publications and citation links from a database table and creates
+     * a citation network.
+     *
+     * <p>
+     * The citation links table is partitioned into ranges of publication
+     * numbers in the pub_no1 column with approximately equal numbers of
+     * citation links. The ranges are read in parallel, each connection reading
+     * one range at a time, and the citation links in each range are stored
+     * directly at their final position in the citation network using a
+     * {@link CitationNetworkBuilder}. No intermediate edge list is created.
+     * The resulting citation network does not depend on the number of
+     * connections.
+     * </p>
+     *
+     * <p>
+     * For trusted input, the checks of the citation links and of the
+     * integrity of the citation network are skipped.
+     * </p>
+     *
+     * @param driver       Class name of the JDBC driver
+     * @param url          JDBC URL of the database
+     * @param pubTable     Name of the publications table
+     * @param citLinkTable Name of the citation links table
+     * @param nConnections Number of connections used for reading the citation
+     *                     links table
+     * @param fetchSize    Number of rows fetched from the database at once
+     * @param trustedInput Indicates whether the citation links table is
+     *                     trusted to meet the requirements
+     *
+     * @return Network
+     */
+    public static Network readNetwork(String driver, String url, String pubTable, String citLinkTable, int nConnections, int fetchSize, boolean trustedInput)
     {
         double[] pubWeight = null;
-        LargeIntArray[] citLink = null;
-        LargeDoubleArray citLinkWeight = null;
+        CitationNetworkBuilder builder = null;
 
         Connection connection = null;
+        ExecutorService executor = null;
         try
         {
-            Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
-            connection = DriverManager.getConnection("jdbc:sqlserver://" + server + ":1433;databaseName=" + database + ";integratedSecurity=true;encrypt=true;trustServerCertificate=true;");
-    
+            Class.forName(driver);
+            connection = DriverManager.getConnection(url);
+            boolean sqlServer = connection.isWrapperFor(ISQLServerConnection.class);
+
             // Read number of publications.
             Statement statement = connection.createStatement();
             ResultSet resultSet = statement.executeQuery("select count(*) from " + pubTable);
@@ -46,6 +179,7 @@ public class DatabaseIO
             // Read publications. Core publications are given a weight of 1 and non-core publications are given a weight of 0.
             pubWeight = new double[nPubs];
             statement = connection.createStatement();
+            statement.setFetchSize(fetchSize);
             resultSet = statement.executeQuery("select pub_no, core_pub from " + pubTable + " order by pub_no");
             for (int i = 0; i < nPubs; i++)
             {
@@ -57,35 +191,39 @@ public class DatabaseIO
             }
             statement.close();
 
-            // Read number of citation links.
-            statement = connection.createStatement();
-            resultSet = statement.executeQuery("select count_big(*) from " + citLinkTable);
-            resultSet.next();
-            long nCitLinks = resultSet.getLong(1);
-            statement.close();
+            // Partition citation links into ranges of publication numbers.
+            final CitLinkRange[] citLinkRange = partitionCitLinks(connection, sqlServer, citLinkTable, nPubs, (nConnections > 1) ? N_RANGES_PER_CONNECTION * nConnections : 1);
+            connection.close();
+            connection = null;
+            long nCitLinks = 0;
+            for (CitLinkRange range : citLinkRange)
+            {
+                range.firstCitLink = nCitLinks;
+                nCitLinks += range.nCitLinks;
+            }
 
-            citLink = new LargeIntArray[2];
-            citLink[0] = new LargeIntArray(nCitLinks);
-            citLink[1] = new LargeIntArray(nCitLinks);
-            citLinkWeight = new LargeDoubleArray(nCitLinks);
+            builder = new CitationNetworkBuilder(pubWeight, nCitLinks, trustedInput);
+            final CitationNetworkBuilder.Segment[] segment = new CitationNetworkBuilder.Segment[citLinkRange.length];
+            for (int i = 0; i < citLinkRange.length; i++)
+                segment[i] = builder.createSegment(citLinkRange[i].firstCitLink, citLinkRange[i].nCitLinks);
 
             // Read citation links.
-            statement = connection.createStatement();
-            resultSet = statement.executeQuery("select pub_no1, pub_no2, cit_weight from " + citLinkTable + " order by pub_no1, pub_no2");
-            for (long i = 0; i < nCitLinks; i++)
+            final AtomicInteger nextRange = new AtomicInteger();
+            if (nConnections == 1)
+                readCitLinkRanges(driver, url, citLinkTable, fetchSize, citLinkRange, nextRange, segment);
+            else
             {
-                resultSet.next();
-                citLink[0].set(i, resultSet.getInt(1));
-                citLink[1].set(i, resultSet.getInt(2));
-                citLinkWeight.set(i, resultSet.getDouble(3));
+                executor = Executors.newFixedThreadPool(nConnections);
+                List<Future<Void>> futures = new ArrayList<Future<Void>>(nConnections);
+                for (int i = 0; i < nConnections; i++)
+                    futures.add(executor.submit(() -> readCitLinkRanges(driver, url, citLinkTable, fetchSize, citLinkRange, nextRange, segment)));
+                for (Future<Void> future : futures)
+                    future.get();
             }
-            statement.close();
-
-            connection.close();
         }
         catch (ClassNotFoundException e)
         {
-            System.err.println("Error while reading from database: SQL Server Driver not found.");
+            System.err.println("Error while reading from database: " + (driver.equals(SQL_SERVER_DRIVER) ? "SQL Server Driver" : "JDBC driver " + driver) + " not found.");
             System.exit(-1);
         }
         catch (SQLException e)
@@ -93,8 +231,20 @@ public class DatabaseIO
             System.err.println("Error while reading from database: " + e.getMessage());
             System.exit(-1);
         }
+        catch (ExecutionException e)
+        {
+            System.err.println("Error while reading from database: " + e.getCause().getMessage());
+            System.exit(-1);
+        }
+        catch (InterruptedException e)
+        {
+            System.err.println("Error while reading from database: Reading was interrupted.");
+            System.exit(-1);
+        }
         finally
         {
+            if (executor != null)
+                executor.shutdownNow();
             if (connection != null)
                 try
                 {
@@ -111,7 +261,7 @@ public class DatabaseIO
         Network citNetwork = null;
         try
         {
-            citNetwork = new Network(pubWeight, citLink, citLinkWeight, true, true);
+            citNetwork = builder.build();
         }
         catch (IllegalArgumentException e)
         {
@@ -125,6 +275,12 @@ public class DatabaseIO
     /**
      * Writes a publication classification to an SQL Server database table.
      *
+     * <p>
+     * The classification is loaded using batched insert statements, in
+     * batches of {@link #DEFAULT_BATCH_SIZE} rows, without a table lock. All
+     * rows are committed in a single transaction. No index is created.
+     * </p>
+     *
      * @param server              SQL Server server name
      * @param database            Database name
      * @param classificationTable Name of the classification table
@@ -133,12 +289,48 @@ public class DatabaseIO
      * @param level               Level labels
      */
     public static void writeClassification(String server, String database, String classificationTable, int[] pub, int[][] cluster, String[] level)
+    {
+        writeClassification(SQL_SERVER_DRIVER, getSqlServerUrl(server, database), classificationTable, pub, cluster, level, false, DEFAULT_BATCH_SIZE, false, false);
+    }
+
+    /**
+     * Writes a publication classification to a database table.
+     *
+     * <p>
+     * If bulk copy is used, rows are streamed directly from the publication
+     * and cluster number arrays to the server. Bulk copy is supported only for
+     * SQL Server databases. If bulk copy is requested for another database, an
+     * error message is printed and the tool exits. Each batch of a bulk copy
+     * is committed separately. Otherwise, rows are inserted using batched
+     * insert statements, and all rows are committed in a single transaction.
+     * If requested, a primary key on the publication numbers is created after
+     * all rows have been loaded.
+     * </p>
+     *
+     * @param driver              Class name of the JDBC driver
+     * @param url                 JDBC URL of the database
+     * @param classificationTable Name of the classification table
+     * @param pub                 Publication numbers
+     * @param cluster             Cluster numbers
+     * @param level               Level labels
+     * @param bulkCopy            Indicates whether to use bulk copy instead of
+     *                            batched insert statements
+     * @param batchSize           Number of rows per batch
+     * @param tableLock           Indicates whether to lock the table while
+     *                            loading
+     * @param createIndex         Indicates whether to create a primary key on
+     *                            the publication numbers after loading
+     */
+    public static void writeClassification(String driver, String url, String classificationTable, int[] pub, int[][] cluster, String[] level, boolean bulkCopy, int batchSize, boolean tableLock, boolean createIndex)
     {
         Connection connection = null;
         try
         {
-            Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
-            connection = DriverManager.getConnection("jdbc:sqlserver://" + server + ":1433;databaseName=" + database + ";integratedSecurity=true;encrypt=true;trustServerCertificate=true;");
+            Class.forName(driver);
+            connection = DriverManager.getConnection(url);
+            boolean sqlServer = connection.isWrapperFor(ISQLServerConnection.class);
+            if (bulkCopy && !sqlServer)
+                throw new SQLException("Bulk copy is supported only for SQL Server databases. Use batched insert statements instead.");
 
             String query = "create table " + classificationTable + "(pub_no int not null";
             int nLevels = cluster.length;
@@ -150,30 +342,53 @@ public class DatabaseIO
             statement.executeUpdate(query);
             statement.close();
 
-            query = "insert into " + classificationTable + " values (?";
-            for (int i = 0; i < nLevels; i++)
-                query += ", ?";
-            query += ")";
-            connection.setAutoCommit(false);
-            PreparedStatement preparedStatement = connection.prepareStatement(query);
-            for (int i = 0; i < pub.length; i++)
+            if (bulkCopy)
+            {
+                SQLServerBulkCopyOptions bulkCopyOptions = new SQLServerBulkCopyOptions();
+                bulkCopyOptions.setBatchSize(batchSize);
+                bulkCopyOptions.setTableLock(tableLock);
+                bulkCopyOptions.setBulkCopyTimeout(0);
+                SQLServerBulkCopy sqlServerBulkCopy = new SQLServerBulkCopy(connection);
+                sqlServerBulkCopy.setDestinationTableName(classificationTable);
+                sqlServerBulkCopy.setBulkCopyOptions(bulkCopyOptions);
+                sqlServerBulkCopy.writeToServer(new ClassificationBulkData(pub, cluster, level));
+                sqlServerBulkCopy.close();
+            }
+            else
+            {
+                query = "insert into " + classificationTable + ((tableLock && sqlServer) ? " with (tablock)" : "") + " values (?";
+                for (int i = 0; i < nLevels; i++)
+                    query += ", ?";
+                query += ")";
+                connection.setAutoCommit(false);
+                PreparedStatement preparedStatement = connection.prepareStatement(query);
+                for (int i = 0; i < pub.length; i++)
+                {
+                    preparedStatement.setInt(1, pub[i]);
+                    for (int j = 0; j < nLevels; j++)
+                        preparedStatement.setInt(j + 2, cluster[j][i]);
+                    preparedStatement.addBatch();
+                    if ((i + 1) % batchSize == 0)
+                        preparedStatement.executeBatch();
+                }
+                preparedStatement.executeBatch();
+                preparedStatement.close();
+                connection.commit();
+                connection.setAutoCommit(true);
+            }
+
+            if (createIndex)
             {
-                preparedStatement.setInt(1, pub[i]);
-                for (int j = 0; j < nLevels; j++)
-                    preparedStatement.setInt(j + 2, cluster[j][i]);
-                preparedStatement.addBatch();
-                if ((i + 1) % 1000 == 0)
-                    preparedStatement.executeBatch();
+                statement = connection.createStatement();
+                statement.executeUpdate("alter table " + classificationTable + " add primary key (pub_no)");
+                statement.close();
             }
-            preparedStatement.executeBatch();
-            preparedStatement.close();
-            connection.commit();
 
             connection.close();
         }
         catch (ClassNotFoundException e)
         {
-            System.err.println("Error while writing publication classification to database: SQL Server Driver not found.");
+            System.err.println("Error while writing publication classification to database: " + (driver.equals(SQL_SERVER_DRIVER) ? "SQL Server Driver" : "JDBC driver " + driver) + " not found.");
             System.exit(-1);
         }
         catch (SQLException e)
@@ -195,4 +410,353 @@ public class DatabaseIO
                 }
         }
     }
+
+    /**
+     * Reads a publication classification from a database table.
+     *
+     * <p>
+     * The table must have the layout written by {@link
+     * #writeClassification(String, String, String, int[], int[][], String[],
+     * boolean, int, boolean, boolean)}. Publications with a publication number
+     * of at least the number of publications are ignored.
+     * </p>
+     *
+     * @param driver              Class name of the JDBC driver
+     * @param url                 JDBC URL of the database
+     * @param classificationTable Name of the classification table
+     * @param level               Names of the levels
+     * @param nPubs               Number of publications
+     * @param fetchSize           Number of rows fetched from the database at
+     *                            once
+     *
+     * @return Cluster numbers (first index: level; second index: publication
+     *         number), with {@link IncrementalAssignment#UNASSIGNED} for
+     *         publications that are not in the table
+     */
+    public static int[][] readClassification(String driver, String url, String classificationTable, String[] level, int nPubs, int fetchSize)
+    {
+        int nLevels = level.length;
+        int[][] cluster = new int[nLevels][nPubs];
+        for (int i = 0; i < nLevels; i++)
+            Arrays.fill(cluster[i], IncrementalAssignment.UNASSIGNED);
+
+        Connection connection = null;
+        try
+        {
+            Class.forName(driver);
+            connection = DriverManager.getConnection(url);
+
+            String query = "select pub_no";
+            for (int i = 0; i < nLevels; i++)
+                query += ", " + level[i] + "_cluster_no";
+            query += " from " + classificationTable;
+            Statement statement = connection.createStatement();
+            statement.setFetchSize(fetchSize);
+            ResultSet resultSet = statement.executeQuery(query);
+            while (resultSet.next())
+            {
+                int pubNo = resultSet.getInt(1);
+                if ((pubNo >= 0) && (pubNo < nPubs))
+                    for (int i = 0; i < nLevels; i++)
+                        cluster[i][pubNo] = resultSet.getInt(i + 2);
+            }
+            statement.close();
+        }
+        catch (ClassNotFoundException e)
+        {
+            System.err.println("Error while reading from database: " + (driver.equals(SQL_SERVER_DRIVER) ? "SQL Server Driver" : "JDBC driver " + driver) + " not found.");
+            System.exit(-1);
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Error while reading from database: " + e.getMessage());
+            System.exit(-1);
+        }
+        finally
+        {
+            if (connection != null)
+                try
+                {
+                    connection.close();
+                }
+                catch (SQLException e)
+                {
+                    System.err.println("Error while reading from database: " + e.getMessage());
+                    System.exit(-1);
+                }
+        }
+
+        return cluster;
+    }
+
+    /**
+     * Partitions the citation links in a citation links table into ranges of
+     * publication numbers in the pub_no1 column with approximately equal
+     * numbers of citation links.
+     *
+     * @param connection   Connection
+     * @param sqlServer    Indicates whether the database is an SQL Server
+     *                     database
+     * @param citLinkTable Name of the citation links table
+     * @param nPubs        Number of publications
+     * @param nRanges      Maximum number of ranges
+     *
+     * @return Ranges of publication numbers
+     *
+     * @throws SQLException A database error occurred.
+     */
+    private static CitLinkRange[] partitionCitLinks(Connection connection, boolean sqlServer, String citLinkTable, int nPubs, int nRanges) throws SQLException
+    {
+        String countFunction = sqlServer ? "count_big(*)" : "count(*)";
+        List<CitLinkRange> citLinkRange = new ArrayList<CitLinkRange>();
+        Statement statement = connection.createStatement();
+        if ((nRanges == 1) || (nPubs < N_BUCKETS_PER_RANGE * nRanges))
+        {
+            // Use a single range.
+            ResultSet resultSet = statement.executeQuery("select " + countFunction + " from " + citLinkTable);
+            resultSet.next();
+            citLinkRange.add(new CitLinkRange(Integer.MIN_VALUE, Integer.MAX_VALUE, resultSet.getLong(1)));
+        }
+        else
+        {
+            // Count citation links in buckets of publication numbers and then
+            // merge consecutive buckets into ranges.
+            int nBuckets = N_BUCKETS_PER_RANGE * nRanges;
+            int bucketSize = (nPubs + nBuckets - 1) / nBuckets;
+            long[] nCitLinksPerBucket = new long[nBuckets];
+            long nCitLinks = 0;
+            ResultSet resultSet = statement.executeQuery("select pub_no1 / " + bucketSize + ", " + countFunction + " from " + citLinkTable + " group by pub_no1 / " + bucketSize);
+            while (resultSet.next())
+            {
+                int bucket = Math.min(Math.max(resultSet.getInt(1), 0), nBuckets - 1);
+                nCitLinksPerBucket[bucket] += resultSet.getLong(2);
+                nCitLinks += resultSet.getLong(2);
+            }
+            long nCitLinksPerRange = Math.max(nCitLinks / nRanges, 1);
+            int startBucket = 0;
+            long nRangeCitLinks = 0;
+            for (int i = 0; i < nBuckets; i++)
+            {
+                nRangeCitLinks += nCitLinksPerBucket[i];
+                if ((nRangeCitLinks >= nCitLinksPerRange) || (i == nBuckets - 1))
+                {
+                    int minPubNo = (startBucket == 0) ? Integer.MIN_VALUE : startBucket * bucketSize;
+                    int maxPubNo = (i == nBuckets - 1) ? Integer.MAX_VALUE : (i + 1) * bucketSize - 1;
+                    citLinkRange.add(new CitLinkRange(minPubNo, maxPubNo, nRangeCitLinks));
+                    startBucket = i + 1;
+                    nRangeCitLinks = 0;
+                }
+            }
+        }
+        statement.close();
+        return citLinkRange.toArray(new CitLinkRange[citLinkRange.size()]);
+    }
+
+    /**
+     * Reads ranges of citation links from a citation links table using a new
+     * connection. Ranges are taken one at a time until all ranges have been
+     * read.
+     *
+     * @param driver        Class name of the JDBC driver
+     * @param url           JDBC URL of the database
+     * @param citLinkTable  Name of the citation links table
+     * @param fetchSize     Number of rows fetched from the database at once
+     * @param citLinkRange  Ranges of publication numbers
+     * @param nextRange     Index of the next range to be read
+     * @param segment       Segments of the citation network, one for each
+     *                      range
+     *
+     * @return Null
+     *
+     * @throws SQLException A database error occurred or the citation links
+     *                      are invalid.
+     */
+    private static Void readCitLinkRanges(String driver, String url, String citLinkTable, int fetchSize, CitLinkRange[] citLinkRange, AtomicInteger nextRange, CitationNetworkBuilder.Segment[] segment) throws SQLException
+    {
+        Connection connection = DriverManager.getConnection(url);
+        try
+        {
+            int rangeIndex;
+            while ((rangeIndex = nextRange.getAndIncrement()) < citLinkRange.length)
+            {
+                CitLinkRange range = citLinkRange[rangeIndex];
+                String query = "select pub_no1, pub_no2, cit_weight from " + citLinkTable;
+                if (range.minPubNo > Integer.MIN_VALUE)
+                    query += " where pub_no1 >= " + range.minPubNo;
+                if (range.maxPubNo < Integer.MAX_VALUE)
+                    query += ((range.minPubNo > Integer.MIN_VALUE) ? " and" : " where") + " pub_no1 <= " + range.maxPubNo;
+                query += " order by pub_no1, pub_no2";
+                Statement statement = connection.createStatement();
+                statement.setFetchSize(fetchSize);
+                ResultSet resultSet = statement.executeQuery(query);
+                long nRangeCitLinks = 0;
+                while (resultSet.next())
+                {
+                    if (nRangeCitLinks == range.nCitLinks)
+                        throw new SQLException("The number of citation links changed while reading the citation links table.");
+                    int pubNo1 = resultSet.getInt(1);
+                    int pubNo2 = resultSet.getInt(2);
+                    try
+                    {
+                        segment[rangeIndex].add(pubNo1, pubNo2, resultSet.getDouble(3));
+                    }
+                    catch (IllegalArgumentException e)
+                    {
+                        throw new SQLException(e.getMessage() + " (pub_no1 = " + pubNo1 + ", pub_no2 = " + pubNo2 + ").");
+                    }
+                    nRangeCitLinks++;
+                }
+                if (nRangeCitLinks != range.nCitLinks)
+                    throw new SQLException("The number of citation links changed while reading the citation links table.");
+                statement.close();
+            }
+        }
+        finally
+        {
+            connection.close();
+        }
+        return null;
+    }
+
+    /**
+     * Range of publication numbers in the pub_no1 column of a citation links
+     * table.
+     */
+    private static class CitLinkRange
+    {
+        /**
+         * Lowest publication number in the range.
+         */
+        private int minPubNo;
+
+        /**
+         * Highest publication number in the range.
+         */
+        private int maxPubNo;
+
+        /**
+         * Number of citation links in the range.
+         */
+        private long nCitLinks;
+
+        /**
+         * Index of the first citation link in the range.
+         */
+        private long firstCitLink;
+
+        /**
+         * Constructs a range of publication numbers.
+         *
+         * @param minPubNo  Lowest publication number in the range
+         * @param maxPubNo  Highest publication number in the range
+         * @param nCitLinks Number of citation links in the range
+         */
+        public CitLinkRange(int minPubNo, int maxPubNo, long nCitLinks)
+        {
+            this.minPubNo = minPubNo;
+            this.maxPubNo = maxPubNo;
+            this.nCitLinks = nCitLinks;
+        }
+    }
+
+    /**
+     * Publication classification that can be streamed to an SQL Server
+     * database table using bulk copy. Rows are read directly from the
+     * publication and cluster number arrays.
+     */
+    private static class ClassificationBulkData implements ISQLServerBulkData
+    {
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Publication numbers.
+         */
+        private int[] pub;
+
+        /**
+         * Cluster numbers.
+         */
+        private int[][] cluster;
+
+        /**
+         * Column names.
+         */
+        private String[] columnName;
+
+        /**
+         * Index of the current row.
+         */
+        private int row;
+
+        /**
+         * Constructs a publication classification for bulk copy.
+         *
+         * @param pub     Publication numbers
+         * @param cluster Cluster numbers
+         * @param level   Level labels
+         */
+        public ClassificationBulkData(int[] pub, int[][] cluster, String[] level)
+        {
+            this.pub = pub;
+            this.cluster = cluster;
+            columnName = new String[cluster.length + 1];
+            columnName[0] = "pub_no";
+            for (int i = 0; i < cluster.length; i++)
+                columnName[i + 1] = level[i] + "_cluster_no";
+            row = -1;
+        }
+
+        @Override
+        public Set<Integer> getColumnOrdinals()
+        {
+            Set<Integer> columnOrdinals = new LinkedHashSet<Integer>();
+            for (int i = 1; i <= columnName.length; i++)
+                columnOrdinals.add(i);
+            return columnOrdinals;
+        }
+
+        @Override
+        public String getColumnName(int column)
+        {
+            return columnName[column - 1];
+        }
+
+        @Override
+        public int getColumnType(int column)
+        {
+            return Types.INTEGER;
+        }
+
+        @Override
+        public int getPrecision(int column)
+        {
+            return 0;
+        }
+
+        @Override
+        public int getScale(int column)
+        {
+            return 0;
+        }
+
+        @Override
+        public Object[] getRowData()
+        {
+            Object[] rowData = new Object[columnName.length];
+            rowData[0] = pub[row];
+            for (int i = 0; i < cluster.length; i++)
+                rowData[i + 1] = cluster[i][row];
+            return rowData;
+        }
+
+        @Override
+        public boolean next()
+        {
+            row++;
+            return row < pub.length;
+        }
+    }
 }
@@ -0,0 +1,381 @@
+package nl.cwts.publicationclassification.run;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.util.LargeDoubleArray;
+import nl.cwts.util.LargeIntArray;
+
+/**
+ * Computation of direct citation and extended direct citation link weights.
+ *
+ * <p>
+ * A citation network is created from unweighted citation pairs, each
+ * consisting of a citing and a cited publication. Duplicate pairs and pairs in
+ * which a publication cites itself are ignored. In the direct citation
+ * approach, only citation links between core publications are used. In the
+ * extended direct citation approach, non-core publications that have citation
+ * links with at least two core publications are also included, together with
+ * their citation links with core publications. Citation links between two
+ * non-core publications are never used.
+ * </p>
+ *
+ * <p>
+ * Each citing publication distributes a total weight of one equally over its
+ * used references, so the weight of a citation link equals one divided by the
+ * number of used references of the citing publication. If two publications
+ * cite each other, the weights of the two citation links are added up.
+ * Publications that are not included keep their publication number but have
+ * no citation links. Core publications have a weight of one and non-core
+ * publications have a weight of zero.
+ * </p>
+ *
+ * <p>
+ * The computation consists of parallel passes over primitive arrays. The
+ * citation pairs are first grouped by citing publication. The number of
+ * citation links of each publication is then determined exactly, counting
+ * publications that cite each other only once, so that the weighted citation
+ * links can be stored in both directions directly in the arrays of the
+ * citation network.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+public class DirectCitationWeighting
+{
+    /**
+     * Number of citation pairs or publications processed by a single task.
+     */
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /**
+     * Action performed on a block of citation pairs or publications.
+     */
+    private static interface BlockAction
+    {
+        /**
+         * Performs the action.
+         *
+         * @param from Index of the first element of the block
+         * @param to   Index after the last element of the block
+         */
+        void apply(long from, long to);
+    }
+
+    /**
+     * Creates a citation network using direct citation or extended direct
+     * citation link weights.
+     *
+     * @param corePub   Indicates for each publication whether it is a core
+     *                  publication
+     * @param citingPub Citing publication of each citation pair
+     * @param citedPub  Cited publication of each citation pair
+     * @param extended  Indicates whether the extended direct citation approach
+     *                  is used
+     * @param nThreads  Number of threads
+     *
+     * @return Citation network
+     *
+     * @throws IllegalArgumentException Numbers of citing and cited
+     *                                  publications differ, or a publication
+     *                                  number is invalid.
+     */
+    public static Network createNetwork(boolean[] corePub, LargeIntArray citingPub, LargeIntArray citedPub, boolean extended, int nThreads)
+    {
+        if (citedPub.size() != citingPub.size())
+            throw new IllegalArgumentException("The number of citing publications must be equal to the number of cited publications.");
+        ForkJoinPool pool = new ForkJoinPool(nThreads);
+        try
+        {
+            return createNetwork(pool, corePub, citingPub, citedPub, extended);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates a citation network using direct citation or extended direct
+     * citation link weights, using the threads of a fork-join pool.
+     *
+     * @param pool      Fork-join pool
+     * @param corePub   Indicates for each publication whether it is a core
+     *                  publication
+     * @param citingPub Citing publication of each citation pair
+     * @param citedPub  Cited publication of each citation pair
+     * @param extended  Indicates whether the extended direct citation approach
+     *                  is used
+     *
+     * @return Citation network
+     *
+     * @throws IllegalArgumentException A publication number is invalid.
+     */
+    private static Network createNetwork(ForkJoinPool pool, boolean[] corePub, LargeIntArray citingPub, LargeIntArray citedPub, boolean extended)
+    {
+        int nPubs = corePub.length;
+        long nPairs = citingPub.size();
+
+        // Group the cited publications by citing publication, ignoring self
+        // citations.
+        AtomicIntegerArray nRefsPerPub = new AtomicIntegerArray(nPubs);
+        forEachBlock(pool, nPairs, (from, to) ->
+        {
+            for (long i = from; i < to; i++)
+            {
+                int pubNo1 = citingPub.get(i);
+                int pubNo2 = citedPub.get(i);
+                if ((pubNo1 < 0) || (pubNo1 >= nPubs) || (pubNo2 < 0) || (pubNo2 >= nPubs))
+                    throw new IllegalArgumentException("Publication numbers must be smaller than the number of publications.");
+                if (pubNo1 != pubNo2)
+                    nRefsPerPub.incrementAndGet(pubNo1);
+            }
+        });
+        long[] firstRef = new long[nPubs + 1];
+        for (int i = 0; i < nPubs; i++)
+            firstRef[i + 1] = firstRef[i] + nRefsPerPub.get(i);
+        AtomicLongArray nextRef = new AtomicLongArray(firstRef);
+        LargeIntArray refs = new LargeIntArray(firstRef[nPubs]);
+        forEachBlock(pool, nPairs, (from, to) ->
+        {
+            for (long i = from; i < to; i++)
+            {
+                int pubNo1 = citingPub.get(i);
+                int pubNo2 = citedPub.get(i);
+                if (pubNo1 != pubNo2)
+                    refs.set(nextRef.getAndIncrement(pubNo1), pubNo2);
+            }
+        });
+
+        // Sort the references of each publication and remove duplicates.
+        int[] nDistinctRefs = new int[nPubs];
+        forEachBlock(pool, nPubs, (from, to) ->
+        {
+            for (int i = (int)from; i < to; i++)
+            {
+                int[] pubRefs = getRange(refs, firstRef[i], firstRef[i + 1]);
+                Arrays.sort(pubRefs);
+                int n = 0;
+                for (int j = 0; j < pubRefs.length; j++)
+                    if ((j == 0) || (pubRefs[j] != pubRefs[j - 1]))
+                        refs.set(firstRef[i] + n++, pubRefs[j]);
+                nDistinctRefs[i] = n;
+            }
+        });
+
+        // Determine the publications that are included. In the extended
+        // direct citation approach, these are the core publications and the
+        // non-core publications with citation links with at least two core
+        // publications. A core publication and a non-core publication that
+        // cite each other are counted once, when the references of the
+        // non-core publication are processed.
+        boolean[] includedPub = corePub.clone();
+        if (extended)
+        {
+            AtomicIntegerArray nCoreLinks = new AtomicIntegerArray(nPubs);
+            forEachBlock(pool, nPubs, (from, to) ->
+            {
+                for (int i = (int)from; i < to; i++)
+                {
+                    int nCoreRefs = 0;
+                    for (long j = firstRef[i]; j < firstRef[i] + nDistinctRefs[i]; j++)
+                    {
+                        int pubNo2 = refs.get(j);
+                        if (corePub[i] && !corePub[pubNo2] && !cites(pubNo2, i, refs, firstRef, nDistinctRefs))
+                            nCoreLinks.incrementAndGet(pubNo2);
+                        else if (!corePub[i] && corePub[pubNo2])
+                            nCoreRefs++;
+                    }
+                    if (nCoreRefs > 0)
+                        nCoreLinks.addAndGet(i, nCoreRefs);
+                }
+            });
+            for (int i = 0; i < nPubs; i++)
+                if (!corePub[i] && (nCoreLinks.get(i) >= 2))
+                    includedPub[i] = true;
+        }
+
+        // Count the used references of each publication and the number of
+        // citation links of each publication in both directions. Publications
+        // that cite each other have a single citation link, which is counted
+        // for the publication with the lowest publication number.
+        int[] nUsedRefs = new int[nPubs];
+        AtomicIntegerArray nLinksPerPub = new AtomicIntegerArray(nPubs);
+        forEachBlock(pool, nPubs, (from, to) ->
+        {
+            for (int i = (int)from; i < to; i++)
+                if (includedPub[i])
+                {
+                    int n = 0;
+                    int nLinks = 0;
+                    for (long j = firstRef[i]; j < firstRef[i] + nDistinctRefs[i]; j++)
+                    {
+                        int pubNo2 = refs.get(j);
+                        if (isUsedLink(i, pubNo2, corePub, includedPub))
+                        {
+                            if ((i < pubNo2) || !cites(pubNo2, i, refs, firstRef, nDistinctRefs))
+                            {
+                                nLinksPerPub.incrementAndGet(pubNo2);
+                                nLinks++;
+                            }
+                            n++;
+                        }
+                    }
+                    nUsedRefs[i] = n;
+                    nLinksPerPub.addAndGet(i, nLinks);
+                }
+        });
+        long[] firstNeighborIndices = new long[nPubs + 1];
+        for (int i = 0; i < nPubs; i++)
+            firstNeighborIndices[i + 1] = firstNeighborIndices[i] + nLinksPerPub.get(i);
+
+        // Store the weighted citation links in both directions. The weights
+        // of publications that cite each other are added up.
+        AtomicLongArray nextNeighbor = new AtomicLongArray(firstNeighborIndices);
+        LargeIntArray neighbors = new LargeIntArray(firstNeighborIndices[nPubs]);
+        LargeDoubleArray weights = new LargeDoubleArray(firstNeighborIndices[nPubs]);
+        forEachBlock(pool, nPubs, (from, to) ->
+        {
+            for (int i = (int)from; i < to; i++)
+                if (nUsedRefs[i] > 0)
+                    for (long j = firstRef[i]; j < firstRef[i] + nDistinctRefs[i]; j++)
+                    {
+                        int pubNo2 = refs.get(j);
+                        if (isUsedLink(i, pubNo2, corePub, includedPub))
+                        {
+                            double weight = 1.0 / nUsedRefs[i];
+                            if (cites(pubNo2, i, refs, firstRef, nDistinctRefs))
+                            {
+                                if (i > pubNo2)
+                                    continue;
+                                weight += 1.0 / nUsedRefs[pubNo2];
+                            }
+                            long k = nextNeighbor.getAndIncrement(i);
+                            neighbors.set(k, pubNo2);
+                            weights.set(k, weight);
+                            k = nextNeighbor.getAndIncrement(pubNo2);
+                            neighbors.set(k, i);
+                            weights.set(k, weight);
+                        }
+                    }
+        });
+
+        // Sort the neighbors of each publication.
+        forEachBlock(pool, nPubs, (from, to) ->
+        {
+            for (int i = (int)from; i < to; i++)
+                sortNeighbors(neighbors, weights, firstNeighborIndices[i], firstNeighborIndices[i + 1]);
+        });
+
+        double[] pubWeight = new double[nPubs];
+        for (int i = 0; i < nPubs; i++)
+            pubWeight[i] = corePub[i] ? 1 : 0;
+        return new Network(pubWeight, firstNeighborIndices, neighbors, weights, false);
+    }
+
+    /**
+     * Determines whether a citation link between two publications is used.
+     *
+     * @param pubNo1      First publication
+     * @param pubNo2      Second publication
+     * @param corePub     Indicates for each publication whether it is a core
+     *                    publication
+     * @param includedPub Indicates for each publication whether it is included
+     *
+     * @return True if the citation link is used
+     */
+    private static boolean isUsedLink(int pubNo1, int pubNo2, boolean[] corePub, boolean[] includedPub)
+    {
+        return includedPub[pubNo1] && includedPub[pubNo2] && (corePub[pubNo1] || corePub[pubNo2]);
+    }
+
+    /**
+     * Determines whether a publication cites another publication.
+     *
+     * @param pubNo1        Citing publication
+     * @param pubNo2        Cited publication
+     * @param refs          Sorted distinct references of each publication
+     * @param firstRef      Index of the first reference of each publication
+     * @param nDistinctRefs Number of distinct references of each publication
+     *
+     * @return True if the first publication cites the second publication
+     */
+    private static boolean cites(int pubNo1, int pubNo2, LargeIntArray refs, long[] firstRef, int[] nDistinctRefs)
+    {
+        long low = firstRef[pubNo1];
+        long high = firstRef[pubNo1] + nDistinctRefs[pubNo1] - 1;
+        while (low <= high)
+        {
+            long middle = (low + high) >>> 1;
+            int ref = refs.get(middle);
+            if (ref < pubNo2)
+                low = middle + 1;
+            else if (ref > pubNo2)
+                high = middle - 1;
+            else
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sorts the neighbors in a range of a network's neighbor array, together
+     * with their weights.
+     *
+     * @param neighbors Neighbors
+     * @param weights   Weights
+     * @param from      Index of the first neighbor of the range
+     * @param to        Index after the last neighbor of the range
+     */
+    private static void sortNeighbors(LargeIntArray neighbors, LargeDoubleArray weights, long from, long to)
+    {
+        int n = (int)(to - from);
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++)
+            order[i] = ((long)neighbors.get(from + i) << 32) | i;
+        Arrays.sort(order);
+        double[] rangeWeights = new double[n];
+        for (int i = 0; i < n; i++)
+            rangeWeights[i] = weights.get(from + i);
+        for (int i = 0; i < n; i++)
+        {
+            neighbors.set(from + i, (int)(order[i] >>> 32));
+            weights.set(from + i, rangeWeights[(int)order[i]]);
+        }
+    }
+
+    /**
+     * Copies a range of an array.
+     *
+     * @param array Array
+     * @param from  Index of the first element of the range
+     * @param to    Index after the last element of the range
+     *
+     * @return Elements of the range
+     */
+    private static int[] getRange(LargeIntArray array, long from, long to)
+    {
+        int[] values = new int[(int)(to - from)];
+        for (int i = 0; i < values.length; i++)
+            values[i] = array.get(from + i);
+        return values;
+    }
+
+    /**
+     * Performs an action on consecutive blocks of elements in parallel, using
+     * the threads of a fork-join pool.
+     *
+     * @param pool   Fork-join pool
+     * @param n      Number of elements
+     * @param action Action
+     */
+    private static void forEachBlock(ForkJoinPool pool, long n, BlockAction action)
+    {
+        int nBlocks = (int)((n + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        pool.submit(() -> IntStream.range(0, nBlocks).parallel().forEach(i -> action.apply((long)i * BLOCK_SIZE, Math.min((long)(i + 1) * BLOCK_SIZE, n)))).join();
+    }
+}
@@ -1,13 +1,52 @@
 package nl.cwts.publicationclassification.run;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 import nl.cwts.networkanalysis.Network;
+import nl.cwts.publicationclassification.IncrementalAssignment;
+import nl.cwts.publicationclassification.MultiLevelClusteringSweep;
 import nl.cwts.util.LargeDoubleArray;
 import nl.cwts.util.LargeIntArray;
 
@@ -19,117 +58,581 @@ public class FileIO
     public static final String COLUMN_SEPARATOR = "\t";
 
     /**
-     * Reads publications and citation links from a file and creates a citation
-     * network.
+     * Magic number identifying a binary network file.
+     */
+    public static final int BINARY_NETWORK_MAGIC_NUMBER = 0x50434E57;
+
+    /**
+     * Version of the binary network file format.
+     */
+    public static final int BINARY_NETWORK_VERSION = 1;
+
+    /**
+     * Size in bytes of the header of a binary network file.
+     */
+    private static final int BINARY_NETWORK_HEADER_SIZE = 24;
+
+    /**
+     * Magic number identifying a binary clusters file.
+     */
+    public static final int BINARY_CLUSTERS_MAGIC_NUMBER = 0x50434353;
+
+    /**
+     * Version of the binary clusters file format.
+     */
+    public static final int BINARY_CLUSTERS_VERSION = 1;
+
+    /**
+     * Maximum size in bytes of a memory-mapped segment of a binary network
+     * file.
+     */
+    private static final int MAX_MAPPED_SEGMENT_SIZE = 1 << 30;
+
+    /**
+     * Size in bytes of the buffer used for writing binary network files.
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 23;
+
+    /**
+     * Number of values that are copied at once from a memory-mapped segment of
+     * a binary network file into a large array.
+     */
+    private static final int N_VALUES_PER_COPY = 1 << 20;
+
+    /**
+     * Number of chunks per thread into which the citation links file is split
+     * when it is read in parallel.
+     */
+    private static final int N_CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Minimum size in bytes of a chunk of the citation links file.
+     */
+    private static final long MIN_CHUNK_SIZE = 1 << 24;
+
+    /**
+     * Number of rows per block of a publication classification file.
+     */
+    private static final int N_ROWS_PER_BLOCK = 1 << 16;
+
+    /**
+     * Approximate number of rows per block of a citation links file.
+     */
+    private static final int N_CIT_LINKS_PER_BLOCK = 1 << 18;
+
+    /**
+     * Maximum number of blocks per thread that are in progress while writing a
+     * publication classification file or a citation links file, or while
+     * reading a compressed citation links file.
+     */
+    private static final int N_BLOCKS_IN_PROGRESS_PER_THREAD = 2;
+
+    /**
+     * Size in bytes of a block of the decompressed text of a compressed
+     * citation links file.
+     */
+    private static final int DECOMPRESSED_BLOCK_SIZE = 1 << 23;
+
+    /**
+     * Maximum number of characters of an integer.
+     */
+    private static final int MAX_INT_LENGTH = 11;
+
+    /**
+     * Column separator encoded as bytes.
+     */
+    private static final byte[] COLUMN_SEPARATOR_BYTES = COLUMN_SEPARATOR.getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Line separator encoded as bytes.
+     */
+    private static final byte[] LINE_SEPARATOR_BYTES = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Result of reading a chunk of the citation links file.
+     */
+    private static class CitLinkChunk
+    {
+        /**
+         * Error message (null if no error occurred).
+         */
+        private String errorMessage;
+
+        /**
+         * Line number of the error relative to the start of the chunk.
+         */
+        private long errorLineNo;
+    }
+
+    /**
+     * Writer of a publication classification file whose levels become
+     * available one at a time.
      *
-     * @param pubFile     Name of the publications file
-     * @param citLinkFile Name of the citation links file
+     * <p>
+     * The publication numbers and the cluster numbers at each level are
+     * encoded as text on background threads as soon as they are provided, so
+     * that the encoding of a level overlaps with the creation of the next
+     * level. Each column is encoded in blocks of rows, in which each number is
+     * followed by a line feed. Each encoded block is immediately written to a
+     * temporary spool file in the directory of the classification file, so
+     * that the encoded text of finished levels is not kept in memory. At most
+     * one encoded block per thread is held in memory at a time. When the
+     * classification file is written, the encoded blocks of the columns are
+     * read back from the spool file and only need to be joined into rows (and
+     * compressed if the name of the file ends with '.gz'). The spool file is
+     * deleted when the classification file has been written or the tool
+     * exits.
+     * </p>
      *
-     * @return Network
+     * @author Nees Jan van Eck
      */
-    public static Network readNetwork(String pubFile, String citLinkFile)
+    static class ClassificationWriter
     {
-        LargeDoubleArray pubWeight = new LargeDoubleArray(0);
-        pubWeight.ensureCapacity(100);
-        LargeIntArray[] citLink = new LargeIntArray[2];
-        citLink[0] = new LargeIntArray(0);
-        citLink[0].ensureCapacity(100);
-        citLink[1] = new LargeIntArray(0);
-        citLink[1].ensureCapacity(100);
-        LargeDoubleArray citLinkWeight = new LargeDoubleArray(0);
-        citLinkWeight.ensureCapacity(100);
-
-        BufferedReader reader = null;
-        // Read publications file.
-        try
+        /**
+         * Name of the classification file.
+         */
+        private String classificationFile;
+
+        /**
+         * Number of rows.
+         */
+        private int nRows;
+
+        /**
+         * Number of threads used for encoding columns and writing the file.
+         */
+        private int nThreads;
+
+        /**
+         * Executor used for encoding columns.
+         */
+        private ExecutorService executor;
+
+        /**
+         * Spool file to which the encoded blocks of the columns are written.
+         */
+        private FileChannel spoolChannel;
+
+        /**
+         * Size of the spool file.
+         */
+        private AtomicLong spoolSize;
+
+        /**
+         * Tasks encoding the blocks of the columns (first index: column;
+         * second index: block).
+         */
+        private List<List<Future<?>>> encodingTasks;
+
+        /**
+         * Positions of the encoded blocks of the columns in the spool file
+         * (first index: column; second index: block).
+         */
+        private List<long[]> blockPositions;
+
+        /**
+         * Lengths of the encoded blocks of the columns (first index: column;
+         * second index: block).
+         */
+        private List<int[]> blockLengths;
+
+        /**
+         * Constructs a writer of a publication classification file and starts
+         * encoding the publication numbers.
+         *
+         * @param classificationFile Name of the classification file
+         * @param pub                Publication numbers
+         * @param nThreads           Number of threads used for encoding
+         *                           columns and writing the file
+         */
+        ClassificationWriter(String classificationFile, int[] pub, int nThreads)
         {
-            reader = new BufferedReader(new FileReader(pubFile));
-            String line = reader.readLine();
-            int lineNo = 0;
-            while (line != null)
+            this.classificationFile = classificationFile;
+            nRows = pub.length;
+            this.nThreads = nThreads;
+            try
             {
-                lineNo++;
-                String[] columns = line.split(COLUMN_SEPARATOR);
-                if (columns.length != 2)
-                    throw new IOException("Incorrect number of columns (line " + lineNo + ").");
-                int pubNo;
+                Path directory = Paths.get(classificationFile).toAbsolutePath().getParent();
+                Path spoolFile = Files.createTempFile(directory, Paths.get(classificationFile).getFileName().toString(), ".tmp");
+                spoolChannel = FileChannel.open(spoolFile, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                spoolFile.toFile().deleteOnExit();
+            }
+            catch (IOException e)
+            {
+                System.err.println("Error while writing publication classification to file: " + e.getMessage());
+                System.exit(-1);
+            }
+            spoolSize = new AtomicLong();
+            executor = Executors.newFixedThreadPool(nThreads, runnable ->
+            {
+                Thread thread = new Thread(runnable, "classification-encoding");
+                thread.setDaemon(true);
+                return thread;
+            });
+            encodingTasks = new ArrayList<List<Future<?>>>();
+            blockPositions = new ArrayList<long[]>();
+            blockLengths = new ArrayList<int[]>();
+            addColumn(pub);
+        }
+
+        /**
+         * Starts encoding the cluster numbers at the next level. The cluster
+         * numbers must not be changed afterwards.
+         *
+         * @param cluster Cluster numbers
+         *
+         * @throws IllegalArgumentException Number of cluster numbers is not
+         *                                  equal to the number of publications.
+         */
+        void addLevel(int[] cluster)
+        {
+            if (cluster.length != nRows)
+                throw new IllegalArgumentException("The number of cluster numbers must be equal to the number of publications.");
+            addColumn(cluster);
+        }
+
+        /**
+         * Writes the publication classification to the classification file.
+         * Encoding of all levels is completed first.
+         */
+        void write()
+        {
+            try
+            {
+                for (List<Future<?>> encodingTasksColumn : encodingTasks)
+                    for (Future<?> encodingTask : encodingTasksColumn)
+                        encodingTask.get();
+                encodingTasks = null;
+
+                final int nColumns = blockPositions.size();
+                final boolean compress = classificationFile.endsWith(".gz");
+                writeClassificationBlocks(classificationFile, nRows, i ->
+                {
+                    byte[][] encodedBlocks = new byte[nColumns][];
+                    for (int j = 0; j < nColumns; j++)
+                        encodedBlocks[j] = readSpooledBlock(blockPositions.get(j)[i], blockLengths.get(j)[i]);
+                    return joinColumns(encodedBlocks, Math.min(N_ROWS_PER_BLOCK, nRows - i * N_ROWS_PER_BLOCK), compress);
+                }, nThreads);
+            }
+            catch (ExecutionException e)
+            {
+                System.err.println("Error while writing publication classification to file: " + e.getCause().getMessage());
+                System.exit(-1);
+            }
+            catch (InterruptedException e)
+            {
+                System.err.println("Error while writing publication classification to file: Writing was interrupted.");
+                System.exit(-1);
+            }
+            finally
+            {
+                executor.shutdownNow();
                 try
                 {
-                    pubNo = Integer.parseUnsignedInt(columns[0]);
+                    spoolChannel.close();
                 }
-                catch (NumberFormatException e)
+                catch (IOException e)
                 {
-                    throw new IOException("Publication numbers must be integers starting at zero (line " + lineNo + ").");
+                    System.err.println("Error while writing publication classification to file: " + e.getMessage());
+                    System.exit(-1);
                 }
-                if (pubNo != (lineNo - 1))
-                    throw new IOException("The lines in the file must be sorted by the publication numbers in the first column (line " + lineNo + ").");
-                // Core publications are given a weight of 1 and non-core publications are given a weight of 0.
-                pubWeight.append((Boolean.parseBoolean(columns[1]) || columns[1].equals("1")) ? 1 : 0);
-                line = reader.readLine();
             }
-            reader.close();
         }
-        catch (FileNotFoundException e)
+
+        /**
+         * Starts encoding a column. Each block is written to the spool file as
+         * soon as it has been encoded.
+         *
+         * @param values Numbers in the column
+         */
+        private void addColumn(int[] values)
         {
-            System.err.println("Error while reading publications file: File not found.");
-            System.exit(-1);
+            int nBlocks = (nRows + N_ROWS_PER_BLOCK - 1) / N_ROWS_PER_BLOCK;
+            final long[] positions = new long[nBlocks];
+            final int[] lengths = new int[nBlocks];
+            List<Future<?>> encodingTasksColumn = new ArrayList<Future<?>>(nBlocks);
+            for (int i = 0; i < nBlocks; i++)
+            {
+                final int blockNo = i;
+                encodingTasksColumn.add(executor.submit(() ->
+                {
+                    byte[] encodedBlock = encodeColumn(values, blockNo * N_ROWS_PER_BLOCK);
+                    positions[blockNo] = spoolBlock(encodedBlock);
+                    lengths[blockNo] = encodedBlock.length;
+                    return null;
+                }));
+            }
+            encodingTasks.add(encodingTasksColumn);
+            blockPositions.add(positions);
+            blockLengths.add(lengths);
         }
-        catch (IOException e)
+
+        /**
+         * Writes an encoded block to the end of the spool file. Blocks may be
+         * written concurrently by multiple threads.
+         *
+         * @param encodedBlock Encoded block
+         *
+         * @return Position of the block in the spool file
+         *
+         * @throws IOException An I/O error occurred.
+         */
+        private long spoolBlock(byte[] encodedBlock) throws IOException
         {
-            System.err.println("Error while reading publications file: " + e.getMessage());
-            System.exit(-1);
+            long position = spoolSize.getAndAdd(encodedBlock.length);
+            ByteBuffer buffer = ByteBuffer.wrap(encodedBlock);
+            while (buffer.hasRemaining())
+                spoolChannel.write(buffer, position + buffer.position());
+            return position;
         }
-        finally
+
+        /**
+         * Reads an encoded block from the spool file. Blocks may be read
+         * concurrently by multiple threads.
+         *
+         * @param position Position of the block in the spool file
+         * @param length   Length of the block
+         *
+         * @return Encoded block
+         *
+         * @throws IOException An I/O error occurred.
+         */
+        private byte[] readSpooledBlock(long position, int length) throws IOException
         {
-            if (reader != null)
-                try
-                {
-                    reader.close();
-                }
-                catch (IOException e)
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining())
+                if (spoolChannel.read(buffer, position + buffer.position()) < 0)
+                    throw new EOFException("Unexpected end of spool file.");
+            return buffer.array();
+        }
+
+        /**
+         * Encodes a block of rows of a column.
+         *
+         * @param values   Numbers in the column
+         * @param firstRow Index of the first row of the block
+         *
+         * @return Encoded block
+         */
+        private static byte[] encodeColumn(int[] values, int firstRow)
+        {
+            int endRow = Math.min(firstRow + N_ROWS_PER_BLOCK, values.length);
+            byte[] bytes = new byte[(endRow - firstRow) * (MAX_INT_LENGTH + 1)];
+            int length = 0;
+            for (int i = firstRow; i < endRow; i++)
+            {
+                length = formatInt(values[i], bytes, length);
+                bytes[length++] = '\n';
+            }
+            return Arrays.copyOf(bytes, length);
+        }
+
+        /**
+         * Joins encoded blocks of the columns into a block of rows of a
+         * publication classification file.
+         *
+         * @param encodedBlocks Encoded blocks of the columns
+         * @param nBlockRows    Number of rows of the block
+         * @param compress      Indicates whether the block is compressed as a
+         *                      gzip member
+         *
+         * @return Formatted block
+         *
+         * @throws IOException An I/O error occurred.
+         */
+        private static ByteBuffer joinColumns(byte[][] encodedBlocks, int nBlockRows, boolean compress) throws IOException
+        {
+            int nColumns = encodedBlocks.length;
+            int length = nBlockRows * ((nColumns - 1) * COLUMN_SEPARATOR_BYTES.length + LINE_SEPARATOR_BYTES.length - nColumns);
+            for (byte[] encodedBlock : encodedBlocks)
+                length += encodedBlock.length;
+            byte[] bytes = new byte[length];
+            int[] position = new int[nColumns];
+            length = 0;
+            for (int i = 0; i < nBlockRows; i++)
+                for (int j = 0; j < nColumns; j++)
                 {
-                    System.err.println("Error while reading publications file: " + e.getMessage());
-                    System.exit(-1);
+                    byte[] encodedBlock = encodedBlocks[j];
+                    int k = position[j];
+                    for (byte b = encodedBlock[k++]; b != '\n'; b = encodedBlock[k++])
+                        bytes[length++] = b;
+                    position[j] = k;
+                    for (byte b : (j < nColumns - 1) ? COLUMN_SEPARATOR_BYTES : LINE_SEPARATOR_BYTES)
+                        bytes[length++] = b;
                 }
+            return compress ? compressBlock(bytes, length) : ByteBuffer.wrap(bytes, 0, length);
         }
-        // Read citation links file.
+    }
+
+    /**
+     * Reads publications and citation links from a file and creates a citation
+     * network.
+     *
+     * <p>
+     * The citation links file is read using all available processors.
+     * </p>
+     *
+     * @param pubFile     Name of the publications file
+     * @param citLinkFile Name of the citation links file
+     *
+     * @return Network
+     */
+    public static Network readNetwork(String pubFile, String citLinkFile)
+    {
+        return readNetwork(pubFile, citLinkFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Reads publications and citation links from a file and creates a citation
+     * network.
+     *
+     * <p>
+     * The citation links file is split into chunks of complete lines that are
+     * read in parallel. The resulting citation network does not depend on the
+     * number of threads. The citation links are checked before the citation
+     * network is created.
+     * </p>
+     *
+     * @param pubFile     Name of the publications file
+     * @param citLinkFile Name of the citation links file
+     * @param nThreads    Number of threads used for reading the citation links
+     *                    file
+     *
+     * @return Network
+     */
+    public static Network readNetwork(String pubFile, String citLinkFile, int nThreads)
+    {
+        return readNetwork(pubFile, citLinkFile, nThreads, false);
+    }
+
+    /**
+     * Reads publications and citation links from a file and creates a citation
+     * network.
+     *
+     * <p>
+     * The citation links file is split into chunks of complete lines. The
+     * lines in each chunk are first counted, so that the citation links can
+     * then be read in parallel and stored directly at their final position in
+     * the citation network using a {@link CitationNetworkBuilder}. No
+     * intermediate edge list is created. The resulting citation network does
+     * not depend on the number of threads. The publications file is read on a
+     * separate thread while the lines in the citation links file are counted.
+     * </p>
+     *
+     * <p>
+     * A compressed citation links file cannot be split into chunks before it
+     * has been decompressed. It is therefore decompressed twice, using
+     * multiple threads if it was compressed using bgzip. The lines are counted
+     * during the first pass, so that the citation network can again be
+     * allocated exactly. During the second pass, the decompressed text is
+     * divided into blocks of complete lines, which are read in parallel, each
+     * into its own segment of the citation network.
+     * </p>
+     *
+     * <p>
+     * For trusted input, the checks of the sorting of the citation links and
+     * of the integrity of the citation network are skipped. If the input does
+     * not meet the requirements, the resulting citation network is then
+     * invalid.
+     * </p>
+     *
+     * @param pubFile      Name of the publications file
+     * @param citLinkFile  Name of the citation links file
+     * @param nThreads     Number of threads used for reading the publications
+     *                     file and the citation links file
+     * @param trustedInput Indicates whether the citation links file is
+     *                     trusted to meet the requirements
+     *
+     * @return Network
+     */
+    public static Network readNetwork(String pubFile, String citLinkFile, int nThreads, boolean trustedInput)
+    {
+        Future<double[]> pubWeight = startReadingPubWeights(pubFile, nThreads);
+        Network citNetwork = null;
+
+        // Read citation links file. An uncompressed file is split into chunks
+        // of complete lines. The lines in each chunk are counted first, and the
+        // chunks are then read in parallel, each into its own segment of the
+        // citation network.
+        FileInputStream citLinkStream = null;
+        ExecutorService executor = null;
         try
         {
-            reader = new BufferedReader(new FileReader(citLinkFile));
-            String line = reader.readLine();
-            int lineNo = 0;
-            while (line != null)
+            CitationNetworkBuilder builder;
+            if (GzipDecompressionChannel.isGzipFile(citLinkFile))
             {
-                lineNo++;
-                String[] columns = line.split(COLUMN_SEPARATOR);
-                if (columns.length != 3)
-                    throw new IOException("Incorrect number of columns (line " + lineNo + ").");
-                int pubNo1;
-                int pubNo2;
-                try
+                // A compressed file cannot be split into chunks. It is
+                // decompressed once to count the lines and once more to read
+                // blocks of complete lines in parallel.
+                long nCitLinks = countLines(citLinkFile, nThreads);
+                final CitationNetworkBuilder finalBuilder = new CitationNetworkBuilder(getPubWeights(pubWeight), nCitLinks, trustedInput);
+                if (nThreads > 1)
+                    executor = Executors.newFixedThreadPool(nThreads);
+                readCompressedBlocks(citLinkFile, nCitLinks, nThreads, executor, (reader, firstCitLink, nBlockCitLinks) ->
                 {
-                    pubNo1 = Integer.parseUnsignedInt(columns[0]);
-                    pubNo2 = Integer.parseUnsignedInt(columns[1]);
-                }
-                catch (NumberFormatException e)
+                    CitationNetworkBuilder.Segment segment = finalBuilder.createSegment(firstCitLink, nBlockCitLinks);
+                    return () -> readCitLinkChunk(reader, segment);
+                });
+                builder = finalBuilder;
+            }
+            else
+            {
+                citLinkStream = new FileInputStream(citLinkFile);
+                final FileChannel channel = citLinkStream.getChannel();
+                int nChunks = (nThreads > 1) ? (int)Math.max(Math.min((long)N_CHUNKS_PER_THREAD * nThreads, channel.size() / MIN_CHUNK_SIZE), 1) : 1;
+                final long[] chunkBoundaries = findChunkBoundaries(channel, nChunks);
+                if (nChunks > 1)
+                    executor = Executors.newFixedThreadPool(nThreads);
+                long[] nChunkLines = countLines(channel, chunkBoundaries, executor);
+
+                long nCitLinks = 0;
+                for (int i = 0; i < nChunks; i++)
+                    nCitLinks += nChunkLines[i];
+                builder = new CitationNetworkBuilder(getPubWeights(pubWeight), nCitLinks, trustedInput);
+                final CitationNetworkBuilder.Segment[] segment = new CitationNetworkBuilder.Segment[nChunks];
+                long firstCitLink = 0;
+                for (int i = 0; i < nChunks; i++)
                 {
-                    throw new IOException("Publication numbers must be integers starting at zero (line " + lineNo + ").");
+                    segment[i] = builder.createSegment(firstCitLink, nChunkLines[i]);
+                    firstCitLink += nChunkLines[i];
                 }
-                citLink[0].append(pubNo1);
-                citLink[1].append(pubNo2);
-                double weight;
-                try
+
+                CitLinkChunk[] chunk = new CitLinkChunk[nChunks];
+                if (nChunks == 1)
+                    chunk[0] = readCitLinkChunk(new TabSeparatedFileReader(channel, chunkBoundaries[0], chunkBoundaries[1]), segment[0]);
+                else
                 {
-                    weight = Double.parseDouble(columns[2]);
+                    List<Future<CitLinkChunk>> futures = new ArrayList<Future<CitLinkChunk>>(nChunks);
+                    for (int i = 0; i < nChunks; i++)
+                    {
+                        final int chunkIndex = i;
+                        futures.add(executor.submit(() -> readCitLinkChunk(new TabSeparatedFileReader(channel, chunkBoundaries[chunkIndex], chunkBoundaries[chunkIndex + 1]), segment[chunkIndex])));
+                    }
+                    for (int i = 0; i < nChunks; i++)
+                        chunk[i] = futures.get(i).get();
                 }
-                catch (NumberFormatException e)
+
+                // Report the first error in the file, using line numbers
+                // relative to the start of the file.
+                long lineNo = 0;
+                for (int i = 0; i < nChunks; i++)
                 {
-                    throw new IOException("Citation link weight must be a number (line " + lineNo + ").");
+                    if (chunk[i].errorMessage != null)
+                        throw new IOException(chunk[i].errorMessage + " (line " + (lineNo + chunk[i].errorLineNo) + ").");
+                    lineNo += nChunkLines[i];
                 }
-                citLinkWeight.append(weight);
-                line = reader.readLine();
             }
-            reader.close();
+
+            // Create citation network.
+            try
+            {
+                citNetwork = builder.build();
+            }
+            catch (IllegalArgumentException e)
+            {
+                System.err.println("Error while creating citation network: " + e.getMessage());
+                System.exit(-1);
+            }
         }
         catch (FileNotFoundException e)
         {
@@ -141,12 +644,24 @@ public class FileIO
             System.err.println("Error while reading citation links from file: " + e.getMessage());
             System.exit(-1);
         }
+        catch (ExecutionException e)
+        {
+            System.err.println("Error while reading citation links from file: " + e.getCause().getMessage());
+            System.exit(-1);
+        }
+        catch (InterruptedException e)
+        {
+            System.err.println("Error while reading citation links from file: Reading was interrupted.");
+            System.exit(-1);
+        }
         finally
         {
-            if (reader != null)
+            if (executor != null)
+                executor.shutdownNow();
+            if (citLinkStream != null)
                 try
                 {
-                    reader.close();
+                    citLinkStream.close();
                 }
                 catch (IOException e)
                 {
@@ -155,65 +670,1807 @@ public class FileIO
                 }
         }
 
-        // Create citation network.
-        Network citNetwork = null;
-        try
-        {
-            citNetwork = new Network(pubWeight.toArray(), citLink, citLinkWeight, true, true);
-        }
-        catch (IllegalArgumentException e)
-        {
-            System.err.println("Error while creating citation network: " + e.getMessage());
-            System.exit(-1);
-        }
-
         return citNetwork;
     }
 
     /**
-     * Writes a publication classification to a file.
+     * Reads publications and unweighted citation pairs from a file and creates
+     * a citation network with direct citation or extended direct citation
+     * link weights.
      *
-     * @param classificationFile Name of the classification file.
-     * @param pub                Publication numbers
-     * @param cluster            Cluster numbers
+     * <p>
+     * The citation pairs file must contain two tab-separated columns (without
+     * a header line) with the publication numbers of the citing and the cited
+     * publication. The pairs do not need to be sorted. The citation links and
+     * their weights are computed in memory using {@link
+     * DirectCitationWeighting}, without creating an intermediate weighted
+     * file. The publications file and the citation pairs file are read in the
+     * same way as by {@link #readNetwork(String, String, int, boolean)}.
+     * </p>
+     *
+     * @param pubFile     Name of the publications file
+     * @param citPairFile Name of the citation pairs file
+     * @param nThreads    Number of threads used for reading the citation pairs
+     *                    file and for creating the citation network
+     * @param extended    Indicates whether the extended direct citation
+     *                    approach is used
+     *
+     * @return Network
      */
-    public static void writeClassification(String classificationFile, int[] pub, int[][] cluster)
+    public static Network readUnweightedNetwork(String pubFile, String citPairFile, int nThreads, boolean extended)
     {
-        BufferedWriter writer = null;
+        Future<double[]> pubWeight = startReadingPubWeights(pubFile, nThreads);
+        boolean[] corePub = null;
+        LargeIntArray citingPub = null;
+        LargeIntArray citedPub = null;
+
+        // Read citation pairs file. An uncompressed file is split into chunks
+        // of complete lines. The lines in each chunk are counted first, and
+        // the chunks are then read in parallel, each into its own range of the
+        // citation pair arrays. A compressed file is decompressed once to
+        // count the lines and once more to read blocks of complete lines in
+        // parallel.
+        FileInputStream citPairStream = null;
+        ExecutorService executor = null;
         try
         {
-            writer = new BufferedWriter(new FileWriter(classificationFile));
-            int nLevels = cluster.length;
-            for (int i = 0; i < pub.length; i++)
+            if (GzipDecompressionChannel.isGzipFile(citPairFile))
             {
-                writer.write(pub[i] + "");
-                for (int j = 0; j < nLevels; j++)
-                    writer.write(COLUMN_SEPARATOR + cluster[j][i]);
-                writer.newLine();
+                long nPairs = countLines(citPairFile, nThreads);
+                corePub = getCorePubs(getPubWeights(pubWeight));
+                final int nPubs = corePub.length;
+                final LargeIntArray finalCitingPub = new LargeIntArray(nPairs);
+                final LargeIntArray finalCitedPub = new LargeIntArray(nPairs);
+                if (nThreads > 1)
+                    executor = Executors.newFixedThreadPool(nThreads);
+                readCompressedBlocks(citPairFile, nPairs, nThreads, executor, (reader, firstPair, nBlockPairs) -> () -> readCitPairChunk(reader, nPubs, finalCitingPub, finalCitedPub, firstPair, nBlockPairs));
+                citingPub = finalCitingPub;
+                citedPub = finalCitedPub;
+            }
+            else
+            {
+                citPairStream = new FileInputStream(citPairFile);
+                final FileChannel channel = citPairStream.getChannel();
+                int nChunks = (nThreads > 1) ? (int)Math.max(Math.min((long)N_CHUNKS_PER_THREAD * nThreads, channel.size() / MIN_CHUNK_SIZE), 1) : 1;
+                final long[] chunkBoundaries = findChunkBoundaries(channel, nChunks);
+                if (nChunks > 1)
+                    executor = Executors.newFixedThreadPool(nThreads);
+                final long[] nChunkLines = countLines(channel, chunkBoundaries, executor);
+                corePub = getCorePubs(getPubWeights(pubWeight));
+                final int nPubs = corePub.length;
+                final long[] firstPair = new long[nChunks + 1];
+                for (int i = 0; i < nChunks; i++)
+                    firstPair[i + 1] = firstPair[i] + nChunkLines[i];
+                final LargeIntArray finalCitingPub = new LargeIntArray(firstPair[nChunks]);
+                final LargeIntArray finalCitedPub = new LargeIntArray(firstPair[nChunks]);
+
+                CitLinkChunk[] chunk = new CitLinkChunk[nChunks];
+                if (nChunks == 1)
+                    chunk[0] = readCitPairChunk(new TabSeparatedFileReader(channel, chunkBoundaries[0], chunkBoundaries[1]), nPubs, finalCitingPub, finalCitedPub, 0, nChunkLines[0]);
+                else
+                {
+                    List<Future<CitLinkChunk>> futures = new ArrayList<Future<CitLinkChunk>>(nChunks);
+                    for (int i = 0; i < nChunks; i++)
+                    {
+                        final int chunkIndex = i;
+                        futures.add(executor.submit(() -> readCitPairChunk(new TabSeparatedFileReader(channel, chunkBoundaries[chunkIndex], chunkBoundaries[chunkIndex + 1]), nPubs, finalCitingPub, finalCitedPub, firstPair[chunkIndex], nChunkLines[chunkIndex])));
+                    }
+                    for (int i = 0; i < nChunks; i++)
+                        chunk[i] = futures.get(i).get();
+                }
+
+                // Report the first error in the file, using line numbers
+                // relative to the start of the file.
+                for (int i = 0; i < nChunks; i++)
+                    if (chunk[i].errorMessage != null)
+                        throw new IOException(chunk[i].errorMessage + " (line " + (firstPair[i] + chunk[i].errorLineNo) + ").");
+                citingPub = finalCitingPub;
+                citedPub = finalCitedPub;
             }
         }
         catch (FileNotFoundException e)
         {
-            System.err.println("Error while writing publication classification to file: File not found.");
+            System.err.println("Error while reading citation pairs from file: File not found.");
             System.exit(-1);
         }
         catch (IOException e)
         {
-            System.err.println("Error while writing publication classification to file: " + e.getMessage());
+            System.err.println("Error while reading citation pairs from file: " + e.getMessage());
+            System.exit(-1);
+        }
+        catch (ExecutionException e)
+        {
+            System.err.println("Error while reading citation pairs from file: " + e.getCause().getMessage());
+            System.exit(-1);
+        }
+        catch (InterruptedException e)
+        {
+            System.err.println("Error while reading citation pairs from file: Reading was interrupted.");
             System.exit(-1);
         }
         finally
         {
-            if (writer != null)
+            if (executor != null)
+                executor.shutdownNow();
+            if (citPairStream != null)
                 try
                 {
-                    writer.close();
+                    citPairStream.close();
                 }
                 catch (IOException e)
                 {
-                    System.err.println("Error while writing publication classification to file: " + e.getMessage());
+                    System.err.println("Error while reading citation pairs from file: " + e.getMessage());
                     System.exit(-1);
                 }
         }
+
+        // Create citation network.
+        Network citNetwork = null;
+        try
+        {
+            citNetwork = DirectCitationWeighting.createNetwork(corePub, citingPub, citedPub, extended, nThreads);
+        }
+        catch (IllegalArgumentException e)
+        {
+            System.err.println("Error while creating citation network: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        return citNetwork;
+    }
+
+    /**
+     * Reads a citation network from a binary network file.
+     *
+     * <p>
+     * The file must have been created using {@link #writeNetworkBinary(Network,
+     * String)}. The file is memory-mapped and its contents are copied directly
+     * into the network without any parsing or integrity checks.
+     * </p>
+     *
+     * @param networkFile Name of the binary network file
+     *
+     * @return Network
+     */
+    public static Network readNetworkBinary(String networkFile)
+    {
+        double[] nodeWeights = null;
+        long[] firstNeighborIndices = null;
+        LargeIntArray neighbors = null;
+        LargeDoubleArray edgeWeights = null;
+
+        RandomAccessFile file = null;
+        try
+        {
+            file = new RandomAccessFile(networkFile, "r");
+            FileChannel channel = file.getChannel();
+
+            // Read header.
+            if (channel.size() < BINARY_NETWORK_HEADER_SIZE)
+                throw new IOException("File is not a binary network file.");
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, BINARY_NETWORK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != BINARY_NETWORK_MAGIC_NUMBER)
+                throw new IOException("File is not a binary network file.");
+            int version = header.getInt();
+            if (version != BINARY_NETWORK_VERSION)
+                throw new IOException("Unsupported version of the binary network file format (version " + version + ").");
+            int nNodes = header.getInt();
+            header.getInt(); // Padding.
+            long nNeighbors = header.getLong();
+            long nodeWeightsPosition = BINARY_NETWORK_HEADER_SIZE;
+            long firstNeighborIndicesPosition = nodeWeightsPosition + 8L * nNodes;
+            long edgeWeightsPosition = firstNeighborIndicesPosition + 8L * (nNodes + 1);
+            long neighborsPosition = edgeWeightsPosition + 8L * nNeighbors;
+            if (channel.size() != neighborsPosition + 4L * nNeighbors)
+                throw new IOException("File size does not match the size of the network specified in the header.");
+
+            // Read node weights, first neighbor indices, edge weights, and
+            // neighbors.
+            nodeWeights = new double[nNodes];
+            firstNeighborIndices = new long[nNodes + 1];
+            edgeWeights = new LargeDoubleArray(nNeighbors);
+            neighbors = new LargeIntArray(nNeighbors);
+            final double[] finalNodeWeights = nodeWeights;
+            final long[] finalFirstNeighborIndices = firstNeighborIndices;
+            final LargeDoubleArray finalEdgeWeights = edgeWeights;
+            final LargeIntArray finalNeighbors = neighbors;
+            readBinarySegments(channel, nodeWeightsPosition, nNodes, 8, (buffer, offset, length) -> buffer.asDoubleBuffer().get(finalNodeWeights, (int)offset, length));
+            readBinarySegments(channel, firstNeighborIndicesPosition, nNodes + 1, 8, (buffer, offset, length) -> buffer.asLongBuffer().get(finalFirstNeighborIndices, (int)offset, length));
+            readBinarySegments(channel, edgeWeightsPosition, nNeighbors, 8, (buffer, offset, length) ->
+            {
+                DoubleBuffer values = buffer.asDoubleBuffer();
+                for (int i = 0; i < length; i += N_VALUES_PER_COPY)
+                {
+                    double[] chunk = new double[Math.min(N_VALUES_PER_COPY, length - i)];
+                    values.get(chunk);
+                    finalEdgeWeights.copyFrom(new LargeDoubleArray(chunk), 0, chunk.length, offset + i);
+                }
+            });
+            readBinarySegments(channel, neighborsPosition, nNeighbors, 4, (buffer, offset, length) ->
+            {
+                IntBuffer values = buffer.asIntBuffer();
+                for (int i = 0; i < length; i += N_VALUES_PER_COPY)
+                {
+                    int[] chunk = new int[Math.min(N_VALUES_PER_COPY, length - i)];
+                    values.get(chunk);
+                    finalNeighbors.copyFrom(new LargeIntArray(chunk), 0, chunk.length, offset + i);
+                }
+            });
+            if (firstNeighborIndices[nNodes] != nNeighbors)
+                throw new IOException("Number of neighbors does not match the number specified in the header.");
+        }
+        catch (FileNotFoundException e)
+        {
+            System.err.println("Error while reading binary network file: File not found.");
+            System.exit(-1);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while reading binary network file: " + e.getMessage());
+            System.exit(-1);
+        }
+        catch (UncheckedIOException e)
+        {
+            System.err.println("Error while reading binary network file: " + e.getCause().getMessage());
+            System.exit(-1);
+        }
+        finally
+        {
+            if (file != null)
+                try
+                {
+                    file.close();
+                }
+                catch (IOException e)
+                {
+                    System.err.println("Error while reading binary network file: " + e.getMessage());
+                    System.exit(-1);
+                }
+        }
+
+        // Create citation network.
+        Network citNetwork = null;
+        try
+        {
+            citNetwork = new Network(nodeWeights, firstNeighborIndices, neighbors, edgeWeights, false);
+        }
+        catch (IllegalArgumentException e)
+        {
+            System.err.println("Error while creating citation network: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        return citNetwork;
+    }
+
+    /**
+     * Writes a citation network to a binary network file.
+     *
+     * <p>
+     * The file consists of a header followed by the node weights, the first
+     * neighbor index of each node, the edge weights, and the neighbors of each
+     * node, all in little-endian byte order. The total edge weight of self
+     * links is not stored. The edge weights and neighbors of different ranges
+     * of nodes are written in parallel.
+     * </p>
+     *
+     * @param citNetwork  Citation network
+     * @param networkFile Name of the binary network file
+     */
+    public static void writeNetworkBinary(Network citNetwork, String networkFile)
+    {
+        RandomAccessFile file = null;
+        try
+        {
+            file = new RandomAccessFile(networkFile, "rw");
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            int nNodes = citNetwork.getNNodes();
+            int[] nNeighborsPerNode = citNetwork.getNNeighborsPerNode();
+            long[] firstNeighborIndices = new long[nNodes + 1];
+            for (int i = 0; i < nNodes; i++)
+                firstNeighborIndices[i + 1] = firstNeighborIndices[i] + nNeighborsPerNode[i];
+            long nNeighbors = firstNeighborIndices[nNodes];
+            long edgeWeightsPosition = BINARY_NETWORK_HEADER_SIZE + 8L * nNodes + 8L * (nNodes + 1);
+            long neighborsPosition = edgeWeightsPosition + 8L * nNeighbors;
+
+            // Write header.
+            buffer.putInt(BINARY_NETWORK_MAGIC_NUMBER);
+            buffer.putInt(BINARY_NETWORK_VERSION);
+            buffer.putInt(nNodes);
+            buffer.putInt(0); // Padding.
+            buffer.putLong(nNeighbors);
+
+            // Write node weights.
+            double[] nodeWeights = citNetwork.getNodeWeights();
+            for (int i = 0; i < nNodes;)
+            {
+                flushIfFull(channel, buffer, 8);
+                int length = Math.min(nNodes - i, buffer.remaining() / 8);
+                buffer.asDoubleBuffer().put(nodeWeights, i, length);
+                buffer.position(buffer.position() + 8 * length);
+                i += length;
+            }
+
+            // Write first neighbor indices.
+            for (int i = 0; i <= nNodes;)
+            {
+                flushIfFull(channel, buffer, 8);
+                int length = Math.min(nNodes + 1 - i, buffer.remaining() / 8);
+                buffer.asLongBuffer().put(firstNeighborIndices, i, length);
+                buffer.position(buffer.position() + 8 * length);
+                i += length;
+            }
+            flush(channel, buffer);
+
+            // Write edge weights and neighbors. The nodes are divided into
+            // ranges with similar numbers of neighbors, which are written in
+            // parallel, each using its own buffers.
+            int nRanges = (int)Math.max(Math.min(ForkJoinPool.getCommonPoolParallelism(), nNeighbors), 1);
+            int[] firstNodes = new int[nRanges + 1];
+            for (int i = 0, j = 0; j < nRanges; j++)
+            {
+                while (firstNeighborIndices[i] < nNeighbors * j / nRanges)
+                    i++;
+                firstNodes[j] = i;
+            }
+            firstNodes[nRanges] = nNodes;
+            IntStream.range(0, nRanges).parallel().forEach(j ->
+            {
+                ByteBuffer edgeWeightBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                ByteBuffer neighborBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                long edgeWeightPosition = edgeWeightsPosition + 8L * firstNeighborIndices[firstNodes[j]];
+                long neighborPosition = neighborsPosition + 4L * firstNeighborIndices[firstNodes[j]];
+                try
+                {
+                    for (int i = firstNodes[j]; i < firstNodes[j + 1]; i++)
+                    {
+                        double[] edgeWeights = citNetwork.getEdgeWeights(i);
+                        for (int k = 0; k < edgeWeights.length;)
+                        {
+                            if (edgeWeightBuffer.remaining() < 8)
+                                edgeWeightPosition = flush(channel, edgeWeightBuffer, edgeWeightPosition);
+                            int length = Math.min(edgeWeights.length - k, edgeWeightBuffer.remaining() / 8);
+                            edgeWeightBuffer.asDoubleBuffer().put(edgeWeights, k, length);
+                            edgeWeightBuffer.position(edgeWeightBuffer.position() + 8 * length);
+                            k += length;
+                        }
+                        int[] neighbors = citNetwork.getNeighbors(i);
+                        for (int k = 0; k < neighbors.length;)
+                        {
+                            if (neighborBuffer.remaining() < 4)
+                                neighborPosition = flush(channel, neighborBuffer, neighborPosition);
+                            int length = Math.min(neighbors.length - k, neighborBuffer.remaining() / 4);
+                            neighborBuffer.asIntBuffer().put(neighbors, k, length);
+                            neighborBuffer.position(neighborBuffer.position() + 4 * length);
+                            k += length;
+                        }
+                    }
+                    flush(channel, edgeWeightBuffer, edgeWeightPosition);
+                    flush(channel, neighborBuffer, neighborPosition);
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (FileNotFoundException e)
+        {
+            System.err.println("Error while writing binary network file: File not found.");
+            System.exit(-1);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while writing binary network file: " + e.getMessage());
+            System.exit(-1);
+        }
+        catch (UncheckedIOException e)
+        {
+            System.err.println("Error while writing binary network file: " + e.getCause().getMessage());
+            System.exit(-1);
+        }
+        finally
+        {
+            if (file != null)
+                try
+                {
+                    file.close();
+                }
+                catch (IOException e)
+                {
+                    System.err.println("Error while writing binary network file: " + e.getMessage());
+                    System.exit(-1);
+                }
+        }
+    }
+
+    /**
+     * Reads the cluster numbers of the nodes of a multi-level clustering from
+     * a binary clusters file.
+     *
+     * <p>
+     * The file must have been created using {@link
+     * #writeClustersBinary(int[][], String)}.
+     * </p>
+     *
+     * @param clustersFile Name of the binary clusters file
+     * @param nLevels      Number of levels
+     * @param nNodes       Number of nodes
+     *
+     * @return Cluster numbers of the nodes (first index: level; second index:
+     *         node)
+     */
+    public static int[][] readClustersBinary(String clustersFile, int nLevels, int nNodes)
+    {
+        int[][] cluster = new int[nLevels][nNodes];
+        try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(clustersFile))))
+        {
+            if (stream.readInt() != BINARY_CLUSTERS_MAGIC_NUMBER)
+                throw new IOException("File is not a binary clusters file.");
+            int version = stream.readInt();
+            if (version != BINARY_CLUSTERS_VERSION)
+                throw new IOException("Unsupported version of the binary clusters file format (version " + version + ").");
+            if ((stream.readInt() != nLevels) || (stream.readInt() != nNodes))
+                throw new IOException("Number of levels or nodes does not match the expected number.");
+            for (int i = 0; i < nLevels; i++)
+                for (int j = 0; j < nNodes; j++)
+                    cluster[i][j] = stream.readInt();
+            if (stream.read() >= 0)
+                throw new IOException("File size does not match the size of the clustering specified in the header.");
+        }
+        catch (FileNotFoundException e)
+        {
+            System.err.println("Error while reading binary clusters file: File not found.");
+            System.exit(-1);
+        }
+        catch (EOFException e)
+        {
+            System.err.println("Error while reading binary clusters file: File size does not match the size of the clustering specified in the header.");
+            System.exit(-1);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while reading binary clusters file: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        return cluster;
+    }
+
+    /**
+     * Writes the cluster numbers of the nodes of a multi-level clustering to a
+     * binary clusters file.
+     *
+     * <p>
+     * The file consists of a header with the number of levels and the number
+     * of nodes, followed by the cluster numbers of the nodes at each level,
+     * all in big-endian byte order. The file is first written to a temporary
+     * file, which is then renamed, so that an interrupted write does not leave
+     * an incomplete file.
+     * </p>
+     *
+     * @param cluster      Cluster numbers of the nodes (first index: level;
+     *                     second index: node)
+     * @param clustersFile Name of the binary clusters file
+     */
+    public static void writeClustersBinary(int[][] cluster, String clustersFile)
+    {
+        Path file = Paths.get(clustersFile);
+        Path temporaryFile = Paths.get(clustersFile + ".tmp");
+        try
+        {
+            try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile))))
+            {
+                int nNodes = (cluster.length > 0) ? cluster[0].length : 0;
+                stream.writeInt(BINARY_CLUSTERS_MAGIC_NUMBER);
+                stream.writeInt(BINARY_CLUSTERS_VERSION);
+                stream.writeInt(cluster.length);
+                stream.writeInt(nNodes);
+                for (int i = 0; i < cluster.length; i++)
+                    for (int j = 0; j < nNodes; j++)
+                        stream.writeInt(cluster[i][j]);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while writing binary clusters file: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Writes a citation network to a publications file and a citation links
+     * file.
+     *
+     * <p>
+     * The files have the layout read by {@link #readNetwork(String, String,
+     * int)}. Publications with a positive weight are written as core
+     * publications and publications with a weight of zero as non-core
+     * publications. Each citation link is written in both directions. The
+     * rows of the citation links file are formatted in blocks. Blocks are
+     * processed in parallel and are written to the file in order.
+     * </p>
+     *
+     * @param citNetwork  Citation network
+     * @param pubFile     Name of the publications file
+     * @param citLinkFile Name of the citation links file
+     * @param nThreads    Number of threads used for formatting rows
+     */
+    public static void writeNetwork(Network citNetwork, String pubFile, String citLinkFile, int nThreads)
+    {
+        int nNodes = citNetwork.getNNodes();
+
+        // Write publications file.
+        FileOutputStream stream = null;
+        try
+        {
+            stream = new FileOutputStream(pubFile);
+            int nBlocks = (nNodes + N_ROWS_PER_BLOCK - 1) / N_ROWS_PER_BLOCK;
+            writeBlocks(stream.getChannel(), nBlocks, i -> formatPubBlock(citNetwork, i * N_ROWS_PER_BLOCK), nThreads);
+        }
+        catch (FileNotFoundException e)
+        {
+            System.err.println("Error while writing publications file: File not found.");
+            System.exit(-1);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while writing publications file: " + e.getMessage());
+            System.exit(-1);
+        }
+        catch (ExecutionException e)
+        {
+            System.err.println("Error while writing publications file: " + e.getCause().getMessage());
+            System.exit(-1);
+        }
+        catch (InterruptedException e)
+        {
+            System.err.println("Error while writing publications file: Writing was interrupted.");
+            System.exit(-1);
+        }
+        finally
+        {
+            if (stream != null)
+                try
+                {
+                    stream.close();
+                }
+                catch (IOException e)
+                {
+                    System.err.println("Error while writing publications file: " + e.getMessage());
+                    System.exit(-1);
+                }
+        }
+
+        // Write citation links file. Each block consists of the citation links
+        // of a range of publications with a total of about
+        // N_CIT_LINKS_PER_BLOCK citation links.
+        int[] nNeighborsPerNode = citNetwork.getNNeighborsPerNode();
+        int[] firstNodes = new int[nNodes + 1];
+        int nBlocks = 0;
+        long nCitLinks = 0;
+        for (int i = 0; i < nNodes; i++)
+        {
+            if ((i == 0) || (nCitLinks >= N_CIT_LINKS_PER_BLOCK))
+            {
+                firstNodes[nBlocks++] = i;
+                nCitLinks = 0;
+            }
+            nCitLinks += nNeighborsPerNode[i];
+        }
+        firstNodes[nBlocks] = nNodes;
+        stream = null;
+        try
+        {
+            stream = new FileOutputStream(citLinkFile);
+            writeBlocks(stream.getChannel(), nBlocks, i -> formatCitLinkBlock(citNetwork, firstNodes[i], firstNodes[i + 1]), nThreads);
+        }
+        catch (FileNotFoundException e)
+        {
+            System.err.println("Error while writing citation links to file: File not found.");
+            System.exit(-1);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while writing citation links to file: " + e.getMessage());
+            System.exit(-1);
+        }
+        catch (ExecutionException e)
+        {
+            System.err.println("Error while writing citation links to file: " + e.getCause().getMessage());
+            System.exit(-1);
+        }
+        catch (InterruptedException e)
+        {
+            System.err.println("Error while writing citation links to file: Writing was interrupted.");
+            System.exit(-1);
+        }
+        finally
+        {
+            if (stream != null)
+                try
+                {
+                    stream.close();
+                }
+                catch (IOException e)
+                {
+                    System.err.println("Error while writing citation links to file: " + e.getMessage());
+                    System.exit(-1);
+                }
+        }
+    }
+
+    /**
+     * Writes a publication classification to a file.
+     *
+     * <p>
+     * The file is written using all available processors. If the name of the
+     * file ends with '.gz', the file is compressed using gzip.
+     * </p>
+     *
+     * @param classificationFile Name of the classification file.
+     * @param pub                Publication numbers
+     * @param cluster            Cluster numbers
+     */
+    public static void writeClassification(String classificationFile, int[] pub, int[][] cluster)
+    {
+        writeClassification(classificationFile, pub, cluster, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Writes a publication classification to a file.
+     *
+     * <p>
+     * The rows of the file are formatted (and compressed) in blocks. Blocks
+     * are processed in parallel and are written to the file in order. If the
+     * name of the file ends with '.gz', each block is compressed as a separate
+     * gzip member. The resulting file is a valid gzip file.
+     * </p>
+     *
+     * @param classificationFile Name of the classification file.
+     * @param pub                Publication numbers
+     * @param cluster            Cluster numbers
+     * @param nThreads           Number of threads used for formatting and
+     *                           compressing rows
+     */
+    public static void writeClassification(String classificationFile, int[] pub, int[][] cluster, int nThreads)
+    {
+        final boolean compress = classificationFile.endsWith(".gz");
+        writeClassificationBlocks(classificationFile, pub.length, i -> formatClassificationBlock(pub, cluster, i * N_ROWS_PER_BLOCK, compress), nThreads);
+    }
+
+    /**
+     * Writes the blocks of rows of a publication classification file.
+     *
+     * @param classificationFile Name of the classification file
+     * @param nRows              Number of rows
+     * @param formatter          Formatter of the blocks, which compresses the
+     *                           blocks if the name of the file ends with
+     *                           '.gz'
+     * @param nThreads           Number of threads used for formatting blocks
+     */
+    private static void writeClassificationBlocks(String classificationFile, int nRows, BlockFormatter formatter, int nThreads)
+    {
+        int nBlocks = (nRows + N_ROWS_PER_BLOCK - 1) / N_ROWS_PER_BLOCK;
+        FileOutputStream stream = null;
+        try
+        {
+            stream = new FileOutputStream(classificationFile);
+            FileChannel channel = stream.getChannel();
+            writeBlocks(channel, nBlocks, formatter, nThreads);
+            if (classificationFile.endsWith(".gz") && (nBlocks == 0))
+                writeBytes(channel, compressBlock(new byte[0], 0));
+        }
+        catch (FileNotFoundException e)
+        {
+            System.err.println("Error while writing publication classification to file: File not found.");
+            System.exit(-1);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while writing publication classification to file: " + e.getMessage());
+            System.exit(-1);
+        }
+        catch (ExecutionException e)
+        {
+            System.err.println("Error while writing publication classification to file: " + e.getCause().getMessage());
+            System.exit(-1);
+        }
+        catch (InterruptedException e)
+        {
+            System.err.println("Error while writing publication classification to file: Writing was interrupted.");
+            System.exit(-1);
+        }
+        finally
+        {
+            if (stream != null)
+                try
+                {
+                    stream.close();
+                }
+                catch (IOException e)
+                {
+                    System.err.println("Error while writing publication classification to file: " + e.getMessage());
+                    System.exit(-1);
+                }
+        }
+    }
+
+    /**
+     * Writes a publication classification to an output stream.
+     *
+     * <p>
+     * The rows have the layout of a classification file. They are formatted
+     * in blocks, and each block is written as soon as it has been formatted,
+     * so that the first rows can be received before the last rows have been
+     * formatted. Unlike the other methods of this class, errors are not
+     * handled but thrown, so that the caller can continue after an error.
+     * </p>
+     *
+     * @param stream  Output stream
+     * @param pub     Publication numbers
+     * @param cluster Cluster numbers
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    static void writeClassification(OutputStream stream, int[] pub, int[][] cluster) throws IOException
+    {
+        int nBlocks = (pub.length + N_ROWS_PER_BLOCK - 1) / N_ROWS_PER_BLOCK;
+        for (int i = 0; i < nBlocks; i++)
+        {
+            ByteBuffer block = formatClassificationBlock(pub, cluster, i * N_ROWS_PER_BLOCK, false);
+            stream.write(block.array(), block.arrayOffset() + block.position(), block.remaining());
+        }
+        stream.flush();
+    }
+
+    /**
+     * Reads a publication classification from a file.
+     *
+     * <p>
+     * The file must have the layout written by {@link
+     * #writeClassification(String, int[], int[][], int)}. If the file is
+     * gzip-compressed, it is decompressed on a separate thread. Publications
+     * with a publication number of at least the number of publications are
+     * ignored.
+     * </p>
+     *
+     * @param classificationFile Name of the classification file
+     * @param nPubs              Number of publications
+     *
+     * @return Cluster numbers (first index: level; second index: publication
+     *         number), with {@link IncrementalAssignment#UNASSIGNED} for
+     *         publications that are not in the file
+     */
+    public static int[][] readClassification(String classificationFile, int nPubs)
+    {
+        int[][] cluster = null;
+        TabSeparatedFileReader reader = null;
+        try
+        {
+            reader = openReader(classificationFile, 1);
+            while (reader.nextLine())
+            {
+                long lineNo = reader.getLineNo();
+                if (cluster == null)
+                {
+                    if (reader.getNColumns() < 2)
+                        throw new IOException("Incorrect number of columns (line " + lineNo + ").");
+                    cluster = new int[reader.getNColumns() - 1][nPubs];
+                    for (int i = 0; i < cluster.length; i++)
+                        Arrays.fill(cluster[i], IncrementalAssignment.UNASSIGNED);
+                }
+                if (reader.getNColumns() != cluster.length + 1)
+                    throw new IOException("Incorrect number of columns (line " + lineNo + ").");
+                try
+                {
+                    int pubNo = reader.nextUnsignedInt();
+                    if (pubNo < nPubs)
+                        for (int i = 0; i < cluster.length; i++)
+                            cluster[i][pubNo] = reader.nextUnsignedInt();
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new IOException("Publication numbers and cluster numbers must be non-negative integers (line " + lineNo + ").");
+                }
+            }
+            if (cluster == null)
+                throw new IOException("File is empty.");
+        }
+        catch (FileNotFoundException e)
+        {
+            System.err.println("Error while reading publication classification from file: File not found.");
+            System.exit(-1);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while reading publication classification from file: " + e.getMessage());
+            System.exit(-1);
+        }
+        finally
+        {
+            if (reader != null)
+                try
+                {
+                    reader.close();
+                }
+                catch (IOException e)
+                {
+                    System.err.println("Error while reading publication classification from file: " + e.getMessage());
+                    System.exit(-1);
+                }
+        }
+
+        return cluster;
+    }
+
+    /**
+     * Writes a summary of a parameter sweep to a file.
+     *
+     * <p>
+     * The file contains a header line and a line for each parameter set, with
+     * tab-separated columns for the number of the parameter set, the value of
+     * the resolution parameter, the threshold, the number of clusters, and the
+     * quality at each level, the run time (in seconds), and the estimated
+     * memory size (in megabytes).
+     * </p>
+     *
+     * @param sweepSummaryFile Name of the sweep summary file
+     * @param results          Results of the parameter sets
+     * @param levelNames       Names of the levels
+     */
+    public static void writeSweepSummary(String sweepSummaryFile, List<MultiLevelClusteringSweep.Result> results, String[] levelNames)
+    {
+        BufferedWriter writer = null;
+        try
+        {
+            writer = new BufferedWriter(new FileWriter(sweepSummaryFile));
+            writer.write("parameter_set");
+            for (String levelName : levelNames)
+                writer.write(COLUMN_SEPARATOR + "resolution_" + levelName + "_level" + COLUMN_SEPARATOR + "threshold_" + levelName + "_level");
+            for (String levelName : levelNames)
+                writer.write(COLUMN_SEPARATOR + "n_clusters_" + levelName + "_level");
+            for (String levelName : levelNames)
+                writer.write(COLUMN_SEPARATOR + "quality_" + levelName + "_level");
+            writer.write(COLUMN_SEPARATOR + "run_time_s" + COLUMN_SEPARATOR + "memory_mb");
+            writer.newLine();
+            for (int i = 0; i < results.size(); i++)
+            {
+                MultiLevelClusteringSweep.Result result = results.get(i);
+                MultiLevelClusteringSweep.ParameterSet parameterSet = result.getParameterSet();
+                writer.write((i + 1) + "");
+                for (int j = 0; j < levelNames.length; j++)
+                    writer.write(COLUMN_SEPARATOR + parameterSet.getResolution(j) + COLUMN_SEPARATOR + parameterSet.getThreshold(j));
+                for (int j = 0; j < levelNames.length; j++)
+                    writer.write(COLUMN_SEPARATOR + result.getNClusters(j));
+                for (int j = 0; j < levelNames.length; j++)
+                    writer.write(COLUMN_SEPARATOR + result.getQuality(j));
+                writer.write(COLUMN_SEPARATOR + (result.getRunTime() / 1000.0) + COLUMN_SEPARATOR + (result.getMemorySize() / 1048576.0));
+                writer.newLine();
+            }
+        }
+        catch (FileNotFoundException e)
+        {
+            System.err.println("Error while writing sweep summary to file: File not found.");
+            System.exit(-1);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while writing sweep summary to file: " + e.getMessage());
+            System.exit(-1);
+        }
+        finally
+        {
+            if (writer != null)
+                try
+                {
+                    writer.close();
+                }
+                catch (IOException e)
+                {
+                    System.err.println("Error while writing sweep summary to file: " + e.getMessage());
+                    System.exit(-1);
+                }
+        }
+    }
+
+    /**
+     * Reads a publications file.
+     *
+     * @param pubFile  Name of the publications file
+     * @param nThreads Number of threads used for decompressing the
+     *                 publications file if it is compressed
+     *
+     * @return Publication weights (1 for core publications and 0 for non-core
+     *         publications)
+     */
+    private static double[] readPubWeights(String pubFile, int nThreads)
+    {
+        LargeDoubleArray pubWeight = new LargeDoubleArray(0);
+        pubWeight.ensureCapacity(100);
+
+        TabSeparatedFileReader reader = null;
+        // Read publications file.
+        try
+        {
+            reader = openReader(pubFile, nThreads);
+            while (reader.nextLine())
+            {
+                long lineNo = reader.getLineNo();
+                if (reader.getNColumns() != 2)
+                    throw new IOException("Incorrect number of columns (line " + lineNo + ").");
+                int pubNo;
+                try
+                {
+                    pubNo = reader.nextUnsignedInt();
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new IOException("Publication numbers must be integers starting at zero (line " + lineNo + ").");
+                }
+                if (pubNo != (lineNo - 1))
+                    throw new IOException("The lines in the file must be sorted by the publication numbers in the first column (line " + lineNo + ").");
+                // Core publications are given a weight of 1 and non-core publications are given a weight of 0.
+                pubWeight.append(reader.nextBoolean() ? 1 : 0);
+            }
+            reader.close();
+        }
+        catch (FileNotFoundException e)
+        {
+            System.err.println("Error while reading publications file: File not found.");
+            System.exit(-1);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while reading publications file: " + e.getMessage());
+            System.exit(-1);
+        }
+        finally
+        {
+            if (reader != null)
+                try
+                {
+                    reader.close();
+                }
+                catch (IOException e)
+                {
+                    System.err.println("Error while reading publications file: " + e.getMessage());
+                    System.exit(-1);
+                }
+        }
+
+        return pubWeight.toArray();
+    }
+
+    /**
+     * Starts reading a publications file on a separate thread, so that the
+     * publications file can be read while the citation links file is being
+     * read.
+     *
+     * @param pubFile  Name of the publications file
+     * @param nThreads Number of threads used for decompressing the
+     *                 publications file if it is compressed
+     *
+     * @return Publication weights, available when the publications file has
+     *         been read
+     */
+    private static Future<double[]> startReadingPubWeights(String pubFile, int nThreads)
+    {
+        FutureTask<double[]> pubWeight = new FutureTask<double[]>(() -> readPubWeights(pubFile, nThreads));
+        Thread thread = new Thread(pubWeight, "pub-file-reader");
+        thread.setDaemon(true);
+        thread.start();
+        return pubWeight;
+    }
+
+    /**
+     * Waits until a publications file has been read.
+     *
+     * @param pubWeight Publication weights, available when the publications
+     *                  file has been read
+     *
+     * @return Publication weights
+     */
+    private static double[] getPubWeights(Future<double[]> pubWeight)
+    {
+        try
+        {
+            return pubWeight.get();
+        }
+        catch (ExecutionException e)
+        {
+            System.err.println("Error while reading publications file: " + e.getCause());
+            System.exit(-1);
+        }
+        catch (InterruptedException e)
+        {
+            System.err.println("Error while reading publications file: Reading was interrupted.");
+            System.exit(-1);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the core publication indicators corresponding to publication
+     * weights.
+     *
+     * @param pubWeight Publication weights
+     *
+     * @return Core publication indicators
+     */
+    private static boolean[] getCorePubs(double[] pubWeight)
+    {
+        boolean[] corePub = new boolean[pubWeight.length];
+        for (int i = 0; i < pubWeight.length; i++)
+            corePub[i] = (pubWeight[i] == 1);
+        return corePub;
+    }
+
+    /**
+     * Counts the lines in each chunk of a file.
+     *
+     * @param channel         File channel
+     * @param chunkBoundaries Positions of the chunk boundaries
+     * @param executor        Executor used for counting the lines in
+     *                        parallel (null if the lines are counted
+     *                        sequentially)
+     *
+     * @return Number of lines in each chunk
+     *
+     * @throws IOException          An I/O error occurred.
+     * @throws ExecutionException   An error occurred while counting the
+     *                              lines in parallel.
+     * @throws InterruptedException Counting was interrupted.
+     */
+    private static long[] countLines(FileChannel channel, long[] chunkBoundaries, ExecutorService executor) throws IOException, ExecutionException, InterruptedException
+    {
+        int nChunks = chunkBoundaries.length - 1;
+        long[] nChunkLines = new long[nChunks];
+        if (executor == null)
+            for (int i = 0; i < nChunks; i++)
+                nChunkLines[i] = countLines(channel, chunkBoundaries[i], chunkBoundaries[i + 1]);
+        else
+        {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>(nChunks);
+            for (int i = 0; i < nChunks; i++)
+            {
+                final int chunkIndex = i;
+                futures.add(executor.submit(() -> countLines(channel, chunkBoundaries[chunkIndex], chunkBoundaries[chunkIndex + 1])));
+            }
+            for (int i = 0; i < nChunks; i++)
+                nChunkLines[i] = futures.get(i).get();
+        }
+        return nChunkLines;
+    }
+
+    /**
+     * Counts the lines in a chunk of a file.
+     *
+     * @param channel File channel
+     * @param start   Position of the start of the chunk
+     * @param end     Position of the end of the chunk
+     *
+     * @return Number of lines
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static long countLines(FileChannel channel, long start, long end) throws IOException
+    {
+        TabSeparatedFileReader reader = new TabSeparatedFileReader(channel, start, end);
+        long nLines = 0;
+        while (reader.nextLine())
+            nLines++;
+        reader.close();
+        return nLines;
+    }
+
+    /**
+     * Counts the lines in a file that may be gzip-compressed.
+     *
+     * @param fileName Name of the file
+     * @param nThreads Number of threads used for decompressing the file
+     *
+     * @return Number of lines
+     *
+     * @throws FileNotFoundException File not found.
+     * @throws IOException           An I/O error occurred.
+     */
+    private static long countLines(String fileName, int nThreads) throws FileNotFoundException, IOException
+    {
+        TabSeparatedFileReader reader = openReader(fileName, nThreads);
+        long nLines = 0;
+        try
+        {
+            while (reader.nextLine())
+                nLines++;
+        }
+        finally
+        {
+            reader.close();
+        }
+        return nLines;
+    }
+
+    /**
+     * Creates the tasks that read the blocks of a compressed file.
+     *
+     * @author Nees Jan van Eck
+     */
+    private interface BlockTaskFactory
+    {
+        /**
+         * Creates the task that reads a block of complete lines. The tasks are
+         * created in the order of the blocks, on the thread that decompresses
+         * the file.
+         *
+         * @param reader      Reader of the block
+         * @param firstLine   Index of the first line of the block
+         * @param nBlockLines Number of lines of the block
+         *
+         * @return Task that reads the block
+         */
+        Callable<CitLinkChunk> createTask(TabSeparatedFileReader reader, long firstLine, long nBlockLines);
+    }
+
+    /**
+     * Reads a compressed file whose lines have been counted in blocks of
+     * complete lines.
+     *
+     * <p>
+     * The file is decompressed on separate threads. The decompressed text is
+     * divided into blocks of complete lines on the calling thread, and the
+     * blocks are read in parallel. Only a limited number of blocks is in
+     * progress at the same time, so that memory use does not depend on the
+     * size of the file. If a block cannot be read, the first error in the file
+     * is reported, using line numbers relative to the start of the file.
+     * </p>
+     *
+     * @param fileName    Name of the file
+     * @param nLines      Number of lines of the file
+     * @param nThreads    Number of threads used for decompressing the file
+     * @param executor    Executor used for reading the blocks in parallel
+     *                    (null if the blocks are read sequentially)
+     * @param taskFactory Factory of the tasks that read the blocks
+     *
+     * @throws FileNotFoundException File not found.
+     * @throws IOException           An I/O error occurred.
+     * @throws ExecutionException    Reading of a block failed.
+     * @throws InterruptedException  Reading was interrupted.
+     */
+    private static void readCompressedBlocks(String fileName, long nLines, int nThreads, ExecutorService executor, BlockTaskFactory taskFactory) throws FileNotFoundException, IOException, ExecutionException, InterruptedException
+    {
+        GzipDecompressionChannel channel = new GzipDecompressionChannel(fileName, nThreads);
+        try
+        {
+            Deque<Future<CitLinkChunk>> futures = new ArrayDeque<Future<CitLinkChunk>>();
+            Deque<Long> firstLines = new ArrayDeque<Long>();
+            byte[] block = new byte[DECOMPRESSED_BLOCK_SIZE];
+            int blockLength = 0;
+            long firstLine = 0;
+            boolean endOfInput = false;
+            while (!endOfInput)
+            {
+                // Fill the block and cut it after its last complete line. The
+                // remaining bytes are moved to the next block.
+                ByteBuffer buffer = ByteBuffer.wrap(block, blockLength, block.length - blockLength);
+                while (buffer.hasRemaining() && !endOfInput)
+                    endOfInput = (channel.read(buffer) < 0);
+                blockLength = buffer.position();
+                int blockEnd = blockLength;
+                if (!endOfInput)
+                {
+                    while ((blockEnd > 0) && (block[blockEnd - 1] != '\n'))
+                        blockEnd--;
+                    if (blockEnd == 0)
+                    {
+                        // The block does not contain a complete line.
+                        block = Arrays.copyOf(block, 2 * block.length);
+                        continue;
+                    }
+                }
+                long nBlockLines = 0;
+                for (int i = 0; i < blockEnd; i++)
+                    if (block[i] == '\n')
+                        nBlockLines++;
+                if ((blockEnd > 0) && (block[blockEnd - 1] != '\n'))
+                    nBlockLines++;
+                if (firstLine + nBlockLines > nLines)
+                    throw new IOException("The file changed while it was being read.");
+                byte[] nextBlock = new byte[block.length];
+                System.arraycopy(block, blockEnd, nextBlock, 0, blockLength - blockEnd);
+
+                if (nBlockLines > 0)
+                {
+                    Callable<CitLinkChunk> task = taskFactory.createTask(new TabSeparatedFileReader(ByteBuffer.wrap(block, 0, blockEnd)), firstLine, nBlockLines);
+                    if (executor != null)
+                        futures.add(executor.submit(task));
+                    else
+                    {
+                        FutureTask<CitLinkChunk> future = new FutureTask<CitLinkChunk>(task);
+                        future.run();
+                        futures.add(future);
+                    }
+                    firstLines.add(firstLine);
+                    if (futures.size() >= N_BLOCKS_IN_PROGRESS_PER_THREAD * nThreads)
+                        checkBlock(futures.remove().get(), firstLines.remove());
+                }
+                block = nextBlock;
+                blockLength -= blockEnd;
+                firstLine += nBlockLines;
+            }
+            while (!futures.isEmpty())
+                checkBlock(futures.remove().get(), firstLines.remove());
+            if (firstLine != nLines)
+                throw new IOException("The file changed while it was being read.");
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * Checks whether an error occurred while reading a block of a compressed
+     * file.
+     *
+     * @param chunk     Result of reading the block
+     * @param firstLine Index of the first line of the block
+     *
+     * @throws IOException An error occurred while reading the block.
+     */
+    private static void checkBlock(CitLinkChunk chunk, long firstLine) throws IOException
+    {
+        if (chunk.errorMessage != null)
+            throw new IOException(chunk.errorMessage + " (line " + (firstLine + chunk.errorLineNo) + ").");
+    }
+
+    /**
+     * Opens a reader for a file that may be gzip-compressed. A compressed file
+     * is recognized by its magic number, regardless of its extension, and is
+     * decompressed on separate threads using a {@link
+     * GzipDecompressionChannel}.
+     *
+     * @param fileName Name of the file
+     * @param nThreads Number of threads used for decompressing the file
+     *
+     * @return Reader
+     *
+     * @throws FileNotFoundException File not found.
+     * @throws IOException           An I/O error occurred.
+     */
+    private static TabSeparatedFileReader openReader(String fileName, int nThreads) throws FileNotFoundException, IOException
+    {
+        if (GzipDecompressionChannel.isGzipFile(fileName))
+            return new TabSeparatedFileReader(new GzipDecompressionChannel(fileName, nThreads));
+        return new TabSeparatedFileReader(fileName);
+    }
+
+    /**
+     * Reads the citation links in a chunk of the citation links file, or in a
+     * block of a compressed citation links file, and adds them to a segment of
+     * a citation network. The reader is closed afterwards.
+     *
+     * @param reader  Reader of the chunk
+     * @param segment Segment of the citation network
+     *
+     * @return Result of reading the chunk
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static CitLinkChunk readCitLinkChunk(TabSeparatedFileReader reader, CitationNetworkBuilder.Segment segment) throws IOException
+    {
+        CitLinkChunk chunk = new CitLinkChunk();
+        try
+        {
+            while (reader.nextLine())
+            {
+                if (reader.getNColumns() != 3)
+                {
+                    chunk.errorMessage = "Incorrect number of columns";
+                    chunk.errorLineNo = reader.getLineNo();
+                    break;
+                }
+                int pubNo1;
+                int pubNo2;
+                try
+                {
+                    pubNo1 = reader.nextUnsignedInt();
+                    pubNo2 = reader.nextUnsignedInt();
+                }
+                catch (NumberFormatException e)
+                {
+                    chunk.errorMessage = "Publication numbers must be integers starting at zero";
+                    chunk.errorLineNo = reader.getLineNo();
+                    break;
+                }
+                double weight;
+                try
+                {
+                    weight = reader.nextDouble();
+                }
+                catch (NumberFormatException e)
+                {
+                    chunk.errorMessage = "Citation link weight must be a number";
+                    chunk.errorLineNo = reader.getLineNo();
+                    break;
+                }
+                try
+                {
+                    segment.add(pubNo1, pubNo2, weight);
+                }
+                catch (IllegalArgumentException e)
+                {
+                    chunk.errorMessage = e.getMessage();
+                    chunk.errorLineNo = reader.getLineNo();
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return chunk;
+    }
+
+    /**
+     * Reads the citation pairs in a chunk of the citation pairs file, or in a
+     * block of a compressed citation pairs file. The reader is closed
+     * afterwards.
+     *
+     * @param reader      Reader of the chunk
+     * @param nPubs       Number of publications
+     * @param citingPub   Citing publications
+     * @param citedPub    Cited publications
+     * @param firstPair   Index at which the first citation pair of the chunk
+     *                    is stored
+     * @param nChunkPairs Number of citation pairs of the chunk
+     *
+     * @return Result of reading the chunk
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static CitLinkChunk readCitPairChunk(TabSeparatedFileReader reader, int nPubs, LargeIntArray citingPub, LargeIntArray citedPub, long firstPair, long nChunkPairs) throws IOException
+    {
+        CitLinkChunk chunk = new CitLinkChunk();
+        try
+        {
+            long i = firstPair;
+            while (reader.nextLine())
+            {
+                if (reader.getNColumns() != 2)
+                {
+                    chunk.errorMessage = "Incorrect number of columns";
+                    chunk.errorLineNo = reader.getLineNo();
+                    break;
+                }
+                int pubNo1;
+                int pubNo2;
+                try
+                {
+                    pubNo1 = reader.nextUnsignedInt();
+                    pubNo2 = reader.nextUnsignedInt();
+                }
+                catch (NumberFormatException e)
+                {
+                    chunk.errorMessage = "Publication numbers must be integers starting at zero";
+                    chunk.errorLineNo = reader.getLineNo();
+                    break;
+                }
+                if ((pubNo1 >= nPubs) || (pubNo2 >= nPubs))
+                {
+                    chunk.errorMessage = "Publication numbers must be smaller than the number of publications";
+                    chunk.errorLineNo = reader.getLineNo();
+                    break;
+                }
+                if (i == firstPair + nChunkPairs)
+                {
+                    chunk.errorMessage = "The number of citation pairs changed while reading the citation pairs";
+                    chunk.errorLineNo = reader.getLineNo();
+                    break;
+                }
+                citingPub.set(i, pubNo1);
+                citedPub.set(i, pubNo2);
+                i++;
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return chunk;
+    }
+
+    /**
+     * Splits a file into chunks of complete lines of approximately equal size.
+     *
+     * @param channel File channel
+     * @param nChunks Number of chunks
+     *
+     * @return Positions of the chunk boundaries (the first position is the
+     *         start of the file and the last position is the end of the file)
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static long[] findChunkBoundaries(FileChannel channel, int nChunks) throws IOException
+    {
+        long size = channel.size();
+        long[] chunkBoundaries = new long[nChunks + 1];
+        chunkBoundaries[nChunks] = size;
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for (int i = 1; i < nChunks; i++)
+        {
+            // Move the boundary forward to the start of the next line.
+            long position = Math.max(i * size / nChunks, chunkBoundaries[i - 1]);
+            long chunkBoundary = size;
+            if (position == 0)
+                chunkBoundary = 0;
+            else
+            {
+                long searchPosition = position - 1;
+                while ((chunkBoundary == size) && (searchPosition < size))
+                {
+                    buffer.clear();
+                    int nBytes = channel.read(buffer, searchPosition);
+                    if (nBytes <= 0)
+                        break;
+                    for (int j = 0; j < nBytes; j++)
+                        if (buffer.get(j) == '\n')
+                        {
+                            chunkBoundary = searchPosition + j + 1;
+                            break;
+                        }
+                    searchPosition += nBytes;
+                }
+            }
+            chunkBoundaries[i] = chunkBoundary;
+        }
+        return chunkBoundaries;
+    }
+
+    /**
+     * Formats a block of rows of a publication classification file.
+     *
+     * @param pub      Publication numbers
+     * @param cluster  Cluster numbers
+     * @param firstRow Index of the first row of the block
+     * @param compress Indicates whether the block is compressed as a gzip
+     *                 member
+     *
+     * @return Formatted block
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static ByteBuffer formatClassificationBlock(int[] pub, int[][] cluster, int firstRow, boolean compress) throws IOException
+    {
+        int nLevels = cluster.length;
+        int endRow = Math.min(firstRow + N_ROWS_PER_BLOCK, pub.length);
+        int maxRowLength = (nLevels + 1) * (MAX_INT_LENGTH + COLUMN_SEPARATOR_BYTES.length) + LINE_SEPARATOR_BYTES.length;
+        byte[] bytes = new byte[(endRow - firstRow) * maxRowLength];
+        int length = 0;
+        for (int i = firstRow; i < endRow; i++)
+        {
+            length = formatInt(pub[i], bytes, length);
+            for (int j = 0; j < nLevels; j++)
+            {
+                for (byte b : COLUMN_SEPARATOR_BYTES)
+                    bytes[length++] = b;
+                length = formatInt(cluster[j][i], bytes, length);
+            }
+            for (byte b : LINE_SEPARATOR_BYTES)
+                bytes[length++] = b;
+        }
+        return compress ? compressBlock(bytes, length) : ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    /**
+     * Compresses a formatted block as a gzip member.
+     *
+     * @param bytes  Formatted block
+     * @param length Length of the formatted block
+     *
+     * @return Compressed block
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static ByteBuffer compressBlock(byte[] bytes, int length) throws IOException
+    {
+        ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream(length / 4 + 64);
+        GZIPOutputStream gzipStream = new GZIPOutputStream(compressedBytes, 1 << 16)
+        {
+            {
+                // Favor speed over compression ratio.
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+        gzipStream.write(bytes, 0, length);
+        gzipStream.close();
+        return ByteBuffer.wrap(compressedBytes.toByteArray());
+    }
+
+    /**
+     * Formats an integer as decimal digits.
+     *
+     * @param value    Integer
+     * @param bytes    Array to which the digits are written
+     * @param position Array index at which the digits are written
+     *
+     * @return Array index after the last digit
+     */
+    private static int formatInt(int value, byte[] bytes, int position)
+    {
+        if (value < 0)
+        {
+            if (value == Integer.MIN_VALUE)
+            {
+                for (byte b : Integer.toString(value).getBytes(StandardCharsets.US_ASCII))
+                    bytes[position++] = b;
+                return position;
+            }
+            bytes[position++] = '-';
+            value = -value;
+        }
+        int nDigits = 1;
+        for (int x = value; x >= 10; x /= 10)
+            nDigits++;
+        int end = position + nDigits;
+        for (int i = end - 1; i >= position; i--)
+        {
+            bytes[i] = (byte)('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Formats a block of rows of a publications file.
+     *
+     * @param citNetwork Citation network
+     * @param firstRow   First row of the block
+     *
+     * @return Formatted rows
+     */
+    private static ByteBuffer formatPubBlock(Network citNetwork, int firstRow)
+    {
+        int endRow = Math.min(firstRow + N_ROWS_PER_BLOCK, citNetwork.getNNodes());
+        int maxRowLength = MAX_INT_LENGTH + COLUMN_SEPARATOR_BYTES.length + 1 + LINE_SEPARATOR_BYTES.length;
+        byte[] bytes = new byte[(endRow - firstRow) * maxRowLength];
+        int length = 0;
+        for (int i = firstRow; i < endRow; i++)
+        {
+            length = formatInt(i, bytes, length);
+            for (byte b : COLUMN_SEPARATOR_BYTES)
+                bytes[length++] = b;
+            bytes[length++] = (byte)((citNetwork.getNodeWeight(i) > 0) ? '1' : '0');
+            for (byte b : LINE_SEPARATOR_BYTES)
+                bytes[length++] = b;
+        }
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    /**
+     * Formats the rows of a citation links file for a range of publications.
+     *
+     * @param citNetwork Citation network
+     * @param firstNode  First publication
+     * @param endNode    Publication after the last publication
+     *
+     * @return Formatted rows
+     */
+    private static ByteBuffer formatCitLinkBlock(Network citNetwork, int firstNode, int endNode)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(N_CIT_LINKS_PER_BLOCK * 32);
+        byte[] row = new byte[2 * (MAX_INT_LENGTH + COLUMN_SEPARATOR_BYTES.length) + 32 + LINE_SEPARATOR_BYTES.length];
+        for (int i = firstNode; i < endNode; i++)
+        {
+            int[] neighbors = citNetwork.getNeighbors(i);
+            double[] edgeWeights = citNetwork.getEdgeWeights(i);
+            for (int k = 0; k < neighbors.length; k++)
+            {
+                int length = formatInt(i, row, 0);
+                for (byte b : COLUMN_SEPARATOR_BYTES)
+                    row[length++] = b;
+                length = formatInt(neighbors[k], row, length);
+                for (byte b : COLUMN_SEPARATOR_BYTES)
+                    row[length++] = b;
+                String edgeWeight = Double.toString(edgeWeights[k]);
+                for (int l = 0; l < edgeWeight.length(); l++)
+                    row[length++] = (byte)edgeWeight.charAt(l);
+                for (byte b : LINE_SEPARATOR_BYTES)
+                    row[length++] = b;
+                bytes.write(row, 0, length);
+            }
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /**
+     * Formats a block of bytes to be written to a file.
+     *
+     * @author Nees Jan van Eck
+     */
+    private interface BlockFormatter
+    {
+        /**
+         * Formats a block.
+         *
+         * @param blockNo Block number
+         *
+         * @return Formatted block
+         *
+         * @throws IOException An I/O error occurred.
+         */
+        ByteBuffer format(int blockNo) throws IOException;
+    }
+
+    /**
+     * Formats blocks and writes them to a file in order.
+     *
+     * <p>
+     * If multiple threads are used, blocks are formatted in parallel. Only a
+     * limited number of blocks is in progress at the same time, so that memory
+     * use does not depend on the number of blocks.
+     * </p>
+     *
+     * @param channel   File channel
+     * @param nBlocks   Number of blocks
+     * @param formatter Formatter of the blocks
+     * @param nThreads  Number of threads used for formatting blocks
+     *
+     * @throws IOException          An I/O error occurred.
+     * @throws ExecutionException   Formatting of a block failed.
+     * @throws InterruptedException Writing was interrupted.
+     */
+    private static void writeBlocks(FileChannel channel, int nBlocks, BlockFormatter formatter, int nThreads) throws IOException, ExecutionException, InterruptedException
+    {
+        if (nThreads == 1)
+        {
+            for (int i = 0; i < nBlocks; i++)
+                writeBytes(channel, formatter.format(i));
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try
+        {
+            Deque<Future<ByteBuffer>> futures = new ArrayDeque<Future<ByteBuffer>>();
+            int nSubmittedBlocks = 0;
+            while ((nSubmittedBlocks < nBlocks) || !futures.isEmpty())
+            {
+                while ((nSubmittedBlocks < nBlocks) && (futures.size() < N_BLOCKS_IN_PROGRESS_PER_THREAD * nThreads))
+                {
+                    final int blockNo = nSubmittedBlocks;
+                    futures.add(executor.submit(() -> formatter.format(blockNo)));
+                    nSubmittedBlocks++;
+                }
+                writeBytes(channel, futures.remove().get());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer to a file channel.
+     *
+     * @param channel File channel
+     * @param buffer  Buffer
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static void writeBytes(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * Reader of a memory-mapped segment of an array in a binary network file.
+     */
+    private interface BinarySegmentReader
+    {
+        /**
+         * Reads a memory-mapped segment of an array.
+         *
+         * @param buffer Memory-mapped segment
+         * @param offset Array index of the first value in the segment
+         * @param length Number of values in the segment
+         */
+        void read(ByteBuffer buffer, long offset, int length);
+    }
+
+    /**
+     * Memory-maps an array in a binary network file in segments and reads the
+     * segments in parallel.
+     *
+     * @param channel   File channel
+     * @param position  Position of the array in the file
+     * @param nValues   Number of values in the array
+     * @param valueSize Size in bytes of a value
+     * @param reader    Reader of a segment
+     *
+     * @throws UncheckedIOException An I/O error occurred.
+     */
+    private static void readBinarySegments(FileChannel channel, long position, long nValues, int valueSize, BinarySegmentReader reader)
+    {
+        long nValuesPerSegment = MAX_MAPPED_SEGMENT_SIZE / valueSize;
+        int nSegments = (int)((nValues + nValuesPerSegment - 1) / nValuesPerSegment);
+        IntStream.range(0, nSegments).parallel().forEach(i ->
+        {
+            long offset = i * nValuesPerSegment;
+            int length = (int)Math.min(nValuesPerSegment, nValues - offset);
+            MappedByteBuffer buffer;
+            try
+            {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position + offset * valueSize, (long)length * valueSize);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            reader.read(buffer, offset, length);
+        });
+    }
+
+    /**
+     * Writes the contents of a buffer to a file channel if the buffer does not
+     * have enough remaining space.
+     *
+     * @param channel        File channel
+     * @param buffer         Buffer
+     * @param nRequiredBytes Number of bytes that need to fit in the buffer
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static void flushIfFull(FileChannel channel, ByteBuffer buffer, int nRequiredBytes) throws IOException
+    {
+        if (buffer.remaining() < nRequiredBytes)
+            flush(channel, buffer);
+    }
+
+    /**
+     * Writes the contents of a buffer to a file channel at the current
+     * position of the channel and clears the buffer.
+     *
+     * @param channel File channel
+     * @param buffer  Buffer
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes the contents of a buffer to a file channel at a given position
+     * and clears the buffer. The position of the channel is not changed, so
+     * that different parts of a file can be written in parallel.
+     *
+     * @param channel  File channel
+     * @param buffer   Buffer
+     * @param position Position in the file
+     *
+     * @return Position in the file following the written contents
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static long flush(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        buffer.clear();
+        return position;
     }
 }
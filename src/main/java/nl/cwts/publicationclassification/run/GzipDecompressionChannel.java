@@ -0,0 +1,419 @@
+package nl.cwts.publicationclassification.run;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Channel for reading a gzip-compressed file that is decompressed on
+ * separate threads.
+ *
+ * <p>
+ * The file is decompressed ahead of the reader by a background thread, so
+ * that decompression and processing of the decompressed bytes overlap. If the
+ * file is in the blocked gzip format (BGZF) used by the bgzip tool, the size
+ * of each gzip member is stored in its header. The members are then read by
+ * the background thread and are decompressed in parallel by multiple threads.
+ * Other gzip files, including files consisting of multiple gzip members, are
+ * decompressed sequentially by the background thread. In both cases, the
+ * decompressed bytes are returned in their original order, and the number of
+ * blocks of decompressed bytes that are kept in memory is bounded.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+class GzipDecompressionChannel implements ReadableByteChannel
+{
+    /**
+     * First byte of the gzip magic number.
+     */
+    private static final int GZIP_MAGIC_1 = 0x1f;
+
+    /**
+     * Second byte of the gzip magic number.
+     */
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    /**
+     * Flag indicating that a gzip member header has an extra field.
+     */
+    private static final int FEXTRA = 4;
+
+    /**
+     * Size in bytes of the fixed part of a gzip member header.
+     */
+    private static final int HEADER_SIZE = 12;
+
+    /**
+     * Size in bytes of a gzip member trailer.
+     */
+    private static final int TRAILER_SIZE = 8;
+
+    /**
+     * Size in bytes of the blocks of decompressed bytes of sequentially
+     * decompressed files.
+     */
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    /**
+     * Maximum number of blocks of decompressed bytes that are kept in memory
+     * for sequentially decompressed files.
+     */
+    private static final int N_BLOCKS_IN_PROGRESS = 4;
+
+    /**
+     * Maximum number of BGZF members that are kept in memory per thread.
+     */
+    private static final int N_MEMBERS_IN_PROGRESS_PER_THREAD = 64;
+
+    /**
+     * Block indicating the end of the decompressed bytes.
+     */
+    private static final ByteBuffer END_OF_INPUT = ByteBuffer.allocate(0);
+
+    /**
+     * Blocks of decompressed bytes in their original order.
+     */
+    private BlockingQueue<Future<ByteBuffer>> blocks;
+
+    /**
+     * Block of decompressed bytes currently being read.
+     */
+    private ByteBuffer block;
+
+    /**
+     * Background thread reading the file.
+     */
+    private Thread readerThread;
+
+    /**
+     * Executor decompressing BGZF members (null if the file is decompressed
+     * sequentially).
+     */
+    private ExecutorService executor;
+
+    /**
+     * Input stream of the file.
+     */
+    private InputStream stream;
+
+    /**
+     * Indicates whether the end of the decompressed bytes has been reached.
+     */
+    private boolean endOfInput;
+
+    /**
+     * Indicates whether the channel is open.
+     */
+    private boolean open;
+
+    /**
+     * Determines whether a file is gzip-compressed, based on its magic
+     * number.
+     *
+     * @param fileName Name of the file
+     *
+     * @return True if the file is gzip-compressed
+     *
+     * @throws FileNotFoundException File not found.
+     * @throws IOException           An I/O error occurred.
+     */
+    public static boolean isGzipFile(String fileName) throws FileNotFoundException, IOException
+    {
+        try (InputStream stream = new FileInputStream(fileName))
+        {
+            return (stream.read() == GZIP_MAGIC_1) && (stream.read() == GZIP_MAGIC_2);
+        }
+    }
+
+    /**
+     * Constructs a channel for a gzip-compressed file.
+     *
+     * @param fileName Name of the file
+     * @param nThreads Number of threads used for decompressing BGZF members
+     *
+     * @throws FileNotFoundException File not found.
+     * @throws IOException           An I/O error occurred.
+     */
+    public GzipDecompressionChannel(String fileName, int nThreads) throws FileNotFoundException, IOException
+    {
+        stream = new BufferedInputStream(new FileInputStream(fileName), 1 << 16);
+        open = true;
+        boolean bgzf = (nThreads > 1) && isBgzf(stream);
+        if (bgzf)
+        {
+            executor = Executors.newFixedThreadPool(nThreads);
+            blocks = new ArrayBlockingQueue<Future<ByteBuffer>>(N_MEMBERS_IN_PROGRESS_PER_THREAD * nThreads);
+            readerThread = new Thread(() -> readMembers());
+        }
+        else
+        {
+            blocks = new ArrayBlockingQueue<Future<ByteBuffer>>(N_BLOCKS_IN_PROGRESS);
+            readerThread = new Thread(() -> decompressSequentially());
+        }
+        readerThread.setName("gzip-decompression");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) throws IOException
+    {
+        if (!open)
+            throw new ClosedChannelException();
+        while ((block == null) || !block.hasRemaining())
+        {
+            if (endOfInput)
+                return -1;
+            try
+            {
+                block = blocks.take().get();
+            }
+            catch (ExecutionException e)
+            {
+                throw (e.getCause() instanceof IOException) ? (IOException)e.getCause() : new IOException(e.getCause());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Decompression was interrupted.");
+            }
+            if (block == END_OF_INPUT)
+                endOfInput = true;
+        }
+        int nBytes = Math.min(buffer.remaining(), block.remaining());
+        int limit = block.limit();
+        block.limit(block.position() + nBytes);
+        buffer.put(block);
+        block.limit(limit);
+        return nBytes;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (!open)
+            return;
+        open = false;
+        readerThread.interrupt();
+        if (executor != null)
+            executor.shutdownNow();
+        blocks.clear();
+        try
+        {
+            readerThread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        stream.close();
+    }
+
+    /**
+     * Determines whether a stream is in the BGZF format, based on the header
+     * of the first gzip member. The stream is not advanced.
+     *
+     * @param stream Stream
+     *
+     * @return True if the stream is in the BGZF format
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static boolean isBgzf(InputStream stream) throws IOException
+    {
+        byte[] header = new byte[HEADER_SIZE + 6];
+        stream.mark(header.length);
+        int nBytes = 0;
+        int n;
+        while ((nBytes < header.length) && ((n = stream.read(header, nBytes, header.length - nBytes)) > 0))
+            nBytes += n;
+        stream.reset();
+        return (nBytes == header.length) && ((header[3] & FEXTRA) != 0) && (header[12] == 'B') && (header[13] == 'C') && (header[14] == 2) && (header[15] == 0);
+    }
+
+    /**
+     * Decompresses the file sequentially and adds the blocks of decompressed
+     * bytes to the queue. Runs on the background thread.
+     */
+    private void decompressSequentially()
+    {
+        try
+        {
+            InputStream gzipStream = new GZIPInputStream(stream, 1 << 16);
+            while (true)
+            {
+                byte[] bytes = new byte[BLOCK_SIZE];
+                int nBytes = 0;
+                int n;
+                while ((nBytes < BLOCK_SIZE) && ((n = gzipStream.read(bytes, nBytes, BLOCK_SIZE - nBytes)) > 0))
+                    nBytes += n;
+                if (nBytes == 0)
+                    break;
+                blocks.put(CompletableFuture.completedFuture(ByteBuffer.wrap(bytes, 0, nBytes)));
+            }
+            blocks.put(CompletableFuture.completedFuture(END_OF_INPUT));
+        }
+        catch (InterruptedException e)
+        {
+            // The channel has been closed.
+        }
+        catch (IOException e)
+        {
+            putError(e);
+        }
+    }
+
+    /**
+     * Reads the BGZF members of the file, submits them for decompression, and
+     * adds the pending blocks of decompressed bytes to the queue. Runs on the
+     * background thread.
+     */
+    private void readMembers()
+    {
+        try
+        {
+            DataInputStream dataStream = new DataInputStream(stream);
+            byte[] header = new byte[HEADER_SIZE];
+            while (true)
+            {
+                int firstByte = dataStream.read();
+                if (firstByte < 0)
+                    break;
+                header[0] = (byte)firstByte;
+                dataStream.readFully(header, 1, HEADER_SIZE - 1);
+                if (((header[0] & 0xff) != GZIP_MAGIC_1) || ((header[1] & 0xff) != GZIP_MAGIC_2) || (header[2] != 8) || ((header[3] & FEXTRA) == 0))
+                    throw new IOException("Invalid BGZF member header.");
+                int extraLength = (header[10] & 0xff) | ((header[11] & 0xff) << 8);
+                byte[] extra = new byte[extraLength];
+                dataStream.readFully(extra);
+                int memberSize = -1;
+                for (int i = 0; i + 4 <= extraLength; i += 4 + ((extra[i + 2] & 0xff) | ((extra[i + 3] & 0xff) << 8)))
+                    if ((extra[i] == 'B') && (extra[i + 1] == 'C') && (i + 6 <= extraLength))
+                        memberSize = ((extra[i + 4] & 0xff) | ((extra[i + 5] & 0xff) << 8)) + 1;
+                int dataSize = memberSize - HEADER_SIZE - extraLength;
+                if (dataSize < TRAILER_SIZE)
+                    throw new IOException("Invalid BGZF member header.");
+                byte[] data = new byte[dataSize];
+                dataStream.readFully(data);
+                blocks.put(executor.submit(() -> decompressMember(data)));
+            }
+            blocks.put(CompletableFuture.completedFuture(END_OF_INPUT));
+        }
+        catch (InterruptedException e)
+        {
+            // The channel has been closed.
+        }
+        catch (EOFException e)
+        {
+            putError(new IOException("Unexpected end of BGZF file."));
+        }
+        catch (IOException e)
+        {
+            putError(e);
+        }
+    }
+
+    /**
+     * Decompresses the compressed data of a BGZF member and checks its size
+     * and checksum.
+     *
+     * @param data Compressed data followed by the trailer of the member
+     *
+     * @return Decompressed bytes
+     *
+     * @throws IOException Data is corrupt.
+     */
+    private static ByteBuffer decompressMember(byte[] data) throws IOException
+    {
+        int trailer = data.length - TRAILER_SIZE;
+        long crc = readUnsignedInt(data, trailer);
+        int size = (int)readUnsignedInt(data, trailer + 4);
+        byte[] bytes = new byte[size + 1];
+        Inflater inflater = new Inflater(true);
+        try
+        {
+            inflater.setInput(data, 0, trailer);
+            int nBytes = 0;
+            while (!inflater.finished() && (nBytes < bytes.length))
+            {
+                int n = inflater.inflate(bytes, nBytes, bytes.length - nBytes);
+                if ((n == 0) && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                nBytes += n;
+            }
+            if (!inflater.finished() || (nBytes != size))
+                throw new IOException("Corrupt BGZF member: incorrect size.");
+        }
+        catch (DataFormatException e)
+        {
+            throw new IOException("Corrupt BGZF member: " + e.getMessage());
+        }
+        finally
+        {
+            inflater.end();
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 0, size);
+        if (crc32.getValue() != crc)
+            throw new IOException("Corrupt BGZF member: incorrect checksum.");
+        return ByteBuffer.wrap(bytes, 0, size);
+    }
+
+    /**
+     * Reads an unsigned little-endian 32-bit integer from a byte array.
+     *
+     * @param bytes    Byte array
+     * @param position Position of the integer
+     *
+     * @return Integer
+     */
+    private static long readUnsignedInt(byte[] bytes, int position)
+    {
+        return (bytes[position] & 0xffL) | ((bytes[position + 1] & 0xffL) << 8) | ((bytes[position + 2] & 0xffL) << 16) | ((bytes[position + 3] & 0xffL) << 24);
+    }
+
+    /**
+     * Adds an error to the queue, so that it is reported to the reader.
+     *
+     * @param e Error
+     */
+    private void putError(IOException e)
+    {
+        CompletableFuture<ByteBuffer> error = new CompletableFuture<ByteBuffer>();
+        error.completeExceptionally(e);
+        try
+        {
+            blocks.put(error);
+        }
+        catch (InterruptedException e2)
+        {
+            // The channel has been closed.
+        }
+    }
+}
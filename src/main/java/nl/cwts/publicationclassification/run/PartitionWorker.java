@@ -0,0 +1,220 @@
+package nl.cwts.publicationclassification.run;
+
+import nl.cwts.networkanalysis.IterativeCPMClusteringAlgorithm;
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.publicationclassification.MultiLevelClustering;
+
+/**
+ * Command line tool for creating a multi-level clustering of a partition of a
+ * citation network.
+ *
+ * <p>
+ * The tool is started as a worker process by {@link
+ * PartitionedClassificationCreator}. It reads the subnetwork of a partition
+ * from a binary network file, creates a multi-level clustering of the
+ * subnetwork using {@link MultiLevelClustering}, and writes the cluster
+ * numbers of the nodes to a binary clusters file.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+public class PartitionWorker
+{
+    /**
+     * Description text.
+     */
+    public static final String DESCRIPTION
+        = "PartitionWorker version 1.1.0\n"
+          + "By Nees Jan van Eck\n"
+          + "Centre for Science and Technology Studies (CWTS), Leiden University\n";
+
+    /**
+     * Usage text.
+     */
+    public static final String USAGE
+        = "Usage: PartitionWorker [options] <network_file> <clusters_file> <n_iterations> <resolutions>\n"
+            + "\t<pub_thresholds>\n\n"
+            + "Arguments:\n"
+            + "<network_file>\n"
+            + "\tName of the binary network input file. This file must have the layout of a binary\n"
+            + "\tnetwork cache file of PublicationClassificationCreator.\n"
+            + "<clusters_file>\n"
+            + "\tName of the binary clusters output file. This file will contain the cluster numbers\n"
+            + "\tof the nodes at each level.\n"
+            + "<n_iterations>\n"
+            + "\tNumber of iterations of the Leiden algorithm (e.g., 50).\n"
+            + "<resolutions>\n"
+            + "\tComma-separated list of values of the resolution parameter, one for each level,\n"
+            + "\tstarting at the lowest level.\n"
+            + "<pub_thresholds>\n"
+            + "\tComma-separated list of minimum numbers of publications per cluster, one for each\n"
+            + "\tlevel, starting at the lowest level.\n\n"
+            + "Options:\n"
+            + "--n_random_starts <n_random_starts>\n"
+            + "\tNumber of random starts of the Leiden algorithm (default: 1), as for\n"
+            + "\tPublicationClassificationCreator.\n"
+            + "--parallel_leiden <parallel_leiden>\n"
+            + "\tBoolean indicating whether the parallel Leiden algorithm should be used ('true') or\n"
+            + "\tnot ('false') (default: 'false'), as for PublicationClassificationCreator.\n"
+            + "--n_threads <n_threads>\n"
+            + "\tNumber of threads used by the parallel Leiden algorithm (default: 1).\n";
+
+    /**
+     * This method is called when the tool is started.
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args)
+    {
+        System.out.println(DESCRIPTION);
+        if (args.length == 0)
+        {
+            System.out.print(USAGE);
+            System.exit(-1);
+        }
+
+        // Process command line options.
+        int nRandomStarts = 1;
+        boolean parallelLeiden = false;
+        int nThreads = 1;
+        int argIndex = 0;
+        while ((argIndex < args.length) && args[argIndex].startsWith("--"))
+        {
+            String option = args[argIndex++];
+            if (argIndex == args.length)
+            {
+                System.err.println("Error while processing command line option " + option + ": Value is missing.\n\n" + USAGE);
+                System.exit(-1);
+            }
+            if (option.equals("--n_random_starts"))
+                nRandomStarts = parsePositiveIntegerOption(option, args[argIndex++]);
+            else if (option.equals("--parallel_leiden"))
+            {
+                String value = args[argIndex++];
+                if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false"))
+                {
+                    System.err.println("Error while processing command line option --parallel_leiden: Value must be a boolean ('true' or 'false').\n\n" + USAGE);
+                    System.exit(-1);
+                }
+                parallelLeiden = Boolean.parseBoolean(value);
+            }
+            else if (option.equals("--n_threads"))
+                nThreads = parsePositiveIntegerOption(option, args[argIndex++]);
+            else
+            {
+                System.err.println("Error while processing command line option " + option + ": Unknown option.\n\n" + USAGE);
+                System.exit(-1);
+            }
+        }
+
+        // Process command line arguments.
+        if (args.length - argIndex != 5)
+        {
+            System.err.print("Error while processing command line arguments: Incorrect number of command line arguments.\n\n" + USAGE);
+            System.exit(-1);
+        }
+        String networkFile = args[argIndex++];
+        String clustersFile = args[argIndex++];
+        int nIterations = 0;
+        try
+        {
+            nIterations = Integer.parseInt(args[argIndex++]);
+            if (nIterations <= 0)
+                throw new NumberFormatException();
+        }
+        catch (NumberFormatException e)
+        {
+            System.err.println("Error while processing command line argument <n_iterations>: Value must be a positive integer number.\n\n" + USAGE);
+            System.exit(-1);
+        }
+        double[] resolutions = null;
+        try
+        {
+            resolutions = PublicationClassificationCreator.parseDoubles(args[argIndex++], 0);
+        }
+        catch (NumberFormatException e)
+        {
+            System.err.println("Error while processing command line argument <resolutions>: Values must be non-negative numbers.\n\n" + USAGE);
+            System.exit(-1);
+        }
+        int[] pubThresholds = null;
+        try
+        {
+            pubThresholds = PublicationClassificationCreator.parseIntegers(args[argIndex++], 0);
+        }
+        catch (NumberFormatException e)
+        {
+            System.err.println("Error while processing command line argument <pub_thresholds>: Values must be non-negative integer numbers.\n\n" + USAGE);
+            System.exit(-1);
+        }
+        if (pubThresholds.length != resolutions.length)
+        {
+            System.err.println("Error while processing command line arguments: The number of resolutions must be equal to the number of thresholds.\n\n" + USAGE);
+            System.exit(-1);
+        }
+
+        // Read subnetwork of partition from binary network file.
+        System.out.print("Reading network from binary network file... ");
+        long startTimeNetwork = System.currentTimeMillis();
+        Network network = FileIO.readNetworkBinary(networkFile);
+        System.out.println("Finished!");
+        System.out.println("Reading network from binary network file took " + PublicationClassificationCreator.formatDuration((System.currentTimeMillis() - startTimeNetwork) / 1000) + ".");
+        System.out.println("Network:");
+        System.out.println("\tNumber of publications: " + network.getNNodes());
+        System.out.println("\tNumber of citation links: " + network.getNEdges());
+        System.out.println();
+
+        // Create multi-level clustering.
+        IterativeCPMClusteringAlgorithm[] clusteringAlgorithms = PublicationClassificationCreator.createClusteringAlgorithms(nIterations, nRandomStarts, parallelLeiden, PublicationClassificationCreator.createParallelLeidenPool(parallelLeiden, nThreads));
+        MultiLevelClustering multiLevelClustering = new MultiLevelClustering(network, clusteringAlgorithms);
+        for (int i = 0; i < resolutions.length; i++)
+        {
+            System.out.println("Adding level " + i + "...");
+            long startTimeLevel = System.currentTimeMillis();
+            try
+            {
+                multiLevelClustering.addLevel(resolutions[i], pubThresholds[i], true);
+            }
+            catch (IllegalArgumentException e)
+            {
+                System.err.println("Error while adding level " + i + ": " + e.getMessage());
+                System.exit(-1);
+            }
+            System.out.println("Adding level " + i + " took " + PublicationClassificationCreator.formatDuration((System.currentTimeMillis() - startTimeLevel) / 1000) + ".");
+            System.out.println("\tNumber of clusters: " + multiLevelClustering.getNClusters(i));
+            System.out.println();
+        }
+
+        // Write cluster numbers to binary clusters file.
+        System.out.print("Writing clusters to binary clusters file... ");
+        FileIO.writeClustersBinary(multiLevelClustering.getAllClusters(), clustersFile);
+        System.out.println("Finished!");
+    }
+
+    /**
+     * Parses the value of a command line option that must be a positive
+     * integer number. If the value is not a positive integer number, an error
+     * message is printed and the tool exits.
+     *
+     * @param option Command line option
+     * @param value  Value of the command line option
+     *
+     * @return Positive integer number
+     */
+    private static int parsePositiveIntegerOption(String option, String value)
+    {
+        try
+        {
+            int number = Integer.parseInt(value);
+            if (number <= 0)
+                throw new NumberFormatException();
+            return number;
+        }
+        catch (NumberFormatException e)
+        {
+            System.err.println("Error while processing command line option " + option + ": Value must be a positive integer number.\n\n" + USAGE);
+            System.exit(-1);
+            return 0;
+        }
+    }
+}
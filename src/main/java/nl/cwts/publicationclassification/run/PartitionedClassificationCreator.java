@@ -0,0 +1,674 @@
+package nl.cwts.publicationclassification.run;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import nl.cwts.networkanalysis.Clustering;
+import nl.cwts.networkanalysis.LeidenAlgorithm;
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.networkanalysis.IterativeCPMClusteringAlgorithm;
+import nl.cwts.publicationclassification.IncrementalAssignment;
+import nl.cwts.publicationclassification.ParallelLeidenAlgorithm;
+import nl.cwts.publicationclassification.PartitionedClustering;
+
+/**
+ * Command line tool for creating a multi-level publication classification by
+ * clustering partitions of a citation network in separate worker processes.
+ *
+ * <p>
+ * The tool acts as the coordinator. It reads the citation network and divides
+ * it into partitions of similar size, based on a coarse clustering of the
+ * citation network or on a given grouping of the publications, for instance
+ * into fields. The subnetwork of each partition is written to a binary network
+ * file and is clustered by a {@link PartitionWorker} that is started as a
+ * child process. The clusterings of the partitions are then combined and
+ * refined at the boundaries between partitions using {@link
+ * PartitionedClustering}. The memory needed for clustering is thus spread over
+ * the worker processes, each of which holds only the subnetwork of its own
+ * partition.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+public class PartitionedClassificationCreator
+{
+    /**
+     * Description text.
+     */
+    public static final String DESCRIPTION
+        = "PartitionedClassificationCreator version 1.1.0\n"
+          + "By Nees Jan van Eck\n"
+          + "Centre for Science and Technology Studies (CWTS), Leiden University\n";
+
+    /**
+     * Default number of partitions.
+     */
+    public static final int DEFAULT_N_PARTITIONS = 4;
+
+    /**
+     * Default number of worker processes that run concurrently.
+     */
+    public static final int DEFAULT_N_WORKERS = 2;
+
+    /**
+     * Number of lines at the end of the log file of a failed worker process
+     * that are printed.
+     */
+    private static final int N_LOG_LINES = 20;
+
+    /**
+     * Worker processes that have been started.
+     */
+    private static final List<Process> workerProcesses = new ArrayList<>();
+
+    /**
+     * Indicates whether the worker processes have been destroyed.
+     */
+    private static boolean workerProcessesDestroyed = false;
+
+    /**
+     * Usage text.
+     */
+    public static final String USAGE
+        = "Usage: PartitionedClassificationCreator [options]\n"
+            + "\t<pub_file> <cit_link_file> <classification_file>\n"
+            + "\t<largest_component> <n_iterations>\n"
+            + "\t<resolution_micro_level> <pub_threshold_micro_level>\n"
+            + "\t<resolution_meso_level> <pub_threshold_meso_level>\n"
+            + "\t<resolution_macro_level> <pub_threshold_macro_level>\n\n"
+            + "Arguments:\n"
+            + "\tThe arguments are the same as for creating a publication classification based on data\n"
+            + "\tin text files using PublicationClassificationCreator, except that only a single value\n"
+            + "\tcan be provided for each resolution and threshold.\n\n"
+            + "Options:\n"
+            + "--n_partitions <n_partitions>\n"
+            + "\tNumber of partitions of the citation network (default: " + DEFAULT_N_PARTITIONS + "). Each partition is\n"
+            + "\tclustered by a separate worker process.\n"
+            + "--n_workers <n_workers>\n"
+            + "\tNumber of worker processes that run concurrently (default: " + DEFAULT_N_WORKERS + "). The largest partitions\n"
+            + "\tare clustered first.\n"
+            + "--worker_heap <worker_heap>\n"
+            + "\tMaximum heap size of each worker process, as for the -Xmx option of Java (e.g., '16g').\n"
+            + "\tBy default, the default maximum heap size of Java is used.\n"
+            + "--worker_threads <worker_threads>\n"
+            + "\tNumber of threads used by the parallel Leiden algorithm in each worker process\n"
+            + "\t(default: 1). Only used if --parallel_leiden is 'true'.\n"
+            + "--partition_file <partition_file>\n"
+            + "\tName of a file that groups the publications, for instance into fields. This text file\n"
+            + "\tmust have the layout of <classification_file>, with at least one column of cluster\n"
+            + "\tnumbers. The groups in the first column of cluster numbers are packed into partitions,\n"
+            + "\tand publications that are not in the file form one additional group. By default, the\n"
+            + "\tgroups are the clusters of a coarse clustering of the citation network, obtained using a\n"
+            + "\tsingle iteration of the Leiden algorithm with <resolution_macro_level>. If\n"
+            + "\t--parallel_leiden is 'true', the coarse clustering is obtained using the parallel Leiden\n"
+            + "\talgorithm with <n_threads> threads.\n"
+            + "--work_dir <work_directory>\n"
+            + "\tName of a directory in which the binary network files, binary clusters files, and log\n"
+            + "\tfiles of the partitions are written. By default, a temporary directory is used, which\n"
+            + "\tis deleted afterwards.\n"
+            + "--network_cache <network_cache_file>\n"
+            + "\tName of a binary network cache file, as for PublicationClassificationCreator.\n"
+            + "--trusted_input <trusted_input>\n"
+            + "\tBoolean indicating whether the citation links input file is trusted to meet the\n"
+            + "\trequirements ('true') or not ('false') (default: 'false'), as for\n"
+            + "\tPublicationClassificationCreator.\n"
+            + "--cit_weights <cit_weights>\n"
+            + "\tMethod used for computing the citation link weights ('direct' or 'extended_direct'),\n"
+            + "\tas for PublicationClassificationCreator.\n"
+            + "--n_threads <n_threads>\n"
+            + "\tNumber of threads used for reading the citation links file, for the coarse clustering if\n"
+            + "\t--parallel_leiden is 'true', and for writing the classification file (default: number of\n"
+            + "\tavailable processors).\n"
+            + "--n_random_starts <n_random_starts>\n"
+            + "\tNumber of random starts of the Leiden algorithm in each worker process (default: 1), as\n"
+            + "\tfor PublicationClassificationCreator.\n"
+            + "--parallel_leiden <parallel_leiden>\n"
+            + "\tBoolean indicating whether the coarse clustering and the worker processes should use the\n"
+            + "\tparallel Leiden algorithm ('true') or not ('false') (default: 'false'), as for\n"
+            + "\tPublicationClassificationCreator.\n";
+
+    /**
+     * This method is called when the tool is started.
+     *
+     * @param args Command line arguments
+     */
+    public static void main(String[] args)
+    {
+        System.out.println(DESCRIPTION);
+        if (args.length == 0)
+        {
+            System.out.print(USAGE);
+            System.exit(-1);
+        }
+
+        // Process command line options.
+        int nPartitions = DEFAULT_N_PARTITIONS;
+        int nWorkers = DEFAULT_N_WORKERS;
+        String workerHeap = null;
+        int nWorkerThreads = 1;
+        String partitionFile = null;
+        String workDirectory = null;
+        String networkCacheFile = null;
+        boolean trustedInput = false;
+        String citWeights = null;
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        int nRandomStarts = 1;
+        boolean parallelLeiden = false;
+        int argIndex = 0;
+        while ((argIndex < args.length) && args[argIndex].startsWith("--"))
+        {
+            String option = args[argIndex++];
+            if (argIndex == args.length)
+            {
+                System.err.println("Error while processing command line option " + option + ": Value is missing.\n\n" + USAGE);
+                System.exit(-1);
+            }
+            if (option.equals("--n_partitions"))
+                nPartitions = parsePositiveIntegerOption(option, args[argIndex++]);
+            else if (option.equals("--n_workers"))
+                nWorkers = parsePositiveIntegerOption(option, args[argIndex++]);
+            else if (option.equals("--worker_heap"))
+            {
+                workerHeap = args[argIndex++];
+                if (!workerHeap.matches("[0-9]+[kKmMgGtT]?"))
+                {
+                    System.err.println("Error while processing command line option --worker_heap: Value must be a heap size (e.g., '16g').\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            }
+            else if (option.equals("--worker_threads"))
+                nWorkerThreads = parsePositiveIntegerOption(option, args[argIndex++]);
+            else if (option.equals("--partition_file"))
+                partitionFile = args[argIndex++];
+            else if (option.equals("--work_dir"))
+                workDirectory = args[argIndex++];
+            else if (option.equals("--network_cache"))
+                networkCacheFile = args[argIndex++];
+            else if (option.equals("--trusted_input"))
+                trustedInput = parseBooleanOption(option, args[argIndex++]);
+            else if (option.equals("--cit_weights"))
+            {
+                citWeights = args[argIndex++];
+                if (!citWeights.equals("direct") && !citWeights.equals("extended_direct"))
+                {
+                    System.err.println("Error while processing command line option --cit_weights: Value must be 'direct' or 'extended_direct'.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            }
+            else if (option.equals("--n_threads"))
+                nThreads = parsePositiveIntegerOption(option, args[argIndex++]);
+            else if (option.equals("--n_random_starts"))
+                nRandomStarts = parsePositiveIntegerOption(option, args[argIndex++]);
+            else if (option.equals("--parallel_leiden"))
+                parallelLeiden = parseBooleanOption(option, args[argIndex++]);
+            else
+            {
+                System.err.println("Error while processing command line option " + option + ": Unknown option.\n\n" + USAGE);
+                System.exit(-1);
+            }
+        }
+
+        // Process command line arguments.
+        if (args.length - argIndex != 11)
+        {
+            System.err.print("Error while processing command line arguments: Incorrect number of command line arguments.\n\n" + USAGE);
+            System.exit(-1);
+        }
+        String pubFile = args[argIndex++];
+        String citLinkFile = args[argIndex++];
+        String classificationFile = args[argIndex++];
+        if (!args[argIndex].equalsIgnoreCase("true") && !args[argIndex].equalsIgnoreCase("false"))
+        {
+            System.err.println("Error while processing command line argument <largest_component>: Value must be a boolean ('true' or 'false').\n\n" + USAGE);
+            System.exit(-1);
+        }
+        boolean largestComponent = Boolean.parseBoolean(args[argIndex++]);
+        int nIterations = 0;
+        try
+        {
+            nIterations = Integer.parseInt(args[argIndex++]);
+            if (nIterations <= 0)
+                throw new NumberFormatException();
+        }
+        catch (NumberFormatException e)
+        {
+            System.err.println("Error while processing command line argument <n_iterations>: Value must be a positive integer number.\n\n" + USAGE);
+            System.exit(-1);
+        }
+        String[] levelNames = new String[] { "micro", "meso", "macro" };
+        double[] resolutions = new double[levelNames.length];
+        double[] pubThresholds = new double[levelNames.length];
+        for (int i = 0; i < levelNames.length; i++)
+        {
+            try
+            {
+                resolutions[i] = Double.parseDouble(args[argIndex++]);
+                if (!(resolutions[i] >= 0))
+                    throw new NumberFormatException();
+            }
+            catch (NumberFormatException e)
+            {
+                System.err.println("Error while processing command line argument <resolution_" + levelNames[i] + "_level>: Value must be a non-negative number.\n\n" + USAGE);
+                System.exit(-1);
+            }
+            try
+            {
+                pubThresholds[i] = Integer.parseInt(args[argIndex++]);
+                if (pubThresholds[i] < ((i == 0) ? 1 : 0))
+                    throw new NumberFormatException();
+            }
+            catch (NumberFormatException e)
+            {
+                System.err.println("Error while processing command line argument <pub_threshold_" + levelNames[i] + "_level>: Value must be a positive integer number.\n\n" + USAGE);
+                System.exit(-1);
+            }
+        }
+        for (int i = 1; i < levelNames.length; i++)
+            if (resolutions[i] > resolutions[i - 1])
+            {
+                System.err.println("Error while processing command line argument <resolution_" + levelNames[i] + "_level>: Value must not be higher than the value at the " + levelNames[i - 1] + " level.\n\n" + USAGE);
+                System.exit(-1);
+            }
+
+        // Read citation network from network cache file or file.
+        boolean useNetworkCache = (networkCacheFile != null) && new File(networkCacheFile).exists();
+        String source = useNetworkCache ? "network cache file" : "file";
+        System.out.print("Reading citation network from " + source + "... ");
+        long startTimeCitNetwork = System.currentTimeMillis();
+        Network citNetwork;
+        if (useNetworkCache)
+            citNetwork = FileIO.readNetworkBinary(networkCacheFile);
+        else if (citWeights != null)
+            citNetwork = FileIO.readUnweightedNetwork(pubFile, citLinkFile, nThreads, citWeights.equals("extended_direct"));
+        else
+            citNetwork = FileIO.readNetwork(pubFile, citLinkFile, nThreads, trustedInput);
+        int nPubs = citNetwork.getNNodes();
+        int[] pub = new int[nPubs];
+        for (int i = 0; i < nPubs; i++)
+            pub[i] = i;
+        System.out.println("Finished!");
+        System.out.println("Reading citation network from " + source + " took " + PublicationClassificationCreator.formatDuration((System.currentTimeMillis() - startTimeCitNetwork) / 1000) + ".");
+        if ((networkCacheFile != null) && !useNetworkCache)
+            FileIO.writeNetworkBinary(citNetwork, networkCacheFile);
+
+        if (largestComponent)
+        {
+            // Identify largest connected component in citation network.
+            Clustering clustering = citNetwork.identifyComponents();
+            citNetwork = citNetwork.createSubnetwork(clustering, 0);
+            pub = new int[citNetwork.getNNodes()];
+            int[] cluster = clustering.getClusters();
+            int i = 0;
+            for (int j = 0; j < nPubs; j++)
+                if (cluster[j] == 0)
+                {
+                    pub[i] = j;
+                    i++;
+                }
+        }
+        System.out.println("Citation network:");
+        System.out.println("\tNumber of publications: " + citNetwork.getNNodes());
+        System.out.println("\tNumber of citation links: " + citNetwork.getNEdges());
+        System.out.println();
+
+        // Group publications based on partition file or coarse clustering.
+        long startTimeGroups = System.currentTimeMillis();
+        int[] group = new int[pub.length];
+        if (partitionFile != null)
+        {
+            System.out.print("Reading groups of publications from file... ");
+            int[][] pubGroup = FileIO.readClassification(partitionFile, nPubs);
+            int nGroups = 0;
+            for (int i = 0; i < pub.length; i++)
+            {
+                group[i] = pubGroup[0][pub[i]];
+                nGroups = Math.max(nGroups, group[i] + 1);
+            }
+            for (int i = 0; i < pub.length; i++)
+                if (group[i] == IncrementalAssignment.UNASSIGNED)
+                    group[i] = nGroups;
+        }
+        else
+        {
+            System.out.print("Creating coarse clustering... ");
+            ForkJoinPool parallelLeidenPool = PublicationClassificationCreator.createParallelLeidenPool(parallelLeiden, nThreads);
+            IterativeCPMClusteringAlgorithm leidenAlgorithm;
+            if (parallelLeiden)
+                leidenAlgorithm = new ParallelLeidenAlgorithm(resolutions[2], 1, ParallelLeidenAlgorithm.DEFAULT_RANDOMNESS, 0, parallelLeidenPool);
+            else
+                leidenAlgorithm = new LeidenAlgorithm(resolutions[2], 1, LeidenAlgorithm.DEFAULT_RANDOMNESS, new Random(0));
+            group = leidenAlgorithm.findClustering(citNetwork).getClusters();
+            if (parallelLeidenPool != null)
+                parallelLeidenPool.shutdown();
+        }
+        int[] partition = PartitionedClustering.createPartition(citNetwork, group, nPartitions);
+        PartitionedClustering partitionedClustering = new PartitionedClustering(citNetwork, partition);
+        System.out.println("Finished!");
+        System.out.println(((partitionFile != null) ? "Reading groups of publications from file" : "Creating coarse clustering") + " took " + PublicationClassificationCreator.formatDuration((System.currentTimeMillis() - startTimeGroups) / 1000) + ".");
+        System.out.println("Partitions:");
+        System.out.println("\tNumber of partitions: " + partitionedClustering.getNPartitions());
+        for (int i = 0; i < partitionedClustering.getNPartitions(); i++)
+            System.out.println("\tNumber of publications in partition " + i + ": " + partitionedClustering.getNNodes(i));
+        System.out.println("\tNumber of boundary publications: " + partitionedClustering.getNBoundaryNodes());
+        System.out.println();
+
+        // Write subnetworks of partitions to binary network files.
+        File workDir = null;
+        boolean temporaryWorkDir = (workDirectory == null);
+        try
+        {
+            workDir = temporaryWorkDir ? Files.createTempDirectory("partitions").toFile() : new File(workDirectory);
+            if (!workDir.isDirectory() && !workDir.mkdirs())
+                throw new IOException("Directory " + workDir + " cannot be created.");
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while creating work directory: " + e.getMessage());
+            System.exit(-1);
+        }
+        File shutdownWorkDir = workDir;
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+        {
+            destroyWorkerProcesses();
+            if (temporaryWorkDir)
+                deleteWorkDirectory(shutdownWorkDir);
+        }));
+        System.out.print("Writing partitions to binary network files... ");
+        long startTimePartitions = System.currentTimeMillis();
+        for (int i = 0; i < partitionedClustering.getNPartitions(); i++)
+            if (partitionedClustering.getNNodes(i) > 0)
+                FileIO.writeNetworkBinary(partitionedClustering.createSubnetwork(i), new File(workDir, "partition_" + i + ".bin").getPath());
+        System.out.println("Finished!");
+        System.out.println("Writing partitions to binary network files took " + PublicationClassificationCreator.formatDuration((System.currentTimeMillis() - startTimePartitions) / 1000) + ".");
+        System.out.println();
+
+        // Cluster partitions in worker processes.
+        System.out.println("Clustering partitions in " + nWorkers + " worker processes...");
+        long startTimeWorkers = System.currentTimeMillis();
+        int[][][] partitionClusters = runWorkers(partitionedClustering, workDir, temporaryWorkDir, nWorkers, workerHeap, nIterations, nRandomStarts, parallelLeiden, nWorkerThreads, resolutions, pubThresholds);
+        System.out.println("Clustering partitions in " + nWorkers + " worker processes took " + PublicationClassificationCreator.formatDuration((System.currentTimeMillis() - startTimeWorkers) / 1000) + ".");
+        System.out.println();
+
+        // Combine clusterings of partitions.
+        System.out.print("Combining clusterings of partitions... ");
+        long startTimeCombine = System.currentTimeMillis();
+        int[][] cluster = partitionedClustering.combineClusterings(partitionClusters, resolutions, pubThresholds);
+        System.out.println("Finished!");
+        System.out.println("Combining clusterings of partitions took " + PublicationClassificationCreator.formatDuration((System.currentTimeMillis() - startTimeCombine) / 1000) + ".");
+        System.out.println("\tNumber of moves of publications: " + partitionedClustering.getNNodeMoves());
+        String[] levelTitles = new String[] { "Micro", "Meso", "Macro" };
+        for (int i = 0; i < cluster.length; i++)
+        {
+            int nClusters = 0;
+            for (int j = 0; j < pub.length; j++)
+                nClusters = Math.max(nClusters, cluster[i][j] + 1);
+            System.out.println(levelTitles[i] + "-level classification:");
+            System.out.println("\tResolution: " + resolutions[i]);
+            System.out.println("\tThreshold: " + (int)pubThresholds[i]);
+            System.out.println("\tNumber of merged clusters: " + partitionedClustering.getNMergedClusters(i));
+            System.out.println("\tNumber of clusters: " + nClusters);
+        }
+        System.out.println();
+        if (temporaryWorkDir)
+            deleteWorkDirectory(workDir);
+
+        // Write publication classification to file.
+        System.out.print("Writing publication classification to file... ");
+        long startTimePubClustering = System.currentTimeMillis();
+        FileIO.writeClassification(classificationFile, pub, cluster, nThreads);
+        System.out.println("Finished!");
+        System.out.println("Writing publication classification to file took " + PublicationClassificationCreator.formatDuration((System.currentTimeMillis() - startTimePubClustering) / 1000) + ".");
+    }
+
+    /**
+     * Clusters the subnetworks of the partitions in worker processes. The
+     * partitions are processed in decreasing order of their number of nodes.
+     * If a worker process fails, the other worker processes are destroyed, an
+     * error message is printed, and the tool exits. If the work directory is
+     * temporary, the end of the log file of the failed worker process is
+     * printed, since the work directory is deleted when the tool exits.
+     *
+     * @param partitionedClustering Partitioned clustering
+     * @param workDir               Work directory containing the binary
+     *                              network files of the partitions
+     * @param temporaryWorkDir      Work directory is temporary
+     * @param nWorkers              Number of worker processes that run
+     *                              concurrently
+     * @param workerHeap            Maximum heap size of each worker process
+     *                              (null for the default maximum heap size)
+     * @param nIterations           Number of iterations of the Leiden
+     *                              algorithm
+     * @param nRandomStarts         Number of random starts of the Leiden
+     *                              algorithm
+     * @param parallelLeiden        Use the parallel Leiden algorithm
+     * @param nWorkerThreads        Number of threads of the parallel Leiden
+     *                              algorithm in each worker process
+     * @param resolutions           Values of the resolution parameter at the
+     *                              different levels
+     * @param pubThresholds         Minimum numbers of publications per cluster
+     *                              at the different levels
+     *
+     * @return Cluster numbers of the nodes of the subnetwork of each partition
+     *         (first index: partition; second index: level; third index: node)
+     */
+    private static int[][][] runWorkers(PartitionedClustering partitionedClustering, File workDir, boolean temporaryWorkDir, int nWorkers, String workerHeap, int nIterations, int nRandomStarts, boolean parallelLeiden, int nWorkerThreads, double[] resolutions, double[] pubThresholds)
+    {
+        int nPartitions = partitionedClustering.getNPartitions();
+        StringBuilder resolutionList = new StringBuilder();
+        StringBuilder pubThresholdList = new StringBuilder();
+        for (int i = 0; i < resolutions.length; i++)
+        {
+            String separator = (i > 0) ? "," : "";
+            resolutionList.append(separator).append(resolutions[i]);
+            pubThresholdList.append(separator).append((int)pubThresholds[i]);
+        }
+        String javaCommand = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classPath = System.getProperty("java.class.path");
+
+        Integer[] partitionOrder = new Integer[nPartitions];
+        for (int i = 0; i < nPartitions; i++)
+            partitionOrder[i] = i;
+        Arrays.sort(partitionOrder, (partition1, partition2) -> Integer.compare(partitionedClustering.getNNodes(partition2), partitionedClustering.getNNodes(partition1)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(nWorkers);
+        List<Future<Integer>> exitValues = new ArrayList<>(nPartitions);
+        for (int i = 0; i < nPartitions; i++)
+            exitValues.add(null);
+        try
+        {
+            for (int i : partitionOrder)
+            {
+                if (partitionedClustering.getNNodes(i) == 0)
+                    continue;
+                List<String> command = new ArrayList<>();
+                command.add(javaCommand);
+                if (workerHeap != null)
+                    command.add("-Xmx" + workerHeap);
+                command.add("-cp");
+                command.add(classPath);
+                command.add(PartitionWorker.class.getName());
+                command.add("--n_random_starts");
+                command.add(Integer.toString(nRandomStarts));
+                command.add("--parallel_leiden");
+                command.add(Boolean.toString(parallelLeiden));
+                command.add("--n_threads");
+                command.add(Integer.toString(nWorkerThreads));
+                command.add(new File(workDir, "partition_" + i + ".bin").getPath());
+                command.add(new File(workDir, "partition_" + i + ".clusters").getPath());
+                command.add(Integer.toString(nIterations));
+                command.add(resolutionList.toString());
+                command.add(pubThresholdList.toString());
+                ProcessBuilder processBuilder = new ProcessBuilder(command);
+                processBuilder.redirectErrorStream(true);
+                processBuilder.redirectOutput(new File(workDir, "partition_" + i + ".log"));
+                int partition = i;
+                exitValues.set(i, executor.submit(() ->
+                {
+                    long startTime = System.currentTimeMillis();
+                    int exitValue = startWorkerProcess(processBuilder).waitFor();
+                    System.out.println("\tClustering partition " + partition + " took " + PublicationClassificationCreator.formatDuration((System.currentTimeMillis() - startTime) / 1000) + ".");
+                    return exitValue;
+                }));
+            }
+            for (int i : partitionOrder)
+                if ((exitValues.get(i) != null) && (exitValues.get(i).get() != 0))
+                {
+                    File logFile = new File(workDir, "partition_" + i + ".log");
+                    destroyWorkerProcesses();
+                    if (temporaryWorkDir)
+                    {
+                        List<String> logLines = Files.readAllLines(logFile.toPath());
+                        System.err.println("Last lines of the log of the worker process of partition " + i + ":");
+                        for (String logLine : logLines.subList(Math.max(logLines.size() - N_LOG_LINES, 0), logLines.size()))
+                            System.err.println("\t" + logLine);
+                        throw new IOException("Worker process of partition " + i + " failed.");
+                    }
+                    throw new IOException("Worker process of partition " + i + " failed. See " + logFile + " for details.");
+                }
+        }
+        catch (ExecutionException e)
+        {
+            destroyWorkerProcesses();
+            System.err.println("Error while clustering partitions: " + e.getCause().getMessage());
+            System.exit(-1);
+        }
+        catch (IOException | InterruptedException e)
+        {
+            destroyWorkerProcesses();
+            System.err.println("Error while clustering partitions: " + e.getMessage());
+            System.exit(-1);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        int[][][] partitionClusters = new int[nPartitions][][];
+        for (int i = 0; i < nPartitions; i++)
+            if (partitionedClustering.getNNodes(i) > 0)
+                partitionClusters[i] = FileIO.readClustersBinary(new File(workDir, "partition_" + i + ".clusters").getPath(), resolutions.length, partitionedClustering.getNNodes(i));
+            else
+                partitionClusters[i] = new int[resolutions.length][0];
+        return partitionClusters;
+    }
+
+    /**
+     * Starts a worker process and keeps its handle, so that it can be
+     * destroyed if the tool fails or is terminated.
+     *
+     * @param processBuilder Process builder of the worker process
+     *
+     * @return Worker process
+     *
+     * @throws IOException If the worker processes have been destroyed or the
+     *                     worker process cannot be started
+     */
+    private static Process startWorkerProcess(ProcessBuilder processBuilder) throws IOException
+    {
+        synchronized (workerProcesses)
+        {
+            if (workerProcessesDestroyed)
+                throw new IOException("Worker processes have been destroyed.");
+            Process process = processBuilder.start();
+            workerProcesses.add(process);
+            return process;
+        }
+    }
+
+    /**
+     * Destroys the worker processes that are still running and waits for
+     * them to terminate. No worker processes can be started afterwards.
+     */
+    private static void destroyWorkerProcesses()
+    {
+        List<Process> processes;
+        synchronized (workerProcesses)
+        {
+            workerProcessesDestroyed = true;
+            processes = new ArrayList<>(workerProcesses);
+        }
+        for (Process process : processes)
+            process.destroy();
+        for (Process process : processes)
+            try
+            {
+                if (!process.waitFor(10, TimeUnit.SECONDS))
+                    process.destroyForcibly().waitFor();
+            }
+            catch (InterruptedException e)
+            {
+                process.destroyForcibly();
+            }
+    }
+
+    /**
+     * Deletes a work directory and the files in it.
+     *
+     * @param workDir Work directory
+     */
+    private static void deleteWorkDirectory(File workDir)
+    {
+        File[] files = workDir.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        workDir.delete();
+    }
+
+    /**
+     * Parses the value of a command line option that must be a positive
+     * integer number. If the value is not a positive integer number, an error
+     * message is printed and the tool exits.
+     *
+     * @param option Command line option
+     * @param value  Value of the command line option
+     *
+     * @return Positive integer number
+     */
+    private static int parsePositiveIntegerOption(String option, String value)
+    {
+        try
+        {
+            int number = Integer.parseInt(value);
+            if (number <= 0)
+                throw new NumberFormatException();
+            return number;
+        }
+        catch (NumberFormatException e)
+        {
+            System.err.println("Error while processing command line option " + option + ": Value must be a positive integer number.\n\n" + USAGE);
+            System.exit(-1);
+            return 0;
+        }
+    }
+
+    /**
+     * Parses the value of a boolean command line option. If the value is not
+     * a boolean, an error message is printed and the tool exits.
+     *
+     * @param option Command line option
+     * @param value  Value of the command line option
+     *
+     * @return Boolean value
+     */
+    private static boolean parseBooleanOption(String option, String value)
+    {
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false"))
+        {
+            System.err.println("Error while processing command line option " + option + ": Value must be a boolean ('true' or 'false').\n\n" + USAGE);
+            System.exit(-1);
+        }
+        return Boolean.parseBoolean(value);
+    }
+}
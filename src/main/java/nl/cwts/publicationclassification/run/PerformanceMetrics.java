@@ -0,0 +1,550 @@
+package nl.cwts.publicationclassification.run;
+
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.publicationclassification.MultiLevelClustering;
+
+/**
+ * Performance metrics of the phases of the creation of a publication
+ * classification.
+ *
+ * <p>
+ * For each phase, the duration, an upper bound of the peak heap memory usage,
+ * the number and duration of garbage collections, the number of bytes
+ * allocated by all threads, and the number of nodes and edges of the network
+ * involved in the phase are recorded. The upper bound of the peak heap memory
+ * usage is the sum of the peak usages of the heap memory pools, which need not
+ * be reached at the same time. The number of allocated bytes includes only
+ * threads that are alive at the end of the phase. The metrics can be written to a file in JSON
+ * format. If the Java virtual machine supports JDK Flight Recorder, a Flight
+ * Recorder event is also emitted for each phase. The event API of JDK Flight
+ * Recorder is accessed using reflection, because it is not available in all
+ * Java 8 runtimes.
+ * </p>
+ *
+ * <p>
+ * Phases must not be nested and must be started and finished by the same
+ * thread.
+ * </p>
+ *
+ * @author Nees Jan van Eck
+ */
+public class PerformanceMetrics implements MultiLevelClustering.PhaseListener
+{
+    /**
+     * Name of the phase in which the citation network is read.
+     */
+    public static final String PHASE_LOAD = "load";
+
+    /**
+     * Name of the phase in which the citation network is written to a network
+     * cache file.
+     */
+    public static final String PHASE_NETWORK_CACHE_WRITE = "network_cache_write";
+
+    /**
+     * Name of the phase in which the largest connected component is
+     * extracted.
+     */
+    public static final String PHASE_COMPONENT_EXTRACTION = "component_extraction";
+
+    /**
+     * Name of the phase in which the connected components are clustered
+     * separately.
+     */
+    public static final String PHASE_COMPONENT_CLUSTERING = "component_clustering";
+
+    /**
+     * Name of the phase in which new publications are assigned to an existing
+     * classification.
+     */
+    public static final String PHASE_ASSIGNMENT = "assignment";
+
+    /**
+     * Name of the phase in which the clusterings of the reduced networks are
+     * projected onto the publications.
+     */
+    public static final String PHASE_PROJECTION = "projection";
+
+    /**
+     * Name of the phase in which the publication classification is written.
+     */
+    public static final String PHASE_WRITE = "write";
+
+    /**
+     * Name of the JDK Flight Recorder event type.
+     */
+    public static final String JFR_EVENT_NAME = "nl.cwts.publicationclassification.Phase";
+
+    /**
+     * Metrics of a single phase.
+     *
+     * @author Nees Jan van Eck
+     */
+    private static class PhaseMetrics
+    {
+        /**
+         * Name of the phase.
+         */
+        private String phase;
+
+        /**
+         * Level of the multi-level clustering (-1 if not applicable).
+         */
+        private int level;
+
+        /**
+         * Start time (in nanoseconds) relative to the creation of the metrics.
+         */
+        private long startTime;
+
+        /**
+         * Duration (in nanoseconds).
+         */
+        private long duration;
+
+        /**
+         * Upper bound of the peak heap memory usage (in bytes).
+         */
+        private long peakHeapMemoryUsage;
+
+        /**
+         * Number of garbage collections.
+         */
+        private long nGarbageCollections;
+
+        /**
+         * Duration (in milliseconds) of garbage collections.
+         */
+        private long garbageCollectionTime;
+
+        /**
+         * Number of bytes allocated by all threads (-1 if not supported).
+         */
+        private long allocatedBytes;
+
+        /**
+         * Number of nodes of the network (-1 if not applicable).
+         */
+        private long nNodes = -1;
+
+        /**
+         * Number of edges of the network (-1 if not applicable).
+         */
+        private long nEdges = -1;
+    }
+
+    /**
+     * Time (in nanoseconds) at which the metrics were created.
+     */
+    private long creationTime;
+
+    /**
+     * Metrics of the finished phases.
+     */
+    private ArrayList<PhaseMetrics> phaseMetrics;
+
+    /**
+     * Metrics of the current phase (null if no phase is running).
+     */
+    private PhaseMetrics currentPhaseMetrics;
+
+    /**
+     * Number of garbage collections at the start of the current phase.
+     */
+    private long startNGarbageCollections;
+
+    /**
+     * Duration (in milliseconds) of garbage collections at the start of the
+     * current phase.
+     */
+    private long startGarbageCollectionTime;
+
+    /**
+     * IDs of the live threads at the start of the current phase, in ascending
+     * order (null if not supported).
+     */
+    private long[] startThreadIds;
+
+    /**
+     * Number of bytes allocated by each live thread at the start of the
+     * current phase.
+     */
+    private long[] startThreadAllocatedBytes;
+
+    /**
+     * Upper bound of the peak heap memory usage (in bytes) over all finished
+     * phases.
+     */
+    private long peakHeapMemoryUsage;
+
+    /**
+     * JDK Flight Recorder event factory (null if JDK Flight Recorder is not
+     * supported).
+     */
+    private Object jfrEventFactory;
+
+    /**
+     * Method creating a new JDK Flight Recorder event.
+     */
+    private Method jfrNewEvent;
+
+    /**
+     * Methods of a JDK Flight Recorder event (begin, end, set, and commit).
+     */
+    private Method jfrBegin, jfrEnd, jfrSet, jfrCommit;
+
+    /**
+     * JDK Flight Recorder event of the current phase (null if no event is
+     * emitted).
+     */
+    private Object currentJfrEvent;
+
+    /**
+     * Constructs performance metrics.
+     */
+    public PerformanceMetrics()
+    {
+        creationTime = System.nanoTime();
+        phaseMetrics = new ArrayList<PhaseMetrics>();
+        initJfr();
+    }
+
+    /**
+     * Starts a phase that does not belong to a level of the multi-level
+     * clustering.
+     *
+     * @param phase Name of the phase
+     */
+    public void phaseStarted(String phase)
+    {
+        phaseStarted(phase, -1);
+    }
+
+    /**
+     * Starts a phase.
+     *
+     * @param phase Name of the phase
+     * @param level Level of the multi-level clustering (-1 if not applicable)
+     */
+    @Override
+    public void phaseStarted(String phase, int level)
+    {
+        currentPhaseMetrics = new PhaseMetrics();
+        currentPhaseMetrics.phase = phase;
+        currentPhaseMetrics.level = level;
+        startNGarbageCollections = 0;
+        startGarbageCollectionTime = 0;
+        for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            startNGarbageCollections += Math.max(garbageCollector.getCollectionCount(), 0);
+            startGarbageCollectionTime += Math.max(garbageCollector.getCollectionTime(), 0);
+        }
+        startThreadIds = getThreadIds();
+        startThreadAllocatedBytes = (startThreadIds != null) ? getThreadAllocatedBytes(startThreadIds) : null;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans())
+            if (memoryPool.getType() == MemoryType.HEAP)
+                memoryPool.resetPeakUsage();
+        if (jfrEventFactory != null)
+            try
+            {
+                currentJfrEvent = jfrNewEvent.invoke(jfrEventFactory);
+                jfrBegin.invoke(currentJfrEvent);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                currentJfrEvent = null;
+            }
+        currentPhaseMetrics.startTime = System.nanoTime() - creationTime;
+    }
+
+    /**
+     * Finishes the current phase.
+     *
+     * @param phase   Name of the phase
+     * @param level   Level of the multi-level clustering (-1 if not
+     *                applicable)
+     * @param network Network that was created or processed in the phase (may
+     *                be null)
+     *
+     * @throws IllegalStateException Phase was not started.
+     */
+    @Override
+    public void phaseFinished(String phase, int level, Network network)
+    {
+        if ((currentPhaseMetrics == null) || !currentPhaseMetrics.phase.equals(phase) || (currentPhaseMetrics.level != level))
+            throw new IllegalStateException("Phase " + phase + " was not started.");
+
+        PhaseMetrics metrics = currentPhaseMetrics;
+        metrics.duration = System.nanoTime() - creationTime - metrics.startTime;
+        for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            metrics.nGarbageCollections += Math.max(garbageCollector.getCollectionCount(), 0);
+            metrics.garbageCollectionTime += Math.max(garbageCollector.getCollectionTime(), 0);
+        }
+        metrics.nGarbageCollections -= startNGarbageCollections;
+        metrics.garbageCollectionTime -= startGarbageCollectionTime;
+        metrics.allocatedBytes = calcAllocatedBytes();
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans())
+            if (memoryPool.getType() == MemoryType.HEAP)
+                metrics.peakHeapMemoryUsage += memoryPool.getPeakUsage().getUsed();
+        peakHeapMemoryUsage = Math.max(peakHeapMemoryUsage, metrics.peakHeapMemoryUsage);
+        if (network != null)
+        {
+            metrics.nNodes = network.getNNodes();
+            metrics.nEdges = network.getNEdges();
+        }
+        phaseMetrics.add(metrics);
+        currentPhaseMetrics = null;
+
+        if (currentJfrEvent != null)
+            try
+            {
+                jfrEnd.invoke(currentJfrEvent);
+                jfrSet.invoke(currentJfrEvent, 0, metrics.phase);
+                jfrSet.invoke(currentJfrEvent, 1, metrics.level);
+                jfrSet.invoke(currentJfrEvent, 2, metrics.nNodes);
+                jfrSet.invoke(currentJfrEvent, 3, metrics.nEdges);
+                jfrSet.invoke(currentJfrEvent, 4, metrics.peakHeapMemoryUsage);
+                jfrSet.invoke(currentJfrEvent, 5, metrics.allocatedBytes);
+                jfrCommit.invoke(currentJfrEvent);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                // Metrics are still recorded if the event cannot be emitted.
+            }
+        currentJfrEvent = null;
+    }
+
+    /**
+     * Finishes the current phase, which does not belong to a level of the
+     * multi-level clustering.
+     *
+     * @param phase   Name of the phase
+     * @param network Network that was created or processed in the phase (may
+     *                be null)
+     */
+    public void phaseFinished(String phase, Network network)
+    {
+        phaseFinished(phase, -1, network);
+    }
+
+    /**
+     * Returns a boolean indicating whether JDK Flight Recorder events are
+     * emitted.
+     *
+     * @return Boolean indicating whether JDK Flight Recorder events are
+     *         emitted
+     */
+    public boolean isJfrSupported()
+    {
+        return jfrEventFactory != null;
+    }
+
+    /**
+     * Writes the performance metrics to a file in JSON format.
+     *
+     * @param metricsFile Name of the metrics file
+     */
+    public void writeJson(String metricsFile)
+    {
+        long totalTime = System.nanoTime() - creationTime;
+        long nGarbageCollections = 0;
+        long garbageCollectionTime = 0;
+        for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            nGarbageCollections += Math.max(garbageCollector.getCollectionCount(), 0);
+            garbageCollectionTime += Math.max(garbageCollector.getCollectionTime(), 0);
+        }
+
+        BufferedWriter writer = null;
+        try
+        {
+            writer = new BufferedWriter(new FileWriter(metricsFile));
+            writer.write("{");
+            writer.newLine();
+            writer.write("  \"total_time_ms\": " + formatMilliseconds(totalTime) + ",");
+            writer.newLine();
+            writer.write("  \"available_processors\": " + Runtime.getRuntime().availableProcessors() + ",");
+            writer.newLine();
+            writer.write("  \"max_heap_bytes\": " + Runtime.getRuntime().maxMemory() + ",");
+            writer.newLine();
+            writer.write("  \"peak_heap_upper_bound_bytes\": " + peakHeapMemoryUsage + ",");
+            writer.newLine();
+            writer.write("  \"gc_count\": " + nGarbageCollections + ",");
+            writer.newLine();
+            writer.write("  \"gc_time_ms\": " + garbageCollectionTime + ",");
+            writer.newLine();
+            writer.write("  \"phases\": [");
+            for (int i = 0; i < phaseMetrics.size(); i++)
+            {
+                PhaseMetrics metrics = phaseMetrics.get(i);
+                writer.newLine();
+                writer.write("    {\"phase\": \"" + metrics.phase + "\"");
+                if (metrics.level >= 0)
+                    writer.write(", \"level\": " + metrics.level);
+                writer.write(", \"start_ms\": " + formatMilliseconds(metrics.startTime));
+                writer.write(", \"duration_ms\": " + formatMilliseconds(metrics.duration));
+                writer.write(", \"peak_heap_upper_bound_bytes\": " + metrics.peakHeapMemoryUsage);
+                writer.write(", \"gc_count\": " + metrics.nGarbageCollections);
+                writer.write(", \"gc_time_ms\": " + metrics.garbageCollectionTime);
+                if (metrics.allocatedBytes >= 0)
+                    writer.write(", \"allocated_bytes\": " + metrics.allocatedBytes);
+                if (metrics.nNodes >= 0)
+                    writer.write(", \"nodes\": " + metrics.nNodes + ", \"edges\": " + metrics.nEdges);
+                writer.write("}" + ((i < phaseMetrics.size() - 1) ? "," : ""));
+            }
+            writer.newLine();
+            writer.write("  ]");
+            writer.newLine();
+            writer.write("}");
+            writer.newLine();
+        }
+        catch (FileNotFoundException e)
+        {
+            System.err.println("Error while writing performance metrics to file: File not found.");
+            System.exit(-1);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error while writing performance metrics to file: " + e.getMessage());
+            System.exit(-1);
+        }
+        finally
+        {
+            if (writer != null)
+                try
+                {
+                    writer.close();
+                }
+                catch (IOException e)
+                {
+                    System.err.println("Error while writing performance metrics to file: " + e.getMessage());
+                    System.exit(-1);
+                }
+        }
+    }
+
+    /**
+     * Formats a duration in nanoseconds as a number of milliseconds with
+     * microsecond precision.
+     *
+     * @param nanoseconds Duration in nanoseconds
+     *
+     * @return Formatted duration
+     */
+    private static String formatMilliseconds(long nanoseconds)
+    {
+        return String.format(Locale.ROOT, "%.3f", nanoseconds / 1e6);
+    }
+
+    /**
+     * Calculates the number of bytes allocated by all threads in the current
+     * phase. For threads that were started in the phase, all allocated bytes
+     * are counted. Threads that terminated in the phase are not included.
+     *
+     * @return Number of allocated bytes (-1 if not supported)
+     */
+    private long calcAllocatedBytes()
+    {
+        long[] threadIds = getThreadIds();
+        if ((threadIds == null) || (startThreadIds == null))
+            return -1;
+        long[] threadAllocatedBytes = getThreadAllocatedBytes(threadIds);
+        long allocatedBytes = 0;
+        for (int i = 0; i < threadIds.length; i++)
+            if (threadAllocatedBytes[i] >= 0)
+            {
+                int j = Arrays.binarySearch(startThreadIds, threadIds[i]);
+                allocatedBytes += threadAllocatedBytes[i] - (((j >= 0) && (startThreadAllocatedBytes[j] >= 0)) ? startThreadAllocatedBytes[j] : 0);
+            }
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the IDs of the live threads in ascending order.
+     *
+     * @return Thread IDs (null if the number of bytes allocated by threads is
+     *         not supported)
+     */
+    private static long[] getThreadIds()
+    {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean))
+            return null;
+        com.sun.management.ThreadMXBean hotSpotThreadMXBean = (com.sun.management.ThreadMXBean)threadMXBean;
+        if (!hotSpotThreadMXBean.isThreadAllocatedMemorySupported() || !hotSpotThreadMXBean.isThreadAllocatedMemoryEnabled())
+            return null;
+        long[] threadIds = threadMXBean.getAllThreadIds();
+        Arrays.sort(threadIds);
+        return threadIds;
+    }
+
+    /**
+     * Returns the number of bytes allocated by each of a number of threads.
+     *
+     * @param threadIds Thread IDs
+     *
+     * @return Number of allocated bytes of each thread (-1 for threads that
+     *         are no longer alive)
+     */
+    private static long[] getThreadAllocatedBytes(long[] threadIds)
+    {
+        return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(threadIds);
+    }
+
+    /**
+     * Creates the JDK Flight Recorder event type if JDK Flight Recorder is
+     * supported. The event type has the fields phase, level, nodes, edges,
+     * peakHeapUpperBoundBytes, and allocatedBytes.
+     */
+    private void initJfr()
+    {
+        try
+        {
+            Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+            Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            Constructor<?> annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+            Constructor<?> valueDescriptor = valueDescriptorClass.getConstructor(Class.class, String.class);
+            List<Object> annotations = Arrays.asList(
+                annotationElement.newInstance(Class.forName("jdk.jfr.Name"), JFR_EVENT_NAME),
+                annotationElement.newInstance(Class.forName("jdk.jfr.Label"), "Publication Classification Phase"),
+                annotationElement.newInstance(Class.forName("jdk.jfr.Category"), new String[] { "Publication Classification" }));
+            List<Object> fields = Arrays.asList(
+                valueDescriptor.newInstance(String.class, "phase"),
+                valueDescriptor.newInstance(int.class, "level"),
+                valueDescriptor.newInstance(long.class, "nodes"),
+                valueDescriptor.newInstance(long.class, "edges"),
+                valueDescriptor.newInstance(long.class, "peakHeapUpperBoundBytes"),
+                valueDescriptor.newInstance(long.class, "allocatedBytes"));
+            jfrEventFactory = eventFactoryClass.getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+            jfrNewEvent = eventFactoryClass.getMethod("newEvent");
+            jfrBegin = eventClass.getMethod("begin");
+            jfrEnd = eventClass.getMethod("end");
+            jfrSet = eventClass.getMethod("set", int.class, Object.class);
+            jfrCommit = eventClass.getMethod("commit");
+        }
+        catch (ReflectiveOperationException | RuntimeException | LinkageError e)
+        {
+            // JDK Flight Recorder is not supported.
+            jfrEventFactory = null;
+        }
+    }
+}
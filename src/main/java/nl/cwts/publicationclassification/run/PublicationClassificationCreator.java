@@ -1,11 +1,27 @@
 package nl.cwts.publicationclassification.run;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
 
 import nl.cwts.networkanalysis.Clustering;
+import nl.cwts.networkanalysis.IterativeCPMClusteringAlgorithm;
 import nl.cwts.networkanalysis.LeidenAlgorithm;
 import nl.cwts.networkanalysis.Network;
+import nl.cwts.publicationclassification.ComponentClustering;
+import nl.cwts.publicationclassification.IncrementalAssignment;
 import nl.cwts.publicationclassification.MultiLevelClustering;
+import nl.cwts.publicationclassification.MultiLevelClusteringSweep;
+import nl.cwts.publicationclassification.ParallelLeidenAlgorithm;
 
 /**
  * Command line tool for creating a multi-level publication classification.
@@ -30,14 +46,14 @@ public class PublicationClassificationCreator
      * Usage text.
      */
     public static final String USAGE
-        = "Usage: PublicationClassificationCreator\n"
+        = "Usage: PublicationClassificationCreator [options]\n"
             + "\t<pub_file> <cit_link_file> <classification_file>\n"
             + "\t<largest_component> <n_iterations>\n"
             + "\t<resolution_micro_level> <pub_threshold_micro_level>\n"
             + "\t<resolution_meso_level> <pub_threshold_meso_level>\n"
             + "\t<resolution_macro_level> <pub_threshold_macro_level>\n"
             + "\t\t(to create a publication classification based on data in text files)\n\n"
-            + "   or  PublicationClassificationCreator\n"
+            + "   or  PublicationClassificationCreator [options]\n"
             + "\t<server> <database> <pub_table> <cit_link_table> <classification_table>\n"
             + "\t<largest_component> <n_iterations>\n"
             + "\t<resolution_micro_level> <pub_threshold_micro_level>\n"
@@ -52,18 +68,22 @@ public class PublicationClassificationCreator
             + "\tpublications). Publication numbers must be integers starting at zero. Non-core\n"
             + "\tpublications are auxiliary publications that can be included to improve the clustering\n"
             + "\tof core publications. The lines in the file must be sorted by the publication numbers\n"
-            + "\tin the first column.\n"
+            + "\tin the first column. The file may be gzip-compressed.\n"
             + "<cit_link_file>\n"
             + "\tName of the citation links input file. This text file must contain three tab-separated\n"
             + "\tcolumns (without a header line), first two columns of publication numbers and then a\n"
             + "\tcolumn of weights. Each citation link must be included only once in the file. The\n"
             + "\tlines in the file must be sorted first by the publication numbers in the first column\n"
-            + "\tand then by the publication numbers in the second column.\n"
+            + "\tand then by the publication numbers in the second column. The file may be\n"
+            + "\tgzip-compressed, which is recognized automatically. It is then decompressed twice, first\n"
+            + "\tto count the citation links and then to read them, using <n_threads> threads if it was\n"
+            + "\tcompressed using bgzip. The decompressed citation links are read in parallel.\n"
             + "<classification_file>\n"
             + "\tName of the classification output file. This text file will contain four tab-separated\n"
             + "\tcolumns (without a header line), first a column of publication numbers and then three\n"
             + "\tcolumns of cluster numbers at the micro, meso, and macro level. Cluster numbers are\n"
-            + "\tintegers starting at zero.\n"
+            + "\tintegers starting at zero. If the file name ends with '.gz', the file is compressed\n"
+            + "\tusing gzip.\n"
             + "<server>\n"
             + "\tSQL Server server name. A connection will be made using integrated authentication.\n"
             + "<database>\n"
@@ -87,20 +107,161 @@ public class PublicationClassificationCreator
             + "<n_iterations>\n"
             + "\tNumber of iterations of the Leiden algorithm (e.g., 50).\n"
             + "<resolution_micro_level>\n"
-            + "\tValue of the resolution parameter at the micro level.\n"
+            + "\tValue of the resolution parameter at the micro level. In sweep mode, multiple\n"
+            + "\tcomma-separated values can be provided (e.g., '1e-5,2e-5').\n"
             + "<pub_threshold_micro_level>\n"
             + "\tMinimum number of publications per cluster at the micro level (excluding non-core\n"
             + "\tpublications).\n"
             + "<resolution_meso_level>\n"
-            + "\tValue of the resolution parameter at the meso level.\n"
+            + "\tValue of the resolution parameter at the meso level. In sweep mode, multiple\n"
+            + "\tcomma-separated values can be provided (e.g., '1e-5,2e-5').\n"
             + "<pub_threshold_meso_level>\n"
             + "\tMinimum number of publications per cluster at the meso level (excluding non-core\n"
             + "\tpublications).\n"
             + "<resolution_macro_level>\n"
-            + "\tValue of the resolution parameter at the macro level.\n"
+            + "\tValue of the resolution parameter at the macro level. In sweep mode, multiple\n"
+            + "\tcomma-separated values can be provided (e.g., '1e-5,2e-5').\n"
             + "<pub_threshold_macro_level>\n"
             + "\tMinimum number of publications per cluster at the macro level (excluding non-core\n"
-            + "\tpublications).\n";
+            + "\tpublications).\n\n"
+            + "Options:\n"
+            + "--network_cache <network_cache_file>\n"
+            + "\tName of a binary network cache file. If the file exists, the citation network is\n"
+            + "\tread from this file instead of from the publications and citation links input files\n"
+            + "\tor tables. Otherwise, the citation network is read from the input files or tables and\n"
+            + "\tis then written to this file, so that subsequent runs on the same data can read the\n"
+            + "\tcitation network much faster.\n"
+            + "--trusted_input <trusted_input>\n"
+            + "\tBoolean indicating whether the citation links input file or table is trusted to meet the\n"
+            + "\trequirements ('true') or not ('false') (default: 'false'). If 'true', the checks of the\n"
+            + "\tsorting of the citation links and of the integrity of the citation network are skipped,\n"
+            + "\twhich makes reading the citation network faster. Only publication numbers are checked.\n"
+            + "\tIf the input does not meet the requirements, the results are then undefined.\n"
+            + "--cit_weights <cit_weights>\n"
+            + "\tMethod used for computing the citation link weights ('direct' or 'extended_direct'). If\n"
+            + "\tprovided, <cit_link_file> must contain two tab-separated columns (without a header line)\n"
+            + "\tof publication numbers of citing and cited publications, which do not need to be sorted,\n"
+            + "\tand the citation link weights are computed in memory. Each citing publication then\n"
+            + "\tdistributes a weight of one equally over its references. In the direct citation approach\n"
+            + "\t('direct'), only citation links between core publications are used. In the extended\n"
+            + "\tdirect citation approach ('extended_direct'), non-core publications with citation links\n"
+            + "\twith at least two core publications and their citation links with core publications are\n"
+            + "\talso used. Only supported for input files.\n"
+            + "--n_threads <n_threads>\n"
+            + "\tNumber of threads used for reading the publications and citation links files, writing\n"
+            + "\tthe classification file, and processing parameter sets in sweep mode (default: number of\n"
+            + "\tavailable processors).\n"
+            + "--n_random_starts <n_random_starts>\n"
+            + "\tNumber of independent runs of the Leiden algorithm at each level (default: 1). The\n"
+            + "\truns use random seeds 0, 1, 2, etc. and are performed concurrently. At each level,\n"
+            + "\tthe clustering with the highest quality is used.\n"
+            + "--convergence_epsilon <convergence_epsilon>\n"
+            + "\tMinimum relative improvement in quality per iteration of the Leiden algorithm (e.g.,\n"
+            + "\t0.0001). If provided, the Leiden algorithm performs one iteration at a time and stops as\n"
+            + "\tsoon as no publications move to a different cluster or the relative improvement in\n"
+            + "\tquality is below this value. <n_iterations> is then the maximum number of iterations. The\n"
+            + "\tnumber of iterations actually performed is reported for each level. By default, the\n"
+            + "\tLeiden algorithm always performs <n_iterations> iterations. Not used in sweep mode.\n"
+            + "--parallel_leiden <parallel_leiden>\n"
+            + "\tBoolean indicating whether a multi-threaded variant of the Leiden algorithm should be\n"
+            + "\tused ('true') or not ('false') (default: 'false'). If 'true', each run of the Leiden\n"
+            + "\talgorithm uses <n_threads> threads for the local moving of publications, the refinement\n"
+            + "\tof clusters, and the aggregation of the citation network. For a given random seed, the\n"
+            + "\tclassification does not depend on the number of threads, but it differs from the\n"
+            + "\tclassification created by the standard Leiden algorithm. The quality of the\n"
+            + "\tclassification is similar.\n"
+            + "--incremental <existing_classification>\n"
+            + "\tName of an existing classification file or table. If provided, no new classification is\n"
+            + "\tcreated. Instead, publications that are not in the existing classification are assigned\n"
+            + "\tto the micro-level cluster to which they have the highest total citation link weight, and\n"
+            + "\tto the corresponding meso-level and macro-level clusters. Publications that are not\n"
+            + "\tlinked to any classified publication, directly or through other new publications, are\n"
+            + "\tassigned to new clusters. The classification of existing publications is not changed. The\n"
+            + "\tupdated classification is written to <classification_file> or <classification_table>.\n"
+            + "\tThe existing classification must have the same layout as <classification_file> or\n"
+            + "\t<classification_table>. The resolution and threshold arguments are ignored.\n"
+            + "--initial_classification <initial_classification>\n"
+            + "\tName of an initial classification file or table, for instance a classification created\n"
+            + "\tfor a previous version of the citation network. At each level, the Leiden algorithm then\n"
+            + "\timproves the initial classification at that level instead of starting from singleton\n"
+            + "\tclusters. This usually requires fewer iterations and gives a classification that is more\n"
+            + "\tsimilar to the initial classification. At the meso and macro level, each cluster of the\n"
+            + "\tlevel below is assigned to the initial cluster of most of its publications. Publications\n"
+            + "\tthat are not in the initial classification start in singleton clusters. The initial\n"
+            + "\tclassification must have the same layout as <classification_file> or\n"
+            + "\t<classification_table>, but may have fewer levels.\n"
+            + "--checkpoint_dir <checkpoint_directory>\n"
+            + "\tName of a checkpoint directory. Each level of the classification is written to a binary\n"
+            + "\tcheckpoint file in this directory as soon as it has been created. When the tool is run\n"
+            + "\tagain, a level is read from its checkpoint file instead of being created, provided that\n"
+            + "\tthe citation network, the resolutions and thresholds at this level and all lower levels,\n"
+            + "\tand the initial classification, if provided, are unchanged. This makes it possible to\n"
+            + "\tresume an interrupted run, or to change only the parameters of the higher levels without\n"
+            + "\trecreating the lower levels. Changes in the number of iterations or random starts do not\n"
+            + "\tinvalidate checkpoint files. The state of the random number generators is not stored in\n"
+            + "\tcheckpoint files, so the levels created after resuming may differ from the levels of an\n"
+            + "\tuninterrupted run with the same random seeds. Checkpoint files are not used in sweep mode.\n"
+            + "--sweep_summary <sweep_summary_file>\n"
+            + "\tName of the parameter sweep summary output file. Providing this option, or multiple\n"
+            + "\tcomma-separated values for any of the resolution and threshold arguments, enables sweep\n"
+            + "\tmode. In sweep mode, a classification is created for each combination of the provided\n"
+            + "\tvalues, excluding combinations in which the resolution increases from one level to the\n"
+            + "\tnext. All classifications are created concurrently based on a single citation network.\n"
+            + "\tCombinations with the same values at the micro level (and the meso level) share the\n"
+            + "\tclusterings at these levels. This text file will contain a header line and a line for\n"
+            + "\teach combination with tab-separated columns for the resolutions, the thresholds, the\n"
+            + "\tnumbers of clusters, and the qualities at the three levels, the run time in seconds, and\n"
+            + "\tthe estimated memory size in megabytes. The summary is also printed to the standard\n"
+            + "\toutput.\n"
+            + "--sweep_classifications <sweep_classifications>\n"
+            + "\tBoolean indicating whether in sweep mode the classification of each combination should be\n"
+            + "\twritten ('true') or not ('false') (default: 'false'). The number of the combination is\n"
+            + "\tappended to the name of the classification file or table (e.g., 'classification_1.txt'\n"
+            + "\tor 'classification_1').\n"
+            + "--cluster_components <cluster_components>\n"
+            + "\tBoolean indicating whether each connected component of the citation network should be\n"
+            + "\tclustered separately ('true') or not ('false') (default: 'false'). Only relevant if\n"
+            + "\t<largest_component> is 'false'. Components with fewer publications than\n"
+            + "\t<pub_threshold_micro_level> (excluding non-core publications) each become a single cluster\n"
+            + "\tat all levels, which is also the result of the reassignment of small clusters. All other\n"
+            + "\tcomponents are clustered concurrently using <n_threads> threads. The classification\n"
+            + "\tincludes all publications, as when this option is 'false', but is usually created much\n"
+            + "\tfaster if the citation network has many components. Checkpoint files are not used if this\n"
+            + "\toption is 'true'. Not used in sweep mode.\n"
+            + "--metrics_file <metrics_file>\n"
+            + "\tName of the performance metrics output file. This JSON file will contain the duration,\n"
+            + "\tan upper bound of the peak heap memory usage (the sum of the peak usages of the heap\n"
+            + "\tmemory pools), the number and duration of garbage collections, the number of bytes\n"
+            + "\tallocated by all threads that are alive at the end of the phase, and the number of\n"
+            + "\tpublications and citation links of each phase (reading, component extraction, network\n"
+            + "\treduction, clustering, reassignment of small clusters, and writing). If a JDK Flight\n"
+            + "\tRecorder recording is active, an event of type '" + PerformanceMetrics.JFR_EVENT_NAME + "'\n"
+            + "\tis also emitted for each phase.\n"
+            + "--db_driver <db_driver>\n"
+            + "\tClass name of the JDBC driver (default: SQL Server driver).\n"
+            + "--db_url <db_url>\n"
+            + "\tJDBC URL of the database. If provided, this URL is used instead of the URL\n"
+            + "\tconstructed from <server> and <database>.\n"
+            + "--db_connections <db_connections>\n"
+            + "\tNumber of database connections used for reading the citation links table in\n"
+            + "\tparallel (default: " + DatabaseIO.DEFAULT_N_CONNECTIONS + ").\n"
+            + "--db_fetch_size <db_fetch_size>\n"
+            + "\tNumber of rows fetched from the database at once (default: " + DatabaseIO.DEFAULT_FETCH_SIZE + ").\n"
+            + "--db_bulk_copy <db_bulk_copy>\n"
+            + "\tBoolean indicating whether the classification table should be loaded using bulk\n"
+            + "\tcopy ('true') or using batched insert statements ('false') (default: 'false').\n"
+            + "\tBulk copy is supported only for SQL Server databases.\n"
+            + "--db_batch_size <db_batch_size>\n"
+            + "\tNumber of rows per batch when loading the classification table (default: "
+            + DatabaseIO.DEFAULT_BATCH_SIZE + ").\n"
+            + "\tWhen bulk copy is used, each batch is committed separately. Otherwise, all rows are\n"
+            + "\tcommitted in a single transaction.\n"
+            + "--db_table_lock <db_table_lock>\n"
+            + "\tBoolean indicating whether the classification table should be locked while it is\n"
+            + "\tloaded (default: 'false').\n"
+            + "--db_create_index <db_create_index>\n"
+            + "\tBoolean indicating whether a primary key on pub_no should be created after the\n"
+            + "\tclassification table has been loaded (default: 'false').\n";
 
     /**
      * This method is called when the tool is started.
@@ -116,15 +277,170 @@ public class PublicationClassificationCreator
             System.exit(-1);
         }
 
+        // Process command line options.
+        String networkCacheFile = null;
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        int nRandomStarts = 1;
+        double convergenceEpsilon = MultiLevelClustering.NO_EARLY_STOPPING;
+        String checkpointDirectory = null;
+        String existingClassification = null;
+        String initialClassification = null;
+        String sweepSummaryFile = null;
+        boolean sweepClassifications = false;
+        String metricsFile = null;
+        boolean clusterComponents = false;
+        boolean parallelLeiden = false;
+        boolean trustedInput = false;
+        String citWeights = null;
+        String dbDriver = DatabaseIO.SQL_SERVER_DRIVER;
+        String dbUrl = null;
+        int dbNConnections = DatabaseIO.DEFAULT_N_CONNECTIONS;
+        int dbFetchSize = DatabaseIO.DEFAULT_FETCH_SIZE;
+        boolean dbBulkCopy = false;
+        int dbBatchSize = DatabaseIO.DEFAULT_BATCH_SIZE;
+        boolean dbTableLock = false;
+        boolean dbCreateIndex = false;
+        int argIndex = 0;
+        while ((argIndex < args.length) && args[argIndex].startsWith("--"))
+        {
+            String option = args[argIndex++];
+            if (argIndex == args.length)
+            {
+                System.err.println("Error while processing command line option " + option + ": Value is missing.\n\n" + USAGE);
+                System.exit(-1);
+            }
+            if (option.equals("--network_cache"))
+                networkCacheFile = args[argIndex++];
+            else if (option.equals("--trusted_input"))
+                trustedInput = parseBooleanOption(option, args[argIndex++]);
+            else if (option.equals("--cit_weights"))
+            {
+                citWeights = args[argIndex++];
+                if (!citWeights.equals("direct") && !citWeights.equals("extended_direct"))
+                {
+                    System.err.println("Error while processing command line option --cit_weights: Value must be 'direct' or 'extended_direct'.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            }
+            else if (option.equals("--n_threads"))
+                try
+                {
+                    nThreads = Integer.parseInt(args[argIndex++]);
+                    if (nThreads <= 0)
+                        throw new NumberFormatException();
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --n_threads: Value must be a positive integer number.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--n_random_starts"))
+                try
+                {
+                    nRandomStarts = Integer.parseInt(args[argIndex++]);
+                    if (nRandomStarts <= 0)
+                        throw new NumberFormatException();
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --n_random_starts: Value must be a positive integer number.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--incremental"))
+                existingClassification = args[argIndex++];
+            else if (option.equals("--initial_classification"))
+                initialClassification = args[argIndex++];
+            else if (option.equals("--checkpoint_dir"))
+                checkpointDirectory = args[argIndex++];
+            else if (option.equals("--sweep_summary"))
+                sweepSummaryFile = args[argIndex++];
+            else if (option.equals("--sweep_classifications"))
+                sweepClassifications = parseBooleanOption(option, args[argIndex++]);
+            else if (option.equals("--cluster_components"))
+                clusterComponents = parseBooleanOption(option, args[argIndex++]);
+            else if (option.equals("--parallel_leiden"))
+                parallelLeiden = parseBooleanOption(option, args[argIndex++]);
+            else if (option.equals("--metrics_file"))
+                metricsFile = args[argIndex++];
+            else if (option.equals("--convergence_epsilon"))
+                try
+                {
+                    convergenceEpsilon = Double.parseDouble(args[argIndex++]);
+                    if (!(convergenceEpsilon >= 0))
+                        throw new NumberFormatException();
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --convergence_epsilon: Value must be a non-negative number.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--db_driver"))
+                dbDriver = args[argIndex++];
+            else if (option.equals("--db_url"))
+                dbUrl = args[argIndex++];
+            else if (option.equals("--db_connections"))
+                try
+                {
+                    dbNConnections = Integer.parseInt(args[argIndex++]);
+                    if (dbNConnections <= 0)
+                        throw new NumberFormatException();
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --db_connections: Value must be a positive integer number.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--db_fetch_size"))
+                try
+                {
+                    dbFetchSize = Integer.parseInt(args[argIndex++]);
+                    if (dbFetchSize <= 0)
+                        throw new NumberFormatException();
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --db_fetch_size: Value must be a positive integer number.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--db_bulk_copy"))
+                dbBulkCopy = parseBooleanOption(option, args[argIndex++]);
+            else if (option.equals("--db_batch_size"))
+                try
+                {
+                    dbBatchSize = Integer.parseInt(args[argIndex++]);
+                    if (dbBatchSize <= 0)
+                        throw new NumberFormatException();
+                }
+                catch (NumberFormatException e)
+                {
+                    System.err.println("Error while processing command line option --db_batch_size: Value must be a positive integer number.\n\n" + USAGE);
+                    System.exit(-1);
+                }
+            else if (option.equals("--db_table_lock"))
+                dbTableLock = parseBooleanOption(option, args[argIndex++]);
+            else if (option.equals("--db_create_index"))
+                dbCreateIndex = parseBooleanOption(option, args[argIndex++]);
+            else
+            {
+                System.err.println("Error while processing command line option " + option + ": Unknown option.\n\n" + USAGE);
+                System.exit(-1);
+            }
+        }
+
         // Process command line arguments.
         boolean useFiles = false;
-        if (args.length == 11)
+        if (args.length - argIndex == 11)
             useFiles = true;
-        else if (args.length != 13)
+        else if (args.length - argIndex != 13)
         {
             System.err.print("Error while processing command line arguments: Incorrect number of command line arguments.\n\n" + USAGE);
             System.exit(-1);
         }
+        if ((citWeights != null) && !useFiles)
+        {
+            System.err.println("Error while processing command line option --cit_weights: Option is only supported for input files.\n\n" + USAGE);
+            System.exit(-1);
+        }
 
         String pubFile = null;
         String citLinkFile = null;
@@ -136,13 +452,12 @@ public class PublicationClassificationCreator
         String classificationTable = null;
         boolean largestComponent = false;
         int nIterations = 0;
-        double resolutionMicroLevel = 0;
-        int pubThresholdMicroLevel = 0;
-        double resolutionMesoLevel = 0;
-        int pubThresholdMesoLevel = 0;
-        double resolutionMacroLevel = 0;
-        int pubThresholdMacroLevel = 0;
-        int argIndex = 0;
+        double[] resolutionsMicroLevel = null;
+        int[] pubThresholdsMicroLevel = null;
+        double[] resolutionsMesoLevel = null;
+        int[] pubThresholdsMesoLevel = null;
+        double[] resolutionsMacroLevel = null;
+        int[] pubThresholdsMacroLevel = null;
         if (useFiles)
         {
             pubFile = args[argIndex++];
@@ -156,6 +471,8 @@ public class PublicationClassificationCreator
             pubTable = args[argIndex++];
             citLinkTable = args[argIndex++];
             classificationTable = args[argIndex++];
+            if (dbUrl == null)
+                dbUrl = DatabaseIO.getSqlServerUrl(server, database);
         }
         try
         {
@@ -182,9 +499,7 @@ public class PublicationClassificationCreator
         }
         try
         {
-            resolutionMicroLevel = Double.parseDouble(args[argIndex++]);
-            if (resolutionMicroLevel < 0)
-                throw new NumberFormatException();
+            resolutionsMicroLevel = parseDoubles(args[argIndex++], 0);
         }
         catch (NumberFormatException e)
         {
@@ -193,9 +508,7 @@ public class PublicationClassificationCreator
         }
         try
         {
-            pubThresholdMicroLevel = Integer.parseInt(args[argIndex++]);
-            if (pubThresholdMicroLevel <= 0)
-                throw new NumberFormatException();
+            pubThresholdsMicroLevel = parseIntegers(args[argIndex++], 1);
         }
         catch (NumberFormatException e)
         {
@@ -204,9 +517,7 @@ public class PublicationClassificationCreator
         }
         try
         {
-            resolutionMesoLevel = Double.parseDouble(args[argIndex++]);
-            if (resolutionMesoLevel < 0)
-                throw new NumberFormatException();
+            resolutionsMesoLevel = parseDoubles(args[argIndex++], 0);
         }
         catch (NumberFormatException e)
         {
@@ -215,9 +526,7 @@ public class PublicationClassificationCreator
         }
         try
         {
-            pubThresholdMesoLevel = Integer.parseInt(args[argIndex++]);
-            if (pubThresholdMesoLevel < 0)
-                throw new NumberFormatException();
+            pubThresholdsMesoLevel = parseIntegers(args[argIndex++], 0);
         }
         catch (NumberFormatException e)
         {
@@ -226,9 +535,7 @@ public class PublicationClassificationCreator
         }
         try
         {
-            resolutionMacroLevel = Double.parseDouble(args[argIndex++]);
-            if (resolutionMacroLevel < 0)
-                throw new NumberFormatException();
+            resolutionsMacroLevel = parseDoubles(args[argIndex++], 0);
         }
         catch (NumberFormatException e)
         {
@@ -237,28 +544,39 @@ public class PublicationClassificationCreator
         }
         try
         {
-            pubThresholdMacroLevel = Integer.parseInt(args[argIndex++]);
-            if (pubThresholdMacroLevel < 0)
-                throw new NumberFormatException();
+            pubThresholdsMacroLevel = parseIntegers(args[argIndex++], 0);
         }
         catch (NumberFormatException e)
         {
             System.err.println("Error while processing command line argument <pub_threshold_macro_level>: Value must be a positive integer number.\n\n" + USAGE);
             System.exit(-1);
         }
+        boolean sweep = (sweepSummaryFile != null) || (resolutionsMicroLevel.length > 1) || (pubThresholdsMicroLevel.length > 1) || (resolutionsMesoLevel.length > 1) || (pubThresholdsMesoLevel.length > 1) || (resolutionsMacroLevel.length > 1) || (pubThresholdsMacroLevel.length > 1);
 
-        // Read citation network from file or database.
-        System.out.print("Reading citation network from " + ((useFiles) ? "file" : "database") + "... ");
+        PerformanceMetrics metrics = new PerformanceMetrics();
+
+        // Read citation network from network cache file, file, or database.
+        boolean useNetworkCache = (networkCacheFile != null) && new File(networkCacheFile).exists();
+        String source = useNetworkCache ? "network cache file" : (useFiles ? "file" : "database");
+        System.out.print("Reading citation network from " + source + "... ");
         long startTimeCitNetwork = System.currentTimeMillis();
+        metrics.phaseStarted(PerformanceMetrics.PHASE_LOAD);
         Network citNetwork;
-        if (useFiles)
-            citNetwork = FileIO.readNetwork(pubFile, citLinkFile);
+        if (useNetworkCache)
+            citNetwork = FileIO.readNetworkBinary(networkCacheFile);
+        else if (useFiles && (citWeights != null))
+            citNetwork = FileIO.readUnweightedNetwork(pubFile, citLinkFile, nThreads, citWeights.equals("extended_direct"));
+        else if (useFiles)
+            citNetwork = FileIO.readNetwork(pubFile, citLinkFile, nThreads, trustedInput);
         else
-            citNetwork = DatabaseIO.readNetwork(server, database, pubTable, citLinkTable);
+            citNetwork = DatabaseIO.readNetwork(dbDriver, dbUrl, pubTable, citLinkTable, dbNConnections, dbFetchSize, trustedInput);
+        metrics.phaseFinished(PerformanceMetrics.PHASE_LOAD, citNetwork);
         int nPubs = citNetwork.getNNodes();
         int[] pub = new int[citNetwork.getNNodes()];
+        for (int i = 0; i < nPubs; i++)
+            pub[i] = i;
         System.out.println("Finished!");
-        System.out.println("Reading citation network from " + ((useFiles) ? "file" : "database") + " took " + formatDuration((System.currentTimeMillis() - startTimeCitNetwork) / 1000) + ".");
+        System.out.println("Reading citation network from " + source + " took " + formatDuration((System.currentTimeMillis() - startTimeCitNetwork) / 1000) + ".");
         System.out.println("Citation network:");
         System.out.println("\tNumber of publications: " + citNetwork.getNNodes());
         System.out.println("\tNumber of citation links: " + citNetwork.getNEdges());
@@ -266,11 +584,25 @@ public class PublicationClassificationCreator
         System.out.println("\tTotal citation link weight: " + (int) (citNetwork.getTotalEdgeWeight() + 0.5));
         System.out.println();
 
+        if ((networkCacheFile != null) && !useNetworkCache)
+        {
+            // Write citation network to network cache file.
+            System.out.print("Writing citation network to network cache file... ");
+            long startTimeNetworkCache = System.currentTimeMillis();
+            metrics.phaseStarted(PerformanceMetrics.PHASE_NETWORK_CACHE_WRITE);
+            FileIO.writeNetworkBinary(citNetwork, networkCacheFile);
+            metrics.phaseFinished(PerformanceMetrics.PHASE_NETWORK_CACHE_WRITE, citNetwork);
+            System.out.println("Finished!");
+            System.out.println("Writing citation network to network cache file took " + formatDuration((System.currentTimeMillis() - startTimeNetworkCache) / 1000) + ".");
+            System.out.println();
+        }
+
         if (largestComponent)
         {
             // Identify largest connected component in citation network.
             System.out.print("Identifying largest connected component in citation network... ");
             long startTimeCoreCitNetwork = System.currentTimeMillis();
+            metrics.phaseStarted(PerformanceMetrics.PHASE_COMPONENT_EXTRACTION);
             Clustering clustering = citNetwork.identifyComponents();
             citNetwork = citNetwork.createSubnetwork(clustering, 0);
             pub = new int[citNetwork.getNNodes()];
@@ -282,6 +614,7 @@ public class PublicationClassificationCreator
                     pub[i] = j;
                     i++;
                 }
+            metrics.phaseFinished(PerformanceMetrics.PHASE_COMPONENT_EXTRACTION, citNetwork);
             System.out.println("Finished!");
             System.out.println("Identifying largest connected component in citation network took " + formatDuration((System.currentTimeMillis() - startTimeCoreCitNetwork) / 1000) + ".");
             System.out.println("Largest connected component:");
@@ -292,44 +625,301 @@ public class PublicationClassificationCreator
             System.out.println();
         }
 
+        if (existingClassification != null)
+        {
+            // Read existing publication classification.
+            System.out.print("Reading existing publication classification from " + ((useFiles) ? "file" : "database") + "... ");
+            long startTimeExistingClassification = System.currentTimeMillis();
+            int[][] existingPubCluster;
+            if (useFiles)
+                existingPubCluster = FileIO.readClassification(existingClassification, nPubs);
+            else
+                existingPubCluster = DatabaseIO.readClassification(dbDriver, dbUrl, existingClassification, new String[]{"micro", "meso", "macro"}, nPubs, dbFetchSize);
+            int[][] existingCluster = new int[existingPubCluster.length][pub.length];
+            int nNewPubs = 0;
+            for (int j = 0; j < pub.length; j++)
+            {
+                for (int i = 0; i < existingCluster.length; i++)
+                    existingCluster[i][j] = existingPubCluster[i][pub[j]];
+                if (existingCluster[0][j] == IncrementalAssignment.UNASSIGNED)
+                    nNewPubs++;
+            }
+            System.out.println("Finished!");
+            System.out.println("Reading existing publication classification from " + ((useFiles) ? "file" : "database") + " took " + formatDuration((System.currentTimeMillis() - startTimeExistingClassification) / 1000) + ".");
+            System.out.println("Existing publication classification:");
+            System.out.println("\tNumber of levels: " + existingCluster.length);
+            System.out.println("\tNumber of classified publications: " + (pub.length - nNewPubs));
+            System.out.println("\tNumber of new publications: " + nNewPubs);
+            System.out.println();
+
+            // Assign new publications to existing publication classification.
+            System.out.print("Assigning new publications to clusters... ");
+            long startTimeAssignment = System.currentTimeMillis();
+            int[][] cluster = null;
+            metrics.phaseStarted(PerformanceMetrics.PHASE_ASSIGNMENT);
+            try
+            {
+                cluster = IncrementalAssignment.assignNodes(citNetwork, existingCluster);
+            }
+            catch (IllegalArgumentException e)
+            {
+                System.err.println("Error while assigning new publications to clusters: " + e.getMessage());
+                System.exit(-1);
+            }
+            metrics.phaseFinished(PerformanceMetrics.PHASE_ASSIGNMENT, citNetwork);
+            System.out.println("Finished!");
+            System.out.println("Assigning new publications to clusters took " + formatDuration((System.currentTimeMillis() - startTimeAssignment) / 1000) + ".");
+            System.out.println("Updated publication classification:");
+            for (int i = 0; i < cluster.length; i++)
+            {
+                int nExistingClusters = 0;
+                int nClusters = 0;
+                for (int j = 0; j < pub.length; j++)
+                {
+                    if (existingCluster[i][j] != IncrementalAssignment.UNASSIGNED)
+                        nExistingClusters = Math.max(nExistingClusters, existingCluster[i][j] + 1);
+                    nClusters = Math.max(nClusters, cluster[i][j] + 1);
+                }
+                System.out.println("\tNumber of clusters at level " + (i + 1) + ": " + nClusters + " (" + (nClusters - nExistingClusters) + " new)");
+            }
+            System.out.println();
+
+            // Write updated publication classification to file or database.
+            System.out.print("Writing publication classification to " + ((useFiles) ? "file" : "database") + "... ");
+            long startTimePubClustering = System.currentTimeMillis();
+            metrics.phaseStarted(PerformanceMetrics.PHASE_WRITE);
+            if (useFiles)
+                FileIO.writeClassification(classificationFile, pub, cluster, nThreads);
+            else
+                DatabaseIO.writeClassification(dbDriver, dbUrl, classificationTable, pub, cluster, Arrays.copyOf(new String[]{"micro", "meso", "macro"}, cluster.length), dbBulkCopy, dbBatchSize, dbTableLock, dbCreateIndex);
+            metrics.phaseFinished(PerformanceMetrics.PHASE_WRITE, null);
+            System.out.println("Finished!");
+            System.out.println("Writing publication classification to " + ((useFiles) ? "file" : "database") + " took " + formatDuration((System.currentTimeMillis() - startTimePubClustering) / 1000) + ".");
+            if (metricsFile != null)
+                metrics.writeJson(metricsFile);
+            return;
+        }
+
+        // All instances of the parallel Leiden algorithm share one fork-join
+        // pool.
+        ForkJoinPool parallelLeidenPool = createParallelLeidenPool(parallelLeiden, nThreads);
+
+        if (sweep)
+        {
+            // Create a parameter set for each combination of values of the
+            // resolution and threshold arguments.
+            List<MultiLevelClusteringSweep.ParameterSet> parameterSets = new ArrayList<MultiLevelClusteringSweep.ParameterSet>();
+            int nSkippedParameterSets = 0;
+            for (double resolutionMicroLevel : resolutionsMicroLevel)
+                for (int pubThresholdMicroLevel : pubThresholdsMicroLevel)
+                    for (double resolutionMesoLevel : resolutionsMesoLevel)
+                        for (int pubThresholdMesoLevel : pubThresholdsMesoLevel)
+                            for (double resolutionMacroLevel : resolutionsMacroLevel)
+                                for (int pubThresholdMacroLevel : pubThresholdsMacroLevel)
+                                    if ((resolutionMicroLevel >= resolutionMesoLevel) && (resolutionMesoLevel >= resolutionMacroLevel))
+                                        parameterSets.add(new MultiLevelClusteringSweep.ParameterSet(new double[] { resolutionMicroLevel, resolutionMesoLevel, resolutionMacroLevel }, new double[] { pubThresholdMicroLevel, pubThresholdMesoLevel, pubThresholdMacroLevel }));
+                                    else
+                                        nSkippedParameterSets++;
+
+            // Run parameter sweep.
+            System.out.println("Running parameter sweep...");
+            printClusteringAlgorithm(parallelLeiden, nThreads);
+            System.out.println("\tNumber of iterations: " + nIterations);
+            printRandomSeeds(nRandomStarts);
+            System.out.println("\tNumber of parameter sets: " + parameterSets.size() + ((nSkippedParameterSets > 0) ? " (" + nSkippedParameterSets + " skipped because the resolution increases from one level to the next)" : ""));
+            System.out.println("\tNumber of threads: " + nThreads);
+            System.out.println();
+            long startTimeSweep = System.currentTimeMillis();
+            MultiLevelClusteringSweep multiLevelClusteringSweep = new MultiLevelClusteringSweep(citNetwork, createClusteringAlgorithmFactory(nIterations, nRandomStarts, parallelLeiden, parallelLeidenPool), nThreads);
+            ObjIntConsumer<MultiLevelClustering> classificationWriter = sweepClassifications ? createSweepClassificationWriter(useFiles, classificationFile, classificationTable, pub, dbDriver, dbUrl, dbBulkCopy, dbBatchSize, dbTableLock, dbCreateIndex) : null;
+            List<MultiLevelClusteringSweep.Result> results = multiLevelClusteringSweep.run(parameterSets, (result, multiLevelClustering) ->
+            {
+                int parameterSetNo = parameterSets.indexOf(result.getParameterSet()) + 1;
+                if (classificationWriter != null)
+                    classificationWriter.accept(multiLevelClustering, parameterSetNo);
+                System.out.println("Finished parameter set " + parameterSetNo + " of " + parameterSets.size() + ".");
+            });
+            System.out.println("Running parameter sweep took " + formatDuration((System.currentTimeMillis() - startTimeSweep) / 1000) + ".");
+            System.out.println("Peak heap memory usage: " + (getPeakHeapMemoryUsage() >> 20) + " MB");
+            System.out.println();
+
+            // Print and write sweep summary.
+            System.out.println("Parameter sweep summary:");
+            System.out.println("\tParameter set\tResolution\tThreshold\tNumber of clusters\tQuality\tRun time\tMemory (MB)");
+            for (int i = 0; i < results.size(); i++)
+            {
+                MultiLevelClusteringSweep.Result result = results.get(i);
+                MultiLevelClusteringSweep.ParameterSet parameterSet = result.getParameterSet();
+                StringBuilder resolutions = new StringBuilder();
+                StringBuilder thresholds = new StringBuilder();
+                StringBuilder nClusters = new StringBuilder();
+                StringBuilder quality = new StringBuilder();
+                for (int j = 0; j < parameterSet.getNLevels(); j++)
+                {
+                    String separator = (j > 0) ? "/" : "";
+                    resolutions.append(separator).append(parameterSet.getResolution(j));
+                    thresholds.append(separator).append((int)parameterSet.getThreshold(j));
+                    nClusters.append(separator).append(result.getNClusters(j));
+                    quality.append(separator).append(String.format("%.6g", result.getQuality(j)));
+                }
+                System.out.println("\t" + (i + 1) + "\t" + resolutions + "\t" + thresholds + "\t" + nClusters + "\t" + quality + "\t" + formatDuration(result.getRunTime() / 1000) + "\t" + (result.getMemorySize() >> 20));
+            }
+            if (sweepSummaryFile != null)
+                FileIO.writeSweepSummary(sweepSummaryFile, results, new String[]{"micro", "meso", "macro"});
+            if (metricsFile != null)
+                metrics.writeJson(metricsFile);
+            return;
+        }
+        double resolutionMicroLevel = resolutionsMicroLevel[0];
+        int pubThresholdMicroLevel = pubThresholdsMicroLevel[0];
+        double resolutionMesoLevel = resolutionsMesoLevel[0];
+        int pubThresholdMesoLevel = pubThresholdsMesoLevel[0];
+        double resolutionMacroLevel = resolutionsMacroLevel[0];
+        int pubThresholdMacroLevel = pubThresholdsMacroLevel[0];
+
+        int[][] initialCluster = new int[0][];
+        if (initialClassification != null)
+        {
+            // Read initial publication classification.
+            System.out.print("Reading initial publication classification from " + ((useFiles) ? "file" : "database") + "... ");
+            long startTimeInitialClassification = System.currentTimeMillis();
+            int[][] initialPubCluster;
+            if (useFiles)
+                initialPubCluster = FileIO.readClassification(initialClassification, nPubs);
+            else
+                initialPubCluster = DatabaseIO.readClassification(dbDriver, dbUrl, initialClassification, new String[]{"micro", "meso", "macro"}, nPubs, dbFetchSize);
+            initialCluster = new int[initialPubCluster.length][pub.length];
+            int nInitialPubs = 0;
+            for (int j = 0; j < pub.length; j++)
+            {
+                for (int i = 0; i < initialCluster.length; i++)
+                    initialCluster[i][j] = initialPubCluster[i][pub[j]];
+                if (initialCluster[0][j] != IncrementalAssignment.UNASSIGNED)
+                    nInitialPubs++;
+            }
+            System.out.println("Finished!");
+            System.out.println("Reading initial publication classification from " + ((useFiles) ? "file" : "database") + " took " + formatDuration((System.currentTimeMillis() - startTimeInitialClassification) / 1000) + ".");
+            System.out.println("Initial publication classification:");
+            System.out.println("\tNumber of levels: " + initialCluster.length);
+            System.out.println("\tNumber of classified publications: " + nInitialPubs);
+            System.out.println("\tNumber of unclassified publications: " + (pub.length - nInitialPubs));
+            System.out.println();
+        }
+
         // Create publication classification.
         System.out.println("Creating publication classification...");
-        LeidenAlgorithm clusteringAlgorithm = new LeidenAlgorithm(LeidenAlgorithm.DEFAULT_RESOLUTION, nIterations, LeidenAlgorithm.DEFAULT_RANDOMNESS, new Random(0));
-        System.out.println("\tClustering algorithm: Leiden algorithm");
-        System.out.println("\tNumber of iterations: " + nIterations);
-        System.out.println("\tRandom seed: 0");
+        IterativeCPMClusteringAlgorithm[] clusteringAlgorithms = createClusteringAlgorithms(nIterations, nRandomStarts, parallelLeiden, parallelLeidenPool);
+        printClusteringAlgorithm(parallelLeiden, nThreads);
+        if (convergenceEpsilon != MultiLevelClustering.NO_EARLY_STOPPING)
+        {
+            System.out.println("\tMaximum number of iterations: " + nIterations);
+            System.out.println("\tConvergence epsilon: " + convergenceEpsilon);
+        }
+        else
+            System.out.println("\tNumber of iterations: " + nIterations);
+        printRandomSeeds(nRandomStarts);
         System.out.println();
-        MultiLevelClustering multiLevelClustering = new MultiLevelClustering(citNetwork, clusteringAlgorithm);
+        if (clusterComponents)
+        {
+            // Cluster each connected component separately.
+            System.out.println("Clustering connected components...");
+            long startTimeComponents = System.currentTimeMillis();
+            metrics.phaseStarted(PerformanceMetrics.PHASE_COMPONENT_CLUSTERING);
+            ComponentClustering componentClustering = new ComponentClustering(citNetwork, createClusteringAlgorithmFactory(nIterations, nRandomStarts, parallelLeiden, parallelLeidenPool), nThreads);
+            if (convergenceEpsilon != MultiLevelClustering.NO_EARLY_STOPPING)
+                componentClustering.setConvergenceEpsilon(convergenceEpsilon);
+            double[] resolutions = new double[] { resolutionMicroLevel, resolutionMesoLevel, resolutionMacroLevel };
+            double[] pubThresholds = new double[] { pubThresholdMicroLevel, pubThresholdMesoLevel, pubThresholdMacroLevel };
+            int[][] cluster = null;
+            try
+            {
+                cluster = componentClustering.createClustering(resolutions, pubThresholds, initialCluster);
+            }
+            catch (IllegalArgumentException e)
+            {
+                System.err.println("Error while clustering connected components: " + e.getMessage());
+                System.exit(-1);
+            }
+            metrics.phaseFinished(PerformanceMetrics.PHASE_COMPONENT_CLUSTERING, citNetwork);
+            System.out.println("Clustering connected components took " + formatDuration((System.currentTimeMillis() - startTimeComponents) / 1000) + ".");
+            System.out.println("Connected components:");
+            System.out.println("\tNumber of components: " + componentClustering.getNComponents());
+            System.out.println("\tNumber of clustered components: " + componentClustering.getNClusteredComponents());
+            System.out.println("\tNumber of publications in largest component: " + componentClustering.getNLargestComponentNodes());
+            String[] levelNames = new String[] { "Micro", "Meso", "Macro" };
+            for (int i = 0; i < cluster.length; i++)
+            {
+                int nClusters = 0;
+                for (int j = 0; j < pub.length; j++)
+                    nClusters = Math.max(nClusters, cluster[i][j] + 1);
+                System.out.println(levelNames[i] + "-level classification:");
+                System.out.println("\tResolution: " + resolutions[i]);
+                System.out.println("\tThreshold: " + (int)pubThresholds[i]);
+                System.out.println("\tNumber of clusters: " + nClusters);
+            }
+            System.out.println();
+
+            // Write publication classification to file or database.
+            System.out.print("Writing publication classification to " + ((useFiles) ? "file" : "database") + "... ");
+            long startTimePubClustering = System.currentTimeMillis();
+            metrics.phaseStarted(PerformanceMetrics.PHASE_WRITE);
+            if (useFiles)
+                FileIO.writeClassification(classificationFile, pub, cluster, nThreads);
+            else
+                DatabaseIO.writeClassification(dbDriver, dbUrl, classificationTable, pub, cluster, new String[]{"micro", "meso", "macro"}, dbBulkCopy, dbBatchSize, dbTableLock, dbCreateIndex);
+            metrics.phaseFinished(PerformanceMetrics.PHASE_WRITE, null);
+            System.out.println("Finished!");
+            System.out.println("Writing publication classification to " + ((useFiles) ? "file" : "database") + " took " + formatDuration((System.currentTimeMillis() - startTimePubClustering) / 1000) + ".");
+            if (metricsFile != null)
+                metrics.writeJson(metricsFile);
+            return;
+        }
+        MultiLevelClustering multiLevelClustering = new MultiLevelClustering(citNetwork, clusteringAlgorithms);
+        if (convergenceEpsilon != MultiLevelClustering.NO_EARLY_STOPPING)
+            multiLevelClustering.setConvergenceEpsilon(convergenceEpsilon);
+        multiLevelClustering.setPhaseListener(metrics);
+        // When writing to a file, each level is encoded in the background
+        // and spooled to a temporary file while the next level is created.
+        FileIO.ClassificationWriter classificationWriter = useFiles ? new FileIO.ClassificationWriter(classificationFile, pub, nThreads) : null;
         // Add micro-level classification.
         System.out.println("Adding micro-level classification...");
         long startTimeMicroLevel = System.currentTimeMillis();
-        multiLevelClustering.addLevel(resolutionMicroLevel, pubThresholdMicroLevel, true);
+        addLevel(multiLevelClustering, resolutionMicroLevel, pubThresholdMicroLevel, (initialCluster.length > 0) ? initialCluster[0] : null, checkpointDirectory);
         System.out.println("Adding micro-level classification took " + formatDuration((System.currentTimeMillis() - startTimeMicroLevel) / 1000) + ".");
         System.out.println("Micro-level classification:");
         System.out.println("\tResolution: " + resolutionMicroLevel);
         System.out.println("\tThreshold: " + pubThresholdMicroLevel);
         System.out.println("\tNumber of clusters: " + + multiLevelClustering.getNClusters(0));
+        if (multiLevelClustering.getNIterations(0) > 0)
+            System.out.println("\tNumber of iterations: " + multiLevelClustering.getNIterations(0));
         System.out.println();
+        encodeLevel(multiLevelClustering, classificationWriter, metrics);
         // Add meso-level classification.
         System.out.println("Adding meso-level classification...");
         long startTimeMesoLevel = System.currentTimeMillis();
-        multiLevelClustering.addLevel(resolutionMesoLevel, pubThresholdMesoLevel, true);
+        addLevel(multiLevelClustering, resolutionMesoLevel, pubThresholdMesoLevel, (initialCluster.length > 1) ? initialCluster[1] : null, checkpointDirectory);
         System.out.println("Adding meso-level classification took " + formatDuration((System.currentTimeMillis() - startTimeMesoLevel) / 1000) + ".");
         System.out.println("Meso-level classification:");
         System.out.println("\tResolution: " + resolutionMesoLevel);
         System.out.println("\tThreshold: " + pubThresholdMesoLevel);
         System.out.println("\tNumber of clusters: " + + multiLevelClustering.getNClusters(1));
+        if (multiLevelClustering.getNIterations(1) > 0)
+            System.out.println("\tNumber of iterations: " + multiLevelClustering.getNIterations(1));
         System.out.println();
+        encodeLevel(multiLevelClustering, classificationWriter, metrics);
         // Add macro-level classification.
         System.out.println("Adding macro-level classification...");
         long startTimeMacroLevel = System.currentTimeMillis();
-        multiLevelClustering.addLevel(resolutionMacroLevel, pubThresholdMacroLevel, true);
+        addLevel(multiLevelClustering, resolutionMacroLevel, pubThresholdMacroLevel, (initialCluster.length > 2) ? initialCluster[2] : null, checkpointDirectory);
         System.out.println("Adding macro-level classification took " + formatDuration((System.currentTimeMillis() - startTimeMacroLevel) / 1000) + ".");
         System.out.println("Macro-level classification:");
         System.out.println("\tResolution: " + resolutionMacroLevel);
         System.out.println("\tThreshold: " + pubThresholdMacroLevel);
         System.out.println("\tNumber of clusters: " + + multiLevelClustering.getNClusters(2));
+        if (multiLevelClustering.getNIterations(2) > 0)
+            System.out.println("\tNumber of iterations: " + multiLevelClustering.getNIterations(2));
         System.out.println();
+        encodeLevel(multiLevelClustering, classificationWriter, metrics);
 
         // Write publication classification to file or database.
         System.out.print("Writing publication classification to " + ((useFiles) ? "file" : "database") + "... ");
@@ -337,15 +927,337 @@ public class PublicationClassificationCreator
         int nLevels = multiLevelClustering.getNLevels();
         if (nLevels == 0)
             return;
-        int[][] cluster = new int[nLevels][];
-        for (int i = 0; i < nLevels; i++)
-            cluster[i] = multiLevelClustering.getClustering(i).getClusters();
         if (useFiles)
-            FileIO.writeClassification(classificationFile, pub, cluster);
+        {
+            metrics.phaseStarted(PerformanceMetrics.PHASE_WRITE);
+            classificationWriter.write();
+            metrics.phaseFinished(PerformanceMetrics.PHASE_WRITE, null);
+        }
         else
-            DatabaseIO.writeClassification(server, database, classificationTable, pub, cluster, new String[]{"micro", "meso", "macro"});
+        {
+            metrics.phaseStarted(PerformanceMetrics.PHASE_PROJECTION);
+            int[][] cluster = multiLevelClustering.getAllClusters();
+            metrics.phaseFinished(PerformanceMetrics.PHASE_PROJECTION, null);
+            metrics.phaseStarted(PerformanceMetrics.PHASE_WRITE);
+            DatabaseIO.writeClassification(dbDriver, dbUrl, classificationTable, pub, cluster, new String[]{"micro", "meso", "macro"}, dbBulkCopy, dbBatchSize, dbTableLock, dbCreateIndex);
+            metrics.phaseFinished(PerformanceMetrics.PHASE_WRITE, null);
+        }
         System.out.println("Finished!");
         System.out.println("Writing publication classification to " + ((useFiles) ? "file" : "database") + " took " + formatDuration((System.currentTimeMillis() - startTimePubClustering) / 1000) + ".");
+        if (metricsFile != null)
+            metrics.writeJson(metricsFile);
+    }
+
+    /**
+     * Adds a level to a multi-level clustering. If a checkpoint directory is
+     * provided, the level is read from a valid checkpoint file if available.
+     * Otherwise, the level is created and is then written to a checkpoint
+     * file.
+     *
+     * @param multiLevelClustering Multi-level clustering
+     * @param resolution           Value of the resolution parameter
+     * @param pubThreshold         Minimum number of publications per cluster
+     * @param initialClusters      Initial cluster numbers of the publications
+     *                             (may be null)
+     * @param checkpointDirectory  Name of the checkpoint directory (may be
+     *                             null)
+     */
+    private static void addLevel(MultiLevelClustering multiLevelClustering, double resolution, int pubThreshold, int[] initialClusters, String checkpointDirectory)
+    {
+        int level = multiLevelClustering.getNLevels();
+        if (checkpointDirectory != null)
+            try
+            {
+                System.out.print("Reading clustering from checkpoint file... ");
+                if (multiLevelClustering.readCheckpoint(checkpointDirectory, resolution, pubThreshold, initialClusters))
+                {
+                    System.out.println("Finished! " + multiLevelClustering.getNClusters(level) + " clusters read.");
+                    return;
+                }
+                System.out.println("No valid checkpoint file found.");
+            }
+            catch (IOException e)
+            {
+                System.err.println("Error while reading checkpoint file: " + e.getMessage());
+                System.exit(-1);
+            }
+
+        multiLevelClustering.addLevel(resolution, pubThreshold, initialClusters, true);
+
+        if (checkpointDirectory != null)
+            try
+            {
+                System.out.print("Writing clustering to checkpoint file... ");
+                multiLevelClustering.writeCheckpoint(level, checkpointDirectory);
+                System.out.println("Finished!");
+            }
+            catch (IOException e)
+            {
+                System.err.println("Error while writing checkpoint file: " + e.getMessage());
+                System.exit(-1);
+            }
+    }
+
+    /**
+     * Starts encoding the highest level of a multi-level clustering for the
+     * classification file. The cluster numbers of the publications at the
+     * level are obtained from the composed lookup tables of the multi-level
+     * clustering and are then encoded in the background.
+     *
+     * @param multiLevelClustering Multi-level clustering
+     * @param classificationWriter Writer of the classification file (null if
+     *                             the classification is written to a
+     *                             database)
+     * @param metrics              Performance metrics
+     */
+    private static void encodeLevel(MultiLevelClustering multiLevelClustering, FileIO.ClassificationWriter classificationWriter, PerformanceMetrics metrics)
+    {
+        if (classificationWriter == null)
+            return;
+        int level = multiLevelClustering.getNLevels() - 1;
+        metrics.phaseStarted(PerformanceMetrics.PHASE_PROJECTION, level);
+        int[] clusters = multiLevelClustering.getClusters(level);
+        metrics.phaseFinished(PerformanceMetrics.PHASE_PROJECTION, level, null);
+        classificationWriter.addLevel(clusters);
+    }
+
+    /**
+     * Creates the fork-join pool shared by all instances of the multi-threaded
+     * variant of the Leiden algorithm. The threads of the pool are daemon
+     * threads, so the pool does not prevent the tool from exiting.
+     *
+     * @param parallelLeiden Boolean indicating whether the multi-threaded
+     *                       variant of the Leiden algorithm is used
+     * @param nThreads       Number of threads of the multi-threaded variant
+     *
+     * @return Fork-join pool (null if the multi-threaded variant is not used
+     *         or uses a single thread)
+     */
+    static ForkJoinPool createParallelLeidenPool(boolean parallelLeiden, int nThreads)
+    {
+        return (parallelLeiden && (nThreads > 1)) ? new ForkJoinPool(nThreads) : null;
+    }
+
+    /**
+     * Creates the instances of the Leiden algorithm used for the random starts.
+     * Each random start uses its own instance of the Leiden algorithm with a
+     * fixed random seed. The instances of the multi-threaded variant do not
+     * create threads themselves, but share the fork-join pool that is
+     * provided.
+     *
+     * @param nIterations        Number of iterations
+     * @param nRandomStarts      Number of random starts
+     * @param parallelLeiden     Boolean indicating whether the multi-threaded
+     *                           variant of the Leiden algorithm should be used
+     * @param parallelLeidenPool Fork-join pool of the multi-threaded variant
+     *                           (null to use a single thread)
+     *
+     * @return Leiden algorithm instances
+     */
+    static IterativeCPMClusteringAlgorithm[] createClusteringAlgorithms(int nIterations, int nRandomStarts, boolean parallelLeiden, ForkJoinPool parallelLeidenPool)
+    {
+        IterativeCPMClusteringAlgorithm[] clusteringAlgorithms = new IterativeCPMClusteringAlgorithm[nRandomStarts];
+        for (int i = 0; i < nRandomStarts; i++)
+            if (parallelLeiden)
+                clusteringAlgorithms[i] = new ParallelLeidenAlgorithm(ParallelLeidenAlgorithm.DEFAULT_RESOLUTION, nIterations, ParallelLeidenAlgorithm.DEFAULT_RANDOMNESS, i, parallelLeidenPool);
+            else
+                clusteringAlgorithms[i] = new LeidenAlgorithm(LeidenAlgorithm.DEFAULT_RESOLUTION, nIterations, LeidenAlgorithm.DEFAULT_RANDOMNESS, new Random(i));
+        return clusteringAlgorithms;
+    }
+
+    /**
+     * Creates a factory for the instances of the Leiden algorithm used for the
+     * random starts in sweep mode and when connected components are clustered
+     * separately. The factory is called for each level in sweep mode and for
+     * each clustered component, and returns new instances on each call.
+     *
+     * <p>
+     * The levels or components are created on a fork-join pool with the
+     * number of threads set by the n_threads option, and the random starts of
+     * each level or component are run on the same pool. The threads are
+     * therefore divided between the levels or components and their random
+     * starts: small components are clustered in parallel, and the random
+     * starts of the largest component can use all threads once the other
+     * components have been clustered. If the multi-threaded variant of the
+     * Leiden algorithm is used, all instances created by the factory share one
+     * additional fork-join pool with the same number of threads, so the number
+     * of threads does not grow with the number of levels or components.
+     * </p>
+     *
+     * @param nIterations        Number of iterations
+     * @param nRandomStarts      Number of random starts
+     * @param parallelLeiden     Boolean indicating whether the multi-threaded
+     *                           variant of the Leiden algorithm should be used
+     * @param parallelLeidenPool Fork-join pool of the multi-threaded variant
+     *                           (null to use a single thread)
+     *
+     * @return Factory for the Leiden algorithm instances
+     */
+    private static Supplier<IterativeCPMClusteringAlgorithm[]> createClusteringAlgorithmFactory(int nIterations, int nRandomStarts, boolean parallelLeiden, ForkJoinPool parallelLeidenPool)
+    {
+        return () -> createClusteringAlgorithms(nIterations, nRandomStarts, parallelLeiden, parallelLeidenPool);
+    }
+
+    /**
+     * Creates a writer of the publication classifications of the parameter
+     * sets in sweep mode. The publication classification of a parameter set is
+     * written to a file or table whose name includes the number of the
+     * parameter set.
+     *
+     * @param useFiles            Write to a file (true) or to a database
+     *                            (false)
+     * @param classificationFile  Name of the classification file
+     * @param classificationTable Name of the classification table
+     * @param pub                 Publication numbers
+     * @param dbDriver            Class name of the JDBC driver
+     * @param dbUrl               JDBC URL of the database
+     * @param dbBulkCopy          Use bulk copy
+     * @param dbBatchSize         Number of rows per batch
+     * @param dbTableLock         Lock the classification table while it is
+     *                            loaded
+     * @param dbCreateIndex       Create a primary key on pub_no
+     *
+     * @return Writer of publication classifications
+     */
+    private static ObjIntConsumer<MultiLevelClustering> createSweepClassificationWriter(boolean useFiles, String classificationFile, String classificationTable, int[] pub, String dbDriver, String dbUrl, boolean dbBulkCopy, int dbBatchSize, boolean dbTableLock, boolean dbCreateIndex)
+    {
+        return (multiLevelClustering, parameterSetNo) ->
+        {
+            int[][] cluster = multiLevelClustering.getAllClusters();
+            if (useFiles)
+                FileIO.writeClassification(getSweepClassificationFile(classificationFile, parameterSetNo), pub, cluster, 1);
+            else
+                DatabaseIO.writeClassification(dbDriver, dbUrl, classificationTable + "_" + parameterSetNo, pub, cluster, new String[]{"micro", "meso", "macro"}, dbBulkCopy, dbBatchSize, dbTableLock, dbCreateIndex);
+        };
+    }
+
+    /**
+     * Prints the clustering algorithm.
+     *
+     * @param parallelLeiden Boolean indicating whether the multi-threaded
+     *                       variant of the Leiden algorithm is used
+     * @param nThreads       Number of threads of the multi-threaded variant
+     */
+    private static void printClusteringAlgorithm(boolean parallelLeiden, int nThreads)
+    {
+        if (parallelLeiden)
+            System.out.println("\tClustering algorithm: Parallel Leiden algorithm (" + nThreads + " threads)");
+        else
+            System.out.println("\tClustering algorithm: Leiden algorithm");
+    }
+
+    /**
+     * Prints the random seeds used for the random starts.
+     *
+     * @param nRandomStarts Number of random starts
+     */
+    private static void printRandomSeeds(int nRandomStarts)
+    {
+        if (nRandomStarts == 1)
+            System.out.println("\tRandom seed: 0");
+        else
+        {
+            System.out.println("\tNumber of random starts: " + nRandomStarts);
+            System.out.println("\tRandom seeds: 0-" + (nRandomStarts - 1));
+        }
+    }
+
+    /**
+     * Returns the name of the classification file of a parameter set in sweep
+     * mode. The number of the parameter set is inserted before the file
+     * extension (not counting a '.gz' extension).
+     *
+     * @param classificationFile Name of the classification file
+     * @param parameterSetNo     Number of the parameter set
+     *
+     * @return Name of the classification file of the parameter set
+     */
+    private static String getSweepClassificationFile(String classificationFile, int parameterSetNo)
+    {
+        String gzipExtension = classificationFile.endsWith(".gz") ? ".gz" : "";
+        String name = classificationFile.substring(0, classificationFile.length() - gzipExtension.length());
+        int extensionIndex = name.lastIndexOf('.');
+        if (extensionIndex <= Math.max(name.lastIndexOf('/'), name.lastIndexOf(File.separatorChar)))
+            extensionIndex = name.length();
+        return name.substring(0, extensionIndex) + "_" + parameterSetNo + name.substring(extensionIndex) + gzipExtension;
+    }
+
+    /**
+     * Returns the peak usage (in bytes) of the heap memory of the Java virtual
+     * machine.
+     *
+     * @return Peak heap memory usage
+     */
+    private static long getPeakHeapMemoryUsage()
+    {
+        long peakHeapMemoryUsage = 0;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans())
+            if (memoryPool.getType() == MemoryType.HEAP)
+                peakHeapMemoryUsage += memoryPool.getPeakUsage().getUsed();
+        return peakHeapMemoryUsage;
+    }
+
+    /**
+     * Parses a comma-separated list of numbers. If a number is smaller than
+     * the minimum value, a NumberFormatException is thrown.
+     *
+     * @param value    Comma-separated list of numbers
+     * @param minValue Minimum value
+     *
+     * @return Numbers
+     */
+    static double[] parseDoubles(String value, double minValue)
+    {
+        String[] values = value.split(",", -1);
+        double[] numbers = new double[values.length];
+        for (int i = 0; i < values.length; i++)
+        {
+            numbers[i] = Double.parseDouble(values[i]);
+            if (!(numbers[i] >= minValue))
+                throw new NumberFormatException();
+        }
+        return numbers;
+    }
+
+    /**
+     * Parses a comma-separated list of integer numbers. If a number is smaller
+     * than the minimum value, a NumberFormatException is thrown.
+     *
+     * @param value    Comma-separated list of integer numbers
+     * @param minValue Minimum value
+     *
+     * @return Integer numbers
+     */
+    static int[] parseIntegers(String value, int minValue)
+    {
+        String[] values = value.split(",", -1);
+        int[] numbers = new int[values.length];
+        for (int i = 0; i < values.length; i++)
+        {
+            numbers[i] = Integer.parseInt(values[i]);
+            if (numbers[i] < minValue)
+                throw new NumberFormatException();
+        }
+        return numbers;
+    }
+
+    /**
+     * Parses the value of a boolean command line option. If the value is not
+     * a boolean, an error message is printed and the tool exits.
+     *
+     * @param option Command line option
+     * @param value  Value of the command line option
+     *
+     * @return Boolean value
+     */
+    private static boolean parseBooleanOption(String option, String value)
+    {
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false"))
+        {
+            System.err.println("Error while processing command line option " + option + ": Value must be a boolean ('true' or 'false').\n\n" + USAGE);
+            System.exit(-1);
+        }
+        return Boolean.parseBoolean(value);
     }
 
     /**
@@ -355,7 +1267,7 @@ public class PublicationClassificationCreator
      * 
      * @return Formatted duration
      */
-    private static String formatDuration(long s)
+    static String formatDuration(long s)
     {
         return String.format("%dh %dm %ds", s / 3600, (s % 3600) / 60, (s % 60));
     }
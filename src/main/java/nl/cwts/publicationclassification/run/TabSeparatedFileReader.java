@@ -0,0 +1,560 @@
+package nl.cwts.publicationclassification.run;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader of text files with tab-separated columns.
+ *
+ * <p>
+ * The file is read into a large direct byte buffer and columns are decoded
+ * in place, without creating strings or other objects for each line.
+ * Integers and decimal numbers are decoded directly from their bytes. Numbers
+ * that cannot be decoded exactly in this way (e.g., numbers with many
+ * significant digits or numbers in an unusual notation) are decoded using
+ * {@link Double#parseDouble(String)}, so the result is always identical to
+ * the result of {@link Double#parseDouble(String)}.
+ * </p>
+ */
+class TabSeparatedFileReader implements Closeable
+{
+    /**
+     * Channel for reading a range of bytes of a file.
+     */
+    private static class FileRangeChannel implements ReadableByteChannel
+    {
+        /**
+         * File channel.
+         */
+        private FileChannel channel;
+
+        /**
+         * Position of the next byte to be read.
+         */
+        private long position;
+
+        /**
+         * Position after the last byte of the range.
+         */
+        private long end;
+
+        /**
+         * Indicates whether the channel is open.
+         */
+        private boolean open;
+
+        /**
+         * Constructs a channel for a range of bytes of a file.
+         *
+         * @param channel File channel
+         * @param start   Position of the first byte of the range
+         * @param end     Position after the last byte of the range
+         */
+        public FileRangeChannel(FileChannel channel, long start, long end)
+        {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+            open = true;
+        }
+
+        @Override
+        public int read(ByteBuffer buffer) throws IOException
+        {
+            if (position >= end)
+                return -1;
+            int limit = buffer.limit();
+            if (buffer.remaining() > end - position)
+                buffer.limit(buffer.position() + (int)(end - position));
+            int nBytes = channel.read(buffer, position);
+            buffer.limit(limit);
+            if (nBytes < 0)
+                return -1;
+            position += nBytes;
+            return nBytes;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return open;
+        }
+
+        @Override
+        public void close()
+        {
+            open = false;
+        }
+    }
+
+    /**
+     * Default size in bytes of the buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 23;
+
+    /**
+     * Column separator.
+     */
+    private static final byte COLUMN_SEPARATOR = '\t';
+
+    /**
+     * Line terminator repeated in each byte of a long.
+     */
+    private static final long NEWLINE_PATTERN = 0x0A0A0A0A0A0A0A0AL;
+
+    /**
+     * Column separator repeated in each byte of a long.
+     */
+    private static final long COLUMN_SEPARATOR_PATTERN = 0x0909090909090909L;
+
+    /**
+     * Maximum number of significant digits of a decimal number that is decoded
+     * directly from its bytes.
+     */
+    private static final int MAX_N_SIGNIFICANT_DIGITS = 18;
+
+    /**
+     * Largest mantissa that can be represented exactly as a double.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * Powers of ten that can be represented exactly as a double.
+     */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Channel from which the file is read.
+     */
+    private ReadableByteChannel channel;
+
+    /**
+     * Buffer.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Indicates whether the end of the channel has been reached.
+     */
+    private boolean endOfInput;
+
+    /**
+     * Buffer index of the end of the current line (excluding the line
+     * terminator).
+     */
+    private int lineEnd;
+
+    /**
+     * Buffer index of the start of the next line.
+     */
+    private int nextLineStart;
+
+    /**
+     * Buffer index of the start of the next column of the current line.
+     */
+    private int columnStart;
+
+    /**
+     * Number of columns of the current line.
+     */
+    private int nColumns;
+
+    /**
+     * Line number of the current line.
+     */
+    private long lineNo;
+
+    /**
+     * Buffer for decoding numbers using {@link Double#parseDouble(String)}.
+     */
+    private byte[] fallbackBuffer;
+
+    /**
+     * Constructs a reader for a file.
+     *
+     * @param fileName Name of the file
+     *
+     * @throws FileNotFoundException File not found.
+     */
+    public TabSeparatedFileReader(String fileName) throws FileNotFoundException
+    {
+        this(new FileInputStream(fileName).getChannel());
+    }
+
+    /**
+     * Constructs a reader for a range of bytes of a file.
+     *
+     * <p>
+     * The range should start at the start of a line and should end at the end
+     * of a line. Closing the reader does not close the file channel.
+     * </p>
+     *
+     * @param channel File channel
+     * @param start   Position of the first byte of the range
+     * @param end     Position after the last byte of the range
+     */
+    public TabSeparatedFileReader(FileChannel channel, long start, long end)
+    {
+        this(new FileRangeChannel(channel, start, end), (int)Math.max(Math.min(DEFAULT_BUFFER_SIZE, end - start), 64));
+    }
+
+    /**
+     * Constructs a reader for a channel.
+     *
+     * @param channel Channel
+     */
+    public TabSeparatedFileReader(ReadableByteChannel channel)
+    {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a reader for a channel.
+     *
+     * @param channel    Channel
+     * @param bufferSize Initial size in bytes of the buffer
+     */
+    public TabSeparatedFileReader(ReadableByteChannel channel, int bufferSize)
+    {
+        this.channel = channel;
+        buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.limit(0);
+        fallbackBuffer = new byte[64];
+    }
+
+    /**
+     * Constructs a reader for the bytes in a buffer, from its position to its
+     * limit.
+     *
+     * <p>
+     * The bytes should consist of complete lines. They are read in place,
+     * without being copied.
+     * </p>
+     *
+     * @param buffer Buffer
+     */
+    public TabSeparatedFileReader(ByteBuffer buffer)
+    {
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        endOfInput = true;
+        fallbackBuffer = new byte[64];
+    }
+
+    /**
+     * Moves to the next line.
+     *
+     * @return True if there is a next line, false if the end of the file has
+     *         been reached
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    public boolean nextLine() throws IOException
+    {
+        int i = nextLineStart;
+        int nColumnSeparators = 0;
+        while (true)
+        {
+            int limit = buffer.limit();
+
+            // Scan eight bytes at a time for the line terminator and count
+            // column separators.
+            long newlineMask = 0;
+            while ((newlineMask == 0) && (i <= limit - 8))
+            {
+                long word = buffer.getLong(i);
+                newlineMask = findBytes(word, NEWLINE_PATTERN);
+                long columnSeparatorMask = findBytes(word, COLUMN_SEPARATOR_PATTERN);
+                if (newlineMask == 0)
+                {
+                    nColumnSeparators += Long.bitCount(columnSeparatorMask);
+                    i += 8;
+                }
+                else
+                {
+                    int nBytes = Long.numberOfTrailingZeros(newlineMask) >>> 3;
+                    nColumnSeparators += Long.bitCount(columnSeparatorMask & ((1L << (8 * nBytes)) - 1));
+                    i += nBytes;
+                }
+            }
+            if (newlineMask == 0)
+                while (i < limit)
+                {
+                    byte b = buffer.get(i);
+                    if (b == '\n')
+                        break;
+                    if (b == COLUMN_SEPARATOR)
+                        nColumnSeparators++;
+                    i++;
+                }
+            if (i < limit)
+                break;
+            if (endOfInput)
+            {
+                if (i == nextLineStart)
+                    return false;
+                break;
+            }
+            int lineStart = nextLineStart;
+            fillBuffer();
+            i -= lineStart;
+        }
+
+        lineEnd = i;
+        if ((lineEnd > nextLineStart) && (buffer.get(lineEnd - 1) == '\r'))
+            lineEnd--;
+        columnStart = nextLineStart;
+        nextLineStart = Math.min(i + 1, buffer.limit());
+        nColumns = nColumnSeparators + 1;
+        lineNo++;
+        return true;
+    }
+
+    /**
+     * Returns the line number of the current line.
+     *
+     * @return Line number
+     */
+    public long getLineNo()
+    {
+        return lineNo;
+    }
+
+    /**
+     * Returns the number of columns of the current line.
+     *
+     * @return Number of columns
+     */
+    public int getNColumns()
+    {
+        return nColumns;
+    }
+
+    /**
+     * Decodes the next column of the current line as a non-negative integer.
+     *
+     * @return Integer
+     *
+     * @throws NumberFormatException Column is not a non-negative integer.
+     */
+    public int nextUnsignedInt()
+    {
+        int i = columnStart;
+        if ((i < lineEnd) && (buffer.get(i) == '+'))
+            i++;
+        int digitsStart = i;
+        long value = 0;
+        while ((i < lineEnd) && (buffer.get(i) != COLUMN_SEPARATOR))
+        {
+            int digit = buffer.get(i) - '0';
+            if ((digit < 0) || (digit > 9))
+                throw new NumberFormatException();
+            value = 10 * value + digit;
+            if (value > Integer.MAX_VALUE)
+                throw new NumberFormatException();
+            i++;
+        }
+        if (i == digitsStart)
+            throw new NumberFormatException();
+        moveToNextColumn(i);
+        return (int)value;
+    }
+
+    /**
+     * Decodes the next column of the current line as a decimal number.
+     *
+     * @return Decimal number
+     *
+     * @throws NumberFormatException Column is not a number.
+     */
+    public double nextDouble()
+    {
+        int start = columnStart;
+        int i = start;
+        boolean negative = false;
+        if ((i < lineEnd) && ((buffer.get(i) == '-') || (buffer.get(i) == '+')))
+        {
+            negative = (buffer.get(i) == '-');
+            i++;
+        }
+        long mantissa = 0;
+        int nSignificantDigits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        boolean hasDecimalPoint = false;
+        boolean exact = true;
+        while (i < lineEnd)
+        {
+            byte b = buffer.get(i);
+            if ((b >= '0') && (b <= '9'))
+            {
+                hasDigits = true;
+                if ((mantissa > 0) || (b > '0'))
+                    nSignificantDigits++;
+                if (nSignificantDigits > MAX_N_SIGNIFICANT_DIGITS)
+                    exact = false;
+                else
+                {
+                    mantissa = 10 * mantissa + (b - '0');
+                    if (hasDecimalPoint)
+                        exponent--;
+                }
+            }
+            else if ((b == '.') && !hasDecimalPoint)
+                hasDecimalPoint = true;
+            else
+                break;
+            i++;
+        }
+        if ((i < lineEnd) && hasDigits && ((buffer.get(i) == 'e') || (buffer.get(i) == 'E')))
+        {
+            i++;
+            boolean negativeExponent = false;
+            if ((i < lineEnd) && ((buffer.get(i) == '-') || (buffer.get(i) == '+')))
+            {
+                negativeExponent = (buffer.get(i) == '-');
+                i++;
+            }
+            int exponentDigitsStart = i;
+            int explicitExponent = 0;
+            while ((i < lineEnd) && (buffer.get(i) >= '0') && (buffer.get(i) <= '9'))
+            {
+                if (explicitExponent < 1000)
+                    explicitExponent = 10 * explicitExponent + (buffer.get(i) - '0');
+                i++;
+            }
+            if (i == exponentDigitsStart)
+                exact = false;
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        int end = i;
+        while ((end < lineEnd) && (buffer.get(end) != COLUMN_SEPARATOR))
+            end++;
+
+        double value;
+        if (hasDigits && exact && (end == i) && (mantissa <= MAX_EXACT_MANTISSA) && (Math.abs(exponent) < POWERS_OF_TEN.length))
+        {
+            // Both the mantissa and the power of ten are exact, so a single
+            // multiplication or division gives a correctly rounded result.
+            value = (exponent < 0) ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            if (negative)
+                value = -value;
+        }
+        else
+            value = Double.parseDouble(getString(start, end));
+        moveToNextColumn(end);
+        return value;
+    }
+
+    /**
+     * Decodes the next column of the current line as a boolean.
+     *
+     * @return True if the column equals '1' or 'true' (ignoring case), false
+     *         otherwise
+     */
+    public boolean nextBoolean()
+    {
+        int start = columnStart;
+        int end = start;
+        while ((end < lineEnd) && (buffer.get(end) != COLUMN_SEPARATOR))
+            end++;
+        boolean value;
+        if (end - start == 1)
+            value = (buffer.get(start) == '1');
+        else if (end - start == 4)
+            value = (((buffer.get(start) | 0x20) == 't') && ((buffer.get(start + 1) | 0x20) == 'r') && ((buffer.get(start + 2) | 0x20) == 'u') && ((buffer.get(start + 3) | 0x20) == 'e'));
+        else
+            value = false;
+        moveToNextColumn(end);
+        return value;
+    }
+
+    /**
+     * Closes the reader and the underlying channel, if any.
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (channel != null)
+            channel.close();
+    }
+
+    /**
+     * Moves the start of the next column past the column separator following
+     * the current column.
+     *
+     * @param columnEnd Buffer index of the end of the current column
+     */
+    private void moveToNextColumn(int columnEnd)
+    {
+        columnStart = (columnEnd < lineEnd) ? columnEnd + 1 : lineEnd;
+    }
+
+    /**
+     * Moves the unprocessed bytes to the start of the buffer and reads more
+     * bytes from the channel. The buffer is enlarged if it contains only
+     * unprocessed bytes.
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private void fillBuffer() throws IOException
+    {
+        buffer.position(nextLineStart);
+        if ((nextLineStart == 0) && (buffer.limit() == buffer.capacity()))
+        {
+            ByteBuffer largerBuffer = ByteBuffer.allocateDirect(2 * buffer.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+            largerBuffer.put(buffer);
+            buffer = largerBuffer;
+        }
+        else
+            buffer.compact();
+        nextLineStart = 0;
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+            {
+                endOfInput = true;
+                break;
+            }
+        buffer.flip();
+    }
+
+    /**
+     * Finds the bytes in a word that are equal to a given byte.
+     *
+     * @param word    Word of eight bytes
+     * @param pattern Byte to be found, repeated in each byte of a long
+     *
+     * @return Mask in which the highest bit of each byte that is equal to the
+     *         given byte is set
+     */
+    private static long findBytes(long word, long pattern)
+    {
+        long x = word ^ pattern;
+        return ~(((x & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL) | x | 0x7F7F7F7F7F7F7F7FL);
+    }
+
+    /**
+     * Returns part of the current line as a string.
+     *
+     * @param start Buffer index of the start of the string
+     * @param end   Buffer index of the end of the string
+     *
+     * @return String
+     */
+    private String getString(int start, int end)
+    {
+        if (fallbackBuffer.length < end - start)
+            fallbackBuffer = new byte[end - start];
+        for (int i = start; i < end; i++)
+            fallbackBuffer[i - start] = buffer.get(i);
+        return new String(fallbackBuffer, 0, end - start, StandardCharsets.ISO_8859_1);
+    }
+}
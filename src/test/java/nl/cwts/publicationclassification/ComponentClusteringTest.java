@@ -0,0 +1,104 @@
+package nl.cwts.publicationclassification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import nl.cwts.networkanalysis.IterativeCPMClusteringAlgorithm;
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.util.LargeIntArray;
+
+/**
+ * Tests of {@link ComponentClustering}.
+ *
+ * @author Nees Jan van Eck
+ */
+public class ComponentClusteringTest
+{
+    /**
+     * Number of components of the test network.
+     */
+    private static final int N_COMPONENTS = 40;
+
+    /**
+     * Number of nodes per component of the test network.
+     */
+    private static final int N_NODES_PER_COMPONENT = 4;
+
+    /**
+     * Number of random starts.
+     */
+    private static final int N_RANDOM_STARTS = 3;
+
+    /**
+     * Checks that each component of a network consisting of many small
+     * cliques becomes a separate cluster when multiple random starts are used,
+     * and that the random starts of the components do not leave behind idle
+     * threads for each component.
+     */
+    @Test
+    public void testManyComponentsWithRandomStarts()
+    {
+        Network network = createCliques(N_COMPONENTS, N_NODES_PER_COMPONENT);
+        Supplier<IterativeCPMClusteringAlgorithm[]> clusteringAlgorithmFactory = () ->
+        {
+            IterativeCPMClusteringAlgorithm[] clusteringAlgorithms = new IterativeCPMClusteringAlgorithm[N_RANDOM_STARTS];
+            for (int i = 0; i < N_RANDOM_STARTS; i++)
+                clusteringAlgorithms[i] = new ParallelLeidenAlgorithm(0.5, 2, ParallelLeidenAlgorithm.DEFAULT_RANDOMNESS, i, null);
+            return clusteringAlgorithms;
+        };
+        ComponentClustering componentClustering = new ComponentClustering(network, clusteringAlgorithmFactory, 2);
+
+        int nThreadsBefore = Thread.activeCount();
+        int[][] clusters = componentClustering.createClustering(new double[] { 0.5 }, new double[] { 1 }, null);
+        int nThreadsAfter = Thread.activeCount();
+
+        assertEquals(N_COMPONENTS, componentClustering.getNComponents());
+        assertEquals(N_COMPONENTS, componentClustering.getNClusteredComponents());
+        for (int i = 0; i < N_COMPONENTS; i++)
+        {
+            int firstNode = i * N_NODES_PER_COMPONENT;
+            for (int j = 1; j < N_NODES_PER_COMPONENT; j++)
+                assertEquals(clusters[0][firstNode], clusters[0][firstNode + j]);
+            if (i > 0)
+                assertTrue(clusters[0][firstNode - 1] != clusters[0][firstNode]);
+        }
+        assertTrue("Threads left behind: " + (nThreadsAfter - nThreadsBefore), nThreadsAfter - nThreadsBefore < N_COMPONENTS);
+    }
+
+    /**
+     * Creates a network consisting of cliques with unit node and edge
+     * weights.
+     *
+     * @param nCliques        Number of cliques
+     * @param nNodesPerClique Number of nodes per clique
+     *
+     * @return Network
+     */
+    private static Network createCliques(int nCliques, int nNodesPerClique)
+    {
+        int nNodes = nCliques * nNodesPerClique;
+        int nEdges = nNodes * (nNodesPerClique - 1);
+        int[] node1 = new int[nEdges];
+        int[] node2 = new int[nEdges];
+        int k = 0;
+        for (int i = 0; i < nNodes; i++)
+        {
+            int firstNode = i - i % nNodesPerClique;
+            for (int j = firstNode; j < firstNode + nNodesPerClique; j++)
+                if (j != i)
+                {
+                    node1[k] = i;
+                    node2[k] = j;
+                    k++;
+                }
+        }
+        double[] nodeWeights = new double[nNodes];
+        Arrays.fill(nodeWeights, 1);
+        return new Network(nodeWeights, new LargeIntArray[] { new LargeIntArray(node1), new LargeIntArray(node2) }, true, true);
+    }
+}
@@ -0,0 +1,120 @@
+package nl.cwts.publicationclassification;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import nl.cwts.networkanalysis.Clustering;
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.util.LargeIntArray;
+
+/**
+ * Tests of {@link ParallelLeidenAlgorithm}.
+ *
+ * @author Nees Jan van Eck
+ */
+public class ParallelLeidenAlgorithmTest
+{
+    /**
+     * Number of cliques of the test network.
+     */
+    private static final int N_CLIQUES = 50;
+
+    /**
+     * Number of nodes per clique of the test network.
+     */
+    private static final int N_NODES_PER_CLIQUE = 5;
+
+    /**
+     * Checks that the clustering does not depend on whether a fork-join pool
+     * is used, and that instances sharing a pool leave the pool running.
+     */
+    @Test
+    public void testSharedPool()
+    {
+        Network network = createRingOfCliques(N_CLIQUES, N_NODES_PER_CLIQUE);
+        int[] clusters = cluster(network, new ParallelLeidenAlgorithm(0.5, 2, ParallelLeidenAlgorithm.DEFAULT_RANDOMNESS, 0, null));
+        assertEquals(N_CLIQUES, Arrays.stream(clusters).max().getAsInt() + 1);
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try
+        {
+            for (int i = 0; i < 3; i++)
+            {
+                ParallelLeidenAlgorithm clusteringAlgorithm = new ParallelLeidenAlgorithm(0.5, 2, ParallelLeidenAlgorithm.DEFAULT_RANDOMNESS, 0, pool);
+                assertEquals(2, clusteringAlgorithm.getNThreads());
+                assertArrayEquals(clusters, cluster(network, clusteringAlgorithm));
+                assertArrayEquals(clusters, cluster(network, clusteringAlgorithm.clone()));
+            }
+            assertFalse(pool.isShutdown());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Clusters a network starting from a singleton clustering.
+     *
+     * @param network             Network
+     * @param clusteringAlgorithm Clustering algorithm
+     *
+     * @return Cluster numbers of the nodes
+     */
+    private static int[] cluster(Network network, ParallelLeidenAlgorithm clusteringAlgorithm)
+    {
+        Clustering clustering = new Clustering(network.getNNodes());
+        clusteringAlgorithm.improveClustering(network, clustering);
+        return clustering.getClusters();
+    }
+
+    /**
+     * Creates a network consisting of cliques with unit node and edge weights,
+     * in which each clique is linked to the next clique by a single edge.
+     *
+     * @param nCliques        Number of cliques
+     * @param nNodesPerClique Number of nodes per clique
+     *
+     * @return Network
+     */
+    private static Network createRingOfCliques(int nCliques, int nNodesPerClique)
+    {
+        int nNodes = nCliques * nNodesPerClique;
+        int nEdges = nNodes * (nNodesPerClique - 1) + 2 * nCliques;
+        int[] node1 = new int[nEdges];
+        int[] node2 = new int[nEdges];
+        int k = 0;
+        for (int i = 0; i < nNodes; i++)
+        {
+            int firstNode = i - i % nNodesPerClique;
+            if (i == firstNode)
+            {
+                node1[k] = i;
+                node2[k] = (i + nNodes - 1) % nNodes;
+                k++;
+            }
+            for (int j = firstNode; j < firstNode + nNodesPerClique; j++)
+                if (j != i)
+                {
+                    node1[k] = i;
+                    node2[k] = j;
+                    k++;
+                }
+            if (i == firstNode + nNodesPerClique - 1)
+            {
+                node1[k] = i;
+                node2[k] = (i + 1) % nNodes;
+                k++;
+            }
+        }
+        double[] nodeWeights = new double[nNodes];
+        Arrays.fill(nodeWeights, 1);
+        return new Network(nodeWeights, new LargeIntArray[] { new LargeIntArray(node1), new LargeIntArray(node2) }, false, true);
+    }
+}
@@ -0,0 +1,50 @@
+package nl.cwts.publicationclassification.run;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import nl.cwts.networkanalysis.Network;
+
+/**
+ * Tests of {@link CitationNetworkGenerator}.
+ *
+ * @author Nees Jan van Eck
+ */
+public class CitationNetworkGeneratorTest
+{
+    /**
+     * Checks that the generated citation network does not depend on the number
+     * of threads, and that each citation link is stored once in each
+     * direction with the same weight, also for publications that cite each
+     * other.
+     */
+    @Test
+    public void testNetworkIsSymmetricAndIndependentOfThreads()
+    {
+        // Small topics result in many publications that cite each other.
+        Network network = new CitationNetworkGenerator(5000, 10, 3, 20, 10, 0.1, 0).generateNetwork(1);
+        Network network2 = new CitationNetworkGenerator(5000, 10, 3, 20, 10, 0.1, 0).generateNetwork(3);
+
+        assertEquals(network.getNEdges(), network2.getNEdges());
+        for (int i = 0; i < network.getNNodes(); i++)
+        {
+            int[] neighbors = network.getNeighbors(i);
+            double[] edgeWeights = network.getEdgeWeights(i);
+            assertArrayEquals(neighbors, network2.getNeighbors(i));
+            assertArrayEquals(edgeWeights, network2.getEdgeWeights(i), 0);
+            for (int k = 0; k < neighbors.length; k++)
+            {
+                assertTrue((k == 0) || (neighbors[k] > neighbors[k - 1]));
+                int j = neighbors[k];
+                int l = Arrays.binarySearch(network.getNeighbors(j), i);
+                assertTrue(l >= 0);
+                assertEquals(edgeWeights[k], network.getEdgeWeights(j)[l], 0);
+            }
+        }
+    }
+}
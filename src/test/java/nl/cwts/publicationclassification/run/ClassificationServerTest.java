@@ -0,0 +1,267 @@
+package nl.cwts.publicationclassification.run;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.util.LargeIntArray;
+
+/**
+ * Tests of {@link ClassificationServer}.
+ *
+ * @author Nees Jan van Eck
+ */
+public class ClassificationServerTest
+{
+    /**
+     * Number of concurrent requests sent to a server with one job thread and
+     * one queued job.
+     */
+    private static final int N_CONCURRENT_REQUESTS = 5;
+
+    /**
+     * Checks that a classification request is answered with a classification
+     * of all publications and is counted in the status, and that a repeated
+     * request is served from the cache.
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    @Test
+    public void testClassifyAndStatusRoundTrip() throws IOException
+    {
+        Network network = createCliques(20, 5);
+        ClassificationServer server = new ClassificationServer(network, createPubs(network), 1, 1, 4);
+        int port = server.start(0);
+        try
+        {
+            Response response = send(port, "/classify", "resolution=0.5&pub_threshold=1&n_iterations=2");
+            assertEquals(200, response.statusCode);
+            assertNotNull(response.nClusters);
+            assertEquals(network.getNNodes(), response.body.split("\n").length);
+
+            String status = send(port, "/status", null).body;
+            assertEquals(1, getStatusValue(status, "n_completed_jobs"));
+            assertEquals(0, getStatusValue(status, "n_cache_hits"));
+            assertEquals(1, getStatusValue(status, "n_cache_misses"));
+            assertEquals(1, getStatusValue(status, "n_cached_levels"));
+
+            Response repeatedResponse = send(port, "/classify", "resolution=0.5&pub_threshold=1&n_iterations=2");
+            assertEquals(200, repeatedResponse.statusCode);
+            assertEquals(response.body, repeatedResponse.body);
+
+            status = send(port, "/status", null).body;
+            assertEquals(2, getStatusValue(status, "n_completed_jobs"));
+            assertEquals(1, getStatusValue(status, "n_cache_hits"));
+            assertEquals(1, getStatusValue(status, "n_cache_misses"));
+            assertEquals(1, getStatusValue(status, "n_cached_levels"));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    /**
+     * Checks that requests that arrive while the job thread is busy and the
+     * queue is full are rejected with status code 503, and that the other
+     * requests are completed.
+     *
+     * @throws Exception An error occurred.
+     */
+    @Test
+    public void testFullQueueIsRejected() throws Exception
+    {
+        // Each job takes long enough for all requests to arrive while the
+        // first job is running.
+        Network network = createCliques(20000, 5);
+        ClassificationServer server = new ClassificationServer(network, createPubs(network), 1, 1, 4);
+        final int port = server.start(0);
+        try
+        {
+            final int[] statusCode = new int[N_CONCURRENT_REQUESTS];
+            Thread[] threads = new Thread[N_CONCURRENT_REQUESTS];
+            for (int i = 0; i < N_CONCURRENT_REQUESTS; i++)
+            {
+                final int requestNo = i;
+                threads[i] = new Thread(() ->
+                {
+                    try
+                    {
+                        statusCode[requestNo] = send(port, "/classify", "resolution=" + (requestNo + 1) + "&pub_threshold=1&n_iterations=20&n_random_starts=5").statusCode;
+                    }
+                    catch (IOException e)
+                    {
+                        statusCode[requestNo] = -1;
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads)
+                thread.join();
+
+            int nCompletedRequests = 0;
+            int nRejectedRequests = 0;
+            for (int i = 0; i < N_CONCURRENT_REQUESTS; i++)
+                if (statusCode[i] == 200)
+                    nCompletedRequests++;
+                else if (statusCode[i] == 503)
+                    nRejectedRequests++;
+            assertEquals("Status codes: " + Arrays.toString(statusCode), N_CONCURRENT_REQUESTS, nCompletedRequests + nRejectedRequests);
+            assertTrue(nCompletedRequests >= 1);
+            assertTrue(nRejectedRequests >= 1);
+
+            String status = send(port, "/status", null).body;
+            assertEquals(nCompletedRequests, getStatusValue(status, "n_completed_jobs"));
+            assertEquals(0, getStatusValue(status, "n_failed_jobs"));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    /**
+     * Response to a request.
+     */
+    private static class Response
+    {
+        /**
+         * HTTP status code.
+         */
+        int statusCode;
+
+        /**
+         * Value of the X-Number-Of-Clusters header (null if the header is
+         * missing).
+         */
+        String nClusters;
+
+        /**
+         * Body.
+         */
+        String body;
+    }
+
+    /**
+     * Sends a request to a server on the loopback interface.
+     *
+     * @param port Port
+     * @param path Path
+     * @param body URL-encoded body of a POST request (null for a GET request)
+     *
+     * @return Response
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static Response send(int port, String path, String body) throws IOException
+    {
+        URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), port, path);
+        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        try
+        {
+            if (body != null)
+            {
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+                OutputStream stream = connection.getOutputStream();
+                stream.write(body.getBytes(StandardCharsets.UTF_8));
+                stream.close();
+            }
+
+            Response response = new Response();
+            response.statusCode = connection.getResponseCode();
+            response.nClusters = connection.getHeaderField("X-Number-Of-Clusters");
+            InputStream stream = (response.statusCode < 400) ? connection.getInputStream() : connection.getErrorStream();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = stream.read(buffer)) > 0)
+                bytes.write(buffer, 0, n);
+            stream.close();
+            response.body = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+            return response;
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Gets the value of a field of a status response.
+     *
+     * @param status Status response
+     * @param field  Name of the field
+     *
+     * @return Value of the field
+     */
+    private static long getStatusValue(String status, String field)
+    {
+        Matcher matcher = Pattern.compile("\"" + field + "\": (\\d+)").matcher(status);
+        assertTrue("Field " + field + " is missing.", matcher.find());
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * Creates publication numbers that are equal to the node numbers.
+     *
+     * @param network Network
+     *
+     * @return Publication numbers
+     */
+    private static int[] createPubs(Network network)
+    {
+        int[] pub = new int[network.getNNodes()];
+        for (int i = 0; i < pub.length; i++)
+            pub[i] = i;
+        return pub;
+    }
+
+    /**
+     * Creates a network consisting of cliques with unit node and edge
+     * weights.
+     *
+     * @param nCliques        Number of cliques
+     * @param nNodesPerClique Number of nodes per clique
+     *
+     * @return Network
+     */
+    private static Network createCliques(int nCliques, int nNodesPerClique)
+    {
+        int nNodes = nCliques * nNodesPerClique;
+        int nEdges = nNodes * (nNodesPerClique - 1);
+        int[] node1 = new int[nEdges];
+        int[] node2 = new int[nEdges];
+        int k = 0;
+        for (int i = 0; i < nNodes; i++)
+        {
+            int firstNode = i - i % nNodesPerClique;
+            for (int j = firstNode; j < firstNode + nNodesPerClique; j++)
+                if (j != i)
+                {
+                    node1[k] = i;
+                    node2[k] = j;
+                    k++;
+                }
+        }
+        double[] nodeWeights = new double[nNodes];
+        Arrays.fill(nodeWeights, 1);
+        return new Network(nodeWeights, new LargeIntArray[] { new LargeIntArray(node1), new LargeIntArray(node2) }, true, true);
+    }
+}
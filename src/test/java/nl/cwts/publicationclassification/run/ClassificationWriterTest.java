@@ -0,0 +1,76 @@
+package nl.cwts.publicationclassification.run;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link FileIO.ClassificationWriter}.
+ *
+ * @author Nees Jan van Eck
+ */
+public class ClassificationWriterTest
+{
+    /**
+     * Number of publications, which is more than the number of rows of a
+     * single block.
+     */
+    private static final int N_PUBS = 150000;
+
+    /**
+     * Checks that a classification whose levels are spooled to a temporary
+     * file is written correctly, with and without compression, and that no
+     * spool file is left behind.
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    @Test
+    public void testWriteSpooledLevels() throws IOException
+    {
+        Random random = new Random(0);
+        int[] pub = new int[N_PUBS];
+        int[][] cluster = new int[3][N_PUBS];
+        for (int i = 0; i < N_PUBS; i++)
+        {
+            pub[i] = N_PUBS - 1 - i;
+            cluster[0][i] = random.nextInt(10000);
+            cluster[1][i] = cluster[0][i] / 10;
+            cluster[2][i] = cluster[1][i] / 10;
+        }
+
+        Path directory = Files.createTempDirectory("classification-writer");
+        try
+        {
+            for (String fileName : new String[] { "classification.txt", "classification.txt.gz" })
+            {
+                String classificationFile = directory.resolve(fileName).toString();
+                FileIO.ClassificationWriter classificationWriter = new FileIO.ClassificationWriter(classificationFile, pub, 2);
+                for (int[] levelCluster : cluster)
+                    classificationWriter.addLevel(levelCluster);
+                classificationWriter.write();
+
+                int[][] readCluster = FileIO.readClassification(classificationFile, N_PUBS);
+                assertEquals(cluster.length, readCluster.length);
+                for (int i = 0; i < cluster.length; i++)
+                    for (int j = 0; j < N_PUBS; j++)
+                        assertEquals(cluster[i][j], readCluster[i][pub[j]]);
+            }
+            String[] fileNames = directory.toFile().list();
+            Arrays.sort(fileNames);
+            assertEquals(Arrays.asList("classification.txt", "classification.txt.gz"), Arrays.asList(fileNames));
+        }
+        finally
+        {
+            for (File file : directory.toFile().listFiles())
+                file.delete();
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package nl.cwts.publicationclassification.run;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import nl.cwts.networkanalysis.Network;
+import nl.cwts.util.LargeIntArray;
+
+/**
+ * Tests of {@link DirectCitationWeighting}.
+ *
+ * @author Nees Jan van Eck
+ */
+public class DirectCitationWeightingTest
+{
+    /**
+     * Checks that a non-core publication that cites a core publication that
+     * also cites it is linked to only one core publication, and is therefore
+     * not included in the extended direct citation approach.
+     */
+    @Test
+    public void testMutualCitationCountsOneCorePublication()
+    {
+        // Publications 0 and 1 are core publications and cite each other.
+        // Non-core publication 2 and core publication 0 cite each other.
+        boolean[] corePub = new boolean[] { true, true, false };
+        int[] citingPub = new int[] { 0, 1, 2, 0 };
+        int[] citedPub = new int[] { 1, 0, 0, 2 };
+
+        Network network = DirectCitationWeighting.createNetwork(corePub, new LargeIntArray(citingPub), new LargeIntArray(citedPub), true, 2);
+
+        assertEquals(0, network.getNNeighbors(2));
+        assertArrayEquals(new int[] { 1 }, network.getNeighbors(0));
+        assertArrayEquals(new double[] { 2 }, network.getEdgeWeights(0), 0);
+    }
+
+    /**
+     * Checks that a non-core publication that is linked to two different core
+     * publications is included in the extended direct citation approach, and
+     * that the weights of mutual citations are added up.
+     */
+    @Test
+    public void testNonCorePublicationLinkedToTwoCorePublications()
+    {
+        // Non-core publication 2 and core publication 0 cite each other, and
+        // core publication 1 cites non-core publication 2.
+        boolean[] corePub = new boolean[] { true, true, false };
+        int[] citingPub = new int[] { 2, 0, 1 };
+        int[] citedPub = new int[] { 0, 2, 2 };
+
+        Network network = DirectCitationWeighting.createNetwork(corePub, new LargeIntArray(citingPub), new LargeIntArray(citedPub), true, 2);
+
+        assertArrayEquals(new int[] { 0, 1 }, network.getNeighbors(2));
+        assertArrayEquals(new double[] { 2, 1 }, network.getEdgeWeights(2), 0);
+    }
+
+    /**
+     * Checks that non-core publications are not included in the direct
+     * citation approach.
+     */
+    @Test
+    public void testDirectCitationIgnoresNonCorePublications()
+    {
+        boolean[] corePub = new boolean[] { true, true, false };
+        int[] citingPub = new int[] { 2, 0, 1, 0 };
+        int[] citedPub = new int[] { 0, 2, 2, 1 };
+
+        Network network = DirectCitationWeighting.createNetwork(corePub, new LargeIntArray(citingPub), new LargeIntArray(citedPub), false, 1);
+
+        assertEquals(0, network.getNNeighbors(2));
+        assertArrayEquals(new int[] { 1 }, network.getNeighbors(0));
+        assertArrayEquals(new double[] { 1 }, network.getEdgeWeights(0), 0);
+    }
+}
@@ -0,0 +1,136 @@
+package nl.cwts.publicationclassification.run;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import nl.cwts.networkanalysis.Network;
+
+/**
+ * Tests of {@link FileIO}.
+ *
+ * @author Nees Jan van Eck
+ */
+public class FileIOTest
+{
+    /**
+     * Number of publications, which results in a decompressed citation links
+     * file of several blocks.
+     */
+    private static final int N_PUBS = 50000;
+
+    /**
+     * Number of citation links per publication.
+     */
+    private static final int N_CIT_LINKS_PER_PUB = 20;
+
+    /**
+     * Checks that a compressed publications file and citation links file,
+     * whose decompressed text is read in blocks on multiple threads, result in
+     * the same citation network as the uncompressed files.
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    @Test
+    public void testReadCompressedNetwork() throws IOException
+    {
+        Path directory = Files.createTempDirectory("file-io");
+        try
+        {
+            String pubFile = directory.resolve("pubs.txt").toString();
+            String citLinkFile = directory.resolve("cit_links.txt").toString();
+            writeNetwork(pubFile, citLinkFile, false);
+            writeNetwork(pubFile + ".gz", citLinkFile + ".gz", true);
+
+            Network network = FileIO.readNetwork(pubFile, citLinkFile, 1, false);
+            for (int nThreads : new int[] { 1, 3 })
+            {
+                Network network2 = FileIO.readNetwork(pubFile + ".gz", citLinkFile + ".gz", nThreads, false);
+                assertEquals(network.getNNodes(), network2.getNNodes());
+                assertEquals(network.getNEdges(), network2.getNEdges());
+                assertArrayEquals(network.getNodeWeights(), network2.getNodeWeights(), 0);
+                for (int i = 0; i < network.getNNodes(); i++)
+                {
+                    assertArrayEquals(network.getNeighbors(i), network2.getNeighbors(i));
+                    assertArrayEquals(network.getEdgeWeights(i), network2.getEdgeWeights(i), 0);
+                }
+            }
+        }
+        finally
+        {
+            for (File file : directory.toFile().listFiles())
+                file.delete();
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Writes a publications file and a citation links file of a random
+     * citation network in which each citation link is included in both
+     * directions.
+     *
+     * @param pubFile     Name of the publications file
+     * @param citLinkFile Name of the citation links file
+     * @param compress    Indicates whether the files are gzip-compressed
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static void writeNetwork(String pubFile, String citLinkFile, boolean compress) throws IOException
+    {
+        try (Writer writer = openWriter(pubFile, compress))
+        {
+            for (int i = 0; i < N_PUBS; i++)
+                writer.write(i + "\t" + ((i % 10 == 0) ? 0 : 1) + "\n");
+        }
+        try (Writer writer = openWriter(citLinkFile, compress))
+        {
+            // Publication i is linked to the publications at the same random
+            // distances before and after it, so that each citation link is
+            // included in both directions.
+            Random random = new Random(0);
+            int[] distance = new int[N_CIT_LINKS_PER_PUB / 2];
+            for (int i = 0; i < distance.length; i++)
+                distance[i] = (i == 0) ? 1 + random.nextInt(10) : distance[i - 1] + 1 + random.nextInt(10);
+            for (int i = 0; i < N_PUBS; i++)
+            {
+                for (int j = distance.length - 1; j >= 0; j--)
+                    if (i - distance[j] >= 0)
+                        writer.write(i + "\t" + (i - distance[j]) + "\t" + (1.0 / distance[j]) + "\n");
+                for (int j = 0; j < distance.length; j++)
+                    if (i + distance[j] < N_PUBS)
+                        writer.write(i + "\t" + (i + distance[j]) + "\t" + (1.0 / distance[j]) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Opens a writer for a file that may be gzip-compressed.
+     *
+     * @param fileName Name of the file
+     * @param compress Indicates whether the file is gzip-compressed
+     *
+     * @return Writer
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static Writer openWriter(String fileName, boolean compress) throws IOException
+    {
+        OutputStream stream = new FileOutputStream(fileName);
+        if (compress)
+            stream = new GZIPOutputStream(stream, 1 << 16);
+        return new OutputStreamWriter(stream, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,160 @@
+package nl.cwts.publicationclassification.run;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link PartitionedClassificationCreator}.
+ *
+ * @author Nees Jan van Eck
+ */
+public class PartitionedClassificationCreatorTest
+{
+    /**
+     * Number of cliques of the test citation network.
+     */
+    private static final int N_CLIQUES = 40;
+
+    /**
+     * Number of publications per clique of the test citation network.
+     */
+    private static final int N_PUBS_PER_CLIQUE = 5;
+
+    /**
+     * Checks that a classification created by clustering two partitions in
+     * worker processes on the same machine is equal to the classification
+     * created in a single process, apart from the numbering of the clusters.
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    @Test
+    public void testTwoPartitionsMatchSingleProcess() throws IOException
+    {
+        Path directory = Files.createTempDirectory("partitioned-classification");
+        try
+        {
+            String pubFile = directory.resolve("pubs.txt").toString();
+            String citLinkFile = directory.resolve("cit_links.txt").toString();
+            String singleProcessFile = directory.resolve("classification_single.txt").toString();
+            String partitionedFile = directory.resolve("classification_partitioned.txt").toString();
+            writeChainOfCliques(pubFile, citLinkFile);
+
+            String[] arguments = new String[] { "false", "2", "0.5", "1", "0.5", "1", "0.5", "1" };
+            PublicationClassificationCreator.main(concat(new String[] { "--parallel_leiden", "true", "--n_threads", "2", pubFile, citLinkFile, singleProcessFile }, arguments));
+            PartitionedClassificationCreator.main(concat(new String[] { "--n_partitions", "2", "--n_workers", "2", "--parallel_leiden", "true", "--n_threads", "2", pubFile, citLinkFile, partitionedFile }, arguments));
+
+            int nPubs = N_CLIQUES * N_PUBS_PER_CLIQUE;
+            int[][] singleProcessCluster = FileIO.readClassification(singleProcessFile, nPubs);
+            int[][] partitionedCluster = FileIO.readClassification(partitionedFile, nPubs);
+            assertEquals(3, singleProcessCluster.length);
+            assertEquals(3, partitionedCluster.length);
+            for (int i = 0; i < singleProcessCluster.length; i++)
+            {
+                assertEquals(N_CLIQUES, countClusters(singleProcessCluster[i]));
+                assertSameClusters(singleProcessCluster[i], partitionedCluster[i]);
+            }
+        }
+        finally
+        {
+            for (File file : directory.toFile().listFiles())
+                file.delete();
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Writes a publications file and a citation links file of a citation
+     * network consisting of cliques, in which the last publication of each
+     * clique is weakly linked to the first publication of the next clique.
+     * Each citation link is included in both directions.
+     *
+     * @param pubFile     Name of the publications file
+     * @param citLinkFile Name of the citation links file
+     *
+     * @throws IOException An I/O error occurred.
+     */
+    private static void writeChainOfCliques(String pubFile, String citLinkFile) throws IOException
+    {
+        int nPubs = N_CLIQUES * N_PUBS_PER_CLIQUE;
+        try (PrintWriter writer = new PrintWriter(pubFile, "UTF-8"))
+        {
+            for (int i = 0; i < nPubs; i++)
+                writer.print(i + "\t1\n");
+        }
+        try (PrintWriter writer = new PrintWriter(citLinkFile, "UTF-8"))
+        {
+            for (int i = 0; i < nPubs; i++)
+            {
+                int firstPub = i - i % N_PUBS_PER_CLIQUE;
+                if ((i == firstPub) && (i > 0))
+                    writer.print(i + "\t" + (i - 1) + "\t0.1\n");
+                for (int j = firstPub; j < firstPub + N_PUBS_PER_CLIQUE; j++)
+                    if (j != i)
+                        writer.print(i + "\t" + j + "\t1\n");
+                if ((i == firstPub + N_PUBS_PER_CLIQUE - 1) && (i + 1 < nPubs))
+                    writer.print(i + "\t" + (i + 1) + "\t0.1\n");
+            }
+        }
+    }
+
+    /**
+     * Checks that two clusterings are equal apart from the numbering of the
+     * clusters.
+     *
+     * @param cluster  Cluster numbers of the first clustering
+     * @param cluster2 Cluster numbers of the second clustering
+     */
+    private static void assertSameClusters(int[] cluster, int[] cluster2)
+    {
+        assertEquals(cluster.length, cluster2.length);
+        Map<Integer, Integer> clusterMap = new HashMap<Integer, Integer>();
+        Map<Integer, Integer> clusterMap2 = new HashMap<Integer, Integer>();
+        for (int i = 0; i < cluster.length; i++)
+        {
+            Integer mappedCluster = clusterMap.putIfAbsent(cluster[i], cluster2[i]);
+            Integer mappedCluster2 = clusterMap2.putIfAbsent(cluster2[i], cluster[i]);
+            assertEquals("Publication " + i, cluster2[i], (mappedCluster != null) ? mappedCluster.intValue() : cluster2[i]);
+            assertEquals("Publication " + i, cluster[i], (mappedCluster2 != null) ? mappedCluster2.intValue() : cluster[i]);
+        }
+    }
+
+    /**
+     * Counts the number of clusters of a clustering.
+     *
+     * @param cluster Cluster numbers
+     *
+     * @return Number of clusters
+     */
+    private static int countClusters(int[] cluster)
+    {
+        int nClusters = 0;
+        for (int c : cluster)
+            nClusters = Math.max(nClusters, c + 1);
+        return nClusters;
+    }
+
+    /**
+     * Concatenates two arrays of strings.
+     *
+     * @param strings  First array
+     * @param strings2 Second array
+     *
+     * @return Concatenated array
+     */
+    private static String[] concat(String[] strings, String[] strings2)
+    {
+        String[] concatenatedStrings = new String[strings.length + strings2.length];
+        System.arraycopy(strings, 0, concatenatedStrings, 0, strings.length);
+        System.arraycopy(strings2, 0, concatenatedStrings, strings.length, strings2.length);
+        return concatenatedStrings;
+    }
+}